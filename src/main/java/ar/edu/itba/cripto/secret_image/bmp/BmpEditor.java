@@ -1,13 +1,13 @@
 package ar.edu.itba.cripto.secret_image.bmp;
 
 
-import org.apache.commons.io.FileUtils;
+import ar.edu.itba.cripto.secret_image.main.util.Keystream;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.util.List;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 /**
  * Class implementing logic to edit a {@link BmpUtils}.
@@ -45,6 +45,16 @@ public class BmpEditor {
      */
     private int pointer;
 
+    /**
+     * The amount of least significant bits of each byte in which the secret is written.
+     */
+    private int bitsPerByte;
+
+    /**
+     * The value of the second reserved field (i.e shadow number and flags).
+     */
+    private int shadowField;
+
     /**
      * Constructor.
      *
@@ -53,50 +63,117 @@ public class BmpEditor {
     /*package*/ BmpEditor(BmpUtils bmpUtils) {
         this.bmpUtils = bmpUtils;
         this.pointer = bmpUtils.offset;
+        this.bitsPerByte = 1;
+        this.shadowField = Byte.toUnsignedInt(bmpUtils.fileBytes.get(RESERVED_TWO))
+                | Byte.toUnsignedInt(bmpUtils.fileBytes.get(RESERVED_TWO + 1)) << 8;
     }
 
     /**
      * Constructor.
+     * The new image data is held in a buffer taken from the same {@link BufferPool} as the {@code shadow} one,
+     * which must be given back with {@link #release()} once the image is saved.
      *
      * @param name   The name of a new {@link BmpUtils} (i.e the name used to save a new image).
      * @param image  The real data of a new image.
      * @param shadow A {@link BmpUtils} used as a reference for getting data for the new image.
      * @param k      The k value.
      */
-    public BmpEditor(String name, List<Integer> image, BmpUtils shadow, int k) {
+    public BmpEditor(String name, byte[] image, BmpUtils shadow, int k) {
         File newFile = new File(name);
-        int imageSize;
-        int height;
-
-        if (k == 8) {
-            imageSize = image.size();
-            height = shadow.getHeight();
-        } else {
-            int rowSize = Math.floorDiv(shadow.getWidth() * 8 + 31, 32) * 4;
-            height = shadow.getHeight() * k / 8;
-            imageSize = rowSize * height;
-        }
+        int imageSize = Math.toIntExact(secretImageSize(shadow, k, image.length));
+        int height = secretHeight(shadow, k);
 
         int total = shadow.offset + imageSize;
         total += total % 4;
 
-        byte[] newImage = new byte[total];
+        final BufferPool pool = shadow.getPool();
+        ByteBuffer newImage = pool.acquire(total);
         for (int i = 0; i < shadow.offset; i++) {
-            newImage[i] = shadow.fileBytes[i];
+            newImage.put(i, shadow.fileBytes.get(i));
         }
-        for (int i = 0; i < imageSize; i++) {
-            newImage[shadow.offset + i] = (byte) image.get(i).intValue();
+        newImage.position(shadow.offset);
+        newImage.put(image, 0, imageSize);
+        newImage.position(0);
+        for (int i = shadow.offset + imageSize; i < total; i++) {
+            newImage.put(i, (byte) 0); // Pooled buffers are not zeroed
         }
 
-        this.bmpUtils = new BmpUtils(newFile, newImage, shadow, height);
+        this.bmpUtils = new BmpUtils(newFile, newImage, pool, shadow, height);
 
-        if (k != 8) {
-            editFileSize(total);
-            editPicSize(total - shadow.offset);
-            editHeight(height);
-        }
+        this.bitsPerByte = 1;
+        this.shadowField = 0;
+        editSecretHeader(shadow, k, total, height);
+    }
+
+    /**
+     * Builds a secret image in memory, as done by {@link #BmpEditor(String, byte[], BmpUtils, int)},
+     * but in an array owned by the caller instead of a pooled buffer.
+     *
+     * @param image  The real data of the secret image (bytes after the real data size are discarded).
+     * @param shadow A {@link BmpUtils} used as a reference for getting data for the secret image.
+     * @param k      The k value.
+     * @return The whole secret image file.
+     */
+    public static byte[] secretImage(byte[] image, BmpUtils shadow, int k) {
+        final int imageSize = Math.toIntExact(secretImageSize(shadow, k, image.length));
+        final int height = secretHeight(shadow, k);
+        int total = shadow.offset + imageSize;
+        total += total % 4;
+
+        final byte[] bytes = new byte[total];
+        final ByteBuffer header = shadow.fileBytes.duplicate();
+        header.position(0);
+        header.get(bytes, 0, shadow.offset);
+        System.arraycopy(image, 0, bytes, shadow.offset, imageSize);
+        final BmpUtils secret = new BmpUtils(null, ByteBuffer.wrap(bytes), shadow.getPool(), shadow, height);
+        new BmpEditor(secret).editSecretHeader(shadow, k, total, height);
+        return bytes;
+    }
 
+    /**
+     * Calculates the height of the secret image recovered from the given {@code shadow}.
+     *
+     * @param shadow The shadow used as a reference.
+     * @param k      The k value.
+     * @return The height.
+     */
+    /*package*/ static int secretHeight(BmpUtils shadow, int k) {
+        // Each shadow byte holds (bitsPerByte / 8) shares, and each share gives k bytes of the new image
+        return shadow.getHeight() * k * shadow.getBitsPerByte() / 8;
+    }
+
+    /**
+     * Calculates the real data size of the secret image recovered from the given {@code shadow}.
+     *
+     * @param shadow     The shadow used as a reference.
+     * @param k          The k value.
+     * @param dataLength The amount of recovered bytes.
+     * @return The real data size (i.e the amount of recovered bytes that are saved),
+     * which might be larger than 2 GB.
+     */
+    /*package*/ static long secretImageSize(BmpUtils shadow, int k, long dataLength) {
+        if (k * shadow.getBitsPerByte() == 8) {
+            return dataLength;
+        }
+        long rowSize = Math.floorDiv((long) shadow.getWidth() * shadow.getBitsPerPixel() + 31, 32) * 4;
+        return rowSize * secretHeight(shadow, k);
+    }
 
+    /**
+     * Changes the size fields of a secret image header copied from the given {@code shadow},
+     * if the secret image size is not the shadow one.
+     *
+     * @param shadow The shadow from which the header was copied.
+     * @param k      The k value.
+     * @param total  The secret image file size (only its lowest 32 bits are saved, as bmp sizes are unsigned).
+     * @param height The secret image height.
+     */
+    /*package*/ void editSecretHeader(BmpUtils shadow, int k, long total, int height) {
+        if (k * shadow.getBitsPerByte() != 8) {
+            editFileSize((int) total);
+            editPicSize((int) (total - shadow.offset));
+            editHeight(height);
+        }
     }
 
     /**
@@ -108,13 +185,73 @@ public class BmpEditor {
         editMetadataShort(RESERVED_ONE, num);
     }
 
+    /**
+     * Changes the keystream version and seed of the {@link BmpUtils}.
+     * The legacy keystream seed is stored in the first reserved field,
+     * while the counter-based keystream one (64 bits) is stored in place of the resolution fields.
+     *
+     * @param version The keystream version (see {@link Keystream}).
+     * @param seed    The seed.
+     */
+    public void editKeystream(int version, long seed) {
+        switch (version) {
+            case Keystream.LEGACY:
+                shadowField &= ~BmpUtils.COUNTER_KEYSTREAM_FLAG;
+                editSeed((int) seed);
+                break;
+            case Keystream.COUNTER:
+                shadowField |= BmpUtils.COUNTER_KEYSTREAM_FLAG;
+                editSeed(0);
+                editMetadataInt(BmpUtils.LONG_SEED, (int) seed);
+                editMetadataInt(BmpUtils.LONG_SEED + 4, (int) (seed >>> 32));
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported keystream version: " + version);
+        }
+        editMetadataShort(RESERVED_TWO, shadowField);
+    }
+
     /**
      * Changes the shadow of the {@link BmpUtils}.
      *
      * @param num The new value for the shadow.
      */
     public void editShadow(int num) {
-        editMetadataShort(RESERVED_TWO, num);
+        if (num < 0 || num > BmpUtils.SHADOW_NUMBER_MASK) {
+            throw new IllegalArgumentException("Invalid shadow number: " + num);
+        }
+        shadowField = (shadowField & ~BmpUtils.SHADOW_NUMBER_MASK) | num;
+        editMetadataShort(RESERVED_TWO, shadowField);
+    }
+
+    /**
+     * Changes the amount of least significant bits of each byte in which the secret is written,
+     * recording it in the header of the {@link BmpUtils}.
+     * Must be called before inserting any secret.
+     *
+     * @param bitsPerByte The amount of bits (1, 2 or 4).
+     */
+    public void editBitsPerByte(int bitsPerByte) {
+        if (bitsPerByte != 1 && bitsPerByte != 2 && bitsPerByte != 4) {
+            throw new IllegalArgumentException("Bits per byte must be 1, 2 or 4");
+        }
+        this.bitsPerByte = bitsPerByte;
+        int code = Integer.numberOfTrailingZeros(bitsPerByte);
+        shadowField = (shadowField & ~(BmpUtils.BITS_PER_BYTE_MASK << BmpUtils.BITS_PER_BYTE_SHIFT))
+                | code << BmpUtils.BITS_PER_BYTE_SHIFT;
+        editMetadataShort(RESERVED_TWO, shadowField);
+    }
+
+    /**
+     * Changes whether polynomials were evaluated at the number theoretic transform points,
+     * recording it in the header of the {@link BmpUtils}.
+     *
+     * @param nttPoints {@code true} if polynomials were evaluated at the number theoretic transform points,
+     *                  or {@code false} if they were evaluated at the shadow numbers.
+     */
+    public void editNttPoints(boolean nttPoints) {
+        shadowField = nttPoints ? shadowField | BmpUtils.NTT_POINTS_FLAG : shadowField & ~BmpUtils.NTT_POINTS_FLAG;
+        editMetadataShort(RESERVED_TWO, shadowField);
     }
 
     /**
@@ -151,8 +288,8 @@ public class BmpEditor {
      * @param data     Data to be written.
      */
     private void editMetadataShort(int position, int data) {
-        bmpUtils.fileBytes[position] = (byte) (data & 0x00FF);
-        bmpUtils.fileBytes[position + 1] = (byte) ((data & 0xFF00) >> 8);
+        bmpUtils.fileBytes.put(position, (byte) (data & 0x00FF));
+        bmpUtils.fileBytes.put(position + 1, (byte) ((data & 0xFF00) >> 8));
     }
 
     /**
@@ -162,16 +299,8 @@ public class BmpEditor {
      * @param data     Data to be written.
      */
     private void editMetadataInt(int position, int data) {
-        ByteBuffer buffer = ByteBuffer.allocate(5);
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-        buffer.putInt(data);
-        byte[] aux = buffer.array();
-
-        bmpUtils.fileBytes[position] = aux[0];
-        bmpUtils.fileBytes[position + 1] = aux[1];
-
-        bmpUtils.fileBytes[position + 2] = aux[2];
-        bmpUtils.fileBytes[position + 3] = aux[3];
+        editMetadataShort(position, data & 0xFFFF);
+        editMetadataShort(position + 2, data >>> 16);
     }
 
     /**
@@ -181,20 +310,45 @@ public class BmpEditor {
      * @return {@code true} if the secret was saved, or {@code false} otherwise.
      */
     public boolean insertSecret(int secret) {
-        if (pointer + 8 > bmpUtils.getFileSize()) {
+        final int bytesPerSecret = 8 / bitsPerByte;
+        if (pointer + bytesPerSecret > bmpUtils.getFileSize()) {
             return false;
         }
+        final int mask = (1 << bitsPerByte) - 1;
+        for (int shift = 8 - bitsPerByte; shift >= 0; shift -= bitsPerByte) {
+            int aux = (secret >> shift) & mask;
+            bmpUtils.fileBytes.put(pointer, (byte) ((bmpUtils.fileBytes.get(pointer) & ~mask) | aux));
+            pointer++;
+        }
+        return true;
+    }
 
-        for (int i = 1; i <= 8; i++) {
-            int aux = (secret >> (8 - i)) & 1;
-
-            if (aux == 1) {
-                bmpUtils.fileBytes[pointer] = (byte) (bmpUtils.fileBytes[pointer] | 0x01);
-            } else {
-                bmpUtils.fileBytes[pointer] = (byte) (bmpUtils.fileBytes[pointer] & 0xFE);
+    /**
+     * Saves {@code length} secrets, starting from {@code offset} of the given array,
+     * in the {@link BmpUtils} being edited. Nothing is saved if they do not fit.
+     *
+     * @param secrets The array holding the secrets to be saved.
+     * @param offset  The position of the first secret to be saved.
+     * @param length  The amount of secrets to be saved.
+     * @return {@code true} if the secrets were saved, or {@code false} otherwise.
+     */
+    public boolean insertSecrets(byte[] secrets, int offset, int length) {
+        final int bytesPerSecret = 8 / bitsPerByte;
+        if (pointer + (long) length * bytesPerSecret > bmpUtils.getFileSize()) {
+            return false;
+        }
+        final ByteBuffer bytes = bmpUtils.fileBytes;
+        final int mask = (1 << bitsPerByte) - 1;
+        final int firstShift = 8 - bitsPerByte;
+        int index = pointer;
+        for (int i = offset; i < offset + length; i++) {
+            final int secret = secrets[i];
+            for (int shift = firstShift; shift >= 0; shift -= bitsPerByte) {
+                bytes.put(index, (byte) ((bytes.get(index) & ~mask) | ((secret >> shift) & mask)));
+                index++;
             }
-            pointer++;
         }
+        pointer = index;
         return true;
     }
 
@@ -204,11 +358,23 @@ public class BmpEditor {
      * @return {@code true} if the image was saved, or {@code false} otherwise.
      */
     public boolean saveImage() {
-        try {
-            FileUtils.writeByteArrayToFile(bmpUtils.file, bmpUtils.fileBytes);
+        final ByteBuffer bytes = bmpUtils.fileBytes.duplicate();
+        bytes.position(0);
+        try (FileChannel channel = FileChannel.open(bmpUtils.file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
             return true;
         } catch (IOException e) {
             return false;
         }
     }
+
+    /**
+     * Gives the buffer holding the image data back to its {@link BufferPool} (see {@link BmpUtils#release()}).
+     */
+    public void release() {
+        bmpUtils.release();
+    }
 }
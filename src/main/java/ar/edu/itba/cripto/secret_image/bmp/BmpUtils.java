@@ -1,39 +1,97 @@
 package ar.edu.itba.cripto.secret_image.bmp;
 
 
-import org.apache.commons.io.IOUtils;
+import ar.edu.itba.cripto.secret_image.main.util.Keystream;
+import ar.edu.itba.cripto.secret_image.math_utils.NumberTheoreticTransform;
 
-import javax.imageio.stream.FileImageInputStream;
-import javax.imageio.stream.ImageInputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
 /**
  * Class representing a bmp image.
+ * The image data is held in a buffer taken from a {@link BufferPool},
+ * which must be given back with {@link #release()} once the image is not needed anymore
+ * (or in a buffer owned by the caller, see {@link #wrap(ByteBuffer)}).
  */
 public class BmpUtils implements Iterable<List<Integer>> {
 
+    /**
+     * Mask of the shadow number in the second reserved field (the rest of the bits are used as shadow flags).
+     */
+    /*package*/ final static int SHADOW_NUMBER_MASK = 0x01FF;
+    /**
+     * Position of the code of the amount of bits hidden in each byte, in the second reserved field
+     * (0 for 1 bit, 1 for 2 bits and 2 for 4 bits).
+     */
+    /*package*/ final static int BITS_PER_BYTE_SHIFT = 9;
+    /**
+     * Mask of the code of the amount of bits hidden in each byte (once shifted).
+     */
+    /*package*/ final static int BITS_PER_BYTE_MASK = 0x3;
+    /**
+     * Flag set in the second reserved field when data was masked with the counter-based keystream,
+     * whose 64 bits seed is stored in place of the resolution fields (see {@link #LONG_SEED}).
+     */
+    /*package*/ final static int COUNTER_KEYSTREAM_FLAG = 1 << 11;
+    /**
+     * Position of the 64 bits seed of the counter-based keystream (i.e the horizontal and vertical resolution).
+     */
+    /*package*/ final static int LONG_SEED = 0x26;
+    /**
+     * Flag set in the second reserved field when polynomials were evaluated at the number theoretic transform points
+     * (see {@link NumberTheoreticTransform#point(int)}) instead of at the shadow numbers.
+     */
+    /*package*/ final static int NTT_POINTS_FLAG = 1 << 12;
+    /**
+     * Position of the image offset (i.e where the real data starts).
+     */
+    private final static int OFFSET = 0xA;
+    /**
+     * The size of the bmp header (i.e the file header and the info header).
+     */
+    private final static int HEADER_SIZE = 0x36;
+    /**
+     * The pool of those images held in buffers that were not taken from a pool (see {@link #wrap(ByteBuffer)}),
+     * which keeps no released buffer.
+     */
+    private final static BufferPool UNPOOLED = new BufferPool(0);
+
     // ================================
     // Metadata
     // ================================
     /**
-     * The file size.
+     * The file size (an unsigned 32 bits field, so that images larger than 2 GB can be described).
      */
-    private final int fileSize;
+    private final long fileSize;
     /**
      * The shadow.
      */
     private final int shadow;
+    /**
+     * The amount of least significant bits of each byte in which data is hidden.
+     */
+    private final int bitsPerByte;
     /**
      * The seed.
      */
-    private final int seed;
+    private final long seed;
+    /**
+     * The version of the keystream used to mask data (see {@link Keystream}).
+     */
+    private final int keystreamVersion;
+    /**
+     * Indicates whether polynomials were evaluated at the number theoretic transform points.
+     */
+    private final boolean nttPoints;
     /**
      * The image width.
      */
@@ -42,6 +100,10 @@ public class BmpUtils implements Iterable<List<Integer>> {
      * The image height.
      */
     private final int height;
+    /**
+     * The amount of bits of each pixel.
+     */
+    private final int bitsPerPixel;
     /**
      * The image offset (i.e where the real data starts).
      */
@@ -51,13 +113,25 @@ public class BmpUtils implements Iterable<List<Integer>> {
     // Internal data
     // ================================
     /**
-     * The real {@link File} that represents this image.
+     * The real {@link File} that represents this image ({@code null} if it is held only in memory).
      */
     /*package*/ final File file;
     /**
-     * The array of bytes representing the image's raw data.
+     * The buffer holding the image's raw data (from position 0 to its limit).
+     */
+    /*package*/ final ByteBuffer fileBytes;
+    /**
+     * The {@link BufferPool} from which {@link #fileBytes} was taken.
      */
-    /*package*/ final byte[] fileBytes;
+    private final BufferPool pool;
+    /**
+     * Indicates whether {@link #fileBytes} only holds the header (i.e up to the image offset).
+     */
+    private final boolean headerOnly;
+    /**
+     * Indicates whether {@link #fileBytes} was already given back to the pool.
+     */
+    private boolean released;
 
     /**
      * The amount of bytes that will be returned each time this image is iterated.
@@ -71,51 +145,249 @@ public class BmpUtils implements Iterable<List<Integer>> {
      * @throws IOException If any IO error occurs while opening/reading file.
      */
     public BmpUtils(String path) throws IOException {
-        this.file = new File(path);
+        this(path, BufferPool.shared());
+    }
 
-        ImageInputStream imageStream = new FileImageInputStream(file);
-        imageStream.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+    /**
+     * Constructor.
+     *
+     * @param path Path where the image must be opened from.
+     * @param pool The {@link BufferPool} from which the buffer holding the image data is taken.
+     * @throws IOException If any IO error occurs while opening/reading file.
+     */
+    public BmpUtils(String path, BufferPool pool) throws IOException {
+        this(path, pool, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param path       Path where the image must be opened from.
+     * @param pool       The {@link BufferPool} from which the buffer holding the image data is taken.
+     * @param headerOnly Whether only the header (i.e up to the image offset) must be read.
+     * @throws IOException If any IO error occurs while opening/reading file.
+     */
+    private BmpUtils(String path, BufferPool pool, boolean headerOnly) throws IOException {
+        this(new File(path), read(path, pool, headerOnly), pool, headerOnly);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file       The real {@link File} that represents this image ({@code null} if held only in memory).
+     * @param bytes      The buffer holding the image's raw data (from position 0 to its limit).
+     * @param pool       The {@link BufferPool} from which {@code bytes} was taken.
+     * @param headerOnly Whether {@code bytes} only holds the header (i.e up to the image offset).
+     */
+    private BmpUtils(File file, ByteBuffer bytes, BufferPool pool, boolean headerOnly) {
+        this.file = file;
+        this.fileBytes = bytes;
+        this.pool = pool;
+        this.headerOnly = headerOnly;
+
+        final ByteBuffer header = fileBytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
 
         //Skip ID
-        imageStream.skipBytes(2);
+        header.position(2);
         //Size of whole fileBytes
-        this.fileSize = (int) imageStream.readUnsignedInt();
+        this.fileSize = Integer.toUnsignedLong(header.getInt());
         //Reserved: seed + shadow
-        this.seed = imageStream.readUnsignedShort(); //seed
-        this.shadow = imageStream.readUnsignedShort(); //shadow
+        int shortSeed = Short.toUnsignedInt(header.getShort()); //seed
+        int shadowField = Short.toUnsignedInt(header.getShort()); //shadow + flags
+        this.shadow = shadowField & SHADOW_NUMBER_MASK;
+        this.bitsPerByte = 1 << ((shadowField >> BITS_PER_BYTE_SHIFT) & BITS_PER_BYTE_MASK);
+        this.nttPoints = (shadowField & NTT_POINTS_FLAG) != 0;
+        if ((shadowField & COUNTER_KEYSTREAM_FLAG) != 0) {
+            this.keystreamVersion = Keystream.COUNTER;
+            this.seed = header.getLong(LONG_SEED);
+        } else {
+            this.keystreamVersion = Keystream.LEGACY;
+            this.seed = shortSeed;
+        }
         //Offset to image start
-        this.offset = (int) imageStream.readUnsignedInt();
+        this.offset = header.getInt();
         //Skip Length of BitMapInfoHeader
-        imageStream.skipBytes(4);
+        header.getInt();
         //Width & height
-        this.width = (int) imageStream.readUnsignedInt();
-        this.height = (int) imageStream.readUnsignedInt();
-
-        imageStream.close();
-
-        InputStream inputStream = new FileInputStream(file);
-        this.fileBytes = IOUtils.toByteArray(inputStream);
-        inputStream.close();
-
+        this.width = header.getInt();
+        this.height = header.getInt();
+        //Skip planes
+        header.getShort();
+        this.bitsPerPixel = Short.toUnsignedInt(header.getShort());
     }
 
     /**
      * Constructor.
      *
      * @param file   The real {@link File} that represents this image.
-     * @param bytes  The array of bytes representing the image's raw data.
+     * @param bytes  The buffer holding the image's raw data (taken from the given {@code pool}).
+     * @param pool   The {@link BufferPool} from which {@code bytes} was taken.
      * @param shadow A {@link BmpUtils} used as a reference (i.e data is taken from here).
      * @param height The image height.
      */
-    /* package */ BmpUtils(File file, byte[] bytes, BmpUtils shadow, int height) {
+    /* package */ BmpUtils(File file, ByteBuffer bytes, BufferPool pool, BmpUtils shadow, int height) {
         this.file = file;
         this.fileBytes = bytes;
-        this.fileSize = bytes.length;
+        this.pool = pool;
+        this.headerOnly = false;
+        this.fileSize = bytes.limit();
         this.offset = shadow.offset;
         this.seed = 0;
+        this.keystreamVersion = Keystream.LEGACY;
+        this.nttPoints = false;
         this.shadow = 0;
+        this.bitsPerByte = 1;
         this.width = shadow.width;
         this.height = height;
+        this.bitsPerPixel = shadow.bitsPerPixel;
+    }
+
+    /**
+     * Reads the image in the given {@code path} into a buffer taken from the given {@code pool}.
+     * The file is opened only once.
+     *
+     * @param path       Path where the image must be opened from.
+     * @param pool       The {@link BufferPool} from which the buffer is taken.
+     * @param headerOnly Whether only the header (i.e up to the image offset) must be read.
+     * @return The buffer holding the read bytes (from position 0 to its limit).
+     * @throws IOException If any IO error occurs while opening/reading file.
+     */
+    private static ByteBuffer read(String path, BufferPool pool, boolean headerOnly) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            final long size = headerOnly ? readOffset(channel, path) : channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Image is too big: " + path);
+            }
+            final ByteBuffer bytes = pool.acquire((int) size);
+            try {
+                while (bytes.hasRemaining()) {
+                    if (channel.read(bytes, bytes.position()) < 0) {
+                        throw new EOFException("Image was truncated while being read: " + path);
+                    }
+                }
+            } catch (IOException e) {
+                pool.release(bytes);
+                throw e;
+            }
+            bytes.flip();
+            return bytes;
+        }
+    }
+
+    /**
+     * Creates an image held in the given {@code bytes} (from its position to its limit), without copying them,
+     * so that images received in memory can be used without being saved in a file.
+     * Editing the returned image changes the given buffer, and releasing it has no effect (as it is not pooled).
+     *
+     * @param bytes The buffer holding the whole bmp file.
+     * @return The {@link BmpUtils} backed by {@code bytes}.
+     * @throws IllegalArgumentException If {@code bytes} do not hold a bmp header, or are shorter than its offset.
+     */
+    public static BmpUtils wrap(ByteBuffer bytes) {
+        if (bytes == null || bytes.remaining() < HEADER_SIZE) {
+            throw new IllegalArgumentException("Not a bmp image (the header is missing)");
+        }
+        final BmpUtils image = new BmpUtils(null, bytes.slice(), UNPOOLED, false);
+        if (image.offset < HEADER_SIZE || image.offset > image.fileSize
+                || image.fileSize > image.fileBytes.limit()) {
+            throw new IllegalArgumentException("Not a bmp image (the header does not match its size)");
+        }
+        return image;
+    }
+
+    /**
+     * Creates an image holding only the header in the given {@code bytes} (i.e up to the image offset,
+     * see {@link #headerLength(ByteBuffer)}), so that its metadata can be checked before its real data arrives.
+     * The returned image does not hold the real data, as done by {@link #readHeader(String, BufferPool)}.
+     *
+     * @param bytes The buffer holding (at least) the image header (from its position to its limit,
+     *              which are not changed, nor copied).
+     * @return The {@link BmpUtils} holding the header.
+     * @throws IllegalArgumentException If {@code bytes} do not hold a whole bmp header.
+     */
+    public static BmpUtils wrapHeader(ByteBuffer bytes) {
+        final int length = headerLength(bytes);
+        if (length < 0 || bytes.remaining() < length) {
+            throw new IllegalArgumentException("Not a bmp image (the header is missing)");
+        }
+        final ByteBuffer header = bytes.slice();
+        header.limit(length);
+        return new BmpUtils(null, header, UNPOOLED, true);
+    }
+
+    /**
+     * Gets the length of the header of the image starting with the given {@code bytes} (i.e the image offset).
+     *
+     * @param bytes The buffer holding the first bytes of the image (from its position to its limit,
+     *              which are not changed).
+     * @return The header length, or -1 if {@code bytes} do not hold enough bytes to know it yet.
+     * @throws IllegalArgumentException If the image offset is not a valid one.
+     */
+    public static int headerLength(ByteBuffer bytes) {
+        if (bytes.remaining() < OFFSET + Integer.BYTES) {
+            return -1;
+        }
+        final int offset = bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt(bytes.position() + OFFSET);
+        if (offset < HEADER_SIZE) {
+            throw new IllegalArgumentException("Not a bmp image (invalid offset " + offset + ")");
+        }
+        return offset;
+    }
+
+    /**
+     * Reads only the header of the image in the given {@code path} (i.e up to the image offset), so that its metadata
+     * can be checked, and its real data read by parts (see {@link ShadowReader}).
+     * The returned image does not hold the real data (i.e it can not be edited, nor its hidden bytes extracted).
+     *
+     * @param path Path where the image must be opened from.
+     * @param pool The {@link BufferPool} from which the buffer holding the header is taken.
+     * @return The {@link BmpUtils} holding the header.
+     * @throws IOException If any IO error occurs while opening/reading file.
+     */
+    public static BmpUtils readHeader(String path, BufferPool pool) throws IOException {
+        return new BmpUtils(path, pool, true);
+    }
+
+    /**
+     * Reads the image offset (i.e the header size) from the given {@code channel}.
+     *
+     * @param channel The channel from which the image is read.
+     * @param path    Path where the image was opened from.
+     * @return The image offset.
+     * @throws IOException If any IO error occurs while reading file.
+     */
+    private static long readOffset(FileChannel channel, String path) throws IOException {
+        final ByteBuffer offset = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (offset.hasRemaining()) {
+            if (channel.read(offset, OFFSET + offset.position()) < 0) {
+                throw new EOFException("Image header was truncated: " + path);
+            }
+        }
+        return Integer.toUnsignedLong(offset.getInt(0));
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param original The {@link BmpUtils} being copied.
+     * @param bytes    The buffer holding a copy of the original raw data (taken from the given {@code pool}).
+     * @param pool     The {@link BufferPool} from which {@code bytes} was taken.
+     */
+    private BmpUtils(BmpUtils original, ByteBuffer bytes, BufferPool pool) {
+        this.file = original.file;
+        this.fileBytes = bytes;
+        this.pool = pool;
+        this.headerOnly = original.headerOnly;
+        this.fileSize = original.fileSize;
+        this.offset = original.offset;
+        this.seed = original.seed;
+        this.keystreamVersion = original.keystreamVersion;
+        this.nttPoints = original.nttPoints;
+        this.shadow = original.shadow;
+        this.bitsPerByte = original.bitsPerByte;
+        this.width = original.width;
+        this.height = original.height;
+        this.bitsPerPixel = original.bitsPerPixel;
     }
 
     /**
@@ -132,6 +404,17 @@ public class BmpUtils implements Iterable<List<Integer>> {
         return fileSize - offset;
     }
 
+    /**
+     * Gets the amount of shares hidden in this shadow, which might be less than its hidden capacity
+     * (the hidden bytes after them are those of the cover, as the secret image size is rounded to whole rows).
+     *
+     * @param k The k value.
+     * @return The amount of shares (i.e of polynomials of the secret image).
+     */
+    public int getShareCount(int k) {
+        return (int) (BmpEditor.secretImageSize(this, k, (long) k * getHiddenCapacity()) / k);
+    }
+
     /**
      * @return The shadow.
      */
@@ -140,12 +423,108 @@ public class BmpUtils implements Iterable<List<Integer>> {
     }
 
     /**
-     * @return The seed.
+     * @return The amount of least significant bits of each byte in which data is hidden.
+     */
+    public int getBitsPerByte() {
+        return bitsPerByte;
+    }
+
+    /**
+     * @return The amount of bytes that can be hidden in this image.
+     */
+    public int getHiddenCapacity() {
+        return Math.toIntExact(getImageSize() * bitsPerByte / 8);
+    }
+
+    /**
+     * Gets the first {@code count} bytes hidden in this image (i.e in the least significant bits of its real data).
+     * Each hidden byte is spread through {@code 8 / bitsPerByte} image bytes, most significant bits first.
+     *
+     * @param count The amount of hidden bytes to get.
+     * @return The hidden bytes.
      */
-    public int getSeed() {
+    public byte[] extractHidden(int count) {
+        if (count > getHiddenCapacity()) {
+            throw new IllegalArgumentException("There are not " + count + " bytes hidden in this image");
+        }
+        if (headerOnly) {
+            throw new IllegalStateException("Only the header of this image was read");
+        }
+        final byte[] hidden = new byte[count];
+        extractHidden(fileBytes, offset, bitsPerByte, hidden, 0, count);
+        return hidden;
+    }
+
+    /**
+     * Gets {@code count} hidden bytes from the given {@code bytes}, starting at the given {@code index}.
+     * Each hidden byte is spread through {@code 8 / bitsPerByte} bytes, most significant bits first.
+     *
+     * @param bytes       The buffer holding the image data.
+     * @param index       The position of the first byte of the first hidden byte.
+     * @param bitsPerByte The amount of least significant bits of each byte in which data is hidden.
+     * @param hidden      The array in which the hidden bytes are saved.
+     * @param from        The position of {@code hidden} in which the first hidden byte is saved.
+     * @param count       The amount of hidden bytes to get.
+     */
+    /*package*/ static void extractHidden(ByteBuffer bytes, int index, int bitsPerByte, byte[] hidden, int from,
+                                          int count) {
+        final int mask = (1 << bitsPerByte) - 1;
+        final int bytesPerHidden = 8 / bitsPerByte;
+        for (int i = from; i < from + count; i++) {
+            int hiddenByte = 0;
+            for (int j = 0; j < bytesPerHidden; j++) {
+                hiddenByte = (hiddenByte << bitsPerByte) | (bytes.get(index++) & mask);
+            }
+            hidden[i] = (byte) hiddenByte;
+        }
+    }
+
+    /**
+     * Hides {@code count} bytes in the given {@code bytes}, starting at the given {@code index}
+     * (i.e the counterpart of {@link #extractHidden(ByteBuffer, int, int, byte[], int, int)}).
+     *
+     * @param bytes       The buffer holding the image data.
+     * @param index       The position of the first byte of the first hidden byte.
+     * @param bitsPerByte The amount of least significant bits of each byte in which data is hidden.
+     * @param hidden      The array holding the bytes to be hidden.
+     * @param from        The position of {@code hidden} of the first byte to be hidden.
+     * @param count       The amount of bytes to be hidden.
+     */
+    /*package*/ static void insertHidden(ByteBuffer bytes, int index, int bitsPerByte, byte[] hidden, int from,
+                                         int count) {
+        final int mask = (1 << bitsPerByte) - 1;
+        final int firstShift = 8 - bitsPerByte;
+        for (int i = from; i < from + count; i++) {
+            final int hiddenByte = hidden[i];
+            for (int shift = firstShift; shift >= 0; shift -= bitsPerByte) {
+                bytes.put(index, (byte) ((bytes.get(index) & ~mask) | ((hiddenByte >> shift) & mask)));
+                index++;
+            }
+        }
+    }
+
+    /**
+     * @return The seed (16 bits for the legacy keystream, or 64 bits for the counter-based one).
+     */
+    public long getSeed() {
         return seed;
     }
 
+    /**
+     * @return The version of the keystream used to mask data (see {@link Keystream}).
+     */
+    public int getKeystreamVersion() {
+        return keystreamVersion;
+    }
+
+    /**
+     * @return {@code true} if polynomials were evaluated at the number theoretic transform points
+     * (see {@link NumberTheoreticTransform#point(int)}), or {@code false} if they were evaluated at the shadow numbers.
+     */
+    public boolean usesNttPoints() {
+        return nttPoints;
+    }
+
     /**
      * @return The image width.
      */
@@ -160,6 +539,13 @@ public class BmpUtils implements Iterable<List<Integer>> {
         return height;
     }
 
+    /**
+     * @return The amount of bits of each pixel.
+     */
+    public int getBitsPerPixel() {
+        return bitsPerPixel;
+    }
+
     /**
      * @return The image offset
      */
@@ -167,6 +553,53 @@ public class BmpUtils implements Iterable<List<Integer>> {
         return offset;
     }
 
+    /**
+     * @return A copy of the image header (i.e all bytes before the real data starts).
+     */
+    public byte[] getHeader() {
+        final byte[] header = new byte[offset];
+        for (int i = 0; i < offset; i++) {
+            header[i] = fileBytes.get(i);
+        }
+        return header;
+    }
+
+    /**
+     * @return The {@link BufferPool} from which the buffer holding this image data was taken.
+     */
+    /*package*/ BufferPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Gives the buffer holding this image data back to its {@link BufferPool}.
+     * The image (and any {@link BmpEditor} editing it) must not be used after being released.
+     * Releasing an image more than once has no effect.
+     */
+    public void release() {
+        synchronized (this) {
+            if (released) {
+                return;
+            }
+            released = true;
+        }
+        pool.release(fileBytes);
+    }
+
+    /**
+     * Gets a block of the image real data (i.e the same bytes returned by the {@code index}-th iteration,
+     * when iterating by blocks of {@code block.length} bytes), without allocating any object.
+     *
+     * @param index The block index.
+     * @param block The array in which the block bytes are saved (unsigned).
+     */
+    public void readBlock(int index, int[] block) {
+        int position = offset + index * block.length;
+        for (int i = 0; i < block.length; i++) {
+            block[i] = Byte.toUnsignedInt(fileBytes.get(position++));
+        }
+    }
+
     /**
      * Sets the amount of bytes that will be returned each time this image is iterated.
      *
@@ -176,6 +609,20 @@ public class BmpUtils implements Iterable<List<Integer>> {
         this.bytesFromIterator = bytesFromIterator;
     }
 
+    /**
+     * Creates a copy of this image, held in a buffer taken from the given {@code pool},
+     * so that it can be edited (and released) without changing this one.
+     *
+     * @param pool The {@link BufferPool} from which the buffer holding the copy is taken.
+     * @return The copy.
+     */
+    public BmpUtils copy(BufferPool pool) {
+        final ByteBuffer bytes = pool.acquire(fileBytes.limit());
+        bytes.put(fileBytes.duplicate());
+        bytes.flip();
+        return new BmpUtils(this, bytes, pool);
+    }
+
     /**
      * @return A {@link BmpEditor} to edit this {@link BmpUtils}.
      */
@@ -208,7 +655,7 @@ public class BmpUtils implements Iterable<List<Integer>> {
         public List<Integer> next() {
             List<Integer> list = new ArrayList();
             for (int i = 0; i < bytesFromIterator; i++) {
-                list.add(Byte.toUnsignedInt(fileBytes[index++]));
+                list.add(Byte.toUnsignedInt(fileBytes.get(index++)));
             }
             return list;
         }
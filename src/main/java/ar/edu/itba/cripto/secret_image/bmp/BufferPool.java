@@ -0,0 +1,144 @@
+package ar.edu.itba.cripto.secret_image.bmp;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A pool of direct {@link ByteBuffer}s used to hold image data, so that large, short-lived arrays are not allocated
+ * in the heap for every image being read or written. Buffers are grouped in size classes
+ * (four classes per power of two, so at most a quarter of a buffer is wasted), and must be explicitly released
+ * when the job using them finishes.
+ *
+ * @implNote This class is thread-safe.
+ */
+public final class BufferPool {
+
+    /**
+     * The default maximum amount of bytes kept in released buffers.
+     */
+    public static final long DEFAULT_MAX_RETAINED_BYTES = 256L * 1024 * 1024;
+
+    /**
+     * The smallest size class.
+     */
+    private static final int MIN_CLASS_SIZE = 4096;
+
+    /**
+     * The pool shared by the whole application.
+     */
+    private static final BufferPool SHARED = new BufferPool(DEFAULT_MAX_RETAINED_BYTES);
+
+    /**
+     * The released buffers, by capacity (i.e size class).
+     */
+    private final Map<Integer, Deque<ByteBuffer>> free;
+    /**
+     * The maximum amount of bytes kept in released buffers.
+     */
+    private final long maxRetainedBytes;
+    /**
+     * The amount of bytes currently kept in released buffers.
+     */
+    private long retainedBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param maxRetainedBytes The maximum amount of bytes kept in released buffers
+     *                         (buffers released beyond this limit are left to the garbage collector).
+     */
+    public BufferPool(long maxRetainedBytes) {
+        if (maxRetainedBytes < 0) {
+            throw new IllegalArgumentException("The maximum amount of retained bytes must not be negative");
+        }
+        this.free = new HashMap<>();
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.retainedBytes = 0;
+    }
+
+    /**
+     * @return The {@link BufferPool} shared by the whole application.
+     */
+    public static BufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Gets a direct buffer with at least {@code size} bytes of capacity.
+     * The returned buffer has position 0 and limit {@code size}. Its content is undefined.
+     *
+     * @param size The amount of bytes needed.
+     * @return The buffer.
+     */
+    public ByteBuffer acquire(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must not be negative");
+        }
+        final int capacity = sizeClass(size);
+        ByteBuffer buffer = null;
+        synchronized (this) {
+            final Deque<ByteBuffer> buffers = free.get(capacity);
+            if (buffers != null && !buffers.isEmpty()) {
+                buffer = buffers.pop();
+                retainedBytes -= capacity;
+            }
+        }
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(capacity);
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * Returns the given {@code buffer} to this pool, so it can be reused.
+     * The buffer must not be used after being released.
+     *
+     * @param buffer The buffer being released.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        final int capacity = buffer.capacity();
+        if (capacity != sizeClass(capacity)) {
+            return; // Not acquired from a pool
+        }
+        synchronized (this) {
+            if (retainedBytes + capacity > maxRetainedBytes) {
+                return;
+            }
+            free.computeIfAbsent(capacity, c -> new ArrayDeque<>()).push(buffer);
+            retainedBytes += capacity;
+        }
+    }
+
+    /**
+     * @return The amount of bytes currently kept in released buffers.
+     */
+    public synchronized long getRetainedBytes() {
+        return retainedBytes;
+    }
+
+    /**
+     * Calculates the size class of the given {@code size}
+     * (i.e the smallest class of the form 2<sup>e</sup> * (4 + i) / 4, with i in [0, 3], that can hold it).
+     *
+     * @param size The amount of bytes needed.
+     * @return The size class (i.e the capacity of buffers holding {@code size} bytes).
+     */
+    private static int sizeClass(int size) {
+        if (size <= MIN_CLASS_SIZE) {
+            return MIN_CLASS_SIZE;
+        }
+        final int base = Integer.highestOneBit(size);
+        final int step = base / 4;
+        final long classSize = base + ((long) (size - base) + step - 1) / step * step;
+        return classSize > Integer.MAX_VALUE ? size : (int) classSize;
+    }
+}
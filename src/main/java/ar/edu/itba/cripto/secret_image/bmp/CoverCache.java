@@ -0,0 +1,185 @@
+package ar.edu.itba.cripto.secret_image.bmp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of parsed cover images, so that distributing many secrets onto the same covers does not read them
+ * from disk every time. Cached images are never edited: each {@link #load(String)} returns a private copy
+ * (see {@link BmpUtils#copy(BufferPool)}) in which shares can be embedded, while the pristine image stays cached.
+ * <p>
+ * Entries are keyed by canonical path, and are only used while the file keeps the same modification time and size.
+ * The least recently used entries are evicted once the cached images exceed the maximum amount of bytes.
+ *
+ * @implNote This class is thread-safe.
+ */
+public final class CoverCache {
+
+    /**
+     * The default maximum amount of bytes held by cached images.
+     */
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    /**
+     * The pool from which cached images buffers are taken. As cached images are long lived,
+     * their buffers are not kept for reuse once evicted (they are left to the garbage collector),
+     * so an evicted image can still be copied by a job that got it before eviction.
+     */
+    private static final BufferPool CACHED_IMAGES_POOL = new BufferPool(0);
+
+    /**
+     * The cached images, by canonical path (in access order, so the eldest is the least recently used).
+     */
+    private final LinkedHashMap<String, Entry> entries;
+    /**
+     * The maximum amount of bytes held by cached images.
+     */
+    private final long maxBytes;
+    /**
+     * The {@link BufferPool} from which copies are taken.
+     */
+    private final BufferPool pool;
+    /**
+     * The amount of bytes currently held by cached images.
+     */
+    private long cachedBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param maxBytes The maximum amount of bytes held by cached images.
+     */
+    public CoverCache(long maxBytes) {
+        this(maxBytes, BufferPool.shared());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxBytes The maximum amount of bytes held by cached images.
+     * @param pool     The {@link BufferPool} from which the buffers of the returned copies are taken.
+     */
+    public CoverCache(long maxBytes, BufferPool pool) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("The maximum amount of cached bytes must not be negative");
+        }
+        if (pool == null) {
+            throw new IllegalArgumentException("Null pool");
+        }
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.maxBytes = maxBytes;
+        this.pool = pool;
+        this.cachedBytes = 0;
+    }
+
+    /**
+     * Loads the image in the given {@code path}, reading it from disk only if it is not cached
+     * (or if the file changed since it was cached).
+     *
+     * @param path Path where the image must be opened from.
+     * @return A copy of the image, which can be edited, and must be released once it is not needed anymore.
+     * @throws IOException If any IO error occurs while opening/reading file.
+     */
+    public BmpUtils load(String path) throws IOException {
+        final File file = new File(path);
+        final String key = file.getCanonicalPath();
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && (entry.lastModified != lastModified || entry.length != length)) {
+                remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            entry = new Entry(new BmpUtils(path, CACHED_IMAGES_POOL), lastModified, length);
+            put(key, entry);
+        }
+        return entry.image.copy(pool);
+    }
+
+    /**
+     * @return The amount of bytes currently held by cached images.
+     */
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * Removes every cached image.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        cachedBytes = 0;
+    }
+
+    /**
+     * Caches the given {@code entry} (unless it does not fit), evicting the least recently used entries if needed.
+     *
+     * @param key   The canonical path of the image.
+     * @param entry The {@link Entry} to be cached.
+     */
+    private synchronized void put(String key, Entry entry) {
+        if (entry.length > maxBytes) {
+            return;
+        }
+        remove(key); // Another job could have loaded the same image meanwhile
+        entries.put(key, entry);
+        cachedBytes += entry.length;
+        final Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (cachedBytes > maxBytes && eldest.hasNext()) {
+            cachedBytes -= eldest.next().getValue().length;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Removes the image with the given {@code key} (if cached).
+     *
+     * @param key The canonical path of the image.
+     */
+    private synchronized void remove(String key) {
+        final Entry removed = entries.remove(key);
+        if (removed != null) {
+            cachedBytes -= removed.length;
+        }
+    }
+
+    /**
+     * A cached image, together with the state of its file when it was read.
+     */
+    private static final class Entry {
+
+        /**
+         * The pristine image.
+         */
+        private final BmpUtils image;
+        /**
+         * The modification time of the file.
+         */
+        private final long lastModified;
+        /**
+         * The size of the file.
+         */
+        private final long length;
+
+        /**
+         * Constructor.
+         *
+         * @param image        The pristine image.
+         * @param lastModified The modification time of the file.
+         * @param length       The size of the file.
+         */
+        private Entry(BmpUtils image, long lastModified, long length) {
+            this.image = image;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package ar.edu.itba.cripto.secret_image.bmp;
+
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A bmp image whose real data is mapped in a {@link SegmentedBuffer} instead of being read into a single buffer,
+ * so that images larger than 2 GB can be shared (i.e read by blocks and have shares hidden in them) in place.
+ * Only the header is held in memory (see {@link BmpUtils#readHeader(String, BufferPool)}), and it is written back
+ * with {@link #saveHeader()} once edited.
+ */
+public final class MappedImage implements Closeable {
+
+    /**
+     * The channel from which the image was mapped.
+     */
+    private final FileChannel channel;
+    /**
+     * The {@link BmpUtils} holding the image header.
+     */
+    private final BmpUtils header;
+    /**
+     * The image real data (i.e from the image offset to the file size).
+     */
+    private final SegmentedBuffer data;
+
+    /**
+     * Constructor.
+     *
+     * @param channel The channel from which the image was mapped.
+     * @param header  The {@link BmpUtils} holding the image header.
+     * @param data    The image real data.
+     */
+    private MappedImage(FileChannel channel, BmpUtils header, SegmentedBuffer data) {
+        this.channel = channel;
+        this.header = header;
+        this.data = data;
+    }
+
+    /**
+     * Maps the image in the given {@code path}.
+     *
+     * @param path        Path where the image must be opened from.
+     * @param writable    Whether the image real data and header can be changed.
+     * @param segmentSize The size of each segment of the mapped data (a power of two,
+     *                    see {@link SegmentedBuffer#DEFAULT_SEGMENT_SIZE}).
+     * @return The {@link MappedImage}.
+     * @throws IOException If any IO error occurs while opening/mapping file, or it is shorter than its header says.
+     */
+    public static MappedImage open(String path, boolean writable, int segmentSize) throws IOException {
+        final BmpUtils header = BmpUtils.readHeader(path, BufferPool.shared());
+        final FileChannel channel = writable
+                ? FileChannel.open(Paths.get(path), StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        try {
+            if (channel.size() < header.getFileSize()) {
+                throw new EOFException("Image is shorter than its header says: " + path);
+            }
+            final SegmentedBuffer data = SegmentedBuffer.map(channel,
+                    writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                    header.getOffset(), header.getImageSize(), segmentSize);
+            return new MappedImage(channel, header, data);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            header.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The {@link BmpUtils} holding the image header (i.e its metadata).
+     */
+    public BmpUtils getMetadata() {
+        return header;
+    }
+
+    /**
+     * @return The image real data.
+     */
+    public SegmentedBuffer getData() {
+        return data;
+    }
+
+    /**
+     * Gets a block of the image real data (as done by {@link BmpUtils#readBlock(int, int[])}),
+     * whose index might be past 2^31.
+     *
+     * @param index The block index.
+     * @param block The array in which the block bytes are saved (unsigned).
+     */
+    public void readBlock(long index, int[] block) {
+        long position = index * block.length;
+        for (int i = 0; i < block.length; i++) {
+            block[i] = Byte.toUnsignedInt(data.get(position++));
+        }
+    }
+
+    /**
+     * Hides {@code count} bytes of the given array in the least significant bits of the image real data,
+     * starting at the given hidden byte (as done by {@link BmpEditor#insertSecrets(byte[], int, int)}).
+     * Each hidden byte is spread through {@code 8 / bitsPerByte} image bytes, most significant bits first.
+     *
+     * @param firstHidden The position of the first hidden byte (i.e of the first share).
+     * @param hidden      The array holding the bytes to be hidden.
+     * @param from        The position of the first byte in {@code hidden}.
+     * @param count       The amount of bytes to be hidden.
+     * @param bitsPerByte The amount of least significant bits of each image byte in which data is hidden.
+     * @throws IllegalArgumentException If the bytes do not fit in the image.
+     */
+    public void insertHidden(long firstHidden, byte[] hidden, int from, int count, int bitsPerByte) {
+        final int bytesPerHidden = 8 / bitsPerByte;
+        long index = firstHidden * bytesPerHidden;
+        if (index + (long) count * bytesPerHidden > data.size()) {
+            throw new IllegalArgumentException("There is no room for " + count + " bytes in this image");
+        }
+        final int mask = (1 << bitsPerByte) - 1;
+        final int firstShift = 8 - bitsPerByte;
+        for (int i = from; i < from + count; i++) {
+            final int value = hidden[i];
+            for (int shift = firstShift; shift >= 0; shift -= bitsPerByte) {
+                data.put(index, (byte) ((data.get(index) & ~mask) | ((value >> shift) & mask)));
+                index++;
+            }
+        }
+    }
+
+    /**
+     * @return A {@link BmpEditor} to edit the image header (its real data must be edited through this image).
+     */
+    public BmpEditor editHeader() {
+        return header.edit();
+    }
+
+    /**
+     * Writes the (edited) header back to the file.
+     *
+     * @throws IOException If any IO error occurs while writing the file.
+     */
+    public void saveHeader() throws IOException {
+        final ByteBuffer bytes = ByteBuffer.wrap(header.getHeader());
+        while (bytes.hasRemaining()) {
+            channel.write(bytes, bytes.position());
+        }
+    }
+
+    /**
+     * Writes any change of the real data to the storage device, and closes the file.
+     * The header buffer is given back to its pool.
+     *
+     * @throws IOException If any IO error occurs while closing the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            data.force();
+        } finally {
+            header.release();
+            channel.close();
+        }
+    }
+}
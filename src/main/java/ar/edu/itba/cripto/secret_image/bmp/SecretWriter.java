@@ -0,0 +1,110 @@
+package ar.edu.itba.cripto.secret_image.bmp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a recovered secret image by parts, so that each part can be saved as soon as it is recovered.
+ * The secret image header is built from a shadow header (as done by
+ * {@link BmpEditor#BmpEditor(String, byte[], BmpUtils, int)}), and written when the writer is created.
+ *
+ * @implNote This class is thread-safe (i.e different parts can be written concurrently).
+ */
+public final class SecretWriter implements Closeable {
+
+    /**
+     * The channel to which the secret image is written.
+     */
+    private final FileChannel channel;
+    /**
+     * The secret image offset (i.e where the real data starts).
+     */
+    private final int offset;
+    /**
+     * The secret image real data size.
+     */
+    private final long imageSize;
+
+    /**
+     * Constructor.
+     *
+     * @param path   Path where the secret image must be saved.
+     * @param shadow A {@link BmpUtils} holding (at least) the header of one of the shadows.
+     * @param k      The k value.
+     * @throws IOException If any IO error occurs while creating the file or writing the header.
+     */
+    public SecretWriter(String path, BmpUtils shadow, int k) throws IOException {
+        final File file = new File(path);
+        this.offset = shadow.offset;
+        this.imageSize = BmpEditor.secretImageSize(shadow, k, (long) k * shadow.getHiddenCapacity());
+        final int height = BmpEditor.secretHeight(shadow, k);
+        final long total = offset + imageSize + (offset + imageSize) % 4;
+
+        final BufferPool pool = shadow.getPool();
+        final ByteBuffer header = pool.acquire(offset);
+        for (int i = 0; i < offset; i++) {
+            header.put(i, shadow.fileBytes.get(i));
+        }
+        final BmpUtils secretHeader = new BmpUtils(file, header, pool, shadow, height);
+        try {
+            new BmpEditor(secretHeader).editSecretHeader(shadow, k, total, height);
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            try {
+                writeFully(header, 0);
+                writeFully(ByteBuffer.allocate((int) (total - offset - imageSize)), offset + imageSize);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        } finally {
+            secretHeader.release();
+        }
+    }
+
+    /**
+     * @return The secret image real data size (i.e recovered bytes after this size are not saved).
+     */
+    public long getImageSize() {
+        return imageSize;
+    }
+
+    /**
+     * Writes recovered bytes.
+     *
+     * @param position The position (in the secret image real data) of the first byte.
+     * @param data     The array holding the recovered bytes.
+     * @param from     The position of the first byte in {@code data}.
+     * @param length   The amount of bytes (those after the real data size are discarded).
+     * @throws IOException If any IO error occurs while writing the file.
+     */
+    public void write(long position, byte[] data, int from, int length) throws IOException {
+        final int saved = (int) Math.min(length, imageSize - position);
+        if (saved > 0) {
+            writeFully(ByteBuffer.wrap(data, from, saved), offset + position);
+        }
+    }
+
+    /**
+     * Writes all the remaining bytes of the given {@code bytes} at the given {@code position} of the file.
+     *
+     * @param bytes    The bytes to be written.
+     * @param position The position of the file.
+     * @throws IOException If any IO error occurs while writing the file.
+     */
+    private void writeFully(ByteBuffer bytes, long position) throws IOException {
+        final long start = position - bytes.position();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes, start + bytes.position());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
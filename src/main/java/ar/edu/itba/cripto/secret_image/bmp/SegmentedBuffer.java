@@ -0,0 +1,204 @@
+package ar.edu.itba.cripto.secret_image.bmp;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A sequence of bytes indexed by {@code long} positions, held in several buffers (segments) of the same size,
+ * so that images larger than a single buffer (i.e than 2 GB) can be mapped and edited in place.
+ * The segment size is a power of two, so a position is split into its segment and the position inside it
+ * with a shift and a mask.
+ *
+ * @implNote This class is thread-safe as long as different threads write different bytes
+ * (every method uses absolute positions, so segments are never moved).
+ */
+public final class SegmentedBuffer {
+
+    /**
+     * The default size of each segment (1 GB).
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+    /**
+     * The segments (all of them of the segment size, but the last one).
+     */
+    private final ByteBuffer[] segments;
+    /**
+     * The amount of bits of a position that index the bytes of a segment (i.e log2 of the segment size).
+     */
+    private final int shift;
+    /**
+     * The mask giving the position inside a segment.
+     */
+    private final long mask;
+    /**
+     * The amount of bytes.
+     */
+    private final long size;
+
+    /**
+     * Constructor.
+     *
+     * @param segments    The segments.
+     * @param segmentSize The size of each segment (a power of two).
+     * @param size        The amount of bytes.
+     */
+    private SegmentedBuffer(ByteBuffer[] segments, int segmentSize, long size) {
+        this.segments = segments;
+        this.shift = Integer.numberOfTrailingZeros(segmentSize);
+        this.mask = segmentSize - 1;
+        this.size = size;
+    }
+
+    /**
+     * Maps a region of the given {@code channel} (which can be closed afterwards, as mappings remain valid).
+     *
+     * @param channel     The channel to be mapped.
+     * @param mode        The {@link FileChannel.MapMode} (i.e whether the bytes can be written).
+     * @param position    The position of the first mapped byte of the file.
+     * @param size        The amount of bytes to be mapped.
+     * @param segmentSize The size of each segment (a power of two).
+     * @return The {@link SegmentedBuffer} holding the mapped region.
+     * @throws IOException If any IO error occurs while mapping the file.
+     */
+    public static SegmentedBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, long size,
+                                      int segmentSize) throws IOException {
+        final ByteBuffer[] segments = new ByteBuffer[segmentCount(size, segmentSize)];
+        for (int i = 0; i < segments.length; i++) {
+            final long start = (long) i * segmentSize;
+            segments[i] = channel.map(mode, position + start, Math.min(segmentSize, size - start));
+        }
+        return new SegmentedBuffer(segments, segmentSize, size);
+    }
+
+    /**
+     * Allocates a buffer in the heap (e.g to work with small images as if they were mapped).
+     *
+     * @param size        The amount of bytes.
+     * @param segmentSize The size of each segment (a power of two).
+     * @return The {@link SegmentedBuffer} (with every byte set to 0).
+     */
+    public static SegmentedBuffer allocate(long size, int segmentSize) {
+        final ByteBuffer[] segments = new ByteBuffer[segmentCount(size, segmentSize)];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = ByteBuffer.allocate((int) Math.min(segmentSize, size - (long) i * segmentSize));
+        }
+        return new SegmentedBuffer(segments, segmentSize, size);
+    }
+
+    /**
+     * Gets the amount of segments needed to hold {@code size} bytes.
+     *
+     * @param size        The amount of bytes.
+     * @param segmentSize The size of each segment.
+     * @return The amount of segments.
+     * @throws IllegalArgumentException If the segment size is not a power of two, or the size is negative.
+     */
+    private static int segmentCount(long size, int segmentSize) {
+        if (segmentSize <= 0 || Integer.bitCount(segmentSize) != 1) {
+            throw new IllegalArgumentException("The segment size must be a power of two");
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative size: " + size);
+        }
+        return Math.toIntExact((size + segmentSize - 1) / segmentSize);
+    }
+
+    /**
+     * @return The amount of bytes.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Gets the byte at the given {@code index}.
+     *
+     * @param index The position of the byte.
+     * @return The byte.
+     */
+    public byte get(long index) {
+        return segments[(int) (index >>> shift)].get((int) (index & mask));
+    }
+
+    /**
+     * Sets the byte at the given {@code index}.
+     *
+     * @param index The position of the byte.
+     * @param value The new value of the byte.
+     */
+    public void put(long index, byte value) {
+        segments[(int) (index >>> shift)].put((int) (index & mask), value);
+    }
+
+    /**
+     * Copies {@code length} bytes, starting at the given {@code index} (even if they span several segments),
+     * into the given array.
+     *
+     * @param index  The position of the first byte.
+     * @param dst    The array in which bytes are saved.
+     * @param from   The position of {@code dst} in which the first byte is saved.
+     * @param length The amount of bytes.
+     */
+    public void get(long index, byte[] dst, int from, int length) {
+        checkRange(index, length);
+        while (length > 0) {
+            final ByteBuffer segment = segments[(int) (index >>> shift)].duplicate();
+            segment.position((int) (index & mask));
+            final int count = Math.min(length, segment.remaining());
+            segment.get(dst, from, count);
+            index += count;
+            from += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Copies {@code length} bytes of the given array into this buffer, starting at the given {@code index}
+     * (even if they span several segments).
+     *
+     * @param index  The position of the first byte.
+     * @param src    The array holding the bytes.
+     * @param from   The position of the first byte in {@code src}.
+     * @param length The amount of bytes.
+     */
+    public void put(long index, byte[] src, int from, int length) {
+        checkRange(index, length);
+        while (length > 0) {
+            final ByteBuffer segment = segments[(int) (index >>> shift)].duplicate();
+            segment.position((int) (index & mask));
+            final int count = Math.min(length, segment.remaining());
+            segment.put(src, from, count);
+            index += count;
+            from += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Checks that {@code length} bytes starting at the given {@code index} are held in this buffer.
+     *
+     * @param index  The position of the first byte.
+     * @param length The amount of bytes.
+     * @throws IndexOutOfBoundsException If any of the bytes is not held in this buffer.
+     */
+    private void checkRange(long index, int length) {
+        if (index < 0 || length < 0 || index + length > size) {
+            throw new IndexOutOfBoundsException("Range [" + index + ", " + (index + length) + ") out of " + size);
+        }
+    }
+
+    /**
+     * Writes any change of mapped segments to the storage device (it has no effect on allocated buffers).
+     */
+    public void force() {
+        for (ByteBuffer segment : segments) {
+            if (segment instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) segment).force();
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package ar.edu.itba.cripto.secret_image.bmp;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the bytes hidden in a shadow image by parts, so that they can be processed while the rest of the image
+ * is still being read. The image header must have been read beforehand (see {@link BmpUtils#readHeader}).
+ *
+ * @implNote This class is thread-safe (i.e different parts can be read concurrently).
+ */
+public final class ShadowReader implements Closeable {
+
+    /**
+     * The {@link BmpUtils} holding the image header.
+     */
+    private final BmpUtils header;
+    /**
+     * The channel from which the image real data is read.
+     */
+    private final FileChannel channel;
+    /**
+     * The amount of image bytes through which each hidden byte is spread.
+     */
+    private final int bytesPerHidden;
+
+    /**
+     * Constructor.
+     *
+     * @param header The {@link BmpUtils} holding the header of the image to be read.
+     * @throws IOException If any IO error occurs while opening the file.
+     */
+    public ShadowReader(BmpUtils header) throws IOException {
+        this.header = header;
+        this.channel = FileChannel.open(header.file.toPath(), StandardOpenOption.READ);
+        this.bytesPerHidden = 8 / header.getBitsPerByte();
+    }
+
+    /**
+     * Reads the image bytes through which the hidden bytes from {@code from} to {@code from + count} are spread.
+     *
+     * @param from  The index of the first hidden byte.
+     * @param count The amount of hidden bytes.
+     * @param pool  The {@link BufferPool} from which the returned buffer is taken.
+     * @return A buffer holding the image bytes (from position 0 to its limit), which must be given back to the
+     * {@code pool} once the hidden bytes are extracted (see {@link #extract(ByteBuffer, byte[], int, int)}).
+     * @throws IOException If any IO error occurs while reading the file.
+     */
+    public ByteBuffer read(int from, int count, BufferPool pool) throws IOException {
+        if (from < 0 || count < 0 || from + count > header.getHiddenCapacity()) {
+            throw new IllegalArgumentException("There are not " + (from + count) + " bytes hidden in this image");
+        }
+        final ByteBuffer bytes = pool.acquire(count * bytesPerHidden);
+        final long position = header.offset + (long) from * bytesPerHidden;
+        try {
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, position + bytes.position()) < 0) {
+                    throw new EOFException("Image was truncated while being read: " + header.file.getPath());
+                }
+            }
+        } catch (IOException e) {
+            pool.release(bytes);
+            throw e;
+        }
+        bytes.flip();
+        return bytes;
+    }
+
+    /**
+     * Gets the hidden bytes spread through the given image {@code bytes}
+     * (as returned by {@link #read(int, int, BufferPool)}).
+     *
+     * @param bytes  The image bytes.
+     * @param hidden The array in which the hidden bytes are saved.
+     * @param from   The position of {@code hidden} in which the first hidden byte is saved.
+     * @param count  The amount of hidden bytes to get.
+     */
+    public void extract(ByteBuffer bytes, byte[] hidden, int from, int count) {
+        BmpUtils.extractHidden(bytes, 0, header.getBitsPerByte(), hidden, from, count);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
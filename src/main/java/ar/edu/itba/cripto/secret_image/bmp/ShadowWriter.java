@@ -0,0 +1,86 @@
+package ar.edu.itba.cripto.secret_image.bmp;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replaces parts of the bytes hidden in a shadow image in place, reading and writing (with positioned I/O)
+ * only the image bytes through which those hidden bytes are spread, so the rest of the image is not touched.
+ * The image header must have been read beforehand (see {@link BmpUtils#readHeader}).
+ *
+ * @implNote This class is thread-safe, as long as concurrent writes replace disjoint parts.
+ */
+public final class ShadowWriter implements Closeable {
+
+    /**
+     * The {@link BmpUtils} holding the image header.
+     */
+    private final BmpUtils header;
+    /**
+     * The channel through which the image real data is read and written.
+     */
+    private final FileChannel channel;
+    /**
+     * The amount of image bytes through which each hidden byte is spread.
+     */
+    private final int bytesPerHidden;
+
+    /**
+     * Constructor.
+     *
+     * @param header The {@link BmpUtils} holding the header of the image to be written.
+     * @throws IOException If any IO error occurs while opening the file.
+     */
+    public ShadowWriter(BmpUtils header) throws IOException {
+        this.header = header;
+        this.channel = FileChannel.open(header.file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.bytesPerHidden = 8 / header.getBitsPerByte();
+    }
+
+    /**
+     * Replaces the hidden bytes from {@code firstHidden} to {@code firstHidden + count}
+     * (as done by {@link BmpEditor#insertSecrets(byte[], int, int)}, but only in those bytes of the file).
+     *
+     * @param firstHidden The index of the first hidden byte to be replaced.
+     * @param hidden      The array holding the bytes to be hidden.
+     * @param from        The position of the first byte in {@code hidden}.
+     * @param count       The amount of bytes to be hidden.
+     * @throws IOException If any IO error occurs while reading or writing the file.
+     */
+    public void write(int firstHidden, byte[] hidden, int from, int count) throws IOException {
+        if (firstHidden < 0 || count < 0 || firstHidden + count > header.getHiddenCapacity()) {
+            throw new IllegalArgumentException("There is no room for " + (firstHidden + count) +
+                    " bytes in this image");
+        }
+        final ByteBuffer bytes = ByteBuffer.allocate(count * bytesPerHidden);
+        final long position = header.offset + (long) firstHidden * bytesPerHidden;
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, position + bytes.position()) < 0) {
+                throw new EOFException("Image was truncated while being written: " + header.file.getPath());
+            }
+        }
+        BmpUtils.insertHidden(bytes, 0, header.getBitsPerByte(), hidden, from, count);
+        bytes.clear();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes, position + bytes.position());
+        }
+    }
+
+    /**
+     * Forces the written bytes to the storage device.
+     *
+     * @throws IOException If any IO error occurs.
+     */
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
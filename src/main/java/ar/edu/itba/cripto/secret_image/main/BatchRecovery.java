@@ -0,0 +1,544 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
+import ar.edu.itba.cripto.secret_image.bmp.BufferPool;
+import ar.edu.itba.cripto.secret_image.bmp.SecretWriter;
+import ar.edu.itba.cripto.secret_image.bmp.ShadowReader;
+import ar.edu.itba.cripto.secret_image.main.util.Keystream;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+import ar.edu.itba.cripto.secret_image.share.ShareFile;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Recovers many secret images, each of them from its own set of shadows (images or share files), in a single
+ * work-stealing pool. Each set is a task, which splits its polynomials in chunk tasks, so idle threads steal the
+ * chunks of the largest secrets instead of waiting for them while the smallest ones are recovered.
+ * A failed set does not stop the others; each of them gets a {@link Result}, to be reported.
+ */
+/*package*/ final class BatchRecovery {
+
+    /**
+     * The amount of shadows needed to recover each secret image.
+     */
+    private final int k;
+    /**
+     * The amount of polynomials in each chunk task.
+     */
+    private final int chunkSize;
+    /**
+     * The amount of threads of the pool.
+     */
+    private final int parallelism;
+
+    /**
+     * Constructor.
+     *
+     * @param k           The amount of shadows needed to recover each secret image.
+     * @param chunkSize   The amount of polynomials in each chunk task.
+     * @param parallelism The amount of threads of the pool.
+     */
+    /*package*/ BatchRecovery(int k, int chunkSize, int parallelism) {
+        if (k < 2) {
+            throw new IllegalArgumentException("Number k must be at least 2");
+        }
+        if (chunkSize < 1 || parallelism < 1) {
+            throw new IllegalArgumentException("Chunk size and parallelism must be positive");
+        }
+        this.k = k;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Lists the shadow sets in the given {@code root} directory (i.e its subdirectories holding shadow images
+     * or share files), each of them recovered to a secret image named after it in the {@code output} directory.
+     *
+     * @param root   The path to the directory holding a subdirectory per shadow set.
+     * @param output The path to the directory where secret images are saved.
+     * @return The {@link Job}s (sorted by name).
+     */
+    /*package*/ static List<Job> fromRoot(String root, String output) {
+        final File[] directories = Optional.ofNullable(new File(root).listFiles(File::isDirectory))
+                .orElseThrow(() -> new IllegalArgumentException("Not a directory: " + root));
+        return Arrays.stream(directories)
+                .filter(directory -> !Shadows.listImages(directory.getPath()).isEmpty()
+                        || !Shadows.listShareFiles(directory.getPath()).isEmpty())
+                .sorted(Comparator.comparing(File::getName))
+                .map(directory -> new Job(directory.getName(), directory.getPath(),
+                        new File(output, directory.getName() + ".bmp").getPath()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Reads the shadow sets listed in the given {@code manifest} file, where each line holds the path to the
+     * directory of a shadow set and the path where its secret image is saved, separated by a tab
+     * (or by spaces, if there is no tab). Relative paths are resolved against the manifest directory,
+     * and empty lines or those starting with {@code #} are ignored.
+     *
+     * @param manifest The path to the manifest.
+     * @return The {@link Job}s (in the same order as the manifest).
+     * @throws IOException If any IO error occurs while reading the manifest.
+     */
+    /*package*/ static List<Job> fromManifest(String manifest) throws IOException {
+        final File base = new File(manifest).getAbsoluteFile().getParentFile();
+        final List<Job> jobs = new ArrayList<>();
+        int number = 0;
+        for (String line : Files.readAllLines(new File(manifest).toPath(), StandardCharsets.UTF_8)) {
+            number++;
+            final String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            final String[] fields = trimmed.indexOf('\t') >= 0 ? trimmed.split("\t+") : trimmed.split("\\s+");
+            if (fields.length != 2) {
+                throw new IllegalArgumentException("Manifest line " + number + " must hold a shadows directory" +
+                        " and a secret image path");
+            }
+            final File directory = resolve(base, fields[0]);
+            jobs.add(new Job(directory.getName(), directory.getPath(), resolve(base, fields[1]).getPath()));
+        }
+        return jobs;
+    }
+
+    /**
+     * Resolves the given {@code path} against the given {@code base} directory (if it is a relative one).
+     *
+     * @param base The base directory.
+     * @param path The path.
+     * @return The resolved path.
+     */
+    private static File resolve(File base, String path) {
+        final File file = new File(path);
+        return file.isAbsolute() ? file : new File(base, path);
+    }
+
+    /**
+     * Recovers the secret images of the given {@code jobs}.
+     * Only a few sets are open at a time (i.e twice the amount of threads), so their files and buffers are bounded,
+     * while their chunks keep every thread busy.
+     *
+     * @param jobs The shadow sets to be recovered.
+     * @return The {@link Result} of each of them (in the same order).
+     */
+    /*package*/ List<Result> run(List<Job> jobs) {
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            final ExecutorCompletionService<Integer> completion = new ExecutorCompletionService<>(pool);
+            final Result[] results = new Result[jobs.size()];
+            final int window = parallelism * 2;
+            int submitted = 0;
+            for (int done = 0; done < jobs.size(); done++) {
+                while (submitted < jobs.size() && submitted - done < window) {
+                    final int index = submitted++;
+                    completion.submit(() -> {
+                        results[index] = recover(jobs.get(index));
+                        return index;
+                    });
+                }
+                try {
+                    completion.take().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while recovering secret images", e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return Arrays.asList(results);
+        } finally {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Recovers the secret image of the given {@code job}, using share files if there are at least {@code k}
+     * of them in its directory (as done by {@link Decryptor}).
+     *
+     * @param job The shadow set.
+     * @return The {@link Result}.
+     */
+    private Result recover(Job job) {
+        final long start = System.nanoTime();
+        try {
+            final File parent = new File(job.secretPath).getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                Files.createDirectories(parent.toPath());
+            }
+            final List<String> sharePaths = Shadows.listShareFiles(job.directory);
+            final List<String> shadowPaths = Shadows.listImages(job.directory);
+            if (sharePaths.size() >= k) {
+                recoverShareFiles(sharePaths.subList(0, k), job.secretPath);
+            } else if (shadowPaths.size() >= k) {
+                recoverImages(shadowPaths.subList(0, k), job.secretPath);
+            } else {
+                throw new IllegalArgumentException("There are less than k shadows in directory");
+            }
+            return new Result(job, null, new File(job.secretPath).length(), System.nanoTime() - start);
+        } catch (IOException | RuntimeException e) {
+            return new Result(job, String.valueOf(e.getMessage()), 0, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Recovers a secret image from shadow images, reading and recovering each chunk in its own task.
+     *
+     * @param paths           The path to each of the {@code k} shadows.
+     * @param secretImagePath The path where the secret image must be saved.
+     * @throws IOException If any IO error occurs while reading the shadows or saving the secret image.
+     */
+    private void recoverImages(List<String> paths, String secretImagePath) throws IOException {
+        final List<BmpUtils> shadows = new ArrayList<>();
+        final List<ShadowReader> readers = new ArrayList<>();
+        try {
+            for (String path : paths) {
+                shadows.add(blocking(() -> BmpUtils.readHeader(path, BufferPool.shared())));
+            }
+            Shadows.checkConsistency(shadows);
+            for (BmpUtils shadow : shadows) {
+                readers.add(new ShadowReader(shadow));
+            }
+
+            final BmpUtils reference = shadows.get(0);
+            // Hidden bytes after the shares hold cover bits (covers are rounded to whole rows)
+            final int numPolynomes = reference.getShareCount(k);
+            final Keystream keystream = Keystream.create(reference.getKeystreamVersion(), reference.getSeed(),
+                    (long) k * numPolynomes);
+            final Interpolator interpolator = new Interpolator(
+                    shadows.stream().mapToInt(BmpUtils::getShadow).toArray(), reference.usesNttPoints());
+            try (SecretWriter writer = new SecretWriter(secretImagePath, reference, k)) {
+                forEachChunk(numPolynomes, (from, count) -> {
+                    final byte[][] columns = new byte[k][count];
+                    for (int i = 0; i < k; i++) {
+                        final ShadowReader reader = readers.get(i);
+                        final ByteBuffer bytes = blocking(() -> reader.read(from, count, BufferPool.shared()));
+                        try {
+                            reader.extract(bytes, columns[i], 0, count);
+                        } finally {
+                            BufferPool.shared().release(bytes);
+                        }
+                    }
+                    final byte[] data = new byte[count * k];
+                    interpolator.recover(columns, 0, count, keystream, (long) from * k, data, 0);
+                    blocking(() -> {
+                        writer.write((long) from * k, data, 0, data.length);
+                        return null;
+                    });
+                });
+            }
+        } finally {
+            for (ShadowReader reader : readers) {
+                reader.close();
+            }
+            shadows.forEach(BmpUtils::release);
+        }
+    }
+
+    /**
+     * Recovers a secret image from share files, recovering each chunk in its own task.
+     *
+     * @param paths           The path to each of the {@code k} share files.
+     * @param secretImagePath The path where the secret image must be saved.
+     * @throws IOException If any IO error occurs while reading the share files or saving the secret image.
+     */
+    private void recoverShareFiles(List<String> paths, String secretImagePath) throws IOException {
+        final List<ShareFile> shareFiles = new ArrayList<>();
+        for (String path : paths) {
+            shareFiles.add(blocking(() -> ShareFile.read(path)));
+        }
+        Shadows.checkShareFiles(shareFiles, k);
+        final ShareMatrix shares = ShareMatrix.of(shareFiles);
+        final ShareFile reference = shareFiles.get(0);
+        final Keystream keystream = Keystream.create(reference.getKeystreamVersion(), reference.getSeed(),
+                k * shares.getPolynomeCount());
+        final Interpolator interpolator = new Interpolator(shares.getShadowNumbers(), reference.usesNttPoints());
+
+        // Data is recovered after the template, so the whole secret image is written at once
+        final byte[] template = reference.getHeaderTemplate();
+        final byte[] secret = Arrays.copyOf(template, template.length + k * shares.getPolynomeCount());
+        final byte[][] columns = shares.getColumns();
+        forEachChunk(shares.getPolynomeCount(), (from, count) -> interpolator.recover(columns, from, count,
+                keystream, (long) from * k, secret, template.length + from * k));
+        blocking(() -> {
+            FileUtils.writeByteArrayToFile(new File(secretImagePath), secret);
+            return null;
+        });
+    }
+
+    /**
+     * Runs the given {@code task} for each chunk of the range [0, {@code size}), as tasks of the pool,
+     * waiting for all of them to finish (while waiting, this thread runs chunk tasks too).
+     *
+     * @param size The size of the range.
+     * @param task The task run for each chunk.
+     */
+    private void forEachChunk(int size, ChunkTask task) {
+        final List<RecursiveAction> chunks = new ArrayList<>();
+        for (int from = 0; from < size; from += chunkSize) {
+            final int start = from;
+            final int count = Math.min(chunkSize, size - from);
+            chunks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    try {
+                        task.run(start, count);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        }
+        ForkJoinTask.invokeAll(chunks);
+    }
+
+    /**
+     * Runs the given blocking I/O {@code task}, letting the pool start a spare thread while it is blocked
+     * (see {@link ForkJoinPool#managedBlock(ForkJoinPool.ManagedBlocker)}), so cores are not left idle.
+     *
+     * @param task The task.
+     * @param <T>  The type of result.
+     * @return The task's result.
+     * @throws IOException If any IO error occurs.
+     */
+    private static <T> T blocking(TaskScheduler.IoTask<T> task) throws IOException {
+        final IoBlocker<T> blocker = new IoBlocker<>(task);
+        try {
+            ForkJoinPool.managedBlock(blocker);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while blocked", e);
+        }
+        if (blocker.error != null) {
+            throw blocker.error;
+        }
+        return blocker.result;
+    }
+
+    /**
+     * Prints a report line for each of the given {@code results}, followed by a summary.
+     *
+     * @param results The {@link Result}s.
+     * @param out     The {@link PrintStream} where the report is printed.
+     */
+    /*package*/ static void printReport(List<Result> results, PrintStream out) {
+        out.printf("%-8s %10s %12s  %s%n", "STATUS", "TIME (ms)", "SIZE", "SECRET");
+        int failed = 0;
+        for (Result result : results) {
+            out.printf("%-8s %10d %12d  %s%s%n", result.isRecovered() ? "OK" : "FAILED",
+                    TimeUnit.NANOSECONDS.toMillis(result.getNanos()), result.getSize(), result.getJob().getName(),
+                    result.isRecovered() ? "" : " (" + result.getError() + ")");
+            failed += result.isRecovered() ? 0 : 1;
+        }
+        out.printf("%d secret images recovered, %d failed%n", results.size() - failed, failed);
+        out.flush();
+    }
+
+    /**
+     * A task run for a chunk of polynomials.
+     */
+    @FunctionalInterface
+    private interface ChunkTask {
+
+        /**
+         * Runs the task.
+         *
+         * @param from  The index of the first polynomial.
+         * @param count The amount of polynomials.
+         * @throws IOException If any IO error occurs.
+         */
+        void run(int from, int count) throws IOException;
+    }
+
+    /**
+     * A {@link ForkJoinPool.ManagedBlocker} running a blocking I/O task.
+     *
+     * @param <T> The type of result.
+     */
+    private static final class IoBlocker<T> implements ForkJoinPool.ManagedBlocker {
+
+        /**
+         * The task.
+         */
+        private final TaskScheduler.IoTask<T> task;
+        /**
+         * Indicates whether the task was run.
+         */
+        private boolean done;
+        /**
+         * The task's result.
+         */
+        private T result;
+        /**
+         * The error thrown by the task ({@code null} if none).
+         */
+        private IOException error;
+
+        /**
+         * Constructor.
+         *
+         * @param task The task.
+         */
+        private IoBlocker(TaskScheduler.IoTask<T> task) {
+            this.task = task;
+        }
+
+        @Override
+        public boolean block() {
+            try {
+                result = task.call();
+            } catch (IOException e) {
+                error = e;
+            }
+            done = true;
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return done;
+        }
+    }
+
+    /**
+     * A shadow set, whose secret image must be recovered.
+     */
+    /*package*/ static final class Job {
+
+        /**
+         * The name of the set (shown in the report).
+         */
+        private final String name;
+        /**
+         * The path to the directory holding the shadows.
+         */
+        private final String directory;
+        /**
+         * The path where the secret image must be saved.
+         */
+        private final String secretPath;
+
+        /**
+         * Constructor.
+         *
+         * @param name       The name of the set (shown in the report).
+         * @param directory  The path to the directory holding the shadows.
+         * @param secretPath The path where the secret image must be saved.
+         */
+        /*package*/ Job(String name, String directory, String secretPath) {
+            this.name = name;
+            this.directory = directory;
+            this.secretPath = secretPath;
+        }
+
+        /**
+         * @return The name of the set (shown in the report).
+         */
+        /*package*/ String getName() {
+            return name;
+        }
+
+        /**
+         * @return The path where the secret image must be saved.
+         */
+        /*package*/ String getSecretPath() {
+            return secretPath;
+        }
+    }
+
+    /**
+     * The outcome of the recovery of a shadow set.
+     */
+    /*package*/ static final class Result {
+
+        /**
+         * The recovered shadow set.
+         */
+        private final Job job;
+        /**
+         * The message of the error that made recovery fail ({@code null} if it was recovered).
+         */
+        private final String error;
+        /**
+         * The size of the secret image.
+         */
+        private final long size;
+        /**
+         * The time spent recovering the secret image (in nanoseconds).
+         */
+        private final long nanos;
+
+        /**
+         * Constructor.
+         *
+         * @param job   The recovered shadow set.
+         * @param error The message of the error that made recovery fail ({@code null} if it was recovered).
+         * @param size  The size of the secret image.
+         * @param nanos The time spent recovering the secret image (in nanoseconds).
+         */
+        private Result(Job job, String error, long size, long nanos) {
+            this.job = job;
+            this.error = error;
+            this.size = size;
+            this.nanos = nanos;
+        }
+
+        /**
+         * @return The recovered shadow set.
+         */
+        /*package*/ Job getJob() {
+            return job;
+        }
+
+        /**
+         * @return {@code true} if the secret image was recovered.
+         */
+        /*package*/ boolean isRecovered() {
+            return error == null;
+        }
+
+        /**
+         * @return The message of the error that made recovery fail ({@code null} if it was recovered).
+         */
+        /*package*/ String getError() {
+            return error;
+        }
+
+        /**
+         * @return The size of the secret image.
+         */
+        /*package*/ long getSize() {
+            return size;
+        }
+
+        /**
+         * @return The time spent recovering the secret image (in nanoseconds).
+         */
+        /*package*/ long getNanos() {
+            return nanos;
+        }
+    }
+}
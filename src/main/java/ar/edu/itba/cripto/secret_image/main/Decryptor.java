@@ -1,18 +1,16 @@
 package ar.edu.itba.cripto.secret_image.main;
 
-import ar.edu.itba.cripto.secret_image.bmp.BmpEditor;
 import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
-import ar.edu.itba.cripto.secret_image.main.util.PseudoTable;
-import ar.edu.itba.cripto.secret_image.math_utils.PolynomialUtils;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+import ar.edu.itba.cripto.secret_image.share.ShareFile;
+import org.apache.commons.io.FileUtils;
 
 import java.io.File;
-import java.io.IOException;
-import java.io.UncheckedIOException;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
- * Class implementing logic to perform decryption.
+ * Class implementing logic to perform decryption of images stored in files
+ * (see {@link SecretSharing} for images held in memory).
  */
 public class Decryptor {
 
@@ -28,6 +26,18 @@ public class Decryptor {
      * A {@link List} containing the path to each shadow image.
      */
     private final List<String> shadowPaths;
+    /**
+     * A {@link List} containing the path to each share file (i.e shadows stored in the compact format).
+     */
+    private final List<String> sharePaths;
+    /**
+     * The amount of worker processes recovering shards of the secret image (0 to recover it in this process).
+     */
+    private final int workers;
+    /**
+     * The {@link TaskScheduler} running file I/O and arithmetic.
+     */
+    private final TaskScheduler scheduler;
 
     /**
      * Constructor.
@@ -37,6 +47,33 @@ public class Decryptor {
      * @param directory       A {@link List} containing the path to each shadow image.
      */
     public Decryptor(int k, String secretImagePath, String directory) {
+        this(k, secretImagePath, directory, TaskScheduler.common());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param k               The amount of shadow images needed to recover the secret image.
+     * @param secretImagePath The path to the secret image (i.e where it must be saved).
+     * @param directory       A {@link List} containing the path to each shadow image.
+     * @param scheduler       The {@link TaskScheduler} running file I/O and arithmetic.
+     */
+    public Decryptor(int k, String secretImagePath, String directory, TaskScheduler scheduler) {
+        this(k, secretImagePath, directory, 0, scheduler);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param k               The amount of shadow images needed to recover the secret image.
+     * @param secretImagePath The path to the secret image (i.e where it must be saved).
+     * @param directory       A {@link List} containing the path to each shadow image.
+     * @param workers         The amount of worker processes recovering shards of the secret image
+     *                        (see {@link ShardCoordinator}), or 0 to recover it in this process.
+     *                        Not used with shadows stored in the compact format.
+     * @param scheduler       The {@link TaskScheduler} running file I/O and arithmetic.
+     */
+    public Decryptor(int k, String secretImagePath, String directory, int workers, TaskScheduler scheduler) {
         if (k < 2) {
             throw new IllegalArgumentException("Number k must be at least 2");
         }
@@ -46,16 +83,20 @@ public class Decryptor {
         if (directory == null) {
             throw new IllegalArgumentException("Null directory");
         }
+        if (workers < 0) {
+            throw new IllegalArgumentException("The amount of workers must not be negative");
+        }
+        if (scheduler == null) {
+            throw new IllegalArgumentException("Null scheduler");
+        }
         this.k = k;
+        this.workers = workers;
         this.secretImagePath = secretImagePath;
-        //noinspection ConstantConditions
-        this.shadowPaths =
-                Arrays.stream(Optional.ofNullable(new File(directory).listFiles((dir, name) -> name.endsWith(".bmp")))
-                        .orElse(new File[0]))
-                        .map(File::getPath)
-                        .collect(Collectors.toList());
+        this.scheduler = scheduler;
+        this.shadowPaths = Shadows.listImages(directory);
+        this.sharePaths = Shadows.listShareFiles(directory);
 
-        if (shadowPaths.size() < k) {
+        if (shadowPaths.size() < k && sharePaths.size() < k) {
             throw new IllegalArgumentException("There are less than k shadows in directory");
         }
     }
@@ -63,76 +104,38 @@ public class Decryptor {
 
     /**
      * Performs the encryption process according to the set parameters.
+     * Shadows stored in the compact format are used if there are at least {@code k} of them in the directory.
      */
     public void decrypt() {
-        ArrayList<BmpUtils> images = new ArrayList<>();
-
-        int size = -1;
-        int seed = -1;
-
-        Set<Integer> shadowNumbers = new HashSet<>();
-        for (int i = 0; i < k; i++) {
-            String path = shadowPaths.get(i);
-            BmpUtils bmpUtils;
-            try {
-                bmpUtils = new BmpUtils(path);
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
-            }
-            shadowNumbers.add(bmpUtils.getShadow());
-            if (i == 0) {
-                size = (int) bmpUtils.getImageSize();
-                seed = bmpUtils.getSeed();
-            } else {
-                if (size != (int) bmpUtils.getImageSize()) {
-                    throw new IllegalArgumentException("Size of shadows is not consistent");
-                }
-                if (seed != bmpUtils.getSeed()) {
-                    throw new IllegalArgumentException("Seed of shadows is not consistent");
-                }
-            }
-            images.add(bmpUtils);
+        if (sharePaths.size() >= k) {
+            decryptShareFiles();
+            return;
         }
-        if (shadowNumbers.size() != k) {
-            throw new IllegalArgumentException("Repeated shadow numbers");
-        }
-
-        int numPolynomes = size / 8;
-
-        ArrayList<Map<Integer, Integer>> evaluatedPolynomesMap = new ArrayList<>();
-        for (int i = 0; i < numPolynomes; i++) {
-            evaluatedPolynomesMap.add(new HashMap<>());
-        }
-
-        /* Get all bytes hiden in all the shadows */
-        for (int i = 0; i < k; i++) {
-            BmpUtils bmpUtils = images.get(i);
-            int shadowNumber = bmpUtils.getShadow();
-            int m = 0;
-            bmpUtils.setBytesFromIterator(8);
-            for (List<Integer> byteArray : bmpUtils) {
-                int secretByte = 0;
-                for (int j = 0; j < 8; j++) {
-                    int b = byteArray.get(j);
-                    secretByte <<= 1;
-                    int secretBit = b & 0x01;
-                    secretByte |= secretBit;
-                }
-                evaluatedPolynomesMap.get(m).put(shadowNumber, secretByte);
-                m++;
-            }
-        }
-        /* Use hidden bytes to form the polynomes */
-        List<Integer> resultBytes = new ArrayList<>();
-        List<Integer> permutationTable = PseudoTable.generatePseudoTable(k * numPolynomes, seed);
-        for (int polynomeNumber = 0; polynomeNumber < numPolynomes; polynomeNumber++) {
-            List<Integer> coefficients = PolynomialUtils.getCoefficients(evaluatedPolynomesMap.get(polynomeNumber), 257);
-            for (int coefficientNumber = 0; coefficientNumber < k; coefficientNumber++) {
-                resultBytes.add(coefficients.get(coefficientNumber) ^ permutationTable.get(polynomeNumber * k + coefficientNumber));
+        // Shadows are read by parts while the secret image is being recovered, so only their headers are loaded
+        final List<BmpUtils> shadows = Shadows.loadHeaders(shadowPaths, k, scheduler);
+        try {
+            if (workers > 0) {
+                new ShardCoordinator(workers, ShardCoordinator.DEFAULT_SHARD_SIZE, scheduler)
+                        .run(shadows, shadowPaths.subList(0, k), secretImagePath);
+                return;
             }
+            new RecoveryPipeline(scheduler, RecoveryPipeline.DEFAULT_CHUNK_SIZE,
+                    RecoveryPipeline.DEFAULT_MAX_CHUNKS_IN_FLIGHT).run(shadows, secretImagePath);
+        } finally {
+            shadows.forEach(BmpUtils::release);
         }
+    }
 
-        BmpEditor secret = new BmpEditor(secretImagePath, resultBytes, images.get(0), k);
-        secret.saveImage();
+    /**
+     * Performs the decryption process using shadows stored in the compact format.
+     * The secret image is rebuilt from the header template stored in the share files.
+     */
+    private void decryptShareFiles() {
+        final List<ShareFile> shareFiles = Shadows.loadShareFiles(sharePaths, k, scheduler);
+        final byte[] secret = new SecretSharing(k, new SharingOptions(), scheduler).recoverShareFiles(shareFiles);
+        TaskScheduler.join(scheduler.io(() -> {
+            FileUtils.writeByteArrayToFile(new File(secretImagePath), secret);
+            return null;
+        }));
     }
 }
@@ -1,18 +1,20 @@
 package ar.edu.itba.cripto.secret_image.main;
 
 
-import ar.edu.itba.cripto.secret_image.bmp.BmpEditor;
 import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
-import ar.edu.itba.cripto.secret_image.main.util.PseudoTable;
+import ar.edu.itba.cripto.secret_image.bmp.CoverCache;
+import ar.edu.itba.cripto.secret_image.bmp.SegmentedBuffer;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+import ar.edu.itba.cripto.secret_image.share.ShareFile;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.UncheckedIOException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Class implementing logic to perform encryption.
+ * Class implementing logic to perform encryption of images stored in files
+ * (the sharing itself is done by {@link SecretSharing}).
  */
 public class Encryption {
 
@@ -24,14 +26,34 @@ public class Encryption {
      * The amount of shadows to be created.
      */
     private final int n;
+    /**
+     * The format in which shadows are stored.
+     */
+    private final ShadowFormat format;
+    /**
+     * The {@link SecretSharing} computing and hiding the shares.
+     */
+    private final SecretSharing sharing;
+    /**
+     * The {@link CoverCache} from which covers are loaded ({@code null} if covers are always read from disk).
+     */
+    private final CoverCache coverCache;
     /**
      * The path to the secret image (i.e that one to be hidden).
      */
     private final String secretImagePath;
+    /**
+     * The path to the directory holding the images to be used as shadows (or where share files are saved).
+     */
+    private final String directory;
     /**
      * A {@link List} containing the path to each shadow image.
      */
     private final List<String> shadowPaths;
+    /**
+     * The {@link TaskScheduler} running file I/O and arithmetic.
+     */
+    private final TaskScheduler scheduler;
 
     /**
      * Constructor.
@@ -42,6 +64,36 @@ public class Encryption {
      * @param directory       The path to the directory holding the images to be used as shadows.
      */
     public Encryption(int k, Integer n, String secretImagePath, String directory) {
+        this(k, n, secretImagePath, directory, TaskScheduler.common());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param k               The minimum amount of shadow images where the secret will be hidden.
+     * @param n               The amount of shadows to be created.
+     * @param secretImagePath The path to the secret image (i.e that one to be hidden).
+     * @param directory       The path to the directory holding the images to be used as shadows.
+     * @param scheduler       The {@link TaskScheduler} running file I/O and arithmetic.
+     */
+    public Encryption(int k, Integer n, String secretImagePath, String directory, TaskScheduler scheduler) {
+        this(k, n, secretImagePath, directory, new SharingOptions(), scheduler);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param k               The minimum amount of shadow images where the secret will be hidden.
+     * @param n               The amount of shadows to be created.
+     *                        It can only be {@code null} if shadows are stored in bmp images.
+     * @param secretImagePath The path to the secret image (i.e that one to be hidden).
+     * @param directory       The path to the directory holding the images to be used as shadows
+     *                        (or where share files will be saved, if using the compact format).
+     * @param options         The optional settings of the distribution.
+     * @param scheduler       The {@link TaskScheduler} running file I/O and arithmetic.
+     */
+    public Encryption(int k, Integer n, String secretImagePath, String directory, SharingOptions options,
+                      TaskScheduler scheduler) {
         if (k < 2) {
             throw new IllegalArgumentException("Number k must be at least 2");
         }
@@ -54,134 +106,103 @@ public class Encryption {
         if (directory == null) {
             throw new IllegalArgumentException("Null directory");
         }
+        if (options == null) {
+            throw new IllegalArgumentException("Null options");
+        }
+        if (scheduler == null) {
+            throw new IllegalArgumentException("Null scheduler");
+        }
 
-        //noinspection ConstantConditions
-        this.shadowPaths =
-                Arrays.stream(Optional.ofNullable(new File(directory).listFiles((dir, name) -> name.endsWith(".bmp")))
-                        .orElse(new File[0]))
-                        .map(File::getPath)
-                        .collect(Collectors.toList());
+        this.format = options.getFormat();
+        this.shadowPaths = format == ShadowFormat.BMP ? Shadows.listImages(directory) : Collections.emptyList();
+        if (n == null && format != ShadowFormat.BMP) {
+            throw new IllegalArgumentException("The amount of shadows must be set when not using bmp images");
+        }
         this.k = k;
         this.n = n == null ? shadowPaths.size() : n;
+        this.sharing = new SecretSharing(k, options, scheduler);
+        this.coverCache = options.getCoverCache();
         this.secretImagePath = secretImagePath;
+        this.directory = directory;
+        this.scheduler = scheduler;
 
-        if (shadowPaths.size() < k) {
+        if (format == ShadowFormat.BMP && shadowPaths.size() < k) {
             throw new IllegalArgumentException("There are less than k shadows in directory");
         }
+        if (format == ShadowFormat.BMP && shadowPaths.size() < this.n) {
+            throw new IllegalArgumentException("There are less than n shadows in directory");
+        }
+        if (this.n < k) {
+            throw new IllegalArgumentException("The amount of shadows must be at least k");
+        }
+        if (this.n + options.getSpare() > 256) {
+            throw new IllegalArgumentException("Shadow numbers (including spare ones) must not exceed 256");
+        }
     }
 
     /**
      * Performs the encryption process according to the set parameters.
+     * Secret images larger than {@link SharingPipeline#IN_MEMORY_LIMIT} hidden in bmp images are shared
+     * by a {@link SharingPipeline} (i.e mapped instead of read, so they can be larger than 2 GB).
      */
     public void encrypt() {
-
-        // Mocking BMPUtil
-        BmpUtils bmpUtil = null;
-        try {
-            bmpUtil = new BmpUtils(secretImagePath);
-            bmpUtil.setBytesFromIterator(k);
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
-
-        int imageSize = (int) bmpUtil.getImageSize();
-
-        if (imageSize % k != 0) {
-            throw new IllegalStateException("Image to encrypt need to be of a size divisible by k");
+        if (format == ShadowFormat.BMP && new File(secretImagePath).length() > SharingPipeline.IN_MEMORY_LIMIT) {
+            new SharingPipeline(sharing, scheduler, SharingPipeline.DEFAULT_CHUNK_SIZE,
+                    SegmentedBuffer.DEFAULT_SEGMENT_SIZE).run(secretImagePath, shadowPaths.subList(0, n));
+            return;
         }
-
-
-        Random random = new Random();
-
-        int seed = random.nextInt(65536);
-
-        List<Integer> pseudoTable = PseudoTable.generatePseudoTable(imageSize, seed);
-
-        List<List<Integer>> evalsList = new ArrayList<>();
-
-        int i = 0;
-        for (List<Integer> coefficients : bmpUtil) {
-            List<Integer> newCoefficients = new ArrayList<>();
-            for (int j = 0; j < coefficients.size(); j++) {
-                newCoefficients.add(coefficients.get(j) ^ pseudoTable.get(i * coefficients.size() + j));
-            }
-            i++;
-            List<Integer> evals = evalPolynomial(newCoefficients, n);
-            evalsList.add(evals);
+        // Covers are requested right away, so they are read while the secret is being processed
+        final CompletableFuture<BmpUtils> secretFuture = scheduler.io(() -> new BmpUtils(secretImagePath));
+        final List<CompletableFuture<BmpUtils>> shadowFutures = new ArrayList<>();
+        for (int j = 0; j < shadowPaths.size() && j < n; j++) {
+            final String path = shadowPaths.get(j);
+            // Cached covers are copied, so shares are embedded without changing the cached image
+            shadowFutures.add(scheduler.io(() -> coverCache == null ? new BmpUtils(path) : coverCache.load(path)));
         }
 
-        for (int j = 0; j < n; j++) {
-            BmpUtils shadow = null;
-            try {
-                shadow = new BmpUtils(shadowPaths.get(j));
-                shadow.setBytesFromIterator(k);
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
-            }
-            if (k == 8){
-                if(shadow.getWidth() != bmpUtil.getWidth() ||
-                        shadow.getHeight() != bmpUtil.getHeight()){
-                    throw new IllegalStateException("shadow size is not of correct size");
-                }
-            }else {
-                if(shadow.getOffset() != bmpUtil.getOffset() ||
-                        shadow.getWidth() != bmpUtil.getWidth() ||
-                        shadow.getHeight() != (bmpUtil.getHeight()*8/k)  + 1){
-                    throw new IllegalStateException("shadow size is not of correct size");
-                }
-            }
-
-            BmpEditor editor = shadow.edit();
-            editor.editSeed(seed);
-            editor.editShadow(j + 1);
-            for (List<Integer> anEvalsList : evalsList) {
-                editor.insertSecret(anEvalsList.get(j));
-            }
-            editor.saveImage();
+        // Every image buffer is given back to the pool once the job finishes
+        try {
+            encrypt(secretFuture, shadowFutures);
+        } finally {
+            Shadows.release(Collections.singletonList(secretFuture));
+            Shadows.release(shadowFutures);
         }
     }
 
-
     /**
-     * Returns a {@link List} of values that are the polynomial whose coefficients are the given {@code newCoefficients}
-     * using x all values between 1 and {@code n}.
+     * Performs the encryption process using the given images.
      *
-     * @param newCoefficients The polynomial coefficients.
-     * @param n               The range of values in which polynomial will be evaluated
-     * @return The evaluations of the polynomial.
+     * @param secretFuture  The secret image (being loaded).
+     * @param shadowFutures The images in which shadows will be created (being loaded).
      */
-    private List<Integer> evalPolynomial(List<Integer> newCoefficients, int n) {
-        boolean overflow = true;
-        List<Integer> evals = null;
+    private void encrypt(CompletableFuture<BmpUtils> secretFuture, List<CompletableFuture<BmpUtils>> shadowFutures) {
+        final BmpUtils bmpUtil = TaskScheduler.join(secretFuture);
+        final SecretSharing.Distribution distribution = sharing.share(bmpUtil, n);
 
-        while (overflow) {
-            evals = new ArrayList<>();
-            overflow = false;
-            for (int x = 1; x <= n && !overflow; x++) {
-                int eval = 0;
-                for (int i = 0; i < newCoefficients.size(); i++) {
-                    int powerX = 1;
-                    for (int pow = 0; pow < i; pow++) {
-                        powerX *= x;
-                        powerX %= 257;
-                    }
-                    eval += newCoefficients.get(i) * powerX;
-                    eval %= 257;
-                }
-                if (eval == 256) {
-                    overflow = true;
-                    boolean flag = true;
-                    for (int i = 0; i < newCoefficients.size() && flag; i++) {
-                        if (newCoefficients.get(i) != 0) {
-                            newCoefficients.set(i, newCoefficients.get(i) - 1);
-                            flag = false;
-                        }
-                    }
-                } else {
-                    evals.add(x - 1, eval);
-                }
+        final List<CompletableFuture<Void>> saved = new ArrayList<>();
+        for (int j = 0; j < n; j++) {
+            final int shadowNumber = j + 1;
+            if (format == ShadowFormat.COMPACT) {
+                final String path = new File(directory, String.format("shadow%03d", shadowNumber)
+                        + ShareFile.EXTENSION).getPath();
+                saved.add(scheduler.compute(() -> sharing.toShareFile(bmpUtil, distribution, shadowNumber))
+                        .thenCompose(shareFile -> scheduler.io(() -> {
+                            shareFile.write(path);
+                            return null;
+                        })));
+                continue;
             }
+            final String path = shadowPaths.get(j);
+            saved.add(shadowFutures.get(j)
+                    .thenCompose(shadow ->
+                            scheduler.compute(() -> sharing.embed(shadow, bmpUtil, distribution, shadowNumber)))
+                    .thenCompose(editor -> scheduler.io(() -> {
+                        if (!editor.saveImage()) {
+                            throw new IOException("Shadow image could not be saved: " + path);
+                        }
+                        return null;
+                    })));
         }
-        return evals;
+        TaskScheduler.joinAll(saved);
     }
 }
@@ -0,0 +1,335 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
+import ar.edu.itba.cripto.secret_image.bmp.BufferPool;
+import ar.edu.itba.cripto.secret_image.bmp.SecretWriter;
+import ar.edu.itba.cripto.secret_image.bmp.ShadowReader;
+import ar.edu.itba.cripto.secret_image.main.util.Keystream;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+import ar.edu.itba.cripto.secret_image.math_utils.BerlekampWelch;
+import ar.edu.itba.cripto.secret_image.share.ShareFile;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Recovers a secret image from all the shadows of a directory (instead of the first {@code k}), correcting up to
+ * {@code (m - k) / 2} wrong shares per polynomial (with {@code m} shadows) with the {@link BerlekampWelch} decoder,
+ * in a single pass over the shadows. The amount of corrected shares of each shadow is reported,
+ * so faulty shadows can be replaced.
+ */
+/*package*/ final class ErrorCorrectingRecovery {
+
+    /**
+     * The amount of shadows needed to recover the secret image.
+     */
+    private final int k;
+    /**
+     * The amount of polynomials decoded at once.
+     */
+    private final int chunkSize;
+    /**
+     * The {@link TaskScheduler} running file I/O and arithmetic.
+     */
+    private final TaskScheduler scheduler;
+
+    /**
+     * Constructor.
+     *
+     * @param k         The amount of shadows needed to recover the secret image.
+     * @param chunkSize The amount of polynomials decoded at once.
+     * @param scheduler The {@link TaskScheduler} running file I/O and arithmetic.
+     */
+    /*package*/ ErrorCorrectingRecovery(int k, int chunkSize, TaskScheduler scheduler) {
+        if (k < 2) {
+            throw new IllegalArgumentException("Number k must be at least 2");
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        if (scheduler == null) {
+            throw new IllegalArgumentException("Null scheduler");
+        }
+        this.k = k;
+        this.chunkSize = chunkSize;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Recovers the secret image from the shadows in the given {@code directory}.
+     * Share files are used if there are at least {@code k} of them, and shadow images otherwise.
+     * Polynomials with more wrong shares than can be corrected are recovered from the first {@code k} shadows
+     * (as done by {@link Decryptor}), and counted in the returned {@link Report}.
+     *
+     * @param directory       The path to the directory holding the shadows.
+     * @param secretImagePath The path where the secret image must be saved.
+     * @return The {@link Report} of the corrected shares.
+     * @throws IllegalArgumentException If there are less than {@code k} shadows, or they are not consistent.
+     */
+    /*package*/ Report recover(String directory, String secretImagePath) {
+        final List<String> sharePaths = Shadows.listShareFiles(directory);
+        if (sharePaths.size() >= k) {
+            Collections.sort(sharePaths);
+            return recoverShareFiles(sharePaths, secretImagePath);
+        }
+        final List<String> imagePaths = Shadows.listImages(directory);
+        if (imagePaths.size() < k) {
+            throw new IllegalArgumentException("There are less than k shadows in directory");
+        }
+        Collections.sort(imagePaths);
+        return recoverImages(imagePaths, secretImagePath);
+    }
+
+    /**
+     * Recovers the secret image from the shadow images in the given {@code paths}.
+     *
+     * @param paths           The paths to the shadow images.
+     * @param secretImagePath The path where the secret image must be saved.
+     * @return The {@link Report} of the corrected shares.
+     */
+    private Report recoverImages(List<String> paths, String secretImagePath) {
+        final List<BmpUtils> headers = Shadows.loadHeaders(paths, paths.size(), scheduler);
+        final List<ShadowReader> readers = new ArrayList<>();
+        try {
+            for (BmpUtils header : headers) {
+                readers.add(new ShadowReader(header));
+            }
+            final BmpUtils reference = headers.get(0);
+            final int numPolynomes = reference.getShareCount(k);
+            final Report report = new Report(paths, headers.stream().mapToInt(BmpUtils::getShadow).toArray());
+            final Keystream keystream = Keystream.create(reference.getKeystreamVersion(), reference.getSeed(),
+                    (long) k * numPolynomes);
+            final BufferPool pool = BufferPool.shared();
+            try (SecretWriter writer = new SecretWriter(secretImagePath, reference, k)) {
+                for (int from = 0; from < numPolynomes; from += chunkSize) {
+                    final int start = from;
+                    final int count = Math.min(chunkSize, numPolynomes - from);
+                    final byte[][] columns = new byte[readers.size()][count];
+                    final List<CompletableFuture<Void>> extracted = new ArrayList<>();
+                    for (int i = 0; i < readers.size(); i++) {
+                        final ShadowReader reader = readers.get(i);
+                        final byte[] column = columns[i];
+                        extracted.add(scheduler.io(() -> reader.read(start, count, pool))
+                                .thenAccept(bytes -> extract(reader, bytes, column, pool)));
+                    }
+                    TaskScheduler.joinAll(extracted);
+
+                    final byte[] data = new byte[count * k];
+                    decode(columns, 0, count, reference.usesNttPoints(), report, keystream, (long) start * k,
+                            data);
+                    writer.write((long) start * k, data, 0, data.length);
+                }
+            }
+            return report;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            for (ShadowReader reader : readers) {
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+                    // Nothing was written through readers
+                }
+            }
+            headers.forEach(BmpUtils::release);
+        }
+    }
+
+    /**
+     * Recovers the secret image from the share files in the given {@code paths}.
+     *
+     * @param paths           The paths to the share files.
+     * @param secretImagePath The path where the secret image must be saved.
+     * @return The {@link Report} of the corrected shares.
+     */
+    private Report recoverShareFiles(List<String> paths, String secretImagePath) {
+        final List<CompletableFuture<ShareFile>> futures = new ArrayList<>();
+        for (String path : paths) {
+            futures.add(scheduler.io(() -> ShareFile.read(path)));
+        }
+        final List<ShareFile> shareFiles = new ArrayList<>();
+        for (CompletableFuture<ShareFile> future : futures) {
+            shareFiles.add(TaskScheduler.join(future));
+        }
+        Shadows.checkShareFiles(shareFiles, k);
+        final ShareFile reference = shareFiles.get(0);
+        final int numPolynomes = reference.getShareCount();
+        final Report report = new Report(paths, shareFiles.stream().mapToInt(ShareFile::getShadow).toArray());
+        final Keystream keystream = Keystream.create(reference.getKeystreamVersion(), reference.getSeed(),
+                (long) k * numPolynomes);
+        final byte[][] columns = shareFiles.stream().map(ShareFile::getShares).toArray(byte[][]::new);
+
+        final byte[] template = reference.getHeaderTemplate();
+        final byte[] secret = Arrays.copyOf(template, template.length + k * numPolynomes);
+        for (int from = 0; from < numPolynomes; from += chunkSize) {
+            final int count = Math.min(chunkSize, numPolynomes - from);
+            final byte[] data = new byte[count * k];
+            decode(columns, from, count, reference.usesNttPoints(), report, keystream, (long) from * k, data);
+            System.arraycopy(data, 0, secret, template.length + from * k, data.length);
+        }
+        TaskScheduler.join(scheduler.io(() -> {
+            FileUtils.writeByteArrayToFile(new File(secretImagePath), secret);
+            return null;
+        }));
+        return report;
+    }
+
+    /**
+     * Decodes a chunk of polynomials, and unmasks their coefficients (i.e the secret image data).
+     *
+     * @param columns    The shares, one column per shadow.
+     * @param from       The index (in the columns) of the share of the first polynomial.
+     * @param count      The amount of polynomials.
+     * @param nttPoints  Whether polynomials were evaluated at the number theoretic transform points.
+     * @param report     The {@link Report} in which corrected shares are counted.
+     * @param keystream  The keystream used to mask the secret image data.
+     * @param firstIndex The index (in the secret image data) of the first byte.
+     * @param data       The array in which the secret image data is saved.
+     */
+    private void decode(byte[][] columns, int from, int count, boolean nttPoints, Report report,
+                        Keystream keystream, long firstIndex, byte[] data) {
+        final int[] points = Shadows.points(report.shadowNumbers, nttPoints);
+        scheduler.forEachChunk(count, (first, last) -> {
+            // Each task has its own decoder and counters, which are added to the report once it finishes
+            final BerlekampWelch decoder = new BerlekampWelch(points, k, 257);
+            final int[] values = new int[points.length];
+            final int[] coefficients = new int[k];
+            final boolean[] errors = new boolean[points.length];
+            final long[] corrected = new long[points.length];
+            long uncorrectable = 0;
+            for (int p = first; p < last; p++) {
+                for (int i = 0; i < points.length; i++) {
+                    values[i] = columns[i][from + p] & 0xFF;
+                }
+                final int wrong = decoder.decode(values, coefficients, errors);
+                if (wrong < 0) {
+                    uncorrectable++;
+                } else if (wrong > 0) {
+                    for (int i = 0; i < points.length; i++) {
+                        corrected[i] += errors[i] ? 1 : 0;
+                    }
+                }
+                keystream.mask(firstIndex + (long) p * k, coefficients, 0, k);
+                for (int j = 0; j < k; j++) {
+                    data[p * k + j] = (byte) coefficients[j];
+                }
+            }
+            report.add(corrected, uncorrectable);
+        });
+    }
+
+    /**
+     * Extracts the shares hidden in the given shadow {@code bytes}, giving the buffer back to the {@code pool}.
+     *
+     * @param reader The {@link ShadowReader} from which {@code bytes} were read.
+     * @param bytes  The shadow bytes.
+     * @param column The array in which shares are saved.
+     * @param pool   The {@link BufferPool} from which {@code bytes} was taken.
+     */
+    private static void extract(ShadowReader reader, ByteBuffer bytes, byte[] column, BufferPool pool) {
+        try {
+            reader.extract(bytes, column, 0, column.length);
+        } finally {
+            pool.release(bytes);
+        }
+    }
+
+    /**
+     * The report of an error correcting recovery.
+     *
+     * @implNote This class is thread-safe.
+     */
+    /*package*/ static final class Report {
+
+        /**
+         * The paths to the shadows.
+         */
+        private final List<String> paths;
+        /**
+         * The shadow numbers (in the same order as the paths).
+         */
+        private final int[] shadowNumbers;
+        /**
+         * The amount of corrected shares of each shadow (in the same order as the paths).
+         */
+        private final long[] corrected;
+        /**
+         * The amount of polynomials with more wrong shares than could be corrected.
+         */
+        private long uncorrectable;
+
+        /**
+         * Constructor.
+         *
+         * @param paths         The paths to the shadows.
+         * @param shadowNumbers The shadow numbers (in the same order as the paths).
+         */
+        private Report(List<String> paths, int[] shadowNumbers) {
+            this.paths = new ArrayList<>(paths);
+            this.shadowNumbers = shadowNumbers;
+            this.corrected = new long[paths.size()];
+        }
+
+        /**
+         * Adds the counters of a decoded chunk.
+         *
+         * @param corrected     The amount of corrected shares of each shadow.
+         * @param uncorrectable The amount of polynomials with more wrong shares than could be corrected.
+         */
+        private synchronized void add(long[] corrected, long uncorrectable) {
+            for (int i = 0; i < corrected.length; i++) {
+                this.corrected[i] += corrected[i];
+            }
+            this.uncorrectable += uncorrectable;
+        }
+
+        /**
+         * @return The paths to the shadows.
+         */
+        /*package*/ List<String> getPaths() {
+            return Collections.unmodifiableList(paths);
+        }
+
+        /**
+         * @param index The index of the shadow (in the same order as the paths).
+         * @return The amount of corrected shares of the shadow.
+         */
+        /*package*/ synchronized long getCorrected(int index) {
+            return corrected[index];
+        }
+
+        /**
+         * @return The amount of polynomials with more wrong shares than could be corrected.
+         */
+        /*package*/ synchronized long getUncorrectable() {
+            return uncorrectable;
+        }
+
+        /**
+         * Prints a report line for each shadow, followed by a summary.
+         *
+         * @param out The {@link PrintStream} where the report is printed.
+         */
+        /*package*/ synchronized void print(PrintStream out) {
+            out.printf("%-8s %6s %12s  %s%n", "STATUS", "SHADOW", "CORRECTED", "PATH");
+            int faulty = 0;
+            for (int i = 0; i < paths.size(); i++) {
+                out.printf("%-8s %6d %12d  %s%n", corrected[i] > 0 ? "FAULTY" : "OK", shadowNumbers[i],
+                        corrected[i], paths.get(i));
+                faulty += corrected[i] > 0 ? 1 : 0;
+            }
+            out.printf("%d shadows used, %d faulty, %d polynomials could not be corrected%n", paths.size(), faulty,
+                    uncorrectable);
+            out.flush();
+        }
+    }
+}
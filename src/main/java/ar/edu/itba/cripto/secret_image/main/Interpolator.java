@@ -0,0 +1,107 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.main.util.Keystream;
+import ar.edu.itba.cripto.secret_image.math_utils.NumberTheoreticTransform;
+import ar.edu.itba.cripto.secret_image.math_utils.PolynomialUtils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Recovers secret image data from the shares of a given set of {@code k} shadows.
+ * If polynomials were evaluated at the number theoretic transform points, {@code k} is a power of two,
+ * and the shadow numbers are an aligned block of {@code k} consecutive numbers, points are a coset of a subgroup,
+ * so each polynomial is recovered with an inverse transform.
+ * Otherwise, the Lagrange basis of the points is calculated once, and polynomials are interpolated in batches.
+ *
+ * @implNote This class is thread-safe.
+ */
+/*package*/ final class Interpolator {
+
+    /**
+     * The amount of polynomials interpolated at once (i.e the amount of rows of the share matrix in each batch).
+     */
+    private static final int BATCH_SIZE = 1024;
+
+    /**
+     * The amount of shadows.
+     */
+    private final int k;
+    /**
+     * The shadow indexes, sorted by shadow number.
+     */
+    private final int[] order;
+    /**
+     * The smallest shadow number.
+     */
+    private final int first;
+    /**
+     * Indicates whether points are a coset of a subgroup (i.e whether polynomials are recovered with
+     * an inverse transform).
+     */
+    private final boolean coset;
+    /**
+     * The Lagrange basis of the points ({@code null} if points are a coset).
+     */
+    private final int[][] basis;
+
+    /**
+     * Constructor.
+     *
+     * @param shadowNumbers The shadow numbers.
+     * @param nttPoints     Whether polynomials were evaluated at the number theoretic transform points.
+     */
+    /*package*/ Interpolator(int[] shadowNumbers, boolean nttPoints) {
+        this.k = shadowNumbers.length;
+
+        // Shadows are sorted by number, so a coset is detected by its first number
+        final Integer[] sorted = new Integer[k];
+        for (int i = 0; i < k; i++) {
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, Comparator.comparingInt(i -> shadowNumbers[i]));
+        this.order = Arrays.stream(sorted).mapToInt(Integer::intValue).toArray();
+        this.first = shadowNumbers[order[0]];
+        this.coset = nttPoints && NumberTheoreticTransform.isCoset(first, k)
+                && shadowNumbers[order[k - 1]] == first + k - 1;
+        this.basis = coset ? null :
+                PolynomialUtils.lagrangeBasis(Shadows.points(shadowNumbers, nttPoints), 257);
+    }
+
+    /**
+     * Recovers the secret image data of {@code count} polynomials.
+     *
+     * @param columns     The shares, one column per shadow (in the same order as the shadow numbers).
+     * @param from        The index (in the columns) of the share of the first polynomial.
+     * @param count       The amount of polynomials.
+     * @param keystream   The keystream used to mask the secret image data.
+     * @param firstIndex  The index (in the secret image data) of the first byte (i.e the first polynomial number
+     *                    times {@code k}), used to unmask it.
+     * @param result      The array in which the secret image data is saved.
+     * @param resultIndex The position of {@code result} in which the first byte is saved.
+     */
+    /*package*/ void recover(byte[][] columns, int from, int count, Keystream keystream, long firstIndex,
+                             byte[] result, int resultIndex) {
+        final int[] coefficients = new int[k * Math.min(BATCH_SIZE, count)];
+        final int[] values = new int[k];
+        for (int batch = 0; batch < count; batch += BATCH_SIZE) {
+            final int size = Math.min(BATCH_SIZE, count - batch);
+            if (coset) {
+                for (int p = 0; p < size; p++) {
+                    for (int i = 0; i < k; i++) {
+                        values[i] = Byte.toUnsignedInt(columns[order[i]][from + batch + p]);
+                    }
+                    NumberTheoreticTransform.interpolate(values, k, first);
+                    System.arraycopy(values, 0, coefficients, p * k, k);
+                }
+            } else {
+                PolynomialUtils.interpolate(basis, columns, from + batch, size, 257, coefficients);
+            }
+            keystream.mask(firstIndex + (long) batch * k, coefficients, 0, size * k);
+            final int position = resultIndex + batch * k;
+            for (int c = 0; c < size * k; c++) {
+                result[position + c] = (byte) coefficients[c];
+            }
+        }
+    }
+}
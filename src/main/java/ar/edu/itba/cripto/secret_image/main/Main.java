@@ -1,9 +1,16 @@
 package ar.edu.itba.cripto.secret_image.main;
 
+import ar.edu.itba.cripto.secret_image.main.util.Keystream;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+import ar.edu.itba.cripto.secret_image.share.ShareFile;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
 /**
  * Entry point class.
  */
@@ -33,6 +40,29 @@ public class Main implements Runnable {
             description = "Run in recovery mode.")
     private boolean recovery;
 
+    /**
+     * Indicates whether the execution will issue additional shadow images from existing ones.
+     */
+    @Parameter(names = {"-a"},
+            description = "Run in re-share mode (i.e add shadows from k existing ones, without the secret image).")
+    private boolean reshare;
+
+    /**
+     * Indicates whether the execution will check the surplus shadows (i.e those after the first k) against the others.
+     */
+    @Parameter(names = {"-v"},
+            description = "Run in verify mode (i.e check that the shadows after the first k are consistent with the" +
+                    " polynomials of the first k, without recovering the secret image).")
+    private boolean verify;
+
+    /**
+     * Indicates whether the execution will update existing shadows after their secret image changed.
+     */
+    @Parameter(names = {"-u"},
+            description = "Run in update mode (i.e rewrite only the shares of the polynomials that changed between" +
+                    " the old secret image and the new one, instead of distributing the new one again).")
+    private boolean update;
+
     /**
      * Indicates the path of the secret image.
      * In case the execution is running in distribution mode, this will be the secret image to distribute.
@@ -40,12 +70,20 @@ public class Main implements Runnable {
      * (i.e where the recovered secret image will be saved)
      */
     @Parameter(names = {"-secret"},
-            required = true,
             description = "Path to secret image. In distribution mode, this must be the path" +
                     " to the secret image to distribute. In recovery mode, this must be the target path (i.e where " +
-                    " the recovered secret image will be saved).")
+                    " the recovered secret image will be saved). In update mode, this must be the path to the new" +
+                    " secret image. Not used in re-share nor verify modes.")
     private String secretImagePath;
 
+    /**
+     * Indicates the path of the secret image the shadows were distributed from, in update mode.
+     */
+    @Parameter(names = {"-old"},
+            description = "The path to the secret image the shadows were distributed from." +
+                    " Must only be used (and it is required) in update mode.")
+    private String oldSecretImagePath;
+
     /**
      * Indicates the minimum amount of shadows that are needed to recover the secret image.
      */
@@ -64,8 +102,11 @@ public class Main implements Runnable {
     @Parameter(names = {"-n"},
             description = "Optional. The amount of shadows to be created." +
                     " Must be greater or equal than the minimum amount of shadows." +
-                    " Must only be used in distribution mode." +
-                    " If not set, the amount of images in the set directory (see -dir param) will be used.",
+                    " Must only be used in distribution, re-share and update modes." +
+                    " If not set, the amount of images in the set directory (see -dir param) will be used." +
+                    " In re-share mode, this is required, and it is the amount of shadows already distributed" +
+                    " (i.e new shadows are numbered starting from n + 1). In update mode, this is required, and it" +
+                    " is the amount of shadows that were distributed (not counting re-shared ones).",
             validateWith = PositiveIntegerValidator.class)
     private Integer amountOfShadows;
 
@@ -77,6 +118,136 @@ public class Main implements Runnable {
                     " If not set, the current working directory will be used.")
     private String shadowsDirectory = "./";
 
+    /**
+     * Indicates the directory containing the images in which new shadows will be created in re-share mode.
+     */
+    @Parameter(names = {"-covers"},
+            description = "The path to the directory containing the images in which new shadows will be created." +
+                    " Must only be used (and it is required) in re-share mode.")
+    private String coversDirectory;
+
+    /**
+     * Indicates the amount of shadow numbers (after n) reserved for issuing additional shadows later.
+     */
+    @Parameter(names = {"-spare"},
+            description = "Optional. The amount of shadow numbers (after n) reserved for issuing additional shadows" +
+                    " later (see -a param). Must only be used in distribution and update modes (in update mode, it" +
+                    " must be the amount reserved when distributing). If not set, no shadow numbers" +
+                    " will be reserved, and additional shadows might not be issued.",
+            validateWith = PositiveIntegerValidator.class)
+    private int spareShadows;
+
+    /**
+     * Indicates whether shadows must be stored in the compact share format (i.e without cover images).
+     */
+    @Parameter(names = {"-compact"},
+            description = "Optional. Store shadows as raw share files (" + ShareFile.EXTENSION + ") in the set" +
+                    " directory, instead of hiding them in images. The amount of shadows (see -n param) must be set." +
+                    " Must only be used in distribution mode. In recovery mode, share files are used if there are" +
+                    " at least k of them in the directory.")
+    private boolean compact;
+
+    /**
+     * Indicates the amount of least significant bits of each cover byte in which shares are hidden.
+     */
+    @Parameter(names = {"-bits"},
+            description = "Optional. The amount of least significant bits of each cover byte in which shares are" +
+                    " hidden (1, 2 or 4). Must only be used in distribution mode. When using 2 or 4 bits, cover" +
+                    " height must be (secret height * 8 / (k * bits)). If not set, 1 bit will be used.",
+            validateWith = PositiveIntegerValidator.class)
+    private int bitsPerByte = 1;
+
+    /**
+     * Indicates the version of the keystream used to mask the secret image data.
+     */
+    @Parameter(names = {"-keystream"},
+            description = "Optional. The version of the keystream used to mask the secret image data" +
+                    " (1 for the legacy one, with a 16 bits seed, or 2 for the counter-based one, with a 64 bits" +
+                    " seed, that can be produced from any position, stored in place of the resolution fields of" +
+                    " the shadow images, so the covers resolution is lost). Must only be used in distribution mode." +
+                    " The version is stored in shadows, so it is detected in recovery mode." +
+                    " If not set, version 1 will be used.",
+            validateWith = PositiveIntegerValidator.class)
+    private int keystreamVersion = Keystream.LEGACY;
+
+    /**
+     * Indicates whether polynomials are evaluated at the number theoretic transform points.
+     */
+    @Parameter(names = {"-ntt"},
+            description = "Optional. Evaluate polynomials at powers of a primitive root of unity of GF(257)" +
+                    " instead of at the shadow numbers, so that sharing (and recovery from shadows whose numbers" +
+                    " are an aligned block of k, when k is a power of two) run as number theoretic transforms." +
+                    " Must only be used in distribution mode. It is stored in shadows, so it is detected in" +
+                    " recovery mode.")
+    private boolean nttPoints;
+
+    /**
+     * Indicates the maximum amount of shadow and cover files that can be read or written at the same time.
+     */
+    @Parameter(names = {"-io"},
+            description = "Optional. The maximum amount of shadow and cover files that can be read or written" +
+                    " at the same time. If not set, " + TaskScheduler.DEFAULT_IO_LIMIT + " will be used.",
+            validateWith = PositiveIntegerValidator.class)
+    private int ioLimit = TaskScheduler.DEFAULT_IO_LIMIT;
+
+    /**
+     * Indicates the amount of worker processes recovering shards of the secret image.
+     */
+    @Parameter(names = {"-workers"},
+            description = "Optional. The amount of worker processes (local JVMs, connected over the loopback" +
+                    " interface) among which the polynomials of the secret image are split when recovering it" +
+                    " from shadow images. Must only be used in recovery mode. If not set, the secret image is" +
+                    " recovered in this process.",
+            validateWith = PositiveIntegerValidator.class)
+    private int workers;
+
+    /**
+     * Indicates whether the secret image must be recovered as shadows arrive in the shadows directory.
+     */
+    @Parameter(names = {"-watch"},
+            description = "Optional. Wait for shadows to arrive in the set directory (see -dir param), adding each" +
+                    " of them to the recovery as soon as it lands, so that only the last update is left once the" +
+                    " k-th one arrives. Must only be used in recovery mode.")
+    private boolean watch;
+
+    /**
+     * Indicates whether the secret image must be recovered from all the shadows, correcting wrong shares.
+     */
+    @Parameter(names = {"-correct"},
+            description = "Optional. Recover the secret image from all the shadows in the set directory (instead of" +
+                    " the first k), correcting up to (m - k) / 2 wrong shares per polynomial with m shadows," +
+                    " and report the faulty shadows. Must only be used in recovery mode.")
+    private boolean correct;
+
+    /**
+     * Indicates whether many secret images must be recovered, each of them from its own set of shadows.
+     */
+    @Parameter(names = {"-batch"},
+            description = "Optional. Recover many secret images, each of them from its own set of shadows." +
+                    " Sets are the subdirectories of the set directory (see -dir param), and secret images are saved" +
+                    " in the directory set as secret image path (see -secret param), named after them; or they are" +
+                    " listed in a manifest (see -manifest param). A report line is printed for each secret image." +
+                    " Must only be used in recovery mode.")
+    private boolean batch;
+
+    /**
+     * Indicates the path to the manifest listing the shadow sets to be recovered in batch mode.
+     */
+    @Parameter(names = {"-manifest"},
+            description = "Optional. The path to a file listing the shadow sets to be recovered in batch mode" +
+                    " (see -batch param), one per line, as the path to the directory holding the shadows and the" +
+                    " path where the secret image will be saved, separated by a tab. Relative paths are resolved" +
+                    " against the manifest directory.")
+    private String manifest;
+
+    /**
+     * Indicates whether verify mode must stop at the first mismatching share.
+     */
+    @Parameter(names = {"-failfast"},
+            description = "Optional. Stop checking surplus shadows at the first mismatching share." +
+                    " Must only be used in verify mode.")
+    private boolean failFast;
+
 
     // ========================================================
     // Main class instance variables
@@ -124,16 +295,97 @@ public class Main implements Runnable {
             return;
         }
         this.validateParameters();
-        if (distribution) {
-            final Encryption encryptor =
-                    new Encryption(minimumShadows, amountOfShadows, secretImagePath, shadowsDirectory);
-            encryptor.encrypt();
-            return;
+        try (TaskScheduler scheduler =
+                     new TaskScheduler(ioLimit, Runtime.getRuntime().availableProcessors())) {
+            if (distribution) {
+                final SharingOptions options = new SharingOptions()
+                        .setSpare(spareShadows)
+                        .setFormat(compact ? ShadowFormat.COMPACT : ShadowFormat.BMP)
+                        .setBitsPerByte(bitsPerByte)
+                        .setKeystreamVersion(keystreamVersion)
+                        .setNttPoints(nttPoints);
+                final Encryption encryptor = new Encryption(minimumShadows, amountOfShadows, secretImagePath,
+                        shadowsDirectory, options, scheduler);
+                encryptor.encrypt();
+                return;
+            }
+            if (reshare) {
+                final Resharer resharer =
+                        new Resharer(minimumShadows, amountOfShadows, shadowsDirectory, coversDirectory, scheduler);
+                resharer.reshare();
+                return;
+            }
+
+            if (verify) {
+                verifyShadows(scheduler);
+                return;
+            }
+            if (update) {
+                new ShadowUpdater(minimumShadows, amountOfShadows + spareShadows, SharingPipeline.DEFAULT_CHUNK_SIZE,
+                        scheduler).update(oldSecretImagePath, secretImagePath, shadowsDirectory).print(System.out);
+                return;
+            }
+
+            if (batch) {
+                recoverBatch(scheduler);
+                return;
+            }
+            if (watch) {
+                new ShadowWatcher(minimumShadows, shadowsDirectory, ShadowWatcher.DEFAULT_POLL_INTERVAL, scheduler)
+                        .run(secretImagePath);
+                return;
+            }
+            if (correct) {
+                final ErrorCorrectingRecovery.Report report = new ErrorCorrectingRecovery(minimumShadows,
+                        RecoveryPipeline.DEFAULT_CHUNK_SIZE, scheduler).recover(shadowsDirectory, secretImagePath);
+                report.print(System.out);
+                if (report.getUncorrectable() > 0) {
+                    throw new IllegalStateException(report.getUncorrectable() + " polynomials have more wrong" +
+                            " shares than could be corrected");
+                }
+                return;
+            }
+            final Decryptor decryptor =
+                    new Decryptor(minimumShadows, secretImagePath, shadowsDirectory, workers, scheduler);
+            decryptor.decrypt();
         }
+    }
 
-        final Decryptor decryptor =
-                new Decryptor(minimumShadows, secretImagePath, shadowsDirectory);
-        decryptor.decrypt();
+    /**
+     * Recovers the shadow sets of the batch mode, printing the report.
+     *
+     * @param scheduler The {@link TaskScheduler} whose amount of CPU threads is used.
+     */
+    private void recoverBatch(TaskScheduler scheduler) {
+        final List<BatchRecovery.Job> jobs;
+        try {
+            jobs = manifest != null ? BatchRecovery.fromManifest(manifest) :
+                    BatchRecovery.fromRoot(shadowsDirectory, secretImagePath);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        final List<BatchRecovery.Result> results = new BatchRecovery(minimumShadows,
+                RecoveryPipeline.DEFAULT_CHUNK_SIZE, scheduler.getCpuThreads()).run(jobs);
+        BatchRecovery.printReport(results, System.out);
+        final long failed = results.stream().filter(result -> !result.isRecovered()).count();
+        if (failed > 0) {
+            throw new IllegalStateException(failed + " of " + results.size() + " secret images were not recovered");
+        }
+    }
+
+    /**
+     * Checks the surplus shadows of the verify mode, printing the report.
+     *
+     * @param scheduler The {@link TaskScheduler} running file I/O and arithmetic.
+     */
+    private void verifyShadows(TaskScheduler scheduler) {
+        final List<ShadowVerifier.Result> results = new ShadowVerifier(minimumShadows,
+                RecoveryPipeline.DEFAULT_CHUNK_SIZE, scheduler).verify(shadowsDirectory, failFast);
+        ShadowVerifier.printReport(results, System.out);
+        final long mismatching = results.stream().filter(result -> !result.isGenuine()).count();
+        if (mismatching > 0) {
+            throw new IllegalStateException(mismatching + " of " + results.size() + " surplus shadows mismatch");
+        }
     }
 
     /**
@@ -141,13 +393,71 @@ public class Main implements Runnable {
      */
     private void validateParameters() {
         // Check that at least one execution mode is specified.
-        if (!distribution && !recovery) {
+        if (!distribution && !recovery && !reshare && !verify && !update) {
             throw new ParameterException("Fatal. No execution mode was specified.");
         }
         // Check that only one execution mode is specified.
-        if (distribution && recovery) {
+        if ((distribution ? 1 : 0) + (recovery ? 1 : 0) + (reshare ? 1 : 0) + (verify ? 1 : 0) + (update ? 1 : 0)
+                > 1) {
             throw new ParameterException("Fatal. Only one execution mode must be specified.");
         }
+        if ((batch || manifest != null) && !recovery) {
+            throw new ParameterException("Fatal. Batch recovery can only be used in recovery mode.");
+        }
+        if (watch && (!recovery || batch || workers > 0)) {
+            throw new ParameterException("Fatal. Watching for shadows can only be used in recovery mode," +
+                    " without batch recovery nor worker processes.");
+        }
+        if (correct && (!recovery || batch || watch || workers > 0)) {
+            throw new ParameterException("Fatal. Correcting wrong shares can only be used in recovery mode," +
+                    " without batch recovery, watching for shadows nor worker processes.");
+        }
+        if (manifest != null && !batch) {
+            throw new ParameterException("Fatal. A manifest can only be used in batch mode (see -batch param).");
+        }
+        if (failFast && !verify) {
+            throw new ParameterException("Fatal. Stopping at the first mismatch can only be used in verify mode.");
+        }
+        if (!reshare && !verify && secretImagePath == null && manifest == null) {
+            throw new ParameterException("Fatal. The secret image path must be specified (see -secret param).");
+        }
+        if (reshare && (amountOfShadows == null || coversDirectory == null)) {
+            throw new ParameterException("Fatal. Re-share mode needs the amount of shadows already distributed" +
+                    " (see -n param) and the covers directory (see -covers param).");
+        }
+        if (update && (amountOfShadows == null || oldSecretImagePath == null)) {
+            throw new ParameterException("Fatal. Update mode needs the amount of shadows that were distributed" +
+                    " (see -n param) and the old secret image path (see -old param).");
+        }
+        if (!update && oldSecretImagePath != null) {
+            throw new ParameterException("Fatal. The old secret image path can only be used in update mode.");
+        }
+        if (!distribution && !update && spareShadows > 0) {
+            throw new ParameterException("Fatal. Spare shadows can only be set in distribution and update modes.");
+        }
+        if (bitsPerByte != 1 && bitsPerByte != 2 && bitsPerByte != 4) {
+            throw new ParameterException("Fatal. The amount of bits per byte must be 1, 2 or 4.");
+        }
+        if (bitsPerByte != 1 && !distribution) {
+            throw new ParameterException("Fatal. The amount of bits per byte can only be set in distribution mode.");
+        }
+        if (keystreamVersion != Keystream.LEGACY && keystreamVersion != Keystream.COUNTER) {
+            throw new ParameterException("Fatal. The keystream version must be 1 or 2.");
+        }
+        if (keystreamVersion != Keystream.LEGACY && !distribution) {
+            throw new ParameterException("Fatal. The keystream version can only be set in distribution mode.");
+        }
+        if (nttPoints && !distribution) {
+            throw new ParameterException("Fatal. Number theoretic transform points can only be set in" +
+                    " distribution mode.");
+        }
+        if (compact && (!distribution || amountOfShadows == null)) {
+            throw new ParameterException("Fatal. The compact format can only be set in distribution mode," +
+                    " together with the amount of shadows (see -n param).");
+        }
+        if (workers > 0 && !recovery) {
+            throw new ParameterException("Fatal. Worker processes can only be used in recovery mode.");
+        }
         if (minimumShadows < 2) {
             throw new ParameterException("Fatal. At least 2 shadows are needed.");
         }
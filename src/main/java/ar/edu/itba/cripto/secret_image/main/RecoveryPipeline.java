@@ -0,0 +1,170 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
+import ar.edu.itba.cripto.secret_image.bmp.BufferPool;
+import ar.edu.itba.cripto.secret_image.bmp.SecretWriter;
+import ar.edu.itba.cripto.secret_image.bmp.ShadowReader;
+import ar.edu.itba.cripto.secret_image.main.util.Keystream;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Recovers a secret image from shadow images as a pipeline of stages, each of them working on chunks of polynomials:
+ * reading the shadow bytes of the chunk (I/O), extracting the hidden shares (CPU), interpolating and unmasking
+ * the secret image data (CPU), and writing it (I/O). Chunks flow through the stages independently,
+ * so reading and writing some chunks overlaps with the arithmetic of others, while the amount of chunks
+ * in flight is bounded (i.e a new chunk is read only once another one has been written), capping memory usage.
+ */
+/*package*/ final class RecoveryPipeline {
+
+    /**
+     * The default amount of polynomials in each chunk.
+     */
+    /*package*/ static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    /**
+     * The default maximum amount of chunks in flight.
+     */
+    /*package*/ static final int DEFAULT_MAX_CHUNKS_IN_FLIGHT = 8;
+
+    /**
+     * The {@link TaskScheduler} running the stages.
+     */
+    private final TaskScheduler scheduler;
+    /**
+     * The amount of polynomials in each chunk.
+     */
+    private final int chunkSize;
+    /**
+     * The maximum amount of chunks in flight.
+     */
+    private final int maxChunksInFlight;
+
+    /**
+     * Constructor.
+     *
+     * @param scheduler         The {@link TaskScheduler} running the stages.
+     * @param chunkSize         The amount of polynomials in each chunk.
+     * @param maxChunksInFlight The maximum amount of chunks in flight.
+     */
+    /*package*/ RecoveryPipeline(TaskScheduler scheduler, int chunkSize, int maxChunksInFlight) {
+        if (chunkSize < 1 || maxChunksInFlight < 1) {
+            throw new IllegalArgumentException("Chunk size and chunks in flight must be positive");
+        }
+        this.scheduler = scheduler;
+        this.chunkSize = chunkSize;
+        this.maxChunksInFlight = maxChunksInFlight;
+    }
+
+    /**
+     * Recovers the secret image from the given shadows.
+     *
+     * @param shadows         The {@code k} shadows (only their headers are needed, see {@link BmpUtils#readHeader}),
+     *                        already checked to be consistent.
+     * @param secretImagePath The path where the secret image must be saved.
+     */
+    /*package*/ void run(List<BmpUtils> shadows, String secretImagePath) {
+        final List<ShadowReader> readers = new ArrayList<>();
+        try {
+            for (BmpUtils shadow : shadows) {
+                readers.add(new ShadowReader(shadow));
+            }
+            run(shadows, readers, secretImagePath);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            for (ShadowReader reader : readers) {
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+                    // Nothing was written through readers
+                }
+            }
+        }
+    }
+
+    /**
+     * Recovers the secret image from the given shadows, using the given {@code readers}.
+     *
+     * @param shadows         The {@code k} shadows.
+     * @param readers         A {@link ShadowReader} for each shadow (in the same order).
+     * @param secretImagePath The path where the secret image must be saved.
+     * @throws IOException If any IO error occurs while creating the secret image.
+     */
+    private void run(List<BmpUtils> shadows, List<ShadowReader> readers, String secretImagePath)
+            throws IOException {
+        final int k = shadows.size();
+        final BmpUtils reference = shadows.get(0);
+        final BufferPool pool = BufferPool.shared();
+        final int numPolynomes = reference.getShareCount(k);
+        final Keystream keystream = Keystream.create(reference.getKeystreamVersion(), reference.getSeed(),
+                (long) k * numPolynomes);
+        final Interpolator interpolator = new Interpolator(shadows.stream().mapToInt(BmpUtils::getShadow).toArray(),
+                reference.usesNttPoints());
+
+        try (SecretWriter writer = new SecretWriter(secretImagePath, reference, k)) {
+            final Semaphore inFlight = new Semaphore(maxChunksInFlight);
+            final AtomicBoolean failed = new AtomicBoolean(false);
+            final List<CompletableFuture<Void>> chunks = new ArrayList<>();
+            for (int from = 0; from < numPolynomes && !failed.get(); from += chunkSize) {
+                inFlight.acquireUninterruptibly(); // Backpressure: wait for a chunk to be written
+                final int start = from;
+                final int count = Math.min(chunkSize, numPolynomes - from);
+
+                // Read and extract stages (one per shadow)
+                final byte[][] columns = new byte[k][count];
+                final List<CompletableFuture<Void>> extracted = new ArrayList<>();
+                for (int i = 0; i < k; i++) {
+                    final ShadowReader reader = readers.get(i);
+                    final byte[] column = columns[i];
+                    extracted.add(scheduler.io(() -> reader.read(start, count, pool))
+                            .thenCompose(bytes -> scheduler.compute(() -> extract(reader, bytes, column, pool))));
+                }
+
+                // Reconstruct and write stages
+                chunks.add(TaskScheduler.allOf(extracted)
+                        .thenCompose(ignored -> scheduler.compute(() -> {
+                            final byte[] data = new byte[count * k];
+                            interpolator.recover(columns, 0, count, keystream, (long) start * k, data, 0);
+                            return data;
+                        }))
+                        .thenCompose(data -> scheduler.io(() -> {
+                            writer.write((long) start * k, data, 0, data.length);
+                            return (Void) null;
+                        }))
+                        .whenComplete((ignored, e) -> {
+                            if (e != null) {
+                                failed.set(true);
+                            }
+                            inFlight.release();
+                        }));
+            }
+            TaskScheduler.joinAll(chunks);
+        }
+    }
+
+    /**
+     * Extracts the shares hidden in the given shadow {@code bytes}, giving the buffer back to the {@code pool}.
+     *
+     * @param reader The {@link ShadowReader} from which {@code bytes} were read.
+     * @param bytes  The shadow bytes.
+     * @param column The array in which shares are saved.
+     * @param pool   The {@link BufferPool} from which {@code bytes} was taken.
+     * @return {@code null}.
+     */
+    private static Void extract(ShadowReader reader, ByteBuffer bytes, byte[] column, BufferPool pool) {
+        try {
+            reader.extract(bytes, column, 0, column.length);
+        } finally {
+            pool.release(bytes);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,228 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.main.util.ChunkProcessor;
+import ar.edu.itba.cripto.secret_image.main.util.Keystream;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+import ar.edu.itba.cripto.secret_image.share.ShareChunk;
+import ar.edu.itba.cripto.secret_image.share.ShareFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stage recovering a secret image from shadows stored in the compact share format, received by chunks
+ * (e.g from the network, in any interleaving), publishing the secret image by chunks as soon as every shadow
+ * holds the shares needed to recover them.
+ * Chunks of the first {@code k} shadows received are used (those of any other shadow are ignored),
+ * and the chunks of each of them must be received in order (see {@link ShareChunk#getPosition()}).
+ * The first published chunk is the secret image header, and the rest its data.
+ * <p>
+ * Instances are created by {@link SecretSharing#recoveryProcessor()}, and recover a single secret image.
+ */
+public final class RecoveryProcessor extends ChunkProcessor<ShareChunk, ByteBuffer> {
+
+    /**
+     * The minimum amount of shadows needed to recover the secret image.
+     */
+    private final int k;
+    /**
+     * The {@link TaskScheduler} running the arithmetic.
+     */
+    private final TaskScheduler scheduler;
+    /**
+     * The used shadows, by the number identifying them in chunks (in the order they were first received).
+     */
+    private final Map<Integer, Stream> streams = new LinkedHashMap<>();
+    /**
+     * The {@link Interpolator} recovering the data (known once every shadow header was received).
+     */
+    private Interpolator interpolator;
+    /**
+     * The keystream masking the secret image data (known once every shadow header was received).
+     */
+    private Keystream keystream;
+    /**
+     * The amount of polynomials (known once every shadow header was received).
+     */
+    private int numPolynomes;
+    /**
+     * The amount of polynomials already recovered.
+     */
+    private int recovered;
+
+    /**
+     * Constructor.
+     *
+     * @param k         The minimum amount of shadows needed to recover the secret image.
+     * @param scheduler The {@link TaskScheduler} running the arithmetic.
+     */
+    /*package*/ RecoveryProcessor(int k, TaskScheduler scheduler) {
+        this.k = k;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    protected void process(ShareChunk chunk, List<ByteBuffer> output) {
+        Stream stream = streams.get(chunk.getShadow());
+        if (stream == null) {
+            if (streams.size() == k) {
+                return;
+            }
+            stream = new Stream();
+            streams.put(chunk.getShadow(), stream);
+        }
+        if (chunk.getPosition() != stream.received) {
+            throw new IllegalStateException("Chunks of shadow " + chunk.getShadow() + " are not contiguous");
+        }
+        stream.received += chunk.getBytes().length;
+        if (stream.append(chunk.getBytes()) && interpolator == null && streams.size() == k) {
+            start(output);
+        }
+        if (interpolator != null) {
+            recoverAvailable(output);
+        }
+    }
+
+    @Override
+    protected void complete(List<ByteBuffer> output) {
+        if (interpolator == null || recovered < numPolynomes) {
+            throw new IllegalStateException("Shadows ended before all the shares were received");
+        }
+    }
+
+    /**
+     * Checks the headers of the shadows (once all of them were received), and publishes the secret image header.
+     *
+     * @param output The list to which the secret image header is added.
+     */
+    private void start(List<ByteBuffer> output) {
+        final List<ShareFile> headers = new ArrayList<>();
+        for (Stream stream : streams.values()) {
+            if (stream.header == null) {
+                return;
+            }
+            headers.add(stream.header);
+        }
+        Shadows.checkShareFiles(headers, k);
+
+        final ShareFile first = headers.get(0);
+        final int[] shadowNumbers = new int[k];
+        for (int i = 0; i < k; i++) {
+            shadowNumbers[i] = headers.get(i).getShadow();
+        }
+        numPolynomes = first.getShareCount();
+        keystream = Keystream.create(first.getKeystreamVersion(), first.getSeed(), (long) k * numPolynomes);
+        interpolator = new Interpolator(shadowNumbers, first.usesNttPoints());
+        output.add(ByteBuffer.wrap(first.getHeaderTemplate()));
+    }
+
+    /**
+     * Recovers the polynomials whose shares were received from every shadow, and publishes their data.
+     *
+     * @param output The list to which the data is added.
+     */
+    private void recoverAvailable(List<ByteBuffer> output) {
+        int available = Integer.MAX_VALUE;
+        for (Stream stream : streams.values()) {
+            available = Math.min(available, stream.length);
+        }
+        if (available == 0) {
+            return;
+        }
+        final byte[][] columns = new byte[k][];
+        int i = 0;
+        for (Stream stream : streams.values()) {
+            columns[i++] = stream.shares;
+        }
+        final int count = available;
+        final long firstIndex = (long) recovered * k;
+        final byte[] result = new byte[k * count];
+        scheduler.forEachChunk(count, (from, to) ->
+                interpolator.recover(columns, from, to - from, keystream, firstIndex + (long) from * k,
+                        result, from * k));
+        for (Stream stream : streams.values()) {
+            stream.consume(count);
+        }
+        recovered += count;
+        output.add(ByteBuffer.wrap(result));
+    }
+
+    /**
+     * The bytes received from a shadow and not used yet.
+     */
+    private final class Stream {
+
+        /**
+         * The amount of bytes received.
+         */
+        private long received;
+        /**
+         * The bytes of the share file header received so far ({@code null} once the header was read).
+         */
+        private byte[] headerBytes = new byte[0];
+        /**
+         * The share file header ({@code null} until it is received).
+         */
+        private ShareFile header;
+        /**
+         * The shares received and not recovered yet (i.e from the first polynomial not recovered).
+         */
+        private byte[] shares = new byte[0];
+        /**
+         * The amount of shares in {@link #shares}.
+         */
+        private int length;
+
+        /**
+         * Appends the given {@code bytes} to this shadow.
+         *
+         * @param bytes The received bytes.
+         * @return {@code true} if the header of this shadow is known.
+         */
+        private boolean append(byte[] bytes) {
+            int from = 0;
+            if (header == null) {
+                final int received = headerBytes.length;
+                headerBytes = Arrays.copyOf(headerBytes, received + bytes.length);
+                System.arraycopy(bytes, 0, headerBytes, received, bytes.length);
+                final int headerLength;
+                try {
+                    headerLength = ShareFile.headerLength(ByteBuffer.wrap(headerBytes));
+                    if (headerLength < 0 || headerBytes.length < headerLength) {
+                        return false;
+                    }
+                    header = ShareFile.readHeader(ByteBuffer.wrap(headerBytes));
+                } catch (IOException e) {
+                    throw new IllegalArgumentException(e.getMessage(), e);
+                }
+                from = headerLength - received;
+                headerBytes = null;
+            }
+            final int count = bytes.length - from;
+            if ((long) recovered + length + count > header.getShareCount()) {
+                throw new IllegalArgumentException("Shadow " + header.getShadow() + " holds more shares than expected");
+            }
+            if (length + count > shares.length) {
+                shares = Arrays.copyOf(shares, Math.max(length + count, shares.length * 2));
+            }
+            System.arraycopy(bytes, from, shares, length, count);
+            length += count;
+            return true;
+        }
+
+        /**
+         * Discards the first {@code count} shares (i.e those already recovered).
+         *
+         * @param count The amount of shares.
+         */
+        private void consume(int count) {
+            System.arraycopy(shares, count, shares, 0, length - count);
+            length -= count;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.bmp.BmpEditor;
+import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
+import ar.edu.itba.cripto.secret_image.main.util.Keystream;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+import ar.edu.itba.cripto.secret_image.math_utils.PolynomialUtils;
+import ar.edu.itba.cripto.secret_image.share.ShareFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Recovers a secret image incrementally, as its shadows arrive one at a time (e.g from different custodians).
+ * Each added shadow updates the Newton interpolation of every polynomial (see
+ * {@link PolynomialUtils#addNewtonPoint}), so when the k-th shadow arrives only its own update is left,
+ * instead of the whole interpolation.
+ * Shadows are either shadow images or share files (as whole files, see {@link SecretSharing}), but all of them
+ * of the same kind; they are not retained once added (only their headers are).
+ *
+ * @implNote This class is thread-safe.
+ */
+public final class RecoverySession {
+
+    /**
+     * The amount of shadows needed to recover the secret image.
+     */
+    private final int k;
+    /**
+     * The {@link TaskScheduler} running the arithmetic.
+     */
+    private final TaskScheduler scheduler;
+    /**
+     * The headers of the added shadow images (empty if share files were added).
+     */
+    private final List<BmpUtils> images = new ArrayList<>();
+    /**
+     * The headers of the added share files (empty if shadow images were added).
+     */
+    private final List<ShareFile> shareFiles = new ArrayList<>();
+    /**
+     * The coefficients of the Newton basis polynomial of the points of the added shadows.
+     */
+    private final int[] basis;
+    /**
+     * The coefficients of the polynomials ({@code k} per polynomial, sorted by degree) that pass through
+     * the points of the added shadows ({@code null} until the first shadow is added).
+     */
+    private int[] coefficients;
+    /**
+     * The amount of polynomials.
+     */
+    private int numPolynomes;
+
+    /**
+     * Constructor, using the common {@link TaskScheduler}.
+     *
+     * @param k The amount of shadows needed to recover the secret image.
+     */
+    public RecoverySession(int k) {
+        this(k, TaskScheduler.common());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param k         The amount of shadows needed to recover the secret image.
+     * @param scheduler The {@link TaskScheduler} running the arithmetic.
+     */
+    public RecoverySession(int k, TaskScheduler scheduler) {
+        if (k < 2) {
+            throw new IllegalArgumentException("Number k must be at least 2");
+        }
+        if (k > 257) {
+            throw new IllegalArgumentException("The number k must be less than 257");
+        }
+        if (scheduler == null) {
+            throw new IllegalArgumentException("Null scheduler");
+        }
+        this.k = k;
+        this.scheduler = scheduler;
+        this.basis = new int[k + 1];
+        this.basis[0] = 1;
+    }
+
+    /**
+     * Adds a shadow image.
+     *
+     * @param image The shadow image (from its position to its limit, which are not changed).
+     * @return {@code true} if the secret image can be recovered (i.e {@code k} shadows were added).
+     * @throws IllegalArgumentException If it is not a bmp image, or it is not consistent with the added shadows.
+     * @throws IllegalStateException    If {@code k} shadows were already added.
+     */
+    public synchronized boolean addImage(ByteBuffer image) {
+        checkAdding(shareFiles);
+        final BmpUtils shadow = BmpUtils.wrap(image);
+        final List<BmpUtils> checked = new ArrayList<>(images);
+        checked.add(shadow);
+        Shadows.checkConsistency(checked);
+
+        // Hidden bytes after the shares hold cover bits (covers are rounded to whole rows)
+        final int count = shadow.getShareCount(k);
+        add(shadow.getShadow(), shadow.usesNttPoints(), count, shadow.extractHidden(count));
+        // Only the header is kept, as a reference for the secret image header
+        images.add(BmpUtils.wrapHeader(ByteBuffer.wrap(shadow.getHeader())));
+        return isComplete();
+    }
+
+    /**
+     * Adds a share file.
+     *
+     * @param shareFile The share file (from its position to its limit, which are not changed).
+     * @return {@code true} if the secret image can be recovered (i.e {@code k} shadows were added).
+     * @throws IllegalArgumentException If it is not a share file, or it is not consistent with the added shadows.
+     * @throws IllegalStateException    If {@code k} shadows were already added.
+     */
+    public synchronized boolean addShareFile(ByteBuffer shareFile) {
+        checkAdding(images);
+        final ShareFile file;
+        final ShareFile header;
+        try {
+            file = ShareFile.read(shareFile);
+            header = ShareFile.readHeader(shareFile);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        final List<ShareFile> checked = new ArrayList<>(shareFiles);
+        checked.add(header);
+        Shadows.checkShareFiles(checked, k);
+
+        add(file.getShadow(), file.usesNttPoints(), file.getShareCount(), file.getShares());
+        shareFiles.add(header);
+        return isComplete();
+    }
+
+    /**
+     * Checks that a shadow can be added.
+     *
+     * @param other The headers of the added shadows of the other kind (which must be empty).
+     */
+    private void checkAdding(List<?> other) {
+        if (isComplete()) {
+            throw new IllegalStateException("There are already k shadows");
+        }
+        if (!other.isEmpty()) {
+            throw new IllegalArgumentException("Shadow images and share files can not be mixed");
+        }
+    }
+
+    /**
+     * Updates every polynomial so that it also passes through the point of the given shadow.
+     *
+     * @param shadowNumber The shadow number.
+     * @param nttPoints    Whether polynomials were evaluated at the number theoretic transform points.
+     * @param count        The amount of polynomials.
+     * @param shares       The shares of the shadow (one per polynomial).
+     */
+    private void add(int shadowNumber, boolean nttPoints, int count, byte[] shares) {
+        final int known = getAdded();
+        if (coefficients == null) {
+            numPolynomes = count;
+            coefficients = new int[count * k];
+        }
+        final int x = Shadows.points(new int[]{shadowNumber}, nttPoints)[0];
+        final int[] current = coefficients;
+        scheduler.forEachChunk(numPolynomes, (from, to) -> PolynomialUtils.addNewtonPoint(basis, known, x, shares,
+                from, to - from, 257, current, k));
+        if (known + 1 < k) {
+            PolynomialUtils.extendNewtonBasis(basis, known, x, 257);
+        }
+    }
+
+    /**
+     * @return The amount of added shadows.
+     */
+    public synchronized int getAdded() {
+        return images.size() + shareFiles.size();
+    }
+
+    /**
+     * @return {@code true} if the secret image can be recovered (i.e {@code k} shadows were added).
+     */
+    public synchronized boolean isComplete() {
+        return getAdded() == k;
+    }
+
+    /**
+     * Gets the recovered secret image (which only needs to unmask the interpolated coefficients).
+     *
+     * @return The whole secret image file.
+     * @throws IllegalStateException If less than {@code k} shadows were added.
+     */
+    public synchronized byte[] getSecret() {
+        if (!isComplete()) {
+            throw new IllegalStateException("There are less than k shadows");
+        }
+        final int keystreamVersion;
+        final long seed;
+        if (images.isEmpty()) {
+            keystreamVersion = shareFiles.get(0).getKeystreamVersion();
+            seed = shareFiles.get(0).getSeed();
+        } else {
+            keystreamVersion = images.get(0).getKeystreamVersion();
+            seed = images.get(0).getSeed();
+        }
+        final Keystream keystream = Keystream.create(keystreamVersion, seed, (long) k * numPolynomes);
+        final byte[] data = new byte[k * numPolynomes];
+        scheduler.forEachChunk(numPolynomes, (from, to) -> {
+            // Coefficients are kept as they are, so the mask bytes are taken apart (i.e zeros are masked)
+            final int[] masks = new int[(to - from) * k];
+            keystream.mask((long) from * k, masks, 0, masks.length);
+            for (int index = from * k; index < to * k; index++) {
+                data[index] = (byte) (coefficients[index] ^ masks[index - from * k]);
+            }
+        });
+
+        if (!images.isEmpty()) {
+            return BmpEditor.secretImage(data, images.get(0), k);
+        }
+        final byte[] template = shareFiles.get(0).getHeaderTemplate();
+        final byte[] secret = Arrays.copyOf(template, template.length + data.length);
+        System.arraycopy(data, 0, secret, template.length, data.length);
+        return secret;
+    }
+}
@@ -0,0 +1,214 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.bmp.BmpEditor;
+import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+import ar.edu.itba.cripto.secret_image.math_utils.NumberTheoreticTransform;
+import ar.edu.itba.cripto.secret_image.math_utils.PolynomialUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Class implementing logic to issue additional shadows from {@code k} existing ones,
+ * without needing the secret image. Existing shadows stay valid, as the same polynomials are evaluated
+ * in new shadow numbers.
+ */
+public class Resharer {
+
+    /**
+     * The amount of shadow images needed to recover the secret image.
+     */
+    private final int k;
+    /**
+     * The amount of shadows already distributed (i.e new shadows are numbered starting from {@code n + 1}).
+     */
+    private final int n;
+    /**
+     * A {@link List} containing the path to each existing shadow image.
+     */
+    private final List<String> shadowPaths;
+    /**
+     * A {@link List} containing the path to each image in which a new shadow will be created.
+     */
+    private final List<String> coverPaths;
+    /**
+     * The {@link TaskScheduler} running file I/O and arithmetic.
+     */
+    private final TaskScheduler scheduler;
+
+    /**
+     * Constructor.
+     *
+     * @param k                The amount of shadow images needed to recover the secret image.
+     * @param n                The amount of shadows already distributed.
+     * @param shadowsDirectory The path to the directory holding the existing shadow images.
+     * @param coversDirectory  The path to the directory holding the images to be used as new shadows.
+     * @param scheduler        The {@link TaskScheduler} running file I/O and arithmetic.
+     */
+    public Resharer(int k, int n, String shadowsDirectory, String coversDirectory, TaskScheduler scheduler) {
+        if (k < 2) {
+            throw new IllegalArgumentException("Number k must be at least 2");
+        }
+        if (k >= 257) {
+            throw new IllegalArgumentException("The number k must be less than 257");
+        }
+        if (n < k) {
+            throw new IllegalArgumentException("The amount of distributed shadows must be at least k");
+        }
+        if (shadowsDirectory == null || coversDirectory == null) {
+            throw new IllegalArgumentException("Null directory");
+        }
+        if (scheduler == null) {
+            throw new IllegalArgumentException("Null scheduler");
+        }
+        this.k = k;
+        this.n = n;
+        this.shadowPaths = Shadows.listImages(shadowsDirectory);
+        this.coverPaths = Shadows.listImages(coversDirectory);
+        this.coverPaths.sort(String::compareTo);
+        this.scheduler = scheduler;
+
+        if (shadowPaths.size() < k) {
+            throw new IllegalArgumentException("There are less than k shadows in directory");
+        }
+        if (coverPaths.isEmpty()) {
+            throw new IllegalArgumentException("There are no images in the covers directory");
+        }
+        if (n + coverPaths.size() > 256) {
+            throw new IllegalArgumentException("Shadow numbers must not exceed 256");
+        }
+    }
+
+    /**
+     * Creates a new shadow in each image of the covers directory, numbered from {@code n + 1} onwards.
+     */
+    public void reshare() {
+        // Covers are requested right away, so they are read while shares are being extracted
+        final List<CompletableFuture<BmpUtils>> coverFutures = new ArrayList<>();
+        for (String path : coverPaths) {
+            coverFutures.add(scheduler.io(() -> new BmpUtils(path)));
+        }
+
+        // Every image buffer is given back to the pool once the job finishes
+        try {
+            reshare(coverFutures);
+        } finally {
+            Shadows.release(coverFutures);
+        }
+    }
+
+    /**
+     * Creates a new shadow in each of the given covers.
+     *
+     * @param coverFutures The images in which new shadows will be created (being loaded).
+     */
+    private void reshare(List<CompletableFuture<BmpUtils>> coverFutures) {
+        final List<BmpUtils> images = Shadows.load(shadowPaths, k, scheduler);
+        try {
+            reshare(coverFutures, images);
+        } finally {
+            images.forEach(BmpUtils::release);
+        }
+    }
+
+    /**
+     * Creates a new shadow in each of the given covers, using the given existing shadows.
+     *
+     * @param coverFutures The images in which new shadows will be created (being loaded).
+     * @param images       The loaded existing shadows.
+     */
+    private void reshare(List<CompletableFuture<BmpUtils>> coverFutures, List<BmpUtils> images) {
+        final BmpUtils reference = images.get(0);
+        // Hidden bytes after the shares hold cover bits (covers are rounded to whole rows), so they are left alone
+        final int numPolynomes = reference.getShareCount(k);
+        final ShareMatrix existing = ShareMatrix.extract(images, numPolynomes, scheduler);
+        final int[] xs = existing.getShadowNumbers();
+        for (int x : xs) {
+            if (x > n) {
+                throw new IllegalArgumentException("Shadow number " + x + " was not expected to be distributed");
+            }
+        }
+
+        // Polynomials are evaluated at the points of the shadow numbers (the numbers themselves by default)
+        final boolean nttPoints = reference.usesNttPoints();
+        final int[] points = Shadows.points(xs, nttPoints);
+
+        final List<CompletableFuture<Void>> saved = new ArrayList<>();
+        for (int j = 0; j < coverPaths.size(); j++) {
+            final int shadowNumber = n + 1 + j;
+            final int point = nttPoints ? NumberTheoreticTransform.point(shadowNumber) : shadowNumber;
+            final String path = coverPaths.get(j);
+            saved.add(coverFutures.get(j)
+                    .thenCompose(cover -> scheduler.compute(() -> {
+                        byte[] shares = evaluate(existing, points, point, shadowNumber);
+                        return embed(cover, reference, shares, shadowNumber);
+                    }))
+                    .thenCompose(editor -> scheduler.io(() -> {
+                        if (!editor.saveImage()) {
+                            throw new IOException("Shadow image could not be saved: " + path);
+                        }
+                        return null;
+                    })));
+        }
+        TaskScheduler.joinAll(saved);
+    }
+
+    /**
+     * Evaluates every polynomial in the given {@code point},
+     * using the Lagrange weights of the existing points (i.e O(k) operations per polynomial).
+     *
+     * @param shares       The existing shares.
+     * @param xs           The existing points (in the same order as the shadows of {@code shares}).
+     * @param point        The point of the shadow to be issued.
+     * @param shadowNumber The shadow number to be issued.
+     * @return The evaluations of each polynomial.
+     * @throws IllegalStateException If any polynomial evaluates to 256 (i.e it can not be hidden in a byte).
+     */
+    private byte[] evaluate(ShareMatrix shares, int[] xs, int point, int shadowNumber) {
+        final int[] weights = PolynomialUtils.lagrangeWeights(xs, point, 257);
+        final byte[][] columns = shares.getColumns();
+        final int numPolynomes = shares.getPolynomeCount();
+        final byte[] evaluations = new byte[numPolynomes];
+        for (int m = 0; m < numPolynomes; m++) {
+            long eval = 0;
+            for (int i = 0; i < weights.length; i++) {
+                eval += (long) weights[i] * (columns[i][m] & 0xFF);
+            }
+            int share = (int) (eval % 257);
+            if (share == 256) {
+                throw new IllegalStateException("Shadow " + shadowNumber + " can not be issued, as a polynomial"
+                        + " evaluates to 256 in it. Secret must be distributed with spare shadows (see -spare)");
+            }
+            evaluations[m] = (byte) share;
+        }
+        return evaluations;
+    }
+
+    /**
+     * Hides the given {@code shares} in the given {@code cover}.
+     *
+     * @param cover        The {@link BmpUtils} in which the shares will be hidden.
+     * @param reference    An existing shadow, used to check the cover size and to get the keystream
+     *                     and evaluation points.
+     * @param shares       The shares to be hidden.
+     * @param shadowNumber The shadow number of the new shadow.
+     * @return The {@link BmpEditor} with the shares already hidden.
+     */
+    private static BmpEditor embed(BmpUtils cover, BmpUtils reference, byte[] shares, int shadowNumber) {
+        if (cover.getOffset() != reference.getOffset() ||
+                cover.getWidth() != reference.getWidth() ||
+                cover.getHeight() != reference.getHeight()) {
+            throw new IllegalStateException("cover size is not of correct size");
+        }
+        BmpEditor editor = cover.edit();
+        editor.editKeystream(reference.getKeystreamVersion(), reference.getSeed());
+        editor.editNttPoints(reference.usesNttPoints());
+        editor.editShadow(shadowNumber);
+        editor.editBitsPerByte(reference.getBitsPerByte());
+        editor.insertSecrets(shares, 0, shares.length);
+        return editor;
+    }
+}
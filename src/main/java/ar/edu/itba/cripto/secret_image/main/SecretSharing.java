@@ -0,0 +1,614 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.bmp.BmpEditor;
+import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
+import ar.edu.itba.cripto.secret_image.main.util.Keystream;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+import ar.edu.itba.cripto.secret_image.math_utils.NumberTheoreticTransform;
+import ar.edu.itba.cripto.secret_image.math_utils.PolynomialUtils;
+import ar.edu.itba.cripto.secret_image.math_utils.PrimeField;
+import ar.edu.itba.cripto.secret_image.share.ShareFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+/**
+ * Class implementing the secret image sharing scheme on images held in memory, so that it can be used as a library
+ * (e.g by a service receiving images over the network) without writing them to temporary files.
+ * Images are whole bmp files (or share files, see {@link ShareFile}), given as buffers (from their position
+ * to their limit, which are not changed). Arrays can be given with {@link ByteBuffer#wrap(byte[])}, as they are
+ * never copied nor modified.
+ * <p>
+ * {@link Encryption} and {@link Decryptor} are the file based layer on top of this class.
+ *
+ * @implNote This class is thread-safe.
+ */
+public final class SecretSharing {
+
+    /**
+     * The field in which polynomials are evaluated.
+     */
+    private static final PrimeField FIELD = new PrimeField(257);
+
+    /**
+     * The minimum amount of shadows needed to recover the secret image.
+     */
+    private final int k;
+    /**
+     * The amount of spare shadow numbers (i.e after {@code n}) in which no polynomial evaluates to 256,
+     * so that additional shadows can be issued later.
+     */
+    private final int spare;
+    /**
+     * The amount of least significant bits of each cover byte in which shares are hidden.
+     */
+    private final int bitsPerByte;
+    /**
+     * The version of the keystream used to mask the secret image data (see {@link Keystream}).
+     */
+    private final int keystreamVersion;
+    /**
+     * Indicates whether polynomials are evaluated at the number theoretic transform points
+     * (see {@link NumberTheoreticTransform#point(int)}) instead of at the shadow numbers.
+     */
+    private final boolean nttPoints;
+    /**
+     * The {@link TaskScheduler} running the arithmetic.
+     */
+    private final TaskScheduler scheduler;
+    /**
+     * The powers of every shadow number (i.e of 1 to 256), so that polynomials are evaluated as dot products
+     * (see {@link PolynomialUtils#vandermonde(int[], int, int)}).
+     */
+    private final int[][] vandermonde;
+
+    /**
+     * Constructor, using the default options and the common {@link TaskScheduler}.
+     *
+     * @param k The minimum amount of shadows needed to recover the secret image.
+     */
+    public SecretSharing(int k) {
+        this(k, new SharingOptions(), TaskScheduler.common());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param k         The minimum amount of shadows needed to recover the secret image.
+     * @param options   The optional settings of distributions (the format and the cover cache are not used,
+     *                  as the format is given by the distribution method, and covers are given in memory).
+     *                  Not used when recovering, as settings are stored in shadows.
+     * @param scheduler The {@link TaskScheduler} running the arithmetic.
+     */
+    public SecretSharing(int k, SharingOptions options, TaskScheduler scheduler) {
+        if (k < 2) {
+            throw new IllegalArgumentException("Number k must be at least 2");
+        }
+        if (k > 257) {
+            throw new IllegalArgumentException("The number k must be less than 257");
+        }
+        if (options == null) {
+            throw new IllegalArgumentException("Null options");
+        }
+        if (scheduler == null) {
+            throw new IllegalArgumentException("Null scheduler");
+        }
+        this.k = k;
+        this.spare = options.getSpare();
+        this.bitsPerByte = options.getBitsPerByte();
+        this.keystreamVersion = options.getKeystreamVersion();
+        this.nttPoints = options.usesNttPoints();
+        this.scheduler = scheduler;
+        this.vandermonde = PolynomialUtils.vandermonde(IntStream.rangeClosed(1, 256).toArray(), k, 257);
+    }
+
+    // ========================================================
+    // Distribution
+    // ========================================================
+
+    /**
+     * Distributes the given secret image, hiding a shadow in each of the given covers.
+     *
+     * @param secret The secret image.
+     * @param covers The images in which shadows are hidden (one per shadow, so {@code n} is the amount of covers).
+     * @return The shadow images (the shadow number {@code i} in position {@code i - 1}).
+     * @throws IllegalArgumentException If any image is not a bmp image, or there are less than {@code k} covers.
+     * @throws IllegalStateException    If the secret or the covers are not of the correct size.
+     */
+    public List<byte[]> distribute(ByteBuffer secret, List<ByteBuffer> covers) {
+        if (secret == null || covers == null) {
+            throw new IllegalArgumentException("Null secret image or covers");
+        }
+        final BmpUtils secretImage = BmpUtils.wrap(secret);
+        final Distribution distribution = share(secretImage, covers.size());
+
+        // Each cover is copied into the array that is returned, and shares are hidden there
+        final List<CompletableFuture<byte[]>> shadows = new ArrayList<>();
+        for (int j = 0; j < covers.size(); j++) {
+            final ByteBuffer cover = covers.get(j);
+            final int shadowNumber = j + 1;
+            shadows.add(scheduler.compute(() -> {
+                final byte[] shadow = new byte[cover.remaining()];
+                cover.duplicate().get(shadow);
+                embed(BmpUtils.wrap(ByteBuffer.wrap(shadow)), secretImage, distribution, shadowNumber);
+                return shadow;
+            }));
+        }
+        return join(shadows);
+    }
+
+    /**
+     * Distributes the given secret image in {@code n} shadows stored in the compact share format.
+     *
+     * @param secret The secret image.
+     * @param n      The amount of shadows to be created.
+     * @return The share files (the shadow number {@code i} in position {@code i - 1},
+     * see {@link ShareFile#toByteArray()}).
+     * @throws IllegalArgumentException If the secret is not a bmp image, or {@code n} is less than {@code k}.
+     * @throws IllegalStateException    If the secret is not of the correct size.
+     */
+    public List<byte[]> distributeCompact(ByteBuffer secret, int n) {
+        if (secret == null) {
+            throw new IllegalArgumentException("Null secret image");
+        }
+        final BmpUtils secretImage = BmpUtils.wrap(secret);
+        final Distribution distribution = share(secretImage, n);
+        final List<CompletableFuture<byte[]>> shareFiles = new ArrayList<>();
+        for (int j = 0; j < n; j++) {
+            final int shadowNumber = j + 1;
+            shareFiles.add(scheduler.compute(() ->
+                    toShareFile(secretImage, distribution, shadowNumber).toByteArray()));
+        }
+        return join(shareFiles);
+    }
+
+    /**
+     * Evaluates the polynomials of the given secret image in {@code n} shadows.
+     *
+     * @param secret The {@link BmpUtils} holding the secret image.
+     * @param n      The amount of shadows to be created.
+     * @return The {@link Distribution} holding the shares of each shadow.
+     */
+    /*package*/ Distribution share(BmpUtils secret, int n) {
+        checkAmount(n);
+        int imageSize = (int) secret.getImageSize();
+
+        if (imageSize % k != 0) {
+            throw new IllegalStateException("Image to encrypt need to be of a size divisible by k");
+        }
+
+        final long seed = newSeed();
+        final Keystream keystream = Keystream.create(keystreamVersion, seed, imageSize);
+
+        // Evaluations are written shadow by shadow, so each shadow is a contiguous array of shares
+        final int numPolynomes = imageSize / k;
+        final byte[][] shadowShares = new byte[n][numPolynomes];
+        scheduler.forEachChunk(numPolynomes, (from, to) -> {
+            final int[] coefficients = new int[k];
+            final int[] values = new int[valuesLength(n)];
+            for (int i = from; i < to; i++) {
+                secret.readBlock(i, coefficients);
+                keystream.mask((long) i * k, coefficients, 0, k);
+                evaluate(coefficients, n, values);
+                for (int j = 0; j < n; j++) {
+                    shadowShares[j][i] = (byte) values[j];
+                }
+            }
+        });
+        return new Distribution(seed, shadowShares);
+    }
+
+    /**
+     * Checks that {@code n} shadows can be created.
+     *
+     * @param n The amount of shadows to be created.
+     * @throws IllegalArgumentException If {@code n} is less than {@code k}, or shadow numbers (including spare ones)
+     *                                  exceed 256.
+     */
+    /*package*/ void checkAmount(int n) {
+        if (n < k) {
+            throw new IllegalArgumentException("The amount of shadows must be at least k");
+        }
+        if (n + spare > 256) {
+            throw new IllegalArgumentException("Shadow numbers (including spare ones) must not exceed 256");
+        }
+    }
+
+    /**
+     * @return A new random seed for the keystream.
+     */
+    /*package*/ long newSeed() {
+        // The legacy keystream only has 16 bits of seed, while the counter-based one has 64 bits
+        return keystreamVersion == Keystream.LEGACY ? new Random().nextInt(65536) : new SecureRandom().nextLong();
+    }
+
+    /**
+     * Creates the keystream used to mask a secret image.
+     *
+     * @param seed   The seed of the keystream.
+     * @param length The size of the secret image data.
+     * @return The {@link Keystream}.
+     */
+    /*package*/ Keystream keystream(long seed, long length) {
+        return Keystream.create(keystreamVersion, seed, length);
+    }
+
+    /**
+     * Creates the keystream used to mask a secret image whose data is masked in order
+     * (see {@link Keystream#sequential(int, long, long)}).
+     *
+     * @param seed   The seed of the keystream.
+     * @param length The size of the secret image data.
+     * @return The {@link Keystream}.
+     */
+    /*package*/ Keystream sequentialKeystream(long seed, long length) {
+        return Keystream.sequential(keystreamVersion, seed, length);
+    }
+
+    /**
+     * Gets the length of the array in which the evaluations of a polynomial are saved
+     * (see {@link #evaluate(int[], int, int[])}).
+     *
+     * @param n The amount of shadows to be created.
+     * @return The length.
+     */
+    /*package*/ int valuesLength(int n) {
+        // With transform points, every polynomial is evaluated at all the points of the smallest subgroup
+        // that holds the shadow numbers (including spare ones)
+        return nttPoints ? NumberTheoreticTransform.size(n + spare) : n;
+    }
+
+    /**
+     * Evaluates the polynomial whose coefficients are the given (masked) {@code coefficients} in {@code n} shadows,
+     * adjusting them (in place) so that no evaluation is 256.
+     *
+     * @param coefficients The polynomial coefficients.
+     * @param n            The amount of shadows to be created.
+     * @param values       The array in which the evaluations are saved (the one of shadow number {@code i}
+     *                     in position {@code i - 1}), whose length is given by {@link #valuesLength(int)}.
+     */
+    /*package*/ void evaluate(int[] coefficients, int n, int[] values) {
+        if (nttPoints) {
+            evalTransform(coefficients, n + spare, values);
+        } else {
+            evalPolynomial(coefficients, n, n + spare, values);
+        }
+    }
+
+    /**
+     * Builds the header of the share file of the given {@code shadowNumber} (see {@link ShareFile#header}).
+     *
+     * @param secret       The {@link BmpUtils} holding (at least) the secret image header.
+     * @param seed         The seed of the keystream.
+     * @param shadowNumber The shadow number.
+     * @param shareCount   The amount of shares (i.e of polynomials).
+     * @return The header.
+     */
+    /*package*/ byte[] shareFileHeader(BmpUtils secret, long seed, int shadowNumber, int shareCount) {
+        return ShareFile.header(keystreamVersion, seed, nttPoints, shadowNumber, k, secret.getWidth(),
+                secret.getHeight(), secret.getHeader(), shareCount);
+    }
+
+    /**
+     * Creates the {@link ShareFile} holding the shares of the given {@code shadowNumber}.
+     *
+     * @param secret       The {@link BmpUtils} holding the secret image.
+     * @param distribution The {@link Distribution} of the secret image.
+     * @param shadowNumber The shadow number (i.e the x value in which polynomials were evaluated).
+     * @return The {@link ShareFile}.
+     */
+    /*package*/ ShareFile toShareFile(BmpUtils secret, Distribution distribution, int shadowNumber) {
+        return new ShareFile(keystreamVersion, distribution.seed, nttPoints, shadowNumber, k, secret.getWidth(),
+                secret.getHeight(), secret.getHeader(), distribution.shares[shadowNumber - 1]);
+    }
+
+    /**
+     * Hides the shares of the given {@code shadowNumber} in the given {@code shadow}.
+     *
+     * @param shadow       The {@link BmpUtils} in which the evaluations will be hidden.
+     * @param secret       The {@link BmpUtils} holding the secret image.
+     * @param distribution The {@link Distribution} of the secret image.
+     * @param shadowNumber The shadow number (i.e the x value in which polynomials were evaluated).
+     * @return The {@link BmpEditor} with the evaluations already hidden.
+     */
+    /*package*/ BmpEditor embed(BmpUtils shadow, BmpUtils secret, Distribution distribution, int shadowNumber) {
+        checkCover(shadow, secret);
+        final byte[] shares = distribution.shares[shadowNumber - 1];
+        BmpEditor editor = shadow.edit();
+        editHeader(editor, distribution.seed, shadowNumber);
+        editor.insertSecrets(shares, 0, shares.length);
+        return editor;
+    }
+
+    /**
+     * Checks that the given {@code shadow} is of the correct size to hide the shares of the given {@code secret}.
+     *
+     * @param shadow The {@link BmpUtils} holding (at least) the header of the cover.
+     * @param secret The {@link BmpUtils} holding (at least) the header of the secret image.
+     * @throws IllegalStateException If the shadow is not of the correct size.
+     */
+    /*package*/ void checkCover(BmpUtils shadow, BmpUtils secret) {
+        if (bitsPerByte == 1) {
+            if (k == 8){
+                if(shadow.getWidth() != secret.getWidth() ||
+                        shadow.getHeight() != secret.getHeight()){
+                    throw new IllegalStateException("shadow size is not of correct size");
+                }
+            }else {
+                if(shadow.getOffset() != secret.getOffset() ||
+                        shadow.getWidth() != secret.getWidth() ||
+                        shadow.getHeight() != (secret.getHeight()*8/k)  + 1){
+                    throw new IllegalStateException("shadow size is not of correct size");
+                }
+            }
+        } else {
+            // Each cover row holds the shares of (k * bitsPerByte / 8) secret rows
+            if (shadow.getOffset() != secret.getOffset() ||
+                    shadow.getWidth() != secret.getWidth() ||
+                    shadow.getHeight() * k * bitsPerByte != secret.getHeight() * 8) {
+                throw new IllegalStateException("shadow size is not of correct size" +
+                        " (height must be secret height * 8 / (k * bits per byte))");
+            }
+        }
+    }
+
+    /**
+     * Records the sharing settings (and the given {@code shadowNumber}) in the header being edited.
+     * Must be called before inserting any share, as it sets the bits per byte in which they are hidden.
+     *
+     * @param editor       The {@link BmpEditor} editing the shadow.
+     * @param seed         The seed of the keystream.
+     * @param shadowNumber The shadow number.
+     */
+    /*package*/ void editHeader(BmpEditor editor, long seed, int shadowNumber) {
+        editor.editKeystream(keystreamVersion, seed);
+        editor.editNttPoints(nttPoints);
+        editor.editShadow(shadowNumber);
+        editor.editBitsPerByte(bitsPerByte);
+    }
+
+    /**
+     * @return The amount of least significant bits of each cover byte in which shares are hidden.
+     */
+    /*package*/ int getBitsPerByte() {
+        return bitsPerByte;
+    }
+
+    /**
+     * @return The minimum amount of shadows needed to recover the secret image.
+     */
+    /*package*/ int getK() {
+        return k;
+    }
+
+    /**
+     * Evaluates the polynomial whose coefficients are the given {@code coefficients}
+     * using x all values between 1 and {@code n}.
+     * Coefficients are adjusted (in place) until no evaluation between 1 and {@code checked} is 256,
+     * so those shadow numbers after {@code n} can be issued later without touching the polynomial.
+     *
+     * @param coefficients The polynomial coefficients.
+     * @param n            The range of values in which polynomial will be evaluated
+     * @param checked      The range of values in which polynomial must not evaluate to 256.
+     * @param evals        The array in which the evaluations are saved (at least {@code n} long).
+     */
+    private void evalPolynomial(int[] coefficients, int n, int checked, int[] evals) {
+        boolean overflow = true;
+        while (overflow) {
+            overflow = false;
+            for (int x = 1; x <= checked && !overflow; x++) {
+                int eval = FIELD.dot(coefficients, 0, vandermonde[x - 1], 0, k);
+                if (eval == 256) {
+                    overflow = true;
+                    for (int i = 0; i < coefficients.length; i++) {
+                        if (coefficients[i] != 0) {
+                            coefficients[i]--;
+                            break;
+                        }
+                    }
+                } else if (x <= n) {
+                    evals[x - 1] = eval;
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluates the polynomial whose coefficients are the given {@code coefficients}
+     * at every number theoretic transform point of the subgroup of order {@code values.length}
+     * (see {@link NumberTheoreticTransform}).
+     * Coefficients are adjusted (in place) until no evaluation at points 1 to {@code checked} is 256,
+     * as done by {@link #evalPolynomial(int[], int, int, int[])}.
+     *
+     * @param coefficients The polynomial coefficients.
+     * @param checked      The amount of points in which polynomial must not evaluate to 256.
+     * @param values       The array in which the evaluations are saved (the one at point number {@code i}
+     *                     in position {@code i - 1}), whose length is the transform size
+     *                     (i.e at least {@code checked} and {@code coefficients.length}).
+     */
+    private static void evalTransform(int[] coefficients, int checked, int[] values) {
+        boolean overflow = true;
+        while (overflow) {
+            overflow = false;
+            Arrays.fill(values, 0);
+            System.arraycopy(coefficients, 0, values, 0, coefficients.length);
+            NumberTheoreticTransform.evaluate(values, values.length);
+            for (int x = 0; x < checked && !overflow; x++) {
+                overflow = values[x] == 256;
+            }
+            if (overflow) {
+                for (int i = 0; i < coefficients.length; i++) {
+                    if (coefficients[i] != 0) {
+                        coefficients[i]--;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    // ========================================================
+    // Recovery
+    // ========================================================
+
+    /**
+     * Recovers the secret image from the given shadow images.
+     *
+     * @param shadows The shadow images (only the first {@code k} are used).
+     * @return The secret image.
+     * @throws IllegalArgumentException If any image is not a bmp image, there are less than {@code k} shadows,
+     *                                  or they are not consistent.
+     */
+    public byte[] recover(List<ByteBuffer> shadows) {
+        if (shadows == null || shadows.size() < k) {
+            throw new IllegalArgumentException("There are less than k shadows");
+        }
+        final List<BmpUtils> images = new ArrayList<>();
+        for (int i = 0; i < k; i++) {
+            images.add(BmpUtils.wrap(shadows.get(i)));
+        }
+        Shadows.checkConsistency(images);
+
+        final BmpUtils reference = images.get(0);
+        // Hidden bytes after the shares hold cover bits (covers are rounded to whole rows)
+        final int numPolynomes = reference.getShareCount(k);
+        final ShareMatrix shares = ShareMatrix.extract(images, numPolynomes, scheduler);
+        final Keystream keystream = Keystream.create(reference.getKeystreamVersion(), reference.getSeed(),
+                (long) k * numPolynomes);
+        return BmpEditor.secretImage(recover(shares, reference.usesNttPoints(), keystream), reference, k);
+    }
+
+    /**
+     * Recovers the secret image from the given shadows stored in the compact share format.
+     *
+     * @param shareFiles The share files (only the first {@code k} are used).
+     * @return The secret image.
+     * @throws IllegalArgumentException If any of them is not a share file, there are less than {@code k} of them,
+     *                                  or they are not consistent.
+     */
+    public byte[] recoverCompact(List<ByteBuffer> shareFiles) {
+        if (shareFiles == null || shareFiles.size() < k) {
+            throw new IllegalArgumentException("There are less than k shadows");
+        }
+        final List<ShareFile> files = new ArrayList<>();
+        for (int i = 0; i < k; i++) {
+            try {
+                files.add(ShareFile.read(shareFiles.get(i)));
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e.getMessage(), e);
+            }
+        }
+        return recoverShareFiles(files);
+    }
+
+    /**
+     * Recovers the secret image from the given share files, rebuilding it from the header template they store.
+     *
+     * @param shareFiles The {@code k} share files.
+     * @return The secret image.
+     */
+    /*package*/ byte[] recoverShareFiles(List<ShareFile> shareFiles) {
+        Shadows.checkShareFiles(shareFiles, k);
+        final ShareMatrix shares = ShareMatrix.of(shareFiles);
+
+        final Keystream keystream = Keystream.create(shareFiles.get(0).getKeystreamVersion(),
+                shareFiles.get(0).getSeed(), k * shares.getPolynomeCount());
+        final byte[] resultBytes = recover(shares, shareFiles.get(0).usesNttPoints(), keystream);
+
+        final byte[] template = shareFiles.get(0).getHeaderTemplate();
+        final byte[] secret = Arrays.copyOf(template, template.length + resultBytes.length);
+        System.arraycopy(resultBytes, 0, secret, template.length, resultBytes.length);
+        return secret;
+    }
+
+    /**
+     * Recovers the secret image data from the given shares (see {@link Interpolator}).
+     *
+     * @param shares    The shares of {@code k} shadows.
+     * @param nttPoints Whether polynomials were evaluated at the number theoretic transform points.
+     * @param keystream The keystream used to mask the secret image data.
+     * @return The secret image data.
+     */
+    private byte[] recover(ShareMatrix shares, boolean nttPoints, Keystream keystream) {
+        final Interpolator interpolator = new Interpolator(shares.getShadowNumbers(), nttPoints);
+        final byte[][] columns = shares.getColumns();
+        final byte[] resultBytes = new byte[k * shares.getPolynomeCount()];
+        scheduler.forEachChunk(shares.getPolynomeCount(), (from, to) ->
+                interpolator.recover(columns, from, to - from, keystream, (long) from * k, resultBytes, from * k));
+        return resultBytes;
+    }
+
+    // ========================================================
+    // Streaming
+    // ========================================================
+
+    /**
+     * Creates a stage distributing a secret image received by chunks in {@code n} shadows stored in the compact
+     * share format (see {@link SharingProcessor}).
+     *
+     * @param n The amount of shadows to be created.
+     * @return The {@link SharingProcessor}.
+     * @throws IllegalArgumentException If {@code n} is less than {@code k}.
+     */
+    public SharingProcessor sharingProcessor(int n) {
+        return new SharingProcessor(this, k, n, scheduler);
+    }
+
+    /**
+     * Creates a stage recovering a secret image from shadows stored in the compact share format,
+     * received by chunks (see {@link RecoveryProcessor}).
+     *
+     * @return The {@link RecoveryProcessor}.
+     */
+    public RecoveryProcessor recoveryProcessor() {
+        return new RecoveryProcessor(k, scheduler);
+    }
+
+    /**
+     * Waits for the given arrays to be built.
+     *
+     * @param futures The arrays being built.
+     * @return The built arrays (in the same order).
+     */
+    private static List<byte[]> join(List<CompletableFuture<byte[]>> futures) {
+        TaskScheduler.joinAll(futures);
+        final List<byte[]> result = new ArrayList<>();
+        for (CompletableFuture<byte[]> future : futures) {
+            result.add(future.join());
+        }
+        return result;
+    }
+
+    /**
+     * The shares of a distributed secret image, together with the seed used to mask it.
+     */
+    /*package*/ static final class Distribution {
+
+        /**
+         * The seed of the keystream.
+         */
+        private final long seed;
+        /**
+         * The shares, one array per shadow (the shadow number {@code i} in position {@code i - 1}).
+         */
+        private final byte[][] shares;
+
+        /**
+         * Constructor.
+         *
+         * @param seed   The seed of the keystream.
+         * @param shares The shares, one array per shadow.
+         */
+        private Distribution(long seed, byte[][] shares) {
+            this.seed = seed;
+            this.shares = shares;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+/**
+ * Formats in which shadows can be stored.
+ */
+public enum ShadowFormat {
+
+    /**
+     * Shares are hidden in the least significant bits of a cover bmp image.
+     */
+    BMP,
+    /**
+     * Shares are stored raw in a share file (see {@link ar.edu.itba.cripto.secret_image.share.ShareFile}),
+     * with no cover image.
+     */
+    COMPACT
+}
@@ -0,0 +1,751 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
+import ar.edu.itba.cripto.secret_image.bmp.BufferPool;
+import ar.edu.itba.cripto.secret_image.bmp.MappedImage;
+import ar.edu.itba.cripto.secret_image.bmp.SegmentedBuffer;
+import ar.edu.itba.cripto.secret_image.bmp.ShadowReader;
+import ar.edu.itba.cripto.secret_image.bmp.ShadowWriter;
+import ar.edu.itba.cripto.secret_image.main.util.Keystream;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+import ar.edu.itba.cripto.secret_image.share.ShareFile;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Updates the shadows of a directory after their secret image changed, without distributing it again.
+ * The old and the new secret images are compared by polynomials, and only the polynomials that changed
+ * (i.e the dirty ones) are evaluated again, with the seed and evaluation points stored in the shadows,
+ * so the shares of every other polynomial stay valid. Only the bytes of each shadow through which the shares
+ * of dirty polynomials are spread are read and written back (with positioned I/O), instead of the whole shadows.
+ * <p>
+ * Before anything is written, the old secret image is checked against the shadows (i.e the current shares of the
+ * dirty polynomials must be its evaluations), so shadows are never updated from a wrong old secret image.
+ */
+/*package*/ final class ShadowUpdater {
+
+    /**
+     * The amount of clean polynomials between two dirty ones up to which both are updated together
+     * (rewriting the clean shares between them, which are the same), so scattered changes do not end up
+     * in a positioned write per polynomial.
+     */
+    /*package*/ static final int MERGE_GAP = 64;
+
+    /**
+     * The amount of shadows needed to recover the secret image.
+     */
+    private final int k;
+    /**
+     * The amount of shadow numbers of the distribution (i.e {@code n} plus the spare ones),
+     * which are the points at which polynomials must not evaluate to 256.
+     */
+    private final int points;
+    /**
+     * The amount of polynomials processed at once.
+     */
+    private final int chunkSize;
+    /**
+     * The {@link TaskScheduler} running file I/O and arithmetic.
+     */
+    private final TaskScheduler scheduler;
+
+    /**
+     * Constructor.
+     *
+     * @param k         The amount of shadows needed to recover the secret image.
+     * @param points    The amount of shadow numbers of the distribution (i.e {@code n} plus the spare ones).
+     * @param chunkSize The amount of polynomials processed at once.
+     * @param scheduler The {@link TaskScheduler} running file I/O and arithmetic.
+     */
+    /*package*/ ShadowUpdater(int k, int points, int chunkSize, TaskScheduler scheduler) {
+        if (k < 2) {
+            throw new IllegalArgumentException("Number k must be at least 2");
+        }
+        if (points < k) {
+            throw new IllegalArgumentException("The amount of shadow numbers must be at least k");
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        if (scheduler == null) {
+            throw new IllegalArgumentException("Null scheduler");
+        }
+        this.k = k;
+        this.points = points;
+        this.chunkSize = chunkSize;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Updates the shadows in the given {@code directory}, whose secret image changed from the one in
+     * {@code oldSecretPath} to the one in {@code newSecretPath}.
+     * Share files are updated if there are at least {@code k} of them, and shadow images otherwise.
+     *
+     * @param oldSecretPath The path to the secret image the shadows were distributed from.
+     * @param newSecretPath The path to the new secret image.
+     * @param directory     The path to the directory holding the shadows.
+     * @return The {@link Report} of the update.
+     * @throws IllegalArgumentException If there are less than {@code k} shadows, they are not consistent, or the
+     *                                  secret images are not of their size.
+     * @throws IllegalStateException    If the old secret image is not the one the shadows were distributed from
+     *                                  (or the amount of shadow numbers is not the one of the distribution).
+     */
+    /*package*/ Report update(String oldSecretPath, String newSecretPath, String directory) {
+        final List<Target> targets = new ArrayList<>();
+        final List<BmpUtils> headers = new ArrayList<>();
+        try {
+            final Settings settings = open(directory, targets, headers);
+            try (MappedImage oldSecret = MappedImage.open(oldSecretPath, false,
+                    SegmentedBuffer.DEFAULT_SEGMENT_SIZE);
+                 MappedImage newSecret = MappedImage.open(newSecretPath, false,
+                         SegmentedBuffer.DEFAULT_SEGMENT_SIZE)) {
+                return update(oldSecret, newSecret, settings, targets);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            for (Target target : targets) {
+                try {
+                    target.close();
+                } catch (IOException ignored) {
+                    // Written bytes were already forced
+                }
+            }
+            headers.forEach(BmpUtils::release);
+        }
+    }
+
+    /**
+     * Opens the shadows in the given {@code directory}.
+     *
+     * @param directory The path to the directory holding the shadows.
+     * @param targets   The list in which the opened shadows are saved (sorted by path).
+     * @param headers   The list in which the headers of shadow images are saved (to be released once done).
+     * @return The {@link Settings} of the distribution, taken from the shadows.
+     * @throws IOException If any IO error occurs while opening the shadows.
+     */
+    private Settings open(String directory, List<Target> targets, List<BmpUtils> headers) throws IOException {
+        final List<String> sharePaths = Shadows.listShareFiles(directory);
+        if (sharePaths.size() >= k) {
+            Collections.sort(sharePaths);
+            final List<ShareFile> shareFiles = new ArrayList<>();
+            for (String path : sharePaths) {
+                final ShareFileTarget target = new ShareFileTarget(path);
+                targets.add(target);
+                shareFiles.add(target.header);
+            }
+            Shadows.checkShareFiles(shareFiles, k);
+            final ShareFile reference = shareFiles.get(0);
+            return new Settings(reference.getKeystreamVersion(), reference.getSeed(), reference.usesNttPoints(),
+                    reference.getShareCount());
+        }
+        final List<String> imagePaths = Shadows.listImages(directory);
+        if (imagePaths.size() < k) {
+            throw new IllegalArgumentException("There are less than k shadows in directory");
+        }
+        Collections.sort(imagePaths);
+        headers.addAll(Shadows.loadHeaders(imagePaths, imagePaths.size(), scheduler));
+        for (int i = 0; i < headers.size(); i++) {
+            targets.add(new ImageTarget(imagePaths.get(i), headers.get(i)));
+        }
+        final BmpUtils reference = headers.get(0);
+        return new Settings(reference.getKeystreamVersion(), reference.getSeed(), reference.usesNttPoints(),
+                reference.getShareCount(k));
+    }
+
+    /**
+     * Updates the given shadows.
+     *
+     * @param oldSecret The mapped secret image the shadows were distributed from.
+     * @param newSecret The mapped new secret image.
+     * @param settings  The {@link Settings} of the distribution.
+     * @param targets   The shadows.
+     * @return The {@link Report} of the update.
+     * @throws IOException If any IO error occurs while writing the shadows.
+     */
+    private Report update(MappedImage oldSecret, MappedImage newSecret, Settings settings, List<Target> targets)
+            throws IOException {
+        final long imageSize = oldSecret.getData().size();
+        if (oldSecret.getMetadata().getWidth() != newSecret.getMetadata().getWidth() ||
+                oldSecret.getMetadata().getHeight() != newSecret.getMetadata().getHeight() ||
+                imageSize != newSecret.getData().size()) {
+            throw new IllegalArgumentException("The old and the new secret images must be of the same size");
+        }
+        if (imageSize != (long) k * settings.shareCount) {
+            throw new IllegalArgumentException("The secret images are not of the size of the shadows");
+        }
+        final int[] shadowNumbers = targets.stream().mapToInt(Target::getShadow).toArray();
+        for (int shadowNumber : shadowNumbers) {
+            if (shadowNumber > points) {
+                throw new IllegalArgumentException("Shadow number " + shadowNumber +
+                        " exceeds the amount of shadow numbers of the distribution");
+            }
+        }
+        // Every shadow number is evaluated (without spare ones), so that the same points are checked against 256
+        final SecretSharing sharing = new SecretSharing(k, new SharingOptions()
+                .setKeystreamVersion(settings.keystreamVersion)
+                .setNttPoints(settings.nttPoints), scheduler);
+        sharing.checkAmount(points);
+
+        final List<Range> ranges = diff(oldSecret, newSecret, settings.shareCount);
+        final Report report = new Report(targets, ranges, settings.shareCount);
+        final List<Range> chunks = new ArrayList<>();
+        for (Range range : ranges) {
+            for (int first = range.first; first < range.first + range.count; first += chunkSize) {
+                chunks.add(new Range(first, Math.min(chunkSize, range.first + range.count - first)));
+            }
+        }
+
+        // Nothing is written until every dirty polynomial of the old secret image is checked.
+        // Chunks are sorted, so each pass reads the keystream in order and only the mask bytes of a chunk are held
+        Keystream keystream = sharing.sequentialKeystream(settings.seed, imageSize);
+        for (Range chunk : chunks) {
+            final byte[][] expected = evaluate(sharing, oldSecret, masks(keystream, chunk), chunk, shadowNumbers);
+            final byte[][] current = new byte[targets.size()][chunk.count];
+            forEachTarget(targets, (i, target) -> target.read(chunk.first, current[i]));
+            for (int i = 0; i < targets.size(); i++) {
+                for (int p = 0; p < chunk.count; p++) {
+                    if (expected[i][p] != current[i][p]) {
+                        throw new IllegalStateException("The old secret image was not distributed in shadow " +
+                                shadowNumbers[i] + " (or the amount of shadow numbers differs)");
+                    }
+                }
+            }
+        }
+        keystream = sharing.sequentialKeystream(settings.seed, imageSize);
+        for (Range chunk : chunks) {
+            final byte[][] shares = evaluate(sharing, newSecret, masks(keystream, chunk), chunk, shadowNumbers);
+            forEachTarget(targets, (i, target) -> target.write(chunk.first, shares[i]));
+        }
+        forEachTarget(targets, (i, target) -> target.force());
+        return report;
+    }
+
+    /**
+     * Compares the given secret images by polynomials, in parallel by chunks.
+     *
+     * @param oldSecret    The mapped secret image the shadows were distributed from.
+     * @param newSecret    The mapped new secret image.
+     * @param numPolynomes The amount of polynomials.
+     * @return The ranges of dirty polynomials (sorted, merging those closer than {@link #MERGE_GAP}).
+     */
+    private List<Range> diff(MappedImage oldSecret, MappedImage newSecret, int numPolynomes) {
+        final List<Range> ranges = new ArrayList<>();
+        final int length = Math.min(chunkSize, numPolynomes);
+        final byte[] oldBytes = new byte[length * k];
+        final byte[] newBytes = new byte[length * k];
+        final boolean[] dirty = new boolean[length];
+        int first = -1;
+        int last = -1;
+        for (int start = 0; start < numPolynomes; start += chunkSize) {
+            final int count = Math.min(chunkSize, numPolynomes - start);
+            oldSecret.getData().get((long) start * k, oldBytes, 0, count * k);
+            newSecret.getData().get((long) start * k, newBytes, 0, count * k);
+            scheduler.forEachChunk(count, (from, to) -> {
+                for (int p = from; p < to; p++) {
+                    dirty[p] = false;
+                    for (int j = p * k; j < (p + 1) * k && !dirty[p]; j++) {
+                        dirty[p] = oldBytes[j] != newBytes[j];
+                    }
+                }
+            });
+            for (int p = 0; p < count; p++) {
+                if (!dirty[p]) {
+                    continue;
+                }
+                final int polynomial = start + p;
+                if (first >= 0 && polynomial - last <= MERGE_GAP) {
+                    last = polynomial + 1;
+                } else {
+                    if (first >= 0) {
+                        ranges.add(new Range(first, last - first));
+                    }
+                    first = polynomial;
+                    last = polynomial + 1;
+                }
+            }
+        }
+        if (first >= 0) {
+            ranges.add(new Range(first, last - first));
+        }
+        return ranges;
+    }
+
+    /**
+     * Produces the mask bytes of a chunk of polynomials.
+     *
+     * @param keystream The keystream used to mask the secret image data (read in order, see
+     *                  {@link Keystream#sequential(int, long, long)}).
+     * @param chunk     The polynomials.
+     * @return The mask bytes, {@code k} per polynomial.
+     */
+    private int[] masks(Keystream keystream, Range chunk) {
+        // Masking zeros gives the mask bytes themselves
+        final int[] masks = new int[chunk.count * k];
+        keystream.mask((long) chunk.first * k, masks, 0, masks.length);
+        return masks;
+    }
+
+    /**
+     * Evaluates a chunk of polynomials of the given secret image at the given shadow numbers.
+     *
+     * @param sharing       The {@link SecretSharing} evaluating the polynomials.
+     * @param secret        The mapped secret image.
+     * @param masks         The mask bytes of the chunk (see {@link #masks(Keystream, Range)}).
+     * @param chunk         The polynomials.
+     * @param shadowNumbers The shadow numbers.
+     * @return The shares, one row per shadow number.
+     */
+    private byte[][] evaluate(SecretSharing sharing, MappedImage secret, int[] masks, Range chunk,
+                              int[] shadowNumbers) {
+        final byte[][] shares = new byte[shadowNumbers.length][chunk.count];
+        final int valuesLength = sharing.valuesLength(points);
+        scheduler.forEachChunk(chunk.count, (from, to) -> {
+            final int[] coefficients = new int[k];
+            final int[] values = new int[valuesLength];
+            for (int p = from; p < to; p++) {
+                final long polynomial = (long) chunk.first + p;
+                secret.readBlock(polynomial, coefficients);
+                for (int j = 0; j < k; j++) {
+                    coefficients[j] ^= masks[p * k + j];
+                }
+                sharing.evaluate(coefficients, points, values);
+                for (int i = 0; i < shadowNumbers.length; i++) {
+                    shares[i][p] = (byte) values[shadowNumbers[i] - 1];
+                }
+            }
+        });
+        return shares;
+    }
+
+    /**
+     * Runs the given I/O {@code task} for each of the given shadows at once, waiting for all of them to finish.
+     *
+     * @param targets The shadows.
+     * @param task    The task.
+     */
+    private void forEachTarget(List<Target> targets, TargetTask task) {
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < targets.size(); i++) {
+            final int index = i;
+            final Target target = targets.get(i);
+            futures.add(scheduler.io(() -> {
+                task.run(index, target);
+                return null;
+            }));
+        }
+        TaskScheduler.joinAll(futures);
+    }
+
+    /**
+     * Reads the given amount of bytes of the given {@code channel}, starting at the given {@code position}.
+     *
+     * @param channel  The channel.
+     * @param position The position of the first byte.
+     * @param length   The amount of bytes.
+     * @param path     The path to the file, used in error messages.
+     * @return A buffer holding the bytes.
+     * @throws IOException If any IO error occurs, or the file ends before.
+     */
+    private static ByteBuffer readFully(FileChannel channel, long position, int length, String path)
+            throws IOException {
+        final ByteBuffer bytes = ByteBuffer.allocate(length);
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, position + bytes.position()) < 0) {
+                throw new EOFException("Shadow was truncated while being read: " + path);
+            }
+        }
+        bytes.flip();
+        return bytes;
+    }
+
+    /**
+     * The settings of a distribution, stored in its shadows.
+     */
+    private static final class Settings {
+
+        /**
+         * The version of the keystream used to mask the secret image data.
+         */
+        private final int keystreamVersion;
+        /**
+         * The seed of the keystream.
+         */
+        private final long seed;
+        /**
+         * Indicates whether polynomials were evaluated at the number theoretic transform points.
+         */
+        private final boolean nttPoints;
+        /**
+         * The amount of shares of each shadow (i.e the amount of polynomials).
+         */
+        private final int shareCount;
+
+        private Settings(int keystreamVersion, long seed, boolean nttPoints, int shareCount) {
+            this.keystreamVersion = keystreamVersion;
+            this.seed = seed;
+            this.nttPoints = nttPoints;
+            this.shareCount = shareCount;
+        }
+    }
+
+    /**
+     * A range of consecutive polynomials.
+     */
+    /*package*/ static final class Range {
+
+        /**
+         * The first polynomial.
+         */
+        private final int first;
+        /**
+         * The amount of polynomials.
+         */
+        private final int count;
+
+        private Range(int first, int count) {
+            this.first = first;
+            this.count = count;
+        }
+
+        /**
+         * @return The first polynomial.
+         */
+        /*package*/ int getFirst() {
+            return first;
+        }
+
+        /**
+         * @return The amount of polynomials.
+         */
+        /*package*/ int getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * A shadow whose shares are read and written in place.
+     */
+    private interface Target extends Closeable {
+
+        /**
+         * @return The path to the shadow.
+         */
+        String getPath();
+
+        /**
+         * @return The shadow number.
+         */
+        int getShadow();
+
+        /**
+         * @return The amount of bytes of the shadow through which each share is spread.
+         */
+        int getBytesPerShare();
+
+        /**
+         * Reads the shares from {@code first} to {@code first + shares.length}.
+         *
+         * @param first  The index of the first share.
+         * @param shares The array in which the shares are saved.
+         * @throws IOException If any IO error occurs.
+         */
+        void read(int first, byte[] shares) throws IOException;
+
+        /**
+         * Replaces the shares from {@code first} to {@code first + shares.length}.
+         *
+         * @param first  The index of the first share.
+         * @param shares The new shares.
+         * @throws IOException If any IO error occurs.
+         */
+        void write(int first, byte[] shares) throws IOException;
+
+        /**
+         * Forces the written shares to the storage device.
+         *
+         * @throws IOException If any IO error occurs.
+         */
+        void force() throws IOException;
+    }
+
+    /**
+     * An I/O task run for a shadow.
+     */
+    @FunctionalInterface
+    private interface TargetTask {
+
+        /**
+         * Runs the task.
+         *
+         * @param index  The index of the shadow.
+         * @param target The shadow.
+         * @throws IOException If any IO error occurs.
+         */
+        void run(int index, Target target) throws IOException;
+    }
+
+    /**
+     * A shadow image, whose shares are hidden in the least significant bits of its real data.
+     */
+    private static final class ImageTarget implements Target {
+
+        /**
+         * The path to the shadow image.
+         */
+        private final String path;
+        /**
+         * The header of the shadow image.
+         */
+        private final BmpUtils header;
+        /**
+         * The {@link ShadowReader} reading the bytes through which shares are spread.
+         */
+        private final ShadowReader reader;
+        /**
+         * The {@link ShadowWriter} writing the bytes through which shares are spread.
+         */
+        private final ShadowWriter writer;
+
+        private ImageTarget(String path, BmpUtils header) throws IOException {
+            this.path = path;
+            this.header = header;
+            this.reader = new ShadowReader(header);
+            try {
+                this.writer = new ShadowWriter(header);
+            } catch (IOException e) {
+                reader.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public int getShadow() {
+            return header.getShadow();
+        }
+
+        @Override
+        public int getBytesPerShare() {
+            return 8 / header.getBitsPerByte();
+        }
+
+        @Override
+        public void read(int first, byte[] shares) throws IOException {
+            final BufferPool pool = BufferPool.shared();
+            final ByteBuffer bytes = reader.read(first, shares.length, pool);
+            try {
+                reader.extract(bytes, shares, 0, shares.length);
+            } finally {
+                pool.release(bytes);
+            }
+        }
+
+        @Override
+        public void write(int first, byte[] shares) throws IOException {
+            writer.write(first, shares, 0, shares.length);
+        }
+
+        @Override
+        public void force() throws IOException {
+            writer.force();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                reader.close();
+            } finally {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * A share file, whose shares are stored after its header.
+     */
+    private static final class ShareFileTarget implements Target {
+
+        /**
+         * The amount of bytes read to know the length of the header (see {@link ShareFile#headerLength}).
+         */
+        private static final int HEADER_PROBE = 64;
+
+        /**
+         * The path to the share file.
+         */
+        private final String path;
+        /**
+         * The channel through which shares are read and written.
+         */
+        private final FileChannel channel;
+        /**
+         * The header of the share file (without shares).
+         */
+        private final ShareFile header;
+        /**
+         * The position of the first share (i.e the length of the header).
+         */
+        private final long sharesPosition;
+
+        private ShareFileTarget(String path) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                final int length = ShareFile.headerLength(
+                        readFully(channel, 0, (int) Math.min(HEADER_PROBE, channel.size()), path));
+                if (length < 0) {
+                    throw new IOException("Not a share file: " + path);
+                }
+                this.header = ShareFile.readHeader(readFully(channel, 0, length, path));
+                this.sharesPosition = length;
+                if (channel.size() != sharesPosition + header.getShareCount()) {
+                    throw new IOException("Truncated share file: " + path);
+                }
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public int getShadow() {
+            return header.getShadow();
+        }
+
+        @Override
+        public int getBytesPerShare() {
+            return 1;
+        }
+
+        @Override
+        public void read(int first, byte[] shares) throws IOException {
+            readFully(channel, sharesPosition + first, shares.length, path).get(shares);
+        }
+
+        @Override
+        public void write(int first, byte[] shares) throws IOException {
+            final ByteBuffer bytes = ByteBuffer.wrap(shares);
+            final long position = sharesPosition + first;
+            while (bytes.hasRemaining()) {
+                channel.write(bytes, position + bytes.position());
+            }
+        }
+
+        @Override
+        public void force() throws IOException {
+            channel.force(false);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * The report of an update.
+     */
+    /*package*/ static final class Report {
+
+        /**
+         * The paths to the shadows.
+         */
+        private final List<String> paths;
+        /**
+         * The shadow numbers (in the same order as the paths).
+         */
+        private final int[] shadowNumbers;
+        /**
+         * The amount of bytes written to each shadow (in the same order as the paths).
+         */
+        private final long[] written;
+        /**
+         * The ranges of updated polynomials.
+         */
+        private final List<Range> ranges;
+        /**
+         * The amount of polynomials.
+         */
+        private final int numPolynomes;
+
+        /**
+         * Constructor.
+         *
+         * @param targets      The shadows.
+         * @param ranges       The ranges of updated polynomials.
+         * @param numPolynomes The amount of polynomials.
+         */
+        private Report(List<Target> targets, List<Range> ranges, int numPolynomes) {
+            final long updated = ranges.stream().mapToLong(Range::getCount).sum();
+            this.paths = new ArrayList<>();
+            this.shadowNumbers = new int[targets.size()];
+            this.written = new long[targets.size()];
+            for (int i = 0; i < targets.size(); i++) {
+                paths.add(targets.get(i).getPath());
+                shadowNumbers[i] = targets.get(i).getShadow();
+                written[i] = updated * targets.get(i).getBytesPerShare();
+            }
+            this.ranges = ranges;
+            this.numPolynomes = numPolynomes;
+        }
+
+        /**
+         * @return The paths to the shadows.
+         */
+        /*package*/ List<String> getPaths() {
+            return Collections.unmodifiableList(paths);
+        }
+
+        /**
+         * @param index The index of the shadow (in the same order as the paths).
+         * @return The amount of bytes written to the shadow.
+         */
+        /*package*/ long getWritten(int index) {
+            return written[index];
+        }
+
+        /**
+         * @return The ranges of updated polynomials (sorted).
+         */
+        /*package*/ List<Range> getRanges() {
+            return Collections.unmodifiableList(ranges);
+        }
+
+        /**
+         * Prints a report line for each shadow, followed by a summary.
+         *
+         * @param out The {@link PrintStream} where the report is printed.
+         */
+        /*package*/ void print(PrintStream out) {
+            out.printf("%6s %12s  %s%n", "SHADOW", "WRITTEN", "PATH");
+            for (int i = 0; i < paths.size(); i++) {
+                out.printf("%6d %12d  %s%n", shadowNumbers[i], written[i], paths.get(i));
+            }
+            out.printf("%d of %d polynomials updated in %d ranges%n",
+                    ranges.stream().mapToLong(Range::getCount).sum(), numPolynomes, ranges.size());
+            out.flush();
+        }
+    }
+}
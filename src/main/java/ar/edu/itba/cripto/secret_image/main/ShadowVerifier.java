@@ -0,0 +1,500 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
+import ar.edu.itba.cripto.secret_image.bmp.BufferPool;
+import ar.edu.itba.cripto.secret_image.bmp.ShadowReader;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+import ar.edu.itba.cripto.secret_image.math_utils.PolynomialUtils;
+import ar.edu.itba.cripto.secret_image.share.ShareFile;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Checks the surplus shadows of a directory (i.e those after the first {@code k}, which are the reference ones)
+ * against the polynomials that pass through the reference shadows, in a single pass over all of them.
+ * As the value of a polynomial at a surplus point is a weighted sum of its values at the reference points
+ * (see {@link PolynomialUtils#lagrangeWeights(int[], int, int)}), the weights are calculated once per surplus
+ * shadow, and each share is checked with {@code k} multiplications, without recovering the secret image.
+ * A mismatching surplus shadow is not genuine (or, if every surplus shadow mismatches, a reference one is not).
+ */
+/*package*/ final class ShadowVerifier {
+
+    /**
+     * The amount of shadows needed to recover the secret image (i.e the amount of reference shadows).
+     */
+    private final int k;
+    /**
+     * The amount of polynomials checked at once.
+     */
+    private final int chunkSize;
+    /**
+     * The {@link TaskScheduler} running file I/O and arithmetic.
+     */
+    private final TaskScheduler scheduler;
+
+    /**
+     * Constructor.
+     *
+     * @param k         The amount of shadows needed to recover the secret image.
+     * @param chunkSize The amount of polynomials checked at once.
+     * @param scheduler The {@link TaskScheduler} running file I/O and arithmetic.
+     */
+    /*package*/ ShadowVerifier(int k, int chunkSize, TaskScheduler scheduler) {
+        if (k < 2) {
+            throw new IllegalArgumentException("Number k must be at least 2");
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        if (scheduler == null) {
+            throw new IllegalArgumentException("Null scheduler");
+        }
+        this.k = k;
+        this.chunkSize = chunkSize;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Checks the surplus shadows in the given {@code directory}.
+     * Share files are checked if there are more than {@code k} of them, and shadow images otherwise.
+     *
+     * @param directory The path to the directory holding the shadows.
+     * @param failFast  Whether checking must stop at the first mismatching share.
+     * @return A {@link Result} for each surplus shadow, sorted by path.
+     * @throws IllegalArgumentException If there are no surplus shadows, or the reference ones are not consistent.
+     */
+    /*package*/ List<Result> verify(String directory, boolean failFast) {
+        final List<String> sharePaths = sorted(Shadows.listShareFiles(directory));
+        if (sharePaths.size() > k) {
+            return verifyShareFiles(sharePaths, failFast);
+        }
+        final List<String> imagePaths = sorted(Shadows.listImages(directory));
+        if (imagePaths.size() > k) {
+            return verifyImages(imagePaths, failFast);
+        }
+        throw new IllegalArgumentException("There are no more than k shadows in directory");
+    }
+
+    /**
+     * Checks the surplus shadow images in the given {@code paths}.
+     *
+     * @param paths    The paths to the shadow images (the first {@code k} are the reference ones).
+     * @param failFast Whether checking must stop at the first mismatching share.
+     * @return A {@link Result} for each surplus shadow image.
+     */
+    private List<Result> verifyImages(List<String> paths, boolean failFast) {
+        // Headers are not checked as a whole, so an inconsistent surplus shadow is reported instead of failing
+        final List<CompletableFuture<BmpUtils>> futures = new ArrayList<>();
+        for (String path : paths) {
+            futures.add(scheduler.io(() -> BmpUtils.readHeader(path, BufferPool.shared())));
+        }
+        final List<BmpUtils> headers = new ArrayList<>();
+        final List<ShadowReader> readers = new ArrayList<>();
+        try {
+            for (CompletableFuture<BmpUtils> future : futures) {
+                headers.add(TaskScheduler.join(future));
+            }
+            final List<BmpUtils> references = headers.subList(0, k);
+            Shadows.checkConsistency(references);
+            final BmpUtils reference = references.get(0);
+            final List<Check> checks = new ArrayList<>();
+            final List<Result> results = new ArrayList<>();
+            for (int i = k; i < headers.size(); i++) {
+                final List<BmpUtils> checked = new ArrayList<>(references);
+                checked.add(headers.get(i));
+                try {
+                    Shadows.checkConsistency(checked);
+                    checks.add(new Check(paths.get(i), headers.get(i).getShadow(), i));
+                } catch (IllegalArgumentException e) {
+                    results.add(new Result(paths.get(i), headers.get(i).getShadow(), e.getMessage(), 0, -1,
+                            false));
+                }
+            }
+            for (BmpUtils header : headers) {
+                readers.add(new ShadowReader(header));
+            }
+
+            // The hidden bytes after the shares are those of the covers, which do not match
+            final int numPolynomes = reference.getShareCount(k);
+            final int[] shadowNumbers = headers.stream().mapToInt(BmpUtils::getShadow).toArray();
+            final BufferPool pool = BufferPool.shared();
+            run(checks, shadowNumbers, reference.usesNttPoints(), numPolynomes, failFast, (from, count) -> {
+                final byte[][] columns = new byte[readers.size()][count];
+                final List<CompletableFuture<Void>> extracted = new ArrayList<>();
+                for (int i = 0; i < readers.size(); i++) {
+                    final ShadowReader reader = readers.get(i);
+                    final byte[] column = columns[i];
+                    extracted.add(scheduler.io(() -> reader.read(from, count, pool))
+                            .thenAccept(bytes -> extract(reader, bytes, column, pool)));
+                }
+                TaskScheduler.joinAll(extracted);
+                return columns;
+            }, false);
+            return merge(results, checks, numPolynomes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            for (ShadowReader reader : readers) {
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+                    // Nothing was written through readers
+                }
+            }
+            Shadows.release(futures);
+        }
+    }
+
+    /**
+     * Checks the surplus share files in the given {@code paths}.
+     *
+     * @param paths    The paths to the share files (the first {@code k} are the reference ones).
+     * @param failFast Whether checking must stop at the first mismatching share.
+     * @return A {@link Result} for each surplus share file.
+     */
+    private List<Result> verifyShareFiles(List<String> paths, boolean failFast) {
+        final List<CompletableFuture<ShareFile>> futures = new ArrayList<>();
+        for (String path : paths) {
+            futures.add(scheduler.io(() -> ShareFile.read(path)));
+        }
+        final List<ShareFile> shareFiles = new ArrayList<>();
+        for (CompletableFuture<ShareFile> future : futures) {
+            shareFiles.add(TaskScheduler.join(future));
+        }
+        final List<ShareFile> references = shareFiles.subList(0, k);
+        Shadows.checkShareFiles(references, k);
+        final List<Check> checks = new ArrayList<>();
+        final List<Result> results = new ArrayList<>();
+        for (int i = k; i < shareFiles.size(); i++) {
+            final List<ShareFile> checked = new ArrayList<>(references);
+            checked.add(shareFiles.get(i));
+            try {
+                Shadows.checkShareFiles(checked, k);
+                checks.add(new Check(paths.get(i), shareFiles.get(i).getShadow(), i));
+            } catch (IllegalArgumentException e) {
+                results.add(new Result(paths.get(i), shareFiles.get(i).getShadow(), e.getMessage(), 0, -1, false));
+            }
+        }
+
+        // Shares are already in memory, so columns are the whole share arrays
+        final byte[][] columns = shareFiles.stream().map(ShareFile::getShares).toArray(byte[][]::new);
+        run(checks, shareFiles.stream().mapToInt(ShareFile::getShadow).toArray(),
+                references.get(0).usesNttPoints(), references.get(0).getShareCount(), failFast,
+                (from, count) -> columns, true);
+        return merge(results, checks, references.get(0).getShareCount());
+    }
+
+    /**
+     * Checks the given surplus shadows, chunk by chunk.
+     *
+     * @param checks        The {@link Check}s of the surplus shadows.
+     * @param shadowNumbers The shadow numbers of all the shadows (the first {@code k} are the reference ones).
+     * @param nttPoints     Whether polynomials were evaluated at the number theoretic transform points.
+     * @param numPolynomes  The amount of polynomials.
+     * @param failFast      Whether checking must stop at the first mismatching share.
+     * @param source        The {@link ColumnSource} giving the shares of each chunk.
+     * @param absolute      Whether the columns given by the source are indexed by polynomial number
+     *                      (or from the first polynomial of the chunk).
+     */
+    private void run(List<Check> checks, int[] shadowNumbers, boolean nttPoints, int numPolynomes,
+                     boolean failFast, ColumnSource source, boolean absolute) {
+        final int[] points = Shadows.points(shadowNumbers, nttPoints);
+        final int[] referencePoints = Arrays.copyOf(points, k);
+        for (Check check : checks) {
+            check.weights = PolynomialUtils.lagrangeWeights(referencePoints, points[check.index], 257);
+        }
+        for (int from = 0; from < numPolynomes && !checks.isEmpty(); from += chunkSize) {
+            final int start = from;
+            final int count = Math.min(chunkSize, numPolynomes - from);
+            final byte[][] columns;
+            try {
+                columns = source.read(from, count);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            final int offset = absolute ? from : 0;
+
+            // Surplus shadows are checked in parallel, each of them in a single pass over the chunk
+            final List<CompletableFuture<Void>> checked = new ArrayList<>();
+            for (Check check : checks) {
+                checked.add(scheduler.compute(() -> {
+                    check.check(columns, offset, start, count, failFast);
+                    return null;
+                }));
+            }
+            TaskScheduler.joinAll(checked);
+            if (failFast && checks.stream().anyMatch(check -> check.mismatches > 0)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Merges the results of the inconsistent surplus shadows with those of the checked ones, sorted by path.
+     *
+     * @param results      The {@link Result}s of the inconsistent surplus shadows.
+     * @param checks       The {@link Check}s of the checked surplus shadows.
+     * @param numPolynomes The amount of polynomials.
+     * @return All the {@link Result}s.
+     */
+    private static List<Result> merge(List<Result> results, List<Check> checks, int numPolynomes) {
+        final List<Result> merged = new ArrayList<>(results);
+        for (Check check : checks) {
+            merged.add(new Result(check.path, check.shadow, null, check.mismatches, check.firstMismatch,
+                    check.checked == numPolynomes));
+        }
+        merged.sort((one, other) -> one.getPath().compareTo(other.getPath()));
+        return merged;
+    }
+
+    /**
+     * Extracts the shares hidden in the given shadow {@code bytes}, giving the buffer back to the {@code pool}.
+     *
+     * @param reader The {@link ShadowReader} from which {@code bytes} were read.
+     * @param bytes  The shadow bytes.
+     * @param column The array in which shares are saved.
+     * @param pool   The {@link BufferPool} from which {@code bytes} was taken.
+     */
+    private static void extract(ShadowReader reader, ByteBuffer bytes, byte[] column, BufferPool pool) {
+        try {
+            reader.extract(bytes, column, 0, column.length);
+        } finally {
+            pool.release(bytes);
+        }
+    }
+
+    /**
+     * Sorts the given paths, so the reference shadows do not depend on the order in which files are listed.
+     *
+     * @param paths The paths.
+     * @return The sorted paths.
+     */
+    private static List<String> sorted(List<String> paths) {
+        Collections.sort(paths);
+        return paths;
+    }
+
+    /**
+     * Prints a report line for each of the given {@code results}, followed by a summary.
+     *
+     * @param results The {@link Result}s.
+     * @param out     The {@link PrintStream} where the report is printed.
+     */
+    /*package*/ static void printReport(List<Result> results, PrintStream out) {
+        out.printf("%-10s %6s %12s %12s  %s%n", "STATUS", "SHADOW", "MISMATCHES", "FIRST", "PATH");
+        int mismatching = 0;
+        for (Result result : results) {
+            final String status = result.getError() != null ? "INVALID" :
+                    result.getMismatches() > 0 ? "MISMATCH" : result.isComplete() ? "OK" : "UNCHECKED";
+            out.printf("%-10s %6d %12d %12s  %s%s%n", status, result.getShadow(), result.getMismatches(),
+                    result.getFirstMismatch() < 0 ? "-" : String.valueOf(result.getFirstMismatch()),
+                    result.getPath(), result.getError() == null ? "" : " (" + result.getError() + ")");
+            mismatching += result.isGenuine() ? 0 : 1;
+        }
+        out.printf("%d surplus shadows checked, %d mismatching%n", results.size(), mismatching);
+        out.flush();
+    }
+
+    /**
+     * Gives the shares of a chunk of polynomials.
+     */
+    @FunctionalInterface
+    private interface ColumnSource {
+
+        /**
+         * Gets the shares of the given chunk.
+         *
+         * @param from  The index of the first polynomial.
+         * @param count The amount of polynomials.
+         * @return The shares, one column per shadow (in the same order as the shadow numbers).
+         * @throws IOException If any IO error occurs while reading them.
+         */
+        byte[][] read(int from, int count) throws IOException;
+    }
+
+    /**
+     * The state of the check of a surplus shadow.
+     */
+    private static final class Check {
+
+        /**
+         * The path to the shadow.
+         */
+        private final String path;
+        /**
+         * The shadow number.
+         */
+        private final int shadow;
+        /**
+         * The index of the shadow column.
+         */
+        private final int index;
+        /**
+         * The Lagrange weights of the reference points at the shadow point.
+         */
+        private int[] weights;
+        /**
+         * The amount of mismatching shares.
+         */
+        private long mismatches;
+        /**
+         * The index of the first mismatching polynomial (-1 if there is none).
+         */
+        private int firstMismatch = -1;
+        /**
+         * The amount of checked polynomials.
+         */
+        private long checked;
+
+        /**
+         * Constructor.
+         *
+         * @param path   The path to the shadow.
+         * @param shadow The shadow number.
+         * @param index  The index of the shadow column.
+         */
+        private Check(String path, int shadow, int index) {
+            this.path = path;
+            this.shadow = shadow;
+            this.index = index;
+        }
+
+        /**
+         * Checks the shares of a chunk of polynomials.
+         *
+         * @param columns  The shares, one column per shadow.
+         * @param offset   The index (in the columns) of the share of the first polynomial.
+         * @param start    The index of the first polynomial.
+         * @param count    The amount of polynomials.
+         * @param failFast Whether checking must stop at the first mismatching share.
+         */
+        private void check(byte[][] columns, int offset, int start, int count, boolean failFast) {
+            final byte[] column = columns[index];
+            for (int p = 0; p < count; p++) {
+                // At most 256 terms of less than 2^16 each, so the sum fits in an int
+                int value = 0;
+                for (int i = 0; i < weights.length; i++) {
+                    value += weights[i] * (columns[i][offset + p] & 0xFF);
+                }
+                if (value % 257 != (column[offset + p] & 0xFF)) {
+                    if (mismatches++ == 0) {
+                        firstMismatch = start + p;
+                    }
+                    if (failFast) {
+                        checked += p + 1;
+                        return;
+                    }
+                }
+            }
+            checked += count;
+        }
+    }
+
+    /**
+     * The result of the check of a surplus shadow.
+     */
+    /*package*/ static final class Result {
+
+        /**
+         * The path to the shadow.
+         */
+        private final String path;
+        /**
+         * The shadow number.
+         */
+        private final int shadow;
+        /**
+         * The reason why the shadow could not be checked ({@code null} if it was checked).
+         */
+        private final String error;
+        /**
+         * The amount of mismatching shares.
+         */
+        private final long mismatches;
+        /**
+         * The index of the first mismatching polynomial (-1 if there is none).
+         */
+        private final int firstMismatch;
+        /**
+         * Indicates whether every polynomial was checked.
+         */
+        private final boolean complete;
+
+        /**
+         * Constructor.
+         *
+         * @param path          The path to the shadow.
+         * @param shadow        The shadow number.
+         * @param error         The reason why the shadow could not be checked ({@code null} if it was checked).
+         * @param mismatches    The amount of mismatching shares.
+         * @param firstMismatch The index of the first mismatching polynomial (-1 if there is none).
+         * @param complete      Whether every polynomial was checked.
+         */
+        private Result(String path, int shadow, String error, long mismatches, int firstMismatch,
+                       boolean complete) {
+            this.path = path;
+            this.shadow = shadow;
+            this.error = error;
+            this.mismatches = mismatches;
+            this.firstMismatch = firstMismatch;
+            this.complete = complete;
+        }
+
+        /**
+         * @return The path to the shadow.
+         */
+        /*package*/ String getPath() {
+            return path;
+        }
+
+        /**
+         * @return The shadow number.
+         */
+        /*package*/ int getShadow() {
+            return shadow;
+        }
+
+        /**
+         * @return The reason why the shadow could not be checked ({@code null} if it was checked).
+         */
+        /*package*/ String getError() {
+            return error;
+        }
+
+        /**
+         * @return The amount of mismatching shares.
+         */
+        /*package*/ long getMismatches() {
+            return mismatches;
+        }
+
+        /**
+         * @return The index of the first mismatching polynomial (-1 if there is none).
+         */
+        /*package*/ int getFirstMismatch() {
+            return firstMismatch;
+        }
+
+        /**
+         * @return {@code true} if every polynomial was checked.
+         */
+        /*package*/ boolean isComplete() {
+            return complete;
+        }
+
+        /**
+         * @return {@code true} if the shadow was checked, and no share mismatched.
+         */
+        /*package*/ boolean isGenuine() {
+            return error == null && mismatches == 0;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+import ar.edu.itba.cripto.secret_image.share.ShareFile;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Recovers a secret image from a directory in which shadows arrive one at a time, adding each of them to a
+ * {@link RecoverySession} as soon as it lands, and saving the secret image once {@code k} of them were added.
+ * A shadow is added once its size did not change between two polls, so files still being copied are not read.
+ */
+/*package*/ final class ShadowWatcher {
+
+    /**
+     * The default time between polls of the directory (in milliseconds).
+     */
+    /*package*/ static final long DEFAULT_POLL_INTERVAL = 1000;
+
+    /**
+     * The amount of shadows needed to recover the secret image.
+     */
+    private final int k;
+    /**
+     * The path to the directory where shadows arrive.
+     */
+    private final String directory;
+    /**
+     * The time between polls of the directory (in milliseconds).
+     */
+    private final long pollInterval;
+    /**
+     * The {@link TaskScheduler} running file I/O and arithmetic.
+     */
+    private final TaskScheduler scheduler;
+
+    /**
+     * Constructor.
+     *
+     * @param k            The amount of shadows needed to recover the secret image.
+     * @param directory    The path to the directory where shadows arrive.
+     * @param pollInterval The time between polls of the directory (in milliseconds).
+     * @param scheduler    The {@link TaskScheduler} running file I/O and arithmetic.
+     */
+    /*package*/ ShadowWatcher(int k, String directory, long pollInterval, TaskScheduler scheduler) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Null directory");
+        }
+        if (pollInterval < 1) {
+            throw new IllegalArgumentException("The poll interval must be positive");
+        }
+        this.k = k;
+        this.directory = directory;
+        this.pollInterval = pollInterval;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Waits for {@code k} shadows to arrive, and saves the secret image.
+     *
+     * @param secretImagePath The path where the secret image must be saved.
+     * @throws IllegalArgumentException If an arrived shadow is not valid, or not consistent with the added ones.
+     */
+    /*package*/ void run(String secretImagePath) {
+        final RecoverySession session = new RecoverySession(k, scheduler);
+        final Map<String, Long> sizes = new HashMap<>();
+        final Set<String> added = new HashSet<>();
+        Boolean shareFiles = null; // The kind of shadows, known once the first one is added
+        while (true) {
+            final List<String> paths = new ArrayList<>();
+            if (shareFiles == null || shareFiles) {
+                paths.addAll(Shadows.listShareFiles(directory));
+            }
+            if (shareFiles == null || !shareFiles) {
+                paths.addAll(Shadows.listImages(directory));
+            }
+            for (String path : paths) {
+                final long size = new File(path).length();
+                if (added.contains(path) || size == 0 || !Long.valueOf(size).equals(sizes.put(path, size))) {
+                    continue;
+                }
+                final boolean shareFile = path.endsWith(ShareFile.EXTENSION);
+                if (shareFiles != null && shareFiles != shareFile) {
+                    continue;
+                }
+                final ByteBuffer bytes = ByteBuffer.wrap(TaskScheduler.join(scheduler.io(() ->
+                        FileUtils.readFileToByteArray(new File(path)))));
+                final boolean complete = shareFile ? session.addShareFile(bytes) : session.addImage(bytes);
+                added.add(path);
+                shareFiles = shareFile;
+                if (complete) {
+                    final byte[] secret = session.getSecret();
+                    TaskScheduler.join(scheduler.io(() -> {
+                        FileUtils.writeByteArrayToFile(new File(secretImagePath), secret);
+                        return null;
+                    }));
+                    return;
+                }
+            }
+            try {
+                Thread.sleep(pollInterval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for shadows", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
+import ar.edu.itba.cripto.secret_image.bmp.BufferPool;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+import ar.edu.itba.cripto.secret_image.math_utils.NumberTheoreticTransform;
+import ar.edu.itba.cripto.secret_image.share.ShareFile;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Class implementing logic shared by those processes that read shadow images.
+ */
+/*package*/ final class Shadows {
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private Shadows() {
+    }
+
+    /**
+     * Lists the images in the given {@code directory}.
+     *
+     * @param directory The path to the directory.
+     * @return A {@link List} containing the path to each image in the directory.
+     */
+    /*package*/ static List<String> listImages(String directory) {
+        return list(directory, ".bmp");
+    }
+
+    /**
+     * Lists the share files in the given {@code directory}.
+     *
+     * @param directory The path to the directory.
+     * @return A {@link List} containing the path to each share file in the directory.
+     */
+    /*package*/ static List<String> listShareFiles(String directory) {
+        return list(directory, ShareFile.EXTENSION);
+    }
+
+    /**
+     * Lists the files with the given {@code extension} in the given {@code directory}.
+     *
+     * @param directory The path to the directory.
+     * @param extension The extension of the files to be listed.
+     * @return A {@link List} containing the path to each file.
+     */
+    private static List<String> list(String directory, String extension) {
+        //noinspection ConstantConditions
+        return Arrays.stream(Optional.ofNullable(new File(directory).listFiles((dir, name) -> name.endsWith(extension)))
+                .orElse(new File[0]))
+                .map(File::getPath)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Loads the first {@code k} shadows in the given {@code paths}, checking that they are consistent
+     * (i.e same size, same keystream, same evaluation points, same amount of bits hidden per byte
+     * and different shadow numbers).
+     *
+     * @param paths     A {@link List} containing the path to each shadow image.
+     * @param k         The amount of shadows to load.
+     * @param scheduler The {@link TaskScheduler} in which files are read.
+     * @return A {@link List} holding the loaded shadows.
+     */
+    /*package*/ static List<BmpUtils> load(List<String> paths, int k, TaskScheduler scheduler) {
+        // All shadows are requested at once, so slow opens overlap
+        List<CompletableFuture<BmpUtils>> futures = new ArrayList<>();
+        for (int i = 0; i < k; i++) {
+            final String path = paths.get(i);
+            futures.add(scheduler.io(() -> new BmpUtils(path)));
+        }
+
+        try {
+            return checkConsistency(futures, k);
+        } catch (RuntimeException e) {
+            release(futures);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the headers of the first {@code k} shadows in the given {@code paths}
+     * (see {@link BmpUtils#readHeader(String, BufferPool)}), checking that they are consistent
+     * (as done by {@link #load(List, int, TaskScheduler)}).
+     *
+     * @param paths     A {@link List} containing the path to each shadow image.
+     * @param k         The amount of shadows to load.
+     * @param scheduler The {@link TaskScheduler} in which files are read.
+     * @return A {@link List} holding the shadows headers.
+     */
+    /*package*/ static List<BmpUtils> loadHeaders(List<String> paths, int k, TaskScheduler scheduler) {
+        List<CompletableFuture<BmpUtils>> futures = new ArrayList<>();
+        for (int i = 0; i < k; i++) {
+            final String path = paths.get(i);
+            futures.add(scheduler.io(() -> BmpUtils.readHeader(path, BufferPool.shared())));
+        }
+
+        try {
+            return checkConsistency(futures, k);
+        } catch (RuntimeException e) {
+            release(futures);
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for the given shadows to be loaded, checking that they are consistent.
+     *
+     * @param futures The shadows being loaded.
+     * @param k       The amount of shadows being loaded.
+     * @return A {@link List} holding the loaded shadows.
+     */
+    private static List<BmpUtils> checkConsistency(List<CompletableFuture<BmpUtils>> futures, int k) {
+        List<BmpUtils> images = new ArrayList<>();
+        for (int i = 0; i < k; i++) {
+            images.add(TaskScheduler.join(futures.get(i)));
+        }
+        checkConsistency(images);
+        return images;
+    }
+
+    /**
+     * Checks that the given shadows are consistent (i.e same size, same keystream, same evaluation points,
+     * same amount of bits hidden per byte and different shadow numbers).
+     *
+     * @param images The shadows.
+     * @throws IllegalArgumentException If they are not consistent.
+     */
+    /*package*/ static void checkConsistency(List<BmpUtils> images) {
+        final BmpUtils first = images.get(0);
+        final Set<Integer> shadowNumbers = new HashSet<>();
+        for (BmpUtils bmpUtils : images) {
+            shadowNumbers.add(bmpUtils.getShadow());
+            if (first.getImageSize() != bmpUtils.getImageSize()) {
+                throw new IllegalArgumentException("Size of shadows is not consistent");
+            }
+            if (first.getSeed() != bmpUtils.getSeed() ||
+                    first.getKeystreamVersion() != bmpUtils.getKeystreamVersion()) {
+                throw new IllegalArgumentException("Seed of shadows is not consistent");
+            }
+            if (first.usesNttPoints() != bmpUtils.usesNttPoints()) {
+                throw new IllegalArgumentException("Evaluation points of shadows are not consistent");
+            }
+            if (first.getBitsPerByte() != bmpUtils.getBitsPerByte()) {
+                throw new IllegalArgumentException("Bits per byte of shadows is not consistent");
+            }
+        }
+        if (shadowNumbers.size() != images.size()) {
+            throw new IllegalArgumentException("Repeated shadow numbers");
+        }
+    }
+
+    /**
+     * Gets the points at which the polynomials of the given shadows were evaluated.
+     *
+     * @param shadowNumbers The shadow numbers.
+     * @param nttPoints     Whether polynomials were evaluated at the number theoretic transform points
+     *                      (or at the shadow numbers).
+     * @return The evaluation points, in the same order as {@code shadowNumbers}.
+     */
+    /*package*/ static int[] points(int[] shadowNumbers, boolean nttPoints) {
+        return nttPoints ?
+                Arrays.stream(shadowNumbers).map(NumberTheoreticTransform::point).toArray() :
+                shadowNumbers.clone();
+    }
+
+    /**
+     * Gives back the buffers of the given images, once (and if) they are loaded (see {@link BmpUtils#release()}).
+     *
+     * @param futures The images being loaded.
+     */
+    /*package*/ static void release(Collection<CompletableFuture<BmpUtils>> futures) {
+        for (CompletableFuture<BmpUtils> future : futures) {
+            future.thenAccept(BmpUtils::release);
+        }
+    }
+
+    /**
+     * Loads the first {@code k} share files in the given {@code paths}, checking that they are consistent
+     * (i.e same keystream, same evaluation points, same k, same amount of shares and different shadow numbers).
+     *
+     * @param paths     A {@link List} containing the path to each share file.
+     * @param k         The amount of share files to load.
+     * @param scheduler The {@link TaskScheduler} in which files are read.
+     * @return A {@link List} holding the loaded share files.
+     */
+    /*package*/ static List<ShareFile> loadShareFiles(List<String> paths, int k, TaskScheduler scheduler) {
+        List<CompletableFuture<ShareFile>> futures = new ArrayList<>();
+        for (int i = 0; i < k; i++) {
+            final String path = paths.get(i);
+            futures.add(scheduler.io(() -> ShareFile.read(path)));
+        }
+
+        List<ShareFile> shareFiles = new ArrayList<>();
+        for (int i = 0; i < k; i++) {
+            shareFiles.add(TaskScheduler.join(futures.get(i)));
+        }
+        checkShareFiles(shareFiles, k);
+        return shareFiles;
+    }
+
+    /**
+     * Checks that the given share files are consistent (i.e same keystream, same evaluation points,
+     * the given {@code k}, same amount of shares and different shadow numbers).
+     *
+     * @param shareFiles The share files.
+     * @param k          The amount of shadows needed to recover the secret.
+     * @throws IllegalArgumentException If they are not consistent.
+     */
+    /*package*/ static void checkShareFiles(List<ShareFile> shareFiles, int k) {
+        final ShareFile first = shareFiles.get(0);
+        final Set<Integer> shadowNumbers = new HashSet<>();
+        for (ShareFile shareFile : shareFiles) {
+            shadowNumbers.add(shareFile.getShadow());
+            if (shareFile.getK() != k) {
+                throw new IllegalArgumentException("Shares were distributed with k = " + shareFile.getK());
+            }
+            if (shareFile.getShareCount() != first.getShareCount()) {
+                throw new IllegalArgumentException("Size of shadows is not consistent");
+            }
+            if (shareFile.usesNttPoints() != first.usesNttPoints()) {
+                throw new IllegalArgumentException("Evaluation points of shadows are not consistent");
+            }
+            if (shareFile.getSeed() != first.getSeed() ||
+                    shareFile.getKeystreamVersion() != first.getKeystreamVersion()) {
+                throw new IllegalArgumentException("Seed of shadows is not consistent");
+            }
+        }
+        if (shadowNumbers.size() != shareFiles.size()) {
+            throw new IllegalArgumentException("Repeated shadow numbers");
+        }
+    }
+}
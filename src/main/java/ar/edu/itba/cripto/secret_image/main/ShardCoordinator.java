@@ -0,0 +1,346 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
+import ar.edu.itba.cripto.secret_image.bmp.SecretWriter;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recovers a secret image from shadow images splitting the polynomials in shards, which are recovered by worker
+ * processes (see {@link ShardWorker}), so that recovery is not limited by the memory and cores of a single process.
+ * The coordinator starts the workers as local JVMs, which connect back to it over the loopback interface,
+ * gives each of them a shard at a time, and writes the data they send back at its position of the secret image.
+ * If a worker is lost, its shard is given to another one.
+ */
+/*package*/ final class ShardCoordinator {
+
+    /**
+     * The default amount of polynomials in each shard.
+     */
+    /*package*/ static final int DEFAULT_SHARD_SIZE = 1024 * 1024;
+    /**
+     * Status sent by workers before the data of a recovered shard.
+     */
+    /*package*/ static final int RECOVERED = 0;
+    /**
+     * Status sent by workers before the message of the error that made them fail.
+     */
+    /*package*/ static final int FAILED = 1;
+    /**
+     * The time (in milliseconds) workers have to connect once they are started.
+     */
+    private static final int CONNECT_TIMEOUT = 60_000;
+    /**
+     * The time (in seconds) workers have to exit once they are stopped.
+     */
+    private static final int EXIT_TIMEOUT = 10;
+
+    /**
+     * The amount of worker processes.
+     */
+    private final int workers;
+    /**
+     * The amount of polynomials in each shard.
+     */
+    private final int shardSize;
+    /**
+     * The {@link TaskScheduler} running the worker connections.
+     */
+    private final TaskScheduler scheduler;
+
+    /**
+     * Constructor.
+     *
+     * @param workers   The amount of worker processes.
+     * @param shardSize The amount of polynomials in each shard.
+     * @param scheduler The {@link TaskScheduler} running the worker connections.
+     */
+    /*package*/ ShardCoordinator(int workers, int shardSize, TaskScheduler scheduler) {
+        if (workers < 1 || shardSize < 1) {
+            throw new IllegalArgumentException("Workers and shard size must be positive");
+        }
+        this.workers = workers;
+        this.shardSize = shardSize;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Recovers the secret image from the given shadows.
+     *
+     * @param shadows         The {@code k} shadows (only their headers are needed, see {@link BmpUtils#readHeader}),
+     *                        already checked to be consistent.
+     * @param paths           The path to each shadow (in the same order).
+     * @param secretImagePath The path where the secret image must be saved.
+     */
+    /*package*/ void run(List<BmpUtils> shadows, List<String> paths, String secretImagePath) {
+        final int k = shadows.size();
+        final Shards shards = new Shards(shadows.get(0).getShareCount(k), shardSize);
+        final long token = new SecureRandom().nextLong();
+        final List<Process> processes = new ArrayList<>();
+        boolean finished = false;
+        try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress());
+             SecretWriter writer = new SecretWriter(secretImagePath, shadows.get(0), k)) {
+            for (int i = 0; i < workers; i++) {
+                // The token is given through the standard input, as the command line can be read by other users
+                final Process process = new ProcessBuilder(ShardWorker.command(
+                        server.getInetAddress().getHostAddress(), server.getLocalPort()))
+                        .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+                processes.add(process);
+                try (DataOutputStream input = new DataOutputStream(process.getOutputStream())) {
+                    input.writeLong(token);
+                }
+            }
+
+            final List<String> absolutePaths = new ArrayList<>();
+            for (String path : paths) {
+                absolutePaths.add(new File(path).getAbsolutePath());
+            }
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CONNECT_TIMEOUT);
+            final List<CompletableFuture<Void>> connections = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                final Socket socket = accept(server, token, deadline);
+                connections.add(scheduler.io(() -> {
+                    serve(socket, absolutePaths, shards, writer);
+                    return null;
+                }));
+            }
+            TaskScheduler.joinAll(connections);
+            shards.check();
+            finished = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            stop(processes, finished);
+        }
+    }
+
+    /**
+     * Accepts the connection of one of the started workers (i.e one that presents the token), closing any other
+     * connection, so that it does not take the place of a worker.
+     *
+     * @param server   The socket where the coordinator listens.
+     * @param token    The token with which workers identify themselves.
+     * @param deadline The {@link System#nanoTime()} by which the worker must have connected.
+     * @return The socket connected to the worker.
+     * @throws SocketTimeoutException If no worker connects before the deadline.
+     * @throws IOException            If any other IO error occurs while accepting connections.
+     */
+    /*package*/ static Socket accept(ServerSocket server, long token, long deadline) throws IOException {
+        while (true) {
+            final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                throw new SocketTimeoutException("Shard workers did not connect in time");
+            }
+            server.setSoTimeout((int) remaining);
+            final Socket socket = server.accept();
+            try {
+                // The token is read unbuffered, so no byte sent after it is lost
+                socket.setSoTimeout((int) remaining);
+                if (new DataInputStream(socket.getInputStream()).readLong() == token) {
+                    socket.setSoTimeout(0);
+                    return socket;
+                }
+            } catch (IOException e) {
+                // Not one of the started workers either
+            }
+            socket.close();
+        }
+    }
+
+    /**
+     * Gives shards to the worker connected through the given {@code socket} until there are no more of them,
+     * saving the data it sends back.
+     * If the connection fails, the shard being recovered is given back, so another worker recovers it.
+     *
+     * @param socket The socket connected to the worker (which already presented the token).
+     * @param paths  The path to each shadow.
+     * @param shards The {@link Shards} to be recovered.
+     * @param writer The {@link SecretWriter} saving the secret image.
+     */
+    private void serve(Socket socket, List<String> paths, Shards shards, SecretWriter writer) {
+        final int k = paths.size();
+        int[] shard = null;
+        try (Socket connection = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+            connection.setTcpNoDelay(true);
+            out.writeInt(k);
+            for (String path : paths) {
+                out.writeUTF(path);
+            }
+            while ((shard = shards.take()) != null) {
+                out.writeInt(shard[0]);
+                out.writeInt(shard[1]);
+                out.flush();
+                if (in.readInt() != RECOVERED) {
+                    shards.fail(new IllegalStateException("Shard worker failed: " + in.readUTF()));
+                    shard = null;
+                    break;
+                }
+                final byte[] data = new byte[in.readInt()];
+                if (data.length != shard[1] * k) {
+                    throw new IOException("Shard worker sent " + data.length + " bytes instead of " + shard[1] * k);
+                }
+                in.readFully(data);
+                try {
+                    writer.write((long) shard[0] * k, data, 0, data.length);
+                } catch (IOException e) {
+                    shards.fail(e);
+                    shard = null;
+                    break;
+                }
+                shards.done();
+                shard = null;
+            }
+            out.writeInt(0);
+            out.writeInt(0);
+            out.flush();
+        } catch (IOException e) {
+            // The worker was lost
+            if (shard != null) {
+                shards.retry(shard);
+            }
+        }
+    }
+
+    /**
+     * Waits for the given worker processes to exit, killing them if they do not (or if recovery failed).
+     *
+     * @param processes The worker processes.
+     * @param finished  Whether recovery finished (i.e workers were stopped, so they exit by themselves).
+     */
+    private static void stop(List<Process> processes, boolean finished) {
+        for (Process process : processes) {
+            try {
+                if (!finished || !process.waitFor(EXIT_TIMEOUT, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * The shards of a secret image, given to workers as they ask for them.
+     *
+     * @implNote This class is thread-safe.
+     */
+    private static final class Shards {
+
+        /**
+         * The shards not given yet (as pairs of first polynomial and amount of polynomials).
+         */
+        private final Deque<int[]> pending = new ArrayDeque<>();
+        /**
+         * The amount of shards given and not recovered yet.
+         */
+        private int inFlight;
+        /**
+         * The error that made recovery fail ({@code null} if none).
+         */
+        private Exception failure;
+
+        /**
+         * Constructor.
+         *
+         * @param numPolynomes The amount of polynomials.
+         * @param shardSize    The amount of polynomials in each shard.
+         */
+        private Shards(int numPolynomes, int shardSize) {
+            for (int from = 0; from < numPolynomes; from += shardSize) {
+                pending.add(new int[]{from, Math.min(shardSize, numPolynomes - from)});
+            }
+        }
+
+        /**
+         * Takes a shard, waiting while there are none but some are being recovered (as they might be given back).
+         *
+         * @return The shard, or {@code null} if there are no more shards (or recovery failed).
+         */
+        private synchronized int[] take() {
+            while (pending.isEmpty() && inFlight > 0 && failure == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            if (failure != null || pending.isEmpty()) {
+                return null;
+            }
+            inFlight++;
+            return pending.poll();
+        }
+
+        /**
+         * Marks a taken shard as recovered.
+         */
+        private synchronized void done() {
+            inFlight--;
+            notifyAll();
+        }
+
+        /**
+         * Gives back a taken shard, so that another worker recovers it.
+         *
+         * @param shard The shard.
+         */
+        private synchronized void retry(int[] shard) {
+            inFlight--;
+            pending.addFirst(shard);
+            notifyAll();
+        }
+
+        /**
+         * Makes recovery fail.
+         *
+         * @param e The error.
+         */
+        private synchronized void fail(Exception e) {
+            if (failure == null) {
+                failure = e;
+            }
+            notifyAll();
+        }
+
+        /**
+         * Checks that every shard was recovered.
+         *
+         * @throws IllegalStateException If recovery failed, or every worker was lost before it finished.
+         */
+        private synchronized void check() {
+            if (failure instanceof IOException) {
+                throw new UncheckedIOException((IOException) failure);
+            }
+            if (failure != null) {
+                throw (RuntimeException) failure;
+            }
+            if (!pending.isEmpty() || inFlight > 0) {
+                throw new IllegalStateException("Every shard worker was lost before the secret image was recovered");
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
+import ar.edu.itba.cripto.secret_image.bmp.BufferPool;
+import ar.edu.itba.cripto.secret_image.bmp.ShadowReader;
+import ar.edu.itba.cripto.secret_image.main.util.Keystream;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Entry point of the processes recovering shards of a secret image for a {@link ShardCoordinator}.
+ * A worker connects to the coordinator, receives the paths of the {@code k} shadows, and then recovers the shards
+ * it is given (i.e ranges of polynomials), reading their bytes from the shadows, and sending back the secret image
+ * data, until the coordinator stops it.
+ * <p>
+ * Usage: {@code java -cp <classpath> ar.edu.itba.cripto.secret_image.main.ShardWorker <host> <port>},
+ * the token with which the worker identifies itself (8 bytes) being written to its standard input.
+ */
+public final class ShardWorker {
+
+    /**
+     * The {@link TaskScheduler} running file I/O and arithmetic.
+     */
+    private final TaskScheduler scheduler;
+    /**
+     * The {@code k} shadows (only their headers).
+     */
+    private final List<BmpUtils> shadows;
+    /**
+     * The {@link ShadowReader} of each shadow.
+     */
+    private final List<ShadowReader> readers;
+    /**
+     * The {@link Interpolator} recovering the data.
+     */
+    private final Interpolator interpolator;
+    /**
+     * The keystream masking the secret image data.
+     */
+    private final Keystream keystream;
+    /**
+     * The amount of shadows.
+     */
+    private final int k;
+
+    /**
+     * Constructor.
+     *
+     * @param shadows   The {@code k} shadows (only their headers), already checked to be consistent.
+     * @param scheduler The {@link TaskScheduler} running file I/O and arithmetic.
+     * @throws IOException If any IO error occurs while opening the shadows.
+     */
+    private ShardWorker(List<BmpUtils> shadows, TaskScheduler scheduler) throws IOException {
+        final BmpUtils reference = shadows.get(0);
+        this.scheduler = scheduler;
+        this.shadows = shadows;
+        this.k = shadows.size();
+        this.keystream = Keystream.create(reference.getKeystreamVersion(), reference.getSeed(),
+                (long) k * reference.getShareCount(k));
+        this.interpolator = new Interpolator(shadows.stream().mapToInt(BmpUtils::getShadow).toArray(),
+                reference.usesNttPoints());
+        this.readers = new ArrayList<>();
+        try {
+            for (BmpUtils shadow : shadows) {
+                readers.add(new ShadowReader(shadow));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Recovers the secret image data of a shard.
+     *
+     * @param from  The index of the first polynomial.
+     * @param count The amount of polynomials.
+     * @return The secret image data ({@code k} bytes per polynomial).
+     */
+    private byte[] recover(int from, int count) {
+        final BufferPool pool = BufferPool.shared();
+        final byte[][] columns = new byte[k][count];
+        final List<CompletableFuture<Void>> extracted = new ArrayList<>();
+        for (int i = 0; i < k; i++) {
+            final ShadowReader reader = readers.get(i);
+            final byte[] column = columns[i];
+            extracted.add(scheduler.io(() -> reader.read(from, count, pool)).thenAccept(bytes -> {
+                try {
+                    reader.extract(bytes, column, 0, count);
+                } finally {
+                    pool.release(bytes);
+                }
+            }));
+        }
+        TaskScheduler.joinAll(extracted);
+
+        final byte[] data = new byte[count * k];
+        scheduler.forEachChunk(count, (start, end) -> interpolator.recover(columns, start, end - start, keystream,
+                ((long) from + start) * k, data, start * k));
+        return data;
+    }
+
+    /**
+     * Closes the shadows, giving their header buffers back to the pool.
+     */
+    private void close() {
+        shadows.forEach(BmpUtils::release);
+        for (ShadowReader reader : readers) {
+            try {
+                reader.close();
+            } catch (IOException ignored) {
+                // Nothing was written through readers
+            }
+        }
+    }
+
+    /**
+     * Builds the command that starts a worker process in this host, using the running JVM and class path.
+     *
+     * The token is not part of the command (which can be read by other users of the host),
+     * but written to the process standard input.
+     *
+     * @param host The address where the coordinator listens.
+     * @param port The port where the coordinator listens.
+     * @return The command.
+     */
+    /*package*/ static List<String> command(String host, int port) {
+        final String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+        return Arrays.asList(java, "-cp", System.getProperty("java.class.path"), ShardWorker.class.getName(),
+                host, Integer.toString(port));
+    }
+
+    /**
+     * Connects to the coordinator, and recovers the shards it gives until it stops the worker.
+     *
+     * @param host  The address where the coordinator listens.
+     * @param port  The port where the coordinator listens.
+     * @param token The token with which the worker identifies itself.
+     * @throws IOException If the connection with the coordinator fails.
+     */
+    /*package*/ static void work(String host, int port, long token) throws IOException {
+        try (Socket socket = new Socket(host, port);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+             TaskScheduler scheduler = new TaskScheduler()) {
+            socket.setTcpNoDelay(true);
+            out.writeLong(token);
+            out.flush();
+
+            final int k = in.readInt();
+            final List<String> paths = new ArrayList<>();
+            for (int i = 0; i < k; i++) {
+                paths.add(in.readUTF());
+            }
+            ShardWorker worker = null;
+            String error = null;
+            try {
+                worker = new ShardWorker(Shadows.loadHeaders(paths, k, scheduler), scheduler);
+            } catch (IOException | RuntimeException e) {
+                error = String.valueOf(e.getMessage());
+            }
+            try {
+                while (true) {
+                    final int from = in.readInt();
+                    final int count = in.readInt();
+                    if (count == 0) {
+                        return;
+                    }
+                    byte[] data = null;
+                    if (error == null) {
+                        try {
+                            data = worker.recover(from, count);
+                        } catch (RuntimeException e) {
+                            error = String.valueOf(e.getMessage());
+                        }
+                    }
+                    if (error != null) {
+                        out.writeInt(ShardCoordinator.FAILED);
+                        out.writeUTF(error);
+                    } else {
+                        out.writeInt(ShardCoordinator.RECOVERED);
+                        out.writeInt(data.length);
+                        out.write(data);
+                    }
+                    out.flush();
+                }
+            } finally {
+                if (worker != null) {
+                    worker.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Entry point.
+     *
+     * @param args The coordinator host and port (the worker token is read from the standard input).
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: " + ShardWorker.class.getName() + " <host> <port>");
+            System.exit(2);
+        }
+        try {
+            work(args[0], Integer.parseInt(args[1]), new DataInputStream(System.in).readLong());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Shard worker failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
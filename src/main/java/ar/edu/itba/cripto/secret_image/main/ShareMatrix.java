@@ -0,0 +1,113 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+import ar.edu.itba.cripto.secret_image.share.ShareFile;
+
+import java.util.List;
+
+/**
+ * Shares of a set of shadows, stored column by column: one {@code byte} array per shadow
+ * (holding the share of every polynomial) plus the shadow numbers, so no object is created per share.
+ */
+/*package*/ final class ShareMatrix {
+
+    /**
+     * The shares, one array per shadow.
+     */
+    private final byte[][] shares;
+    /**
+     * The shadow numbers (in the same order as {@code shares}).
+     */
+    private final int[] shadowNumbers;
+
+    /**
+     * Constructor.
+     *
+     * @param shares        The shares, one array per shadow (all of them with the same length).
+     * @param shadowNumbers The shadow numbers (in the same order as {@code shares}).
+     */
+    /*package*/ ShareMatrix(byte[][] shares, int[] shadowNumbers) {
+        if (shares.length == 0 || shares.length != shadowNumbers.length) {
+            throw new IllegalArgumentException("There must be one shadow number per shadow");
+        }
+        for (byte[] column : shares) {
+            if (column.length != shares[0].length) {
+                throw new IllegalArgumentException("Shadows must hold the same amount of shares");
+            }
+        }
+        this.shares = shares;
+        this.shadowNumbers = shadowNumbers;
+    }
+
+    /**
+     * Gets the bytes hidden in each of the given {@code images}.
+     *
+     * @param images       The shadows holding the hidden bytes.
+     * @param numPolynomes The amount of bytes hidden in each shadow.
+     * @param scheduler    The {@link TaskScheduler} in which bytes are extracted.
+     * @return The {@link ShareMatrix} (with shadows in the same order as {@code images}).
+     */
+    /*package*/ static ShareMatrix extract(List<BmpUtils> images, int numPolynomes, TaskScheduler scheduler) {
+        final byte[][] shares = new byte[images.size()][];
+        scheduler.forEachChunk(images.size(), (from, to) -> {
+            for (int i = from; i < to; i++) {
+                shares[i] = images.get(i).extractHidden(numPolynomes);
+            }
+        });
+        return new ShareMatrix(shares, images.stream().mapToInt(BmpUtils::getShadow).toArray());
+    }
+
+    /**
+     * Gets the shares held by the given {@code shareFiles}.
+     *
+     * @param shareFiles The share files.
+     * @return The {@link ShareMatrix} (with shadows in the same order as {@code shareFiles}).
+     */
+    /*package*/ static ShareMatrix of(List<ShareFile> shareFiles) {
+        final byte[][] shares = new byte[shareFiles.size()][];
+        for (int i = 0; i < shares.length; i++) {
+            shares[i] = shareFiles.get(i).getShares();
+        }
+        return new ShareMatrix(shares, shareFiles.stream().mapToInt(ShareFile::getShadow).toArray());
+    }
+
+    /**
+     * @return The amount of shadows.
+     */
+    /*package*/ int getShadowCount() {
+        return shares.length;
+    }
+
+    /**
+     * @return The amount of shares held by each shadow (i.e the amount of polynomials).
+     */
+    /*package*/ int getPolynomeCount() {
+        return shares[0].length;
+    }
+
+    /**
+     * @return A copy of the shadow numbers.
+     */
+    /*package*/ int[] getShadowNumbers() {
+        return shadowNumbers.clone();
+    }
+
+    /**
+     * @return The shares, one array per shadow (not copied, so they must not be modified).
+     */
+    /*package*/ byte[][] getColumns() {
+        return shares;
+    }
+
+    /**
+     * Returns the share of the given polynomial held by the given shadow.
+     *
+     * @param shadow   The shadow index (not its number).
+     * @param polynome The polynomial index.
+     * @return The share.
+     */
+    /*package*/ int getShare(int shadow, int polynome) {
+        return Byte.toUnsignedInt(shares[shadow][polynome]);
+    }
+}
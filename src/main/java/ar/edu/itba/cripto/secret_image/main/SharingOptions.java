@@ -0,0 +1,163 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.bmp.CoverCache;
+import ar.edu.itba.cripto.secret_image.main.util.Keystream;
+
+/**
+ * Class holding the optional settings of a distribution.
+ */
+public class SharingOptions {
+
+    /**
+     * The amount of spare shadow numbers (i.e after n) in which no polynomial evaluates to 256,
+     * so that additional shadows can be issued later.
+     */
+    private int spare = 0;
+    /**
+     * The format in which shadows are stored.
+     */
+    private ShadowFormat format = ShadowFormat.BMP;
+    /**
+     * The amount of least significant bits of each cover byte in which shares are hidden.
+     */
+    private int bitsPerByte = 1;
+    /**
+     * The version of the keystream used to mask the secret image data (see {@link Keystream}).
+     */
+    private int keystreamVersion = Keystream.LEGACY;
+    /**
+     * Indicates whether polynomials are evaluated at the number theoretic transform points.
+     */
+    private boolean nttPoints = false;
+    /**
+     * The {@link CoverCache} from which covers are loaded ({@code null} if covers are always read from disk).
+     */
+    private CoverCache coverCache = null;
+
+    /**
+     * @return The amount of spare shadow numbers.
+     */
+    public int getSpare() {
+        return spare;
+    }
+
+    /**
+     * Sets the amount of spare shadow numbers reserved for issuing additional shadows later.
+     *
+     * @param spare The amount of spare shadow numbers.
+     * @return {@code this} (for method chaining).
+     */
+    public SharingOptions setSpare(int spare) {
+        if (spare < 0) {
+            throw new IllegalArgumentException("The amount of spare shadows must not be negative");
+        }
+        this.spare = spare;
+        return this;
+    }
+
+    /**
+     * @return The format in which shadows are stored.
+     */
+    public ShadowFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Sets the format in which shadows are stored.
+     *
+     * @param format The format in which shadows are stored.
+     * @return {@code this} (for method chaining).
+     */
+    public SharingOptions setFormat(ShadowFormat format) {
+        if (format == null) {
+            throw new IllegalArgumentException("Null format");
+        }
+        this.format = format;
+        return this;
+    }
+
+    /**
+     * @return The amount of least significant bits of each cover byte in which shares are hidden.
+     */
+    public int getBitsPerByte() {
+        return bitsPerByte;
+    }
+
+    /**
+     * Sets the amount of least significant bits of each cover byte in which shares are hidden.
+     * Using more bits makes covers (and the bytes read and written per shadow) 2 or 4 times smaller.
+     *
+     * @param bitsPerByte The amount of bits (1, 2 or 4).
+     * @return {@code this} (for method chaining).
+     */
+    public SharingOptions setBitsPerByte(int bitsPerByte) {
+        if (bitsPerByte != 1 && bitsPerByte != 2 && bitsPerByte != 4) {
+            throw new IllegalArgumentException("Bits per byte must be 1, 2 or 4");
+        }
+        this.bitsPerByte = bitsPerByte;
+        return this;
+    }
+
+    /**
+     * @return The version of the keystream used to mask the secret image data.
+     */
+    public int getKeystreamVersion() {
+        return keystreamVersion;
+    }
+
+    /**
+     * Sets the version of the keystream used to mask the secret image data.
+     * The counter-based keystream has a 64 bits seed, and any range of it can be produced independently.
+     *
+     * @param keystreamVersion The keystream version ({@link Keystream#LEGACY} or {@link Keystream#COUNTER}).
+     * @return {@code this} (for method chaining).
+     */
+    public SharingOptions setKeystreamVersion(int keystreamVersion) {
+        if (keystreamVersion != Keystream.LEGACY && keystreamVersion != Keystream.COUNTER) {
+            throw new IllegalArgumentException("Unsupported keystream version: " + keystreamVersion);
+        }
+        this.keystreamVersion = keystreamVersion;
+        return this;
+    }
+
+    /**
+     * @return {@code true} if polynomials are evaluated at the number theoretic transform points,
+     * or {@code false} if they are evaluated at the shadow numbers.
+     */
+    public boolean usesNttPoints() {
+        return nttPoints;
+    }
+
+    /**
+     * Sets whether polynomials are evaluated at the number theoretic transform points
+     * (see {@link ar.edu.itba.cripto.secret_image.math_utils.NumberTheoreticTransform#point(int)})
+     * instead of at the shadow numbers, so that sharing runs as a forward transform,
+     * and recovery from an aligned block of shadows as an inverse transform.
+     *
+     * @param nttPoints {@code true} to evaluate polynomials at the number theoretic transform points.
+     * @return {@code this} (for method chaining).
+     */
+    public SharingOptions setNttPoints(boolean nttPoints) {
+        this.nttPoints = nttPoints;
+        return this;
+    }
+
+    /**
+     * @return The {@link CoverCache} from which covers are loaded, or {@code null} if they are read from disk.
+     */
+    public CoverCache getCoverCache() {
+        return coverCache;
+    }
+
+    /**
+     * Sets the {@link CoverCache} from which covers are loaded, so that distributing many secrets
+     * onto the same covers reads each of them from disk only once.
+     *
+     * @param coverCache The {@link CoverCache}, or {@code null} to always read covers from disk.
+     * @return {@code this} (for method chaining).
+     */
+    public SharingOptions setCoverCache(CoverCache coverCache) {
+        this.coverCache = coverCache;
+        return this;
+    }
+}
@@ -0,0 +1,178 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.bmp.MappedImage;
+import ar.edu.itba.cripto.secret_image.bmp.SegmentedBuffer;
+import ar.edu.itba.cripto.secret_image.main.util.Keystream;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Distributes a secret image too large to be held in a single buffer (i.e larger than 2 GB),
+ * mapping it and the covers (see {@link MappedImage}) instead of reading them.
+ * Polynomials are evaluated by chunks, and the shares of each chunk are hidden in the covers in place,
+ * so only a chunk of shares per shadow is held in memory. Positions are {@code long} all the way
+ * (i.e the secret byte of coefficient {@code j} of polynomial {@code p} is {@code p * k + j}, past 2^31).
+ * <p>
+ * Covers are changed in place (as done by {@link Encryption}, which saves shadows over the covers),
+ * and their headers are only written once every share was hidden.
+ */
+/*package*/ final class SharingPipeline {
+
+    /**
+     * The size of the largest secret image file that is shared in memory
+     * (larger ones are shared by this pipeline, see {@link Encryption#encrypt()}).
+     */
+    /*package*/ static final long IN_MEMORY_LIMIT = 1L << 30;
+    /**
+     * The default amount of polynomials in each chunk.
+     */
+    /*package*/ static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * The {@link SecretSharing} computing the shares.
+     */
+    private final SecretSharing sharing;
+    /**
+     * The {@link TaskScheduler} running the arithmetic.
+     */
+    private final TaskScheduler scheduler;
+    /**
+     * The amount of polynomials in each chunk.
+     */
+    private final int chunkSize;
+    /**
+     * The size of each segment of the mapped images (see {@link SegmentedBuffer}).
+     */
+    private final int segmentSize;
+
+    /**
+     * Constructor.
+     *
+     * @param sharing     The {@link SecretSharing} computing the shares.
+     * @param scheduler   The {@link TaskScheduler} running the arithmetic.
+     * @param chunkSize   The amount of polynomials in each chunk.
+     * @param segmentSize The size of each segment of the mapped images (a power of two).
+     */
+    /*package*/ SharingPipeline(SecretSharing sharing, TaskScheduler scheduler, int chunkSize, int segmentSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.sharing = sharing;
+        this.scheduler = scheduler;
+        this.chunkSize = chunkSize;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Distributes the secret image in the given {@code secretImagePath}, hiding a shadow in each of the given covers.
+     *
+     * @param secretImagePath The path to the secret image.
+     * @param coverPaths      The paths to the covers (one per shadow, so {@code n} is the amount of covers),
+     *                        the shadow number {@code i} being hidden in position {@code i - 1}.
+     * @throws IllegalStateException If the secret or the covers are not of the correct size.
+     */
+    /*package*/ void run(String secretImagePath, List<String> coverPaths) {
+        sharing.checkAmount(coverPaths.size());
+        final List<MappedImage> covers = new ArrayList<>();
+        try (MappedImage secret = MappedImage.open(secretImagePath, false, segmentSize)) {
+            try {
+                for (String path : coverPaths) {
+                    final MappedImage cover = MappedImage.open(path, true, segmentSize);
+                    covers.add(cover);
+                    sharing.checkCover(cover.getMetadata(), secret.getMetadata());
+                }
+                share(secret, covers);
+            } finally {
+                close(covers);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Evaluates the polynomials of the given secret image by chunks, hiding the shares of each chunk in the covers,
+     * and records the sharing settings in the covers headers.
+     *
+     * @param secret The mapped secret image.
+     * @param covers The mapped covers (the shadow number {@code i} in position {@code i - 1}).
+     * @throws IOException If any IO error occurs while writing the headers.
+     */
+    private void share(MappedImage secret, List<MappedImage> covers) throws IOException {
+        final int k = sharing.getK();
+        final int n = covers.size();
+        final long imageSize = secret.getData().size();
+        if (imageSize % k != 0) {
+            throw new IllegalStateException("Image to encrypt need to be of a size divisible by k");
+        }
+        final long numPolynomes = imageSize / k;
+        final long seed = sharing.newSeed();
+        final Keystream keystream = sharing.sequentialKeystream(seed, imageSize);
+        final int bitsPerByte = sharing.getBitsPerByte();
+        final int valuesLength = sharing.valuesLength(n);
+
+        // Evaluations are written shadow by shadow, as done in memory, but only for the polynomials of a chunk
+        final byte[][] shares = new byte[n][(int) Math.min(chunkSize, numPolynomes)];
+        final int[] masks = new int[(int) Math.min(chunkSize, numPolynomes) * k];
+        for (long first = 0; first < numPolynomes; first += chunkSize) {
+            final long start = first;
+            final int count = (int) Math.min(chunkSize, numPolynomes - first);
+            // The mask bytes of the chunk are produced in order before it is evaluated (i.e zeros are masked),
+            // so the legacy keystream is never held whole
+            Arrays.fill(masks, 0);
+            keystream.mask(start * k, masks, 0, count * k);
+            scheduler.forEachChunk(count, (from, to) -> {
+                final int[] coefficients = new int[k];
+                final int[] values = new int[valuesLength];
+                for (int i = from; i < to; i++) {
+                    final long polynomial = start + i;
+                    secret.readBlock(polynomial, coefficients);
+                    for (int j = 0; j < k; j++) {
+                        coefficients[j] ^= masks[i * k + j];
+                    }
+                    sharing.evaluate(coefficients, n, values);
+                    for (int j = 0; j < n; j++) {
+                        shares[j][i] = (byte) values[j];
+                    }
+                }
+            });
+            scheduler.forEachChunk(n, (from, to) -> {
+                for (int j = from; j < to; j++) {
+                    covers.get(j).insertHidden(start, shares[j], 0, count, bitsPerByte);
+                }
+            });
+        }
+
+        for (int j = 0; j < n; j++) {
+            sharing.editHeader(covers.get(j).editHeader(), seed, j + 1);
+            covers.get(j).saveHeader();
+        }
+    }
+
+    /**
+     * Closes the given images, even if any of them fails to be closed.
+     *
+     * @param images The images to be closed.
+     * @throws IOException The first IO error that occurred while closing them.
+     */
+    private static void close(List<MappedImage> images) throws IOException {
+        IOException error = null;
+        for (MappedImage image : images) {
+            try {
+                image.close();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
+import ar.edu.itba.cripto.secret_image.main.util.ChunkProcessor;
+import ar.edu.itba.cripto.secret_image.main.util.Keystream;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+import ar.edu.itba.cripto.secret_image.share.ShareChunk;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stage distributing a secret image received by chunks (e.g read from the network) in {@code n} shadows stored in
+ * the compact share format, publishing the shares of each received chunk as soon as they are calculated.
+ * Each received chunk is published as one {@link ShareChunk} per shadow (the first ones holding the share file
+ * headers), so the secret image is never held as a whole.
+ * <p>
+ * Instances are created by {@link SecretSharing#sharingProcessor(int)}, and distribute a single secret image.
+ */
+public final class SharingProcessor extends ChunkProcessor<ByteBuffer, ShareChunk> {
+
+    /**
+     * The {@link SecretSharing} whose settings are used.
+     */
+    private final SecretSharing sharing;
+    /**
+     * The minimum amount of shadows needed to recover the secret image.
+     */
+    private final int k;
+    /**
+     * The amount of shadows to be created.
+     */
+    private final int n;
+    /**
+     * The {@link TaskScheduler} running the arithmetic.
+     */
+    private final TaskScheduler scheduler;
+    /**
+     * The bytes of the secret image header received so far ({@code null} once the header was processed).
+     */
+    private byte[] header = new byte[0];
+    /**
+     * The amount of polynomials (known once the header was processed).
+     */
+    private int numPolynomes;
+    /**
+     * The keystream masking the secret image data (known once the header was processed).
+     */
+    private Keystream keystream;
+    /**
+     * The bytes of the polynomial whose coefficients were not all received yet (up to {@code k - 1} bytes).
+     */
+    private final byte[] carry;
+    /**
+     * The amount of bytes in {@link #carry}.
+     */
+    private int carried;
+    /**
+     * The amount of polynomials already evaluated.
+     */
+    private int evaluated;
+    /**
+     * The position (in each share file) of the next published chunk.
+     */
+    private long position;
+
+    /**
+     * Constructor.
+     *
+     * @param sharing   The {@link SecretSharing} whose settings are used.
+     * @param k         The minimum amount of shadows needed to recover the secret image.
+     * @param n         The amount of shadows to be created.
+     * @param scheduler The {@link TaskScheduler} running the arithmetic.
+     */
+    /*package*/ SharingProcessor(SecretSharing sharing, int k, int n, TaskScheduler scheduler) {
+        sharing.checkAmount(n);
+        this.sharing = sharing;
+        this.k = k;
+        this.n = n;
+        this.scheduler = scheduler;
+        this.carry = new byte[k];
+    }
+
+    @Override
+    protected void process(ByteBuffer chunk, List<ShareChunk> output) {
+        final ByteBuffer bytes = chunk.duplicate();
+        if (header != null && !readHeader(bytes, output)) {
+            return;
+        }
+
+        // Bytes after the last polynomial (if any) are ignored
+        final int available = Math.min((carried + bytes.remaining()) / k, numPolynomes - evaluated);
+        final byte[][] shares = new byte[n][available];
+        if (available > 0) {
+            final int first = evaluated;
+            final byte[] data = new byte[available * k];
+            System.arraycopy(carry, 0, data, 0, carried);
+            bytes.get(data, carried, data.length - carried);
+            carried = 0;
+            scheduler.forEachChunk(available, (from, to) -> {
+                final int[] coefficients = new int[k];
+                final int[] values = new int[sharing.valuesLength(n)];
+                for (int i = from; i < to; i++) {
+                    for (int j = 0; j < k; j++) {
+                        coefficients[j] = Byte.toUnsignedInt(data[i * k + j]);
+                    }
+                    keystream.mask((long) (first + i) * k, coefficients, 0, k);
+                    sharing.evaluate(coefficients, n, values);
+                    for (int j = 0; j < n; j++) {
+                        shares[j][i] = (byte) values[j];
+                    }
+                }
+            });
+            evaluated += available;
+        }
+        if (evaluated < numPolynomes) {
+            final int remaining = bytes.remaining();
+            bytes.get(carry, carried, remaining);
+            carried += remaining;
+        }
+        publish(shares, output);
+    }
+
+    @Override
+    protected void complete(List<ShareChunk> output) {
+        if (header != null || evaluated < numPolynomes) {
+            throw new IllegalStateException("The secret image ended before all its data was received");
+        }
+    }
+
+    /**
+     * Appends the given {@code bytes} to the secret image header, processing it once it is complete
+     * (i.e creating the keystream and publishing the share file headers).
+     *
+     * @param bytes  The received bytes (from which those of the header are consumed).
+     * @param output The list to which the share file headers are added.
+     * @return {@code true} if the header was processed, or {@code false} if more bytes are needed.
+     */
+    private boolean readHeader(ByteBuffer bytes, List<ShareChunk> output) {
+        final int received = header.length;
+        header = Arrays.copyOf(header, received + bytes.remaining());
+        bytes.duplicate().get(header, received, bytes.remaining());
+        final int length = BmpUtils.headerLength(ByteBuffer.wrap(header));
+        if (length < 0 || header.length < length) {
+            bytes.position(bytes.limit());
+            return false;
+        }
+        bytes.position(bytes.position() + length - received);
+
+        final BmpUtils secret = BmpUtils.wrapHeader(ByteBuffer.wrap(header));
+        final long imageSize = secret.getImageSize();
+        if (imageSize < 0 || imageSize % k != 0) {
+            throw new IllegalStateException("Image to encrypt need to be of a size divisible by k");
+        }
+        numPolynomes = (int) (imageSize / k);
+        final long seed = sharing.newSeed();
+        keystream = sharing.keystream(seed, imageSize);
+        for (int j = 0; j < n; j++) {
+            final byte[] shareFileHeader = sharing.shareFileHeader(secret, seed, j + 1, numPolynomes);
+            output.add(new ShareChunk(j + 1, 0, shareFileHeader));
+            position = shareFileHeader.length;
+        }
+        header = null;
+        return true;
+    }
+
+    /**
+     * Publishes the given shares (if any).
+     *
+     * @param shares The shares, one array per shadow.
+     * @param output The list to which chunks are added.
+     */
+    private void publish(byte[][] shares, List<ShareChunk> output) {
+        if (shares[0].length == 0) {
+            return;
+        }
+        for (int j = 0; j < n; j++) {
+            output.add(new ShareChunk(j + 1, position, shares[j]));
+        }
+        position += shares[0].length;
+    }
+}
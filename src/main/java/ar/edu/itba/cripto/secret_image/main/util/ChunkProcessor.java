@@ -0,0 +1,287 @@
+package ar.edu.itba.cripto.secret_image.main.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Base {@link Flows.Processor} turning each received chunk into any amount of published ones, with a single
+ * subscriber. Chunks are requested one at a time from the upstream publisher, and only once every chunk produced
+ * from the previous one was requested by the subscriber, so no more than one received chunk is buffered
+ * (i.e a slow subscriber slows down the upstream publisher).
+ * <p>
+ * Subclasses implement the transformation, which is always called by the thread delivering the received chunk
+ * (never concurrently), and throw a {@link RuntimeException} to make the processor fail
+ * (the upstream subscription is then cancelled).
+ *
+ * @param <T> The type of the received chunks.
+ * @param <R> The type of the published chunks.
+ * @implNote This class is thread-safe.
+ */
+public abstract class ChunkProcessor<T, R> implements Flows.Processor<T, R> {
+
+    /**
+     * The published chunks not yet requested by the subscriber.
+     */
+    private final Deque<R> pending = new ArrayDeque<>();
+    /**
+     * The upstream subscription ({@code null} until subscribed).
+     */
+    private Flows.Subscription upstream;
+    /**
+     * The subscriber ({@code null} until subscribed).
+     */
+    private Flows.Subscriber<? super R> downstream;
+    /**
+     * The amount of chunks requested by the subscriber and not yet published.
+     */
+    private long demand;
+    /**
+     * Indicates whether a chunk was requested from upstream, and not received yet.
+     */
+    private boolean requested;
+    /**
+     * Indicates whether the upstream publisher completed (or failed).
+     */
+    private boolean upstreamDone;
+    /**
+     * The error with which the subscriber must be notified ({@code null} if none).
+     */
+    private Throwable error;
+    /**
+     * Indicates whether the subscriber was notified of the completion (or error), or cancelled.
+     */
+    private boolean terminated;
+    /**
+     * Indicates whether a thread is delivering signals to the subscriber.
+     */
+    private boolean draining;
+    /**
+     * Indicates whether the state changed while a thread was delivering signals (so it must check it again).
+     */
+    private boolean missed;
+
+    /**
+     * Transforms a received chunk.
+     *
+     * @param chunk  The received chunk.
+     * @param output The list to which the published chunks are added (in order).
+     */
+    protected abstract void process(T chunk, List<R> output);
+
+    /**
+     * Method called once every chunk was received, so that any remaining chunk is published.
+     * Does nothing by default.
+     *
+     * @param output The list to which the published chunks are added (in order).
+     */
+    protected void complete(List<R> output) {
+    }
+
+    @Override
+    public void subscribe(Flows.Subscriber<? super R> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Null subscriber");
+        }
+        synchronized (this) {
+            if (downstream == null) {
+                downstream = subscriber;
+                subscriber = null;
+            }
+        }
+        if (subscriber != null) {
+            // Only one subscriber is supported, as chunks are not replayed
+            subscriber.onSubscribe(new Flows.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("This processor already has a subscriber"));
+            return;
+        }
+        downstream.onSubscribe(new DownstreamSubscription());
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flows.Subscription subscription) {
+        synchronized (this) {
+            if (upstream == null && !terminated) {
+                upstream = subscription;
+                subscription = null;
+            }
+        }
+        if (subscription != null) {
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(T item) {
+        final List<R> output = new ArrayList<>();
+        try {
+            process(item, output);
+        } catch (RuntimeException e) {
+            fail(e);
+            return;
+        }
+        synchronized (this) {
+            requested = false;
+            if (!terminated) {
+                pending.addAll(output);
+            }
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        synchronized (this) {
+            if (error == null) {
+                error = throwable;
+            }
+            upstreamDone = true;
+        }
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        final List<R> output = new ArrayList<>();
+        try {
+            complete(output);
+        } catch (RuntimeException e) {
+            fail(e);
+            return;
+        }
+        synchronized (this) {
+            if (!terminated) {
+                pending.addAll(output);
+            }
+            upstreamDone = true;
+        }
+        drain();
+    }
+
+    /**
+     * Makes this processor fail with the given {@code error}, cancelling the upstream subscription.
+     *
+     * @param e The error.
+     */
+    private void fail(RuntimeException e) {
+        final Flows.Subscription subscription;
+        synchronized (this) {
+            subscription = upstream;
+            if (error == null) {
+                error = e;
+            }
+            upstreamDone = true;
+        }
+        if (subscription != null) {
+            subscription.cancel();
+        }
+        drain();
+    }
+
+    /**
+     * Delivers every signal the subscriber can receive, requesting a new chunk from upstream if every published
+     * one was delivered and the subscriber still has demand.
+     * Only one thread delivers signals at a time (others just flag that the state changed), so signals are never
+     * delivered concurrently nor reentrantly.
+     */
+    private void drain() {
+        synchronized (this) {
+            if (draining) {
+                missed = true;
+                return;
+            }
+            draining = true;
+        }
+        while (true) {
+            final Flows.Subscriber<? super R> subscriber;
+            R chunk = null;
+            Throwable failure = null;
+            boolean completed = false;
+            Flows.Subscription toRequest = null;
+            synchronized (this) {
+                subscriber = downstream;
+                if (subscriber == null || terminated) {
+                    draining = false;
+                    return;
+                }
+                if (error != null) {
+                    failure = error;
+                    terminated = true;
+                    pending.clear();
+                } else if (!pending.isEmpty() && demand > 0) {
+                    chunk = pending.poll();
+                    demand--;
+                } else if (pending.isEmpty() && upstreamDone) {
+                    completed = true;
+                    terminated = true;
+                } else if (pending.isEmpty() && demand > 0 && upstream != null && !requested) {
+                    requested = true;
+                    toRequest = upstream;
+                } else if (missed) {
+                    missed = false;
+                    continue;
+                } else {
+                    draining = false;
+                    return;
+                }
+            }
+            if (chunk != null) {
+                subscriber.onNext(chunk);
+            } else if (failure != null) {
+                subscriber.onError(failure);
+            } else if (completed) {
+                subscriber.onComplete();
+            } else {
+                toRequest.request(1);
+            }
+        }
+    }
+
+    /**
+     * The subscription given to the subscriber.
+     */
+    private final class DownstreamSubscription implements Flows.Subscription {
+
+        @Override
+        public void request(long n) {
+            synchronized (ChunkProcessor.this) {
+                if (n <= 0) {
+                    if (error == null) {
+                        error = new IllegalArgumentException("Non positive request: " + n);
+                    }
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            final Flows.Subscription subscription;
+            synchronized (ChunkProcessor.this) {
+                if (terminated) {
+                    return;
+                }
+                terminated = true;
+                pending.clear();
+                subscription = upstream;
+            }
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ar.edu.itba.cripto.secret_image.main.util;
+
+/**
+ * A counter-based {@link Keystream}: each block of 8 bytes is the SplitMix64 output for the block index,
+ * so any byte can be produced in constant time, without replaying the previous ones.
+ */
+/*package*/ final class CounterKeystream implements Keystream {
+
+    /**
+     * The SplitMix64 increment (i.e the odd number closest to 2<sup>64</sup> divided by the golden ratio).
+     */
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * The seed.
+     */
+    private final long seed;
+
+    /**
+     * Constructor.
+     *
+     * @param seed The seed.
+     */
+    /*package*/ CounterKeystream(long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public int get(long index) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Negative index: " + index);
+        }
+        return (int) (block(index) >>> ((index & 0x7) << 3)) & 0xFF;
+    }
+
+    @Override
+    public void mask(long from, int[] values, int offset, int length) {
+        if (from < 0) {
+            throw new IndexOutOfBoundsException("Negative index: " + from);
+        }
+        // Each block is mixed once, and its bytes are masked from the lowest one onwards
+        int i = offset;
+        final int end = offset + length;
+        long index = from;
+        while (i < end) {
+            final int skipped = (int) (index & 0x7);
+            long block = block(index) >>> (skipped << 3);
+            for (final int blockEnd = Math.min(end, i + 8 - skipped); i < blockEnd; i++, index++) {
+                values[i] ^= (int) block & 0xFF;
+                block >>>= 8;
+            }
+        }
+    }
+
+    @Override
+    public int getVersion() {
+        return COUNTER;
+    }
+
+    /**
+     * Gets the block holding the byte at the given {@code index}.
+     *
+     * @param index The index of the byte.
+     * @return The block (i.e the SplitMix64 output for the block index).
+     */
+    private long block(long index) {
+        return mix(seed + ((index >>> 3) + 1) * GAMMA);
+    }
+
+    /**
+     * The SplitMix64 finalizer.
+     *
+     * @param z The value to be mixed.
+     * @return The mixed value.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,94 @@
+package ar.edu.itba.cripto.secret_image.main.util;
+
+/**
+ * Interfaces of reactive streams stages (publishers and subscribers with demand-based backpressure).
+ * They mirror those of {@code java.util.concurrent.Flow}, method by method and with the same rules, so stages can be
+ * connected to {@code Flow} ones (e.g {@code flowSubscriber::onNext}), but as the project is compiled for Java 8,
+ * they can not extend them.
+ */
+public final class Flows {
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private Flows() {
+    }
+
+    /**
+     * A producer of items received by {@link Subscriber}s, as they request them.
+     *
+     * @param <T> The type of the published items.
+     */
+    @FunctionalInterface
+    public interface Publisher<T> {
+
+        /**
+         * Adds the given {@code subscriber}, which then receives a {@link Subscription} through
+         * {@link Subscriber#onSubscribe(Subscription)} (or an error, if it can not be added).
+         *
+         * @param subscriber The subscriber.
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * A receiver of items, which requests them through its {@link Subscription}.
+     *
+     * @param <T> The type of the received items.
+     */
+    public interface Subscriber<T> {
+
+        /**
+         * Method called before any other one, with the {@link Subscription} through which items are requested.
+         *
+         * @param subscription The subscription.
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Method called with the next item (only if it was requested).
+         *
+         * @param item The item.
+         */
+        void onNext(T item);
+
+        /**
+         * Method called when the publisher fails (no other method is called after this one).
+         *
+         * @param throwable The error.
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Method called when there are no more items (no other method is called after this one).
+         */
+        void onComplete();
+    }
+
+    /**
+     * The link between a {@link Publisher} and a {@link Subscriber}.
+     */
+    public interface Subscription {
+
+        /**
+         * Requests {@code n} more items (i.e adds them to the demand).
+         *
+         * @param n The amount of items (a non positive amount makes the publisher fail).
+         */
+        void request(long n);
+
+        /**
+         * Stops receiving items (those already in flight might still be received).
+         */
+        void cancel();
+    }
+
+    /**
+     * A stage that is both a {@link Subscriber} and a {@link Publisher}, transforming the items it receives.
+     *
+     * @param <T> The type of the received items.
+     * @param <R> The type of the published items.
+     */
+    public interface Processor<T, R> extends Subscriber<T>, Publisher<R> {
+    }
+}
@@ -0,0 +1,99 @@
+package ar.edu.itba.cripto.secret_image.main.util;
+
+/**
+ * A stream of mask bytes used to hide the secret image data before it is distributed.
+ * Each version of the keystream is identified by a number, stored in shadows, so they can be decoded later.
+ */
+public interface Keystream {
+
+    /**
+     * Version of the legacy keystream (i.e the one created by a {@link java.util.Random} with a 16 bits seed).
+     */
+    int LEGACY = 1;
+    /**
+     * Version of the counter-based keystream (i.e each byte is derived from a 64 bits seed and its index,
+     * so any range of the keystream can be produced independently).
+     */
+    int COUNTER = 2;
+
+    /**
+     * Returns the mask byte at the given {@code index}.
+     *
+     * @param index The index of the byte.
+     * @return The mask byte (between 0 and 255).
+     */
+    int get(long index);
+
+    /**
+     * Masks (i.e xors) the given values with the bytes of this keystream, value {@code offset + i} with the byte at
+     * {@code from + i}, so those keystreams producing several bytes at once do not produce them once per byte.
+     *
+     * @param from   The index of the byte masking the first value.
+     * @param values The values to be masked (in place).
+     * @param offset The position of the first value.
+     * @param length The amount of values.
+     */
+    default void mask(long from, int[] values, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            values[offset + i] ^= get(from + i);
+        }
+    }
+
+    /**
+     * @return The version of this keystream.
+     */
+    int getVersion();
+
+    /**
+     * Creates a {@link Keystream}.
+     *
+     * @param version The keystream version (i.e {@link #LEGACY} or {@link #COUNTER}).
+     * @param seed    The seed (only the lowest 16 bits are used by the legacy keystream).
+     * @param length  The amount of bytes that will be used (only needed by the legacy keystream,
+     *                as it can not seek, so its table can not be longer than an array).
+     * @return The created {@link Keystream}.
+     * @throws IllegalArgumentException If the version is not supported, or the legacy keystream would be longer
+     *                                  than an array.
+     */
+    static Keystream create(int version, long seed, long length) {
+        switch (version) {
+            case LEGACY:
+                if (length > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("The legacy keystream can not mask more than 2 GB" +
+                            " (the counter-based keystream, version 2, must be used)");
+                }
+                return new LegacyKeystream((int) (seed & 0xFFFF), (int) length);
+            case COUNTER:
+                return new CounterKeystream(seed);
+            default:
+                throw new IllegalArgumentException("Unsupported keystream version: " + version);
+        }
+    }
+
+    /**
+     * Creates a {@link Keystream} whose bytes are read in increasing order (i.e each byte after the previously read
+     * one), so the legacy keystream is produced as it is consumed instead of being held in a table.
+     *
+     * @param version The keystream version (i.e {@link #LEGACY} or {@link #COUNTER}).
+     * @param seed    The seed (only the lowest 16 bits are used by the legacy keystream).
+     * @param length  The amount of bytes that will be used (the legacy keystream is still limited to the length of an
+     *                array, as it is held in a table when recovering).
+     * @return The created {@link Keystream}.
+     * @throws IllegalArgumentException If the version is not supported, or the legacy keystream would be longer
+     *                                  than an array.
+     */
+    static Keystream sequential(int version, long seed, long length) {
+        switch (version) {
+            case LEGACY:
+                if (length > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("The legacy keystream can not mask more than 2 GB" +
+                            " (the counter-based keystream, version 2, must be used)");
+                }
+                return new SequentialKeystream((int) (seed & 0xFFFF));
+            case COUNTER:
+                return new CounterKeystream(seed);
+            default:
+                throw new IllegalArgumentException("Unsupported keystream version: " + version);
+        }
+    }
+}
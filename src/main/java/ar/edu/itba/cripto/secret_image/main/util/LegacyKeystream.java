@@ -0,0 +1,33 @@
+package ar.edu.itba.cripto.secret_image.main.util;
+
+/**
+ * The legacy {@link Keystream}, created by a {@link java.util.Random} (see {@link PseudoTable}).
+ * As it is sequential, the whole table is created upfront.
+ */
+/*package*/ final class LegacyKeystream implements Keystream {
+
+    /**
+     * The mask bytes.
+     */
+    private final byte[] table;
+
+    /**
+     * Constructor.
+     *
+     * @param seed   The seed used to create the pseudo table.
+     * @param length The amount of bytes of the keystream.
+     */
+    /*package*/ LegacyKeystream(int seed, int length) {
+        this.table = PseudoTable.generate(length, seed);
+    }
+
+    @Override
+    public int get(long index) {
+        return Byte.toUnsignedInt(table[(int) index]);
+    }
+
+    @Override
+    public int getVersion() {
+        return LEGACY;
+    }
+}
@@ -25,10 +25,27 @@ public class PseudoTable {
      * @return A {@link List} of random numbers.
      */
     public static List<Integer> generatePseudoTable(int imageSize, int seed) {
+        final byte[] table = generate(imageSize, seed);
+        List<Integer> pseudoTable = new ArrayList<>(imageSize);
+        for (byte each : table) {
+            pseudoTable.add(Byte.toUnsignedInt(each));
+        }
+        return pseudoTable;
+    }
+
+    /**
+     * Creates an array of random bytes of size {@code imageSize}, using the given {@code seed}
+     * (i.e the same numbers as {@link #generatePseudoTable(int, int)}, without boxing them).
+     *
+     * @param imageSize The size of image raw data
+     * @param seed      The seed to be use in {@link Random} creation.
+     * @return An array of random bytes.
+     */
+    public static byte[] generate(int imageSize, int seed) {
         Random random = new Random(seed);
-        List<Integer> pseudoTable = new ArrayList<>();
+        byte[] pseudoTable = new byte[imageSize];
         for (int i = 0; i < imageSize; i++) {
-            pseudoTable.add(random.nextInt(256));
+            pseudoTable[i] = (byte) random.nextInt(256);
         }
         return pseudoTable;
     }
@@ -0,0 +1,49 @@
+package ar.edu.itba.cripto.secret_image.main.util;
+
+import java.util.Random;
+
+/**
+ * The legacy {@link Keystream} (see {@link LegacyKeystream}), produced as it is consumed instead of being held in
+ * a table. As {@link Random} can not seek, bytes must be read in increasing order by a single thread (skipped bytes
+ * are produced and discarded), and a byte can not be read twice.
+ */
+/*package*/ final class SequentialKeystream implements Keystream {
+
+    /**
+     * The {@link Random} producing the mask bytes.
+     */
+    private final Random random;
+
+    /**
+     * The index of the next byte produced by {@link #random}.
+     */
+    private long position;
+
+    /**
+     * Constructor.
+     *
+     * @param seed The seed used to create the {@link Random} (as done by {@link PseudoTable}).
+     */
+    /*package*/ SequentialKeystream(int seed) {
+        this.random = new Random(seed);
+        this.position = 0;
+    }
+
+    @Override
+    public int get(long index) {
+        if (index < position) {
+            throw new IllegalStateException("The legacy keystream can only be read in increasing order");
+        }
+        while (position < index) {
+            random.nextInt(256);
+            position++;
+        }
+        position++;
+        return random.nextInt(256);
+    }
+
+    @Override
+    public int getVersion() {
+        return LEGACY;
+    }
+}
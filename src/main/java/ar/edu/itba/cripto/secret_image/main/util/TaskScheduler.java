@@ -0,0 +1,261 @@
+package ar.edu.itba.cripto.secret_image.main.util;
+
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Class in charge of running the tasks of an execution.
+ * Blocking file I/O is run in its own executor (using virtual threads when the running JVM supports them),
+ * gated by a concurrency limit, while CPU-bound arithmetic is run in a fixed pool of platform threads.
+ */
+public final class TaskScheduler implements AutoCloseable {
+
+    /**
+     * The default amount of files that can be read or written at the same time.
+     */
+    public static final int DEFAULT_IO_LIMIT = 64;
+
+    /**
+     * Lazily created scheduler, shared by those components that were not given one.
+     */
+    private static TaskScheduler common;
+
+    /**
+     * The {@link ExecutorService} running I/O tasks.
+     */
+    private final ExecutorService ioExecutor;
+    /**
+     * Permits limiting the amount of I/O tasks in flight.
+     */
+    private final Semaphore ioPermits;
+    /**
+     * The {@link ExecutorService} running CPU-bound tasks.
+     */
+    private final ExecutorService cpuExecutor;
+    /**
+     * The amount of threads in the CPU-bound pool.
+     */
+    private final int cpuThreads;
+
+    /**
+     * Constructor, using the default I/O limit and as many CPU threads as available processors.
+     */
+    public TaskScheduler() {
+        this(DEFAULT_IO_LIMIT, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param ioLimit    The maximum amount of files that can be read or written at the same time.
+     * @param cpuThreads The amount of platform threads used to run CPU-bound tasks.
+     */
+    public TaskScheduler(int ioLimit, int cpuThreads) {
+        if (ioLimit < 1) {
+            throw new IllegalArgumentException("The I/O limit must be positive");
+        }
+        if (cpuThreads < 1) {
+            throw new IllegalArgumentException("The amount of CPU threads must be positive");
+        }
+        this.ioExecutor = newIoExecutor();
+        this.ioPermits = new Semaphore(ioLimit);
+        this.cpuExecutor = Executors.newFixedThreadPool(cpuThreads, daemonFactory("secret-image-cpu-"));
+        this.cpuThreads = cpuThreads;
+    }
+
+    /**
+     * @return A {@link TaskScheduler} with default settings, shared by the whole application.
+     */
+    public static synchronized TaskScheduler common() {
+        if (common == null) {
+            common = new TaskScheduler();
+        }
+        return common;
+    }
+
+    /**
+     * @return The amount of threads in the CPU-bound pool.
+     */
+    public int getCpuThreads() {
+        return cpuThreads;
+    }
+
+    /**
+     * Runs the given I/O {@code task}, waiting for a permit before it starts.
+     *
+     * @param task The task to be run.
+     * @param <T>  The type of result.
+     * @return A {@link CompletableFuture} that completes with the task's result.
+     * An {@link IOException} is reported as an {@link UncheckedIOException}.
+     */
+    public <T> CompletableFuture<T> io(IoTask<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            ioPermits.acquireUninterruptibly();
+            try {
+                return task.call();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                ioPermits.release();
+            }
+        }, ioExecutor);
+    }
+
+    /**
+     * Runs the given CPU-bound {@code task}.
+     *
+     * @param task The task to be run.
+     * @param <T>  The type of result.
+     * @return A {@link CompletableFuture} that completes with the task's result.
+     */
+    public <T> CompletableFuture<T> compute(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, cpuExecutor);
+    }
+
+    /**
+     * Splits the range [0, {@code size}) in chunks, and runs the given {@code task} for each of them in the CPU-bound
+     * pool, waiting for all of them to finish.
+     *
+     * @param size The size of the range.
+     * @param task The task to be run for each chunk.
+     */
+    public void forEachChunk(int size, RangeTask task) {
+        if (size <= 0) {
+            return;
+        }
+        int chunks = Math.min(size, cpuThreads * 4);
+        int chunkSize = (size + chunks - 1) / chunks;
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int from = 0; from < size; from += chunkSize) {
+            final int start = from;
+            final int end = Math.min(size, from + chunkSize);
+            futures.add(CompletableFuture.runAsync(() -> task.run(start, end), cpuExecutor));
+        }
+        joinAll(futures);
+    }
+
+    @Override
+    public void close() {
+        ioExecutor.shutdown();
+        cpuExecutor.shutdown();
+    }
+
+    /**
+     * Waits for the given {@code future} to complete, rethrowing the exception that made it fail (if any).
+     *
+     * @param future The {@link CompletableFuture} to wait for.
+     * @param <T>    The type of result.
+     * @return The future's result.
+     */
+    public static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Combines the given {@code futures} (as done by {@link CompletableFuture#allOf(CompletableFuture[])}).
+     *
+     * @param futures The futures to combine.
+     * @return A {@link CompletableFuture} that completes once all the given futures complete.
+     */
+    public static CompletableFuture<Void> allOf(Collection<? extends CompletableFuture<?>> futures) {
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Waits for all the given {@code futures} to complete, rethrowing the exception that made any of them fail
+     * (as done by {@link #join(CompletableFuture)}).
+     *
+     * @param futures The futures to wait for.
+     */
+    public static void joinAll(Collection<? extends CompletableFuture<?>> futures) {
+        join(allOf(futures));
+    }
+
+    /**
+     * Creates the {@link ExecutorService} used for I/O tasks.
+     * As the project is compiled for Java 8, the virtual threads executor is looked up reflectively,
+     * falling back to a cached pool of daemon platform threads when it is not available.
+     *
+     * @return The {@link ExecutorService} to be used for I/O tasks.
+     */
+    private static ExecutorService newIoExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(daemonFactory("secret-image-io-"));
+        }
+    }
+
+    /**
+     * Creates a {@link ThreadFactory} of daemon threads, so idle pools never prevent the JVM from exiting.
+     *
+     * @param prefix The prefix of the threads' names.
+     * @return The {@link ThreadFactory}.
+     */
+    private static ThreadFactory daemonFactory(String prefix) {
+        final AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+
+    /**
+     * A blocking I/O task.
+     *
+     * @param <T> The type of result.
+     */
+    @FunctionalInterface
+    public interface IoTask<T> {
+
+        /**
+         * Runs the task.
+         *
+         * @return The task's result.
+         * @throws IOException If any IO error occurs.
+         */
+        T call() throws IOException;
+    }
+
+    /**
+     * A task operating over a range of indexes.
+     */
+    @FunctionalInterface
+    public interface RangeTask {
+
+        /**
+         * Runs the task.
+         *
+         * @param from The first index of the range (inclusive).
+         * @param to   The last index of the range (exclusive).
+         */
+        void run(int from, int to);
+    }
+}
@@ -0,0 +1,237 @@
+package ar.edu.itba.cripto.secret_image.math_utils;
+
+
+/**
+ * Class implementing the Berlekamp–Welch decoder, which recovers a modulus polynomial of degree less than {@code k}
+ * from its values at {@code m} points even if up to {@code (m - k) / 2} of them are wrong,
+ * telling which ones were wrong (i.e shadows are the codewords of a Reed–Solomon code).
+ * <p>
+ * The decoder looks for an error locator polynomial {@code E} (monic, of degree {@code e}, which is 0 at the wrong
+ * points) and a polynomial {@code Q} (of degree less than {@code k + e}) such that {@code Q(x) = y E(x)} at every
+ * point, which is a linear system of {@code m} equations, and then {@code P = Q / E}.
+ * As most polynomials have no wrong values, the polynomial that passes through the first {@code k} points is
+ * checked against the others first, so the system is only solved when any of them does not match.
+ *
+ * @implNote This class is not thread-safe (each thread must use its own decoder), as no objects are allocated
+ * while decoding.
+ */
+public final class BerlekampWelch {
+
+    /**
+     * The 'x' values of the points.
+     */
+    private final int[] xs;
+    /**
+     * The amount of coefficients of the decoded polynomials (i.e their degree is less than {@code k}).
+     */
+    private final int k;
+    /**
+     * The modulus to apply.
+     */
+    private final int mod;
+    /**
+     * The maximum amount of wrong values that can be corrected.
+     */
+    private final int maxErrors;
+    /**
+     * The Lagrange basis of the first {@code k} 'x' values.
+     */
+    private final int[][] basis;
+    /**
+     * The powers of each 'x' value ({@code powers[i][d]} is {@code xs[i]} to the {@code d}), so that polynomials
+     * are evaluated as dot products (see {@link PrimeField#dot(int[], int, int[], int, int)}).
+     */
+    private final int[][] powers;
+    /**
+     * The field whose bulk operations reduce each row (or dot product) once.
+     */
+    private final PrimeField field;
+    /**
+     * The reciprocal of each value (i.e {@code inverses[v] * v = 1}).
+     */
+    private final int[] inverses;
+    /**
+     * The augmented matrix of the linear system (one row per point).
+     */
+    private final int[][] system;
+    /**
+     * The coefficients of {@code Q} and {@code E} (sorted by degree), as solved from the system.
+     */
+    private final int[] solution;
+    /**
+     * The values of the first {@code k} points (as the 'y' values to interpolate).
+     */
+    private final int[] firstValues;
+
+    /**
+     * Constructor.
+     *
+     * @param xs  The 'x' values of the points (must be different).
+     * @param k   The amount of coefficients of the decoded polynomials.
+     * @param mod The modulus to apply (a prime, at most 257).
+     */
+    public BerlekampWelch(int[] xs, int k, int mod) {
+        if (k < 1 || xs.length < k) {
+            throw new IllegalArgumentException("There must be at least k points");
+        }
+        this.xs = xs.clone();
+        this.k = k;
+        this.mod = mod;
+        this.maxErrors = (xs.length - k) / 2;
+        final int[] firstXs = new int[k];
+        System.arraycopy(xs, 0, firstXs, 0, k);
+        this.basis = PolynomialUtils.lagrangeBasis(firstXs, mod);
+        this.field = new PrimeField(mod);
+        this.powers = PolynomialUtils.vandermonde(xs, k, mod);
+        this.inverses = new int[mod];
+        for (int value = 1; value < mod; value++) {
+            inverses[value] = field.reciprocal(value);
+        }
+        this.system = new int[xs.length][k + 2 * maxErrors + 1];
+        this.solution = new int[k + 2 * maxErrors];
+        this.firstValues = new int[k];
+    }
+
+    /**
+     * @return The maximum amount of wrong values that can be corrected (i.e {@code (m - k) / 2}).
+     */
+    public int getMaxErrors() {
+        return maxErrors;
+    }
+
+    /**
+     * Decodes the polynomial with the given values.
+     *
+     * @param values       The values at each point (in the same order as the 'x' values).
+     * @param coefficients The array in which the coefficients of the polynomial are saved (sorted by degree).
+     *                     If there are more wrong values than can be corrected, the polynomial that passes through
+     *                     the first {@code k} points is saved.
+     * @param errors       The array in which wrong values are marked (in the same order as the 'x' values).
+     * @return The amount of wrong values, or -1 if there are more than can be corrected.
+     */
+    public int decode(int[] values, int[] coefficients, boolean[] errors) {
+        System.arraycopy(values, 0, firstValues, 0, k);
+        PolynomialUtils.interpolate(basis, firstValues, mod, coefficients);
+        if (markErrors(values, coefficients, errors) == 0) {
+            return 0;
+        }
+        final int e = maxErrors;
+        if (e == 0 || !solve(values, e)) {
+            markErrors(values, coefficients, errors);
+            return -1;
+        }
+
+        // P = Q / E, where E is monic of degree e (i.e its leading coefficient is not in the solution)
+        final int qLength = k + e;
+        for (int d = qLength - 1; d >= e; d--) {
+            final int quotient = solution[d];
+            coefficients[d - e] = quotient;
+            if (quotient != 0) {
+                field.axpy(mod - quotient, solution, qLength, solution, d - e, e);
+            }
+        }
+        for (int d = 0; d < e; d++) {
+            if (solution[d] != 0) {
+                PolynomialUtils.interpolate(basis, firstValues, mod, coefficients);
+                markErrors(values, coefficients, errors);
+                return -1;
+            }
+        }
+        final int wrong = markErrors(values, coefficients, errors);
+        if (wrong > e) {
+            PolynomialUtils.interpolate(basis, firstValues, mod, coefficients);
+            markErrors(values, coefficients, errors);
+            return -1;
+        }
+        return wrong;
+    }
+
+    /**
+     * Marks the points at which the polynomial with the given coefficients does not have the given value.
+     *
+     * @param values       The values at each point.
+     * @param coefficients The coefficients of the polynomial ({@code k} of them).
+     * @param errors       The array in which wrong values are marked.
+     * @return The amount of wrong values.
+     */
+    private int markErrors(int[] values, int[] coefficients, boolean[] errors) {
+        int wrong = 0;
+        for (int i = 0; i < xs.length; i++) {
+            errors[i] = field.dot(coefficients, 0, powers[i], 0, k) != values[i];
+            wrong += errors[i] ? 1 : 0;
+        }
+        return wrong;
+    }
+
+    /**
+     * Solves the Berlekamp–Welch system for the given values, by Gauss-Jordan elimination.
+     * The unknowns are the coefficients of {@code Q} ({@code k + e} of them), followed by those of {@code E}
+     * (but its leading one, which is 1). Free unknowns (if there are less than {@code e} wrong values) are set to 0.
+     *
+     * @param values The values at each point.
+     * @param e      The degree of the error locator polynomial.
+     * @return {@code true} if the system has a solution (saved in {@link #solution}).
+     */
+    private boolean solve(int[] values, int e) {
+        final int unknowns = k + 2 * e;
+        final int rows = xs.length;
+        for (int i = 0; i < rows; i++) {
+            final int[] row = system[i];
+            final int x = xs[i];
+            final int y = values[i];
+            int power = 1;
+            for (int d = 0; d < k + e; d++) {
+                row[d] = power;
+                if (d < e) {
+                    row[k + e + d] = Math.floorMod(-y * power, mod);
+                }
+                if (d == e) {
+                    row[unknowns] = y * power % mod;
+                }
+                power = power * x % mod;
+            }
+        }
+
+        // Gauss-Jordan elimination, remembering the pivot column of each row
+        int rank = 0;
+        for (int column = 0; column < unknowns && rank < rows; column++) {
+            int pivot = rank;
+            while (pivot < rows && system[pivot][column] == 0) {
+                pivot++;
+            }
+            if (pivot == rows) {
+                continue;
+            }
+            final int[] pivotRow = system[pivot];
+            system[pivot] = system[rank];
+            system[rank] = pivotRow;
+            field.scale(inverses[pivotRow[column]], pivotRow, column, unknowns + 1 - column);
+            for (int r = 0; r < rows; r++) {
+                final int factor = system[r][column];
+                if (r != rank && factor != 0) {
+                    // Subtracting is adding (mod - factor) times the pivot row, so no term is negative
+                    field.axpy(mod - factor, pivotRow, column, system[r], column, unknowns + 1 - column);
+                }
+            }
+            rank++;
+        }
+        for (int r = rank; r < rows; r++) {
+            if (system[r][unknowns] != 0) {
+                return false;
+            }
+        }
+
+        // Each pivot row gives its unknown (free unknowns are 0)
+        for (int u = 0; u < unknowns; u++) {
+            solution[u] = 0;
+        }
+        for (int r = 0; r < rank; r++) {
+            int column = 0;
+            while (system[r][column] == 0) {
+                column++;
+            }
+            solution[column] = system[r][unknowns];
+        }
+        return true;
+    }
+}
@@ -144,4 +144,89 @@ public interface Field<T> {
         return multiply(x, reciprocal(y));
     }
 
+
+    // ====================================================
+    // Bulk operations
+    // ====================================================
+
+    /**
+     * Returns a new vector (i.e array) of the specified length, whose elements are initially {@code null}.
+     * Vectors given to bulk operations must be arrays of the element type, so fields overriding them
+     * (with arrays of their own element type) must override this method too.
+     * A correct default implementation is provided, for fields that do not override bulk operations.
+     *
+     * @param length the length of the vector
+     * @return a new vector of the specified length
+     */
+    @SuppressWarnings("unchecked")
+    default T[] newArray(int length) {
+        return (T[]) new Object[length];
+    }
+
+    /**
+     * Returns a new matrix (i.e array of vectors) of the specified dimensions, whose elements are initially
+     * {@code null}. Its rows are created by {@link #newArray(int)}, so they can be given to bulk operations.
+     * A correct default implementation is provided, which fields overriding {@link #newArray(int)} may override
+     * to create the matrix with the arrays of their own element type.
+     *
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @return a new matrix of the specified dimensions
+     */
+    @SuppressWarnings("unchecked")
+    default T[][] newMatrix(int rows, int cols) {
+        // Rows are only read as T[] (i.e as created by newArray), so an array of objects holds them safely
+        final T[][] matrix = (T[][]) new Object[rows][];
+        for (int i = 0; i < rows; i++)
+            matrix[i] = newArray(cols);
+        return matrix;
+    }
+
+
+    /**
+     * Multiplies every element of the specified vector by the specified factor, in place. In other words, x *= factor.
+     * A correct default implementation is provided, which fields may override to avoid reducing every term.
+     *
+     * @param factor the factor to multiply by
+     * @param x      the vector to scale
+     * @throws NullPointerException if any argument or element is {@code null}
+     */
+    default void scale(T factor, T[] x) {
+        for (int i = 0; i < x.length; i++)
+            x[i] = multiply(x[i], factor);
+    }
+
+
+    /**
+     * Adds the first specified vector multiplied by the specified factor to the second one, in place.
+     * In other words, y += factor * x. A correct default implementation is provided,
+     * which fields may override to avoid reducing every term.
+     *
+     * @param factor the factor to multiply by
+     * @param x      the vector to read and multiply
+     * @param y      the vector to accumulate to (of the same length as {@code x})
+     * @throws NullPointerException if any argument or element is {@code null}
+     */
+    default void axpy(T factor, T[] x, T[] y) {
+        for (int i = 0; i < x.length; i++)
+            y[i] = add(y[i], multiply(x[i], factor));
+    }
+
+
+    /**
+     * Returns the dot product of the two specified vectors. A correct default implementation is provided,
+     * which fields may override to avoid reducing every term.
+     *
+     * @param x a vector
+     * @param y a vector (of the same length as {@code x})
+     * @return the sum of {@code x[i] * y[i]}
+     * @throws NullPointerException if any argument or element is {@code null}
+     */
+    default T dot(T[] x, T[] y) {
+        T sum = zero();
+        for (int i = 0; i < x.length; i++)
+            sum = add(sum, multiply(x[i], y[i]));
+        return sum;
+    }
+
 }
@@ -43,6 +43,8 @@ public final class Matrix<E> /*implements Cloneable*/ {
     /**
      * Constructs a blank matrix with the specified number of rows and columns,
      * with operations from the specified field. All the elements are initially {@code null}.
+     * Rows are created by the field (see {@link Field#newMatrix(int, int)}), so they can be given to its bulk
+     * operations.
      *
      * @param rows  the number of rows in this matrix
      * @param cols  the number of columns in this matrix
@@ -50,12 +52,29 @@ public final class Matrix<E> /*implements Cloneable*/ {
      * @throws IllegalArgumentException if {@code field} is {@code null}.
      */
     public Matrix(int rows, int cols, Field<E> field) {
-        //noinspection unchecked
-        this((E[][]) new Object[rows][cols], field);
+        this(blankRows(rows, cols, field), field);
+    }
+
+    /**
+     * Creates the rows of a blank matrix.
+     *
+     * @param rows  the number of rows
+     * @param cols  the number of columns
+     * @param field the field creating each row
+     * @return the rows (all the elements are {@code null})
+     * @throws IllegalArgumentException if {@code field} is {@code null}.
+     */
+    private static <E> E[][] blankRows(int rows, int cols, Field<E> field) {
+        if (field == null) {
+            throw new IllegalArgumentException();
+        }
+        return field.newMatrix(rows, cols);
     }
 
     /**
      * Constructs a matrix using the specified data.
+     * Rows must be arrays of the element type (e.g {@code Integer[]} for a {@link PrimeField}),
+     * as they are given to the field bulk operations.
      *
      * @param data  The objects to be stored in this matrix.
      * @param field The field used to operate on the values in this matrix.
@@ -158,8 +177,7 @@ public final class Matrix<E> /*implements Cloneable*/ {
      * @return The column in the {@code index} position.
      */
     public E[] getColumn(int index) {
-        //noinspection unchecked
-        return Arrays.stream(this.values).map(each -> each[index]).toArray(i -> (E[]) new Object[i]);
+        return Arrays.stream(this.values).map(each -> each[index]).toArray(field::newArray);
     }
 
     /**
@@ -209,7 +227,7 @@ public final class Matrix<E> /*implements Cloneable*/ {
                 .parallel()
                 .mapToObj(idx -> Stream.concat(Arrays.stream(this.values[idx]), Arrays.stream(other.values[idx])))
                 .parallel()
-                .map(each -> each.toArray(i -> (E[]) new Object[i]))
+                .map(each -> each.toArray(field::newArray))
                 .toArray(i -> (E[][]) new Object[i][]);
 
         return new Matrix<>(data, this.field);
@@ -261,6 +279,7 @@ public final class Matrix<E> /*implements Cloneable*/ {
     /**
      * Multiplies the specified row in this matrix by the specified factor. In other words, row *= factor.
      * The elements of the specified row should all be non-{@code null} when performing this operation.
+     * The whole row is handed to the field at once (see {@link Field#scale(Object, Object[])}).
      *
      * @param row    the row index to operate on (0-based indexing)
      * @param factor the factor to multiply by
@@ -269,8 +288,7 @@ public final class Matrix<E> /*implements Cloneable*/ {
     public void multiplyRow(int row, E factor) {
         if (row < 0 || row >= values.length)
             throw new IndexOutOfBoundsException("Row index out of bounds");
-        for (int j = 0, cols = columnCount(); j < cols; j++)
-            set(row, j, field.multiply(get(row, j), factor));
+        field.scale(factor, values[row]);
     }
 
 
@@ -278,6 +296,7 @@ public final class Matrix<E> /*implements Cloneable*/ {
      * Adds the first specified row in this matrix multiplied by the specified factor to the second specified row.
      * In other words, destRow += srcRow * factor. The elements of the specified two rows
      * should all be non-{@code null} when performing this operation.
+     * Both rows are handed to the field at once (see {@link Field#axpy(Object, Object[], Object[])}).
      *
      * @param srcRow  the index of the row to read and multiply (0-based indexing)
      * @param destRow the index of the row to accumulate to (0-based indexing)
@@ -287,8 +306,7 @@ public final class Matrix<E> /*implements Cloneable*/ {
     public void addRows(int srcRow, int destRow, E factor) {
         if (srcRow < 0 || srcRow >= values.length || destRow < 0 || destRow >= values.length)
             throw new IndexOutOfBoundsException("Row index out of bounds");
-        for (int j = 0, cols = columnCount(); j < cols; j++)
-            set(destRow, j, field.add(get(destRow, j), field.multiply(get(srcRow, j), factor)));
+        field.axpy(factor, values[srcRow], values[destRow]);
     }
 
 
@@ -297,6 +315,7 @@ public final class Matrix<E> /*implements Cloneable*/ {
      * the same number of rows as this matrix's number of columns. Remember that matrix multiplication is not commutative.
      * All elements of both matrices should be non-{@code null} when performing this operation.
      * The time complexity of this operation is <var>O</var>(this.rows &times; this.cols &times; other.cols).
+     * Matrices of a {@link PrimeField} are multiplied as a {@link PrimeFieldMatrix} (i.e by blocks, multithreaded).
      *
      * @param other the second matrix multiplicand
      * @return the product of this matrix with the specified matrix
@@ -311,15 +330,16 @@ public final class Matrix<E> /*implements Cloneable*/ {
 
         int rows = rowCount();
         int cols = other.columnCount();
-        int cells = columnCount();
         Matrix<E> result = new Matrix<>(rows, cols, field);
+        if (field instanceof PrimeField && field.equals(other.field)) {
+            result.copyFrom(toPrimeFieldMatrix().multiply(other.toPrimeFieldMatrix()));
+            return result;
+        }
+        // Each result element is the dot product of a row of this matrix and a row of the transpose of the other
+        E[][] otherColumns = other.transpose().values;
         for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                E sum = field.zero();
-                for (int k = 0; k < cells; k++)
-                    sum = field.add(field.multiply(get(i, k), other.get(k, j)), sum);
-                result.set(i, j, sum);
-            }
+            for (int j = 0; j < cols; j++)
+                result.values[i][j] = field.dot(values[i], otherColumns[j]);
         }
         return result;
     }
@@ -331,6 +351,7 @@ public final class Matrix<E> /*implements Cloneable*/ {
 
     /**
      * Converts this matrix to reduced row echelon form (RREF) using Gauss-Jordan elimination.
+     * Matrices of a {@link PrimeField} are operated on as a {@link PrimeFieldMatrix} (i.e multithreaded).
      * All elements of this matrix should be non-{@code null} when performing this operation.
      * Always succeeds, as long as the field follows the mathematical rules and does not throw an exception.
      * The time complexity of this operation is <var>O</var>(rows &times; cols &times; min(rows, cols)).
@@ -338,6 +359,10 @@ public final class Matrix<E> /*implements Cloneable*/ {
      * @return {@code this} (for method chaining).
      */
     public Matrix<E> reducedRowEchelonForm() {
+        if (field instanceof PrimeField) {
+            copyFrom(toPrimeFieldMatrix().reducedRowEchelonForm());
+            return this;
+        }
         int rows = rowCount();
         int cols = columnCount();
 
@@ -381,6 +406,7 @@ public final class Matrix<E> /*implements Cloneable*/ {
 
     /**
      * Replaces the values of this matrix with the inverse of this matrix. Requires the matrix to be square.
+     * Matrices of a {@link PrimeField} are operated on as a {@link PrimeFieldMatrix} (i.e multithreaded).
      * All elements of this matrix should be non-{@code null} when performing this operation.
      * Throws an exception if the matrix is singular (not invertible). If an exception is thrown, this matrix is unchanged.
      * The time complexity of this operation is <var>O</var>(rows<sup>3</sup>).
@@ -393,6 +419,12 @@ public final class Matrix<E> /*implements Cloneable*/ {
         int cols = columnCount();
         if (rows != cols)
             throw new IllegalStateException("Matrix dimensions are not square");
+        if (field instanceof PrimeField) {
+            PrimeFieldMatrix inverse = toPrimeFieldMatrix();
+            inverse.invert();
+            copyFrom(inverse);
+            return;
+        }
 
         // Build augmented matrix: [this | identity]
         Matrix<E> temp = new Matrix<>(rows, cols * 2, field);
@@ -472,4 +504,33 @@ public final class Matrix<E> /*implements Cloneable*/ {
         return det;
     }
 
+    /**
+     * Copies this matrix into a {@link PrimeFieldMatrix}, so that operations on matrices of a {@link PrimeField}
+     * are blocked and multithreaded (instead of operating on boxed elements in a single thread).
+     * All elements of this matrix should be non-{@code null} when performing this operation.
+     *
+     * @return the copy
+     */
+    private PrimeFieldMatrix toPrimeFieldMatrix() {
+        PrimeFieldMatrix result = new PrimeFieldMatrix(rowCount(), columnCount(), (PrimeField) field);
+        for (int i = 0; i < rowCount(); i++) {
+            for (int j = 0; j < columnCount(); j++)
+                result.set(i, j, (Integer) values[i][j]);
+        }
+        return result;
+    }
+
+    /**
+     * Replaces the values of this matrix with those of the given {@link PrimeFieldMatrix} (of the same dimensions).
+     *
+     * @param other the matrix whose values are copied
+     */
+    @SuppressWarnings("unchecked")
+    private void copyFrom(PrimeFieldMatrix other) {
+        for (int i = 0; i < rowCount(); i++) {
+            for (int j = 0; j < columnCount(); j++)
+                values[i][j] = (E) Integer.valueOf(other.get(i, j));
+        }
+    }
+
 }
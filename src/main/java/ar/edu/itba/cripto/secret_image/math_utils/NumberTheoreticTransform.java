@@ -0,0 +1,211 @@
+package ar.edu.itba.cripto.secret_image.math_utils;
+
+
+/**
+ * Class implementing the number theoretic transform over GF(257), whose multiplicative group has order 256
+ * (i.e it has roots of unity of every power of two up to 256), so polynomials can be evaluated at (and interpolated
+ * from) all the points of a subgroup in O(N log N) operations.
+ * <p>
+ * Evaluation points are numbered in bit-reversed order: point {@code i} (from 1) is
+ * 3<sup>reverse(i - 1)</sup> (reversing 8 bits), so the first N points are exactly the subgroup of order N,
+ * for every power of two N, and any aligned block of N consecutive points is a coset of it.
+ */
+public final class NumberTheoreticTransform {
+
+    /**
+     * The modulus (i.e the field size).
+     */
+    public static final int MODULUS = 257;
+
+    /**
+     * A generator of the multiplicative group of GF(257).
+     */
+    private static final int PRIMITIVE_ROOT = 3;
+
+    /**
+     * The order of the multiplicative group.
+     */
+    private static final int GROUP_ORDER = MODULUS - 1;
+
+    /**
+     * Powers of the primitive root (i.e {@code POWERS[e]} is 3<sup>e</sup>).
+     */
+    private static final int[] POWERS = new int[GROUP_ORDER];
+
+    static {
+        int power = 1;
+        for (int e = 0; e < GROUP_ORDER; e++) {
+            POWERS[e] = power;
+            power = power * PRIMITIVE_ROOT % MODULUS;
+        }
+    }
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private NumberTheoreticTransform() {
+    }
+
+    /**
+     * Returns the evaluation point with the given {@code number}.
+     *
+     * @param number The point number (from 1 to 256).
+     * @return The point (i.e 3<sup>reverse(number - 1)</sup>).
+     */
+    public static int point(int number) {
+        if (number < 1 || number > GROUP_ORDER) {
+            throw new IllegalArgumentException("Point number must be between 1 and " + GROUP_ORDER);
+        }
+        return POWERS[Integer.reverse(number - 1) >>> 24];
+    }
+
+    /**
+     * Returns the size of the smallest transform that has at least {@code points} points.
+     *
+     * @param points The amount of points needed.
+     * @return The transform size (a power of two, up to 256).
+     */
+    public static int size(int points) {
+        if (points < 1 || points > GROUP_ORDER) {
+            throw new IllegalArgumentException("Amount of points must be between 1 and " + GROUP_ORDER);
+        }
+        return points == 1 ? 1 : Integer.highestOneBit(points - 1) << 1;
+    }
+
+    /**
+     * Evaluates the polynomial whose coefficients (sorted by degree) are the first {@code size} values
+     * of the given array at every point of the subgroup of order {@code size}, in place.
+     * Once transformed, the value at position {@code t} is the evaluation at ω<sup>t</sup>
+     * (with ω = 3<sup>256 / size</sup>), which is point number {@code reverse(t) + 1} (reversing log2(size) bits).
+     *
+     * @param values The coefficients (padded with zeros up to {@code size}), replaced by the evaluations.
+     * @param size   The transform size (a power of two, up to 256).
+     */
+    public static void forward(int[] values, int size) {
+        transform(values, size, false);
+    }
+
+    /**
+     * Inverse of {@link #forward(int[], int)}: calculates the coefficients of the polynomial (of degree
+     * less than {@code size}) that has the given values at each point of the subgroup of order {@code size}, in place.
+     *
+     * @param values The evaluations (position {@code t} holding the evaluation at ω<sup>t</sup>),
+     *               replaced by the coefficients (sorted by degree).
+     * @param size   The transform size (a power of two, up to 256).
+     */
+    public static void inverse(int[] values, int size) {
+        transform(values, size, true);
+        // As 256 = -1 (mod 257), size * (256 / size) = -1, so the reciprocal of size is -(256 / size)
+        final long sizeReciprocal = MODULUS - GROUP_ORDER / size;
+        for (int i = 0; i < size; i++) {
+            values[i] = (int) (values[i] * sizeReciprocal % MODULUS);
+        }
+    }
+
+    /**
+     * Evaluates the polynomial whose coefficients (sorted by degree) are the first {@code size} values
+     * of the given array at the first {@code size} points, in place.
+     * Once evaluated, the value at position {@code i} is the evaluation at point number {@code i + 1}
+     * (see {@link #point(int)}).
+     *
+     * @param values The coefficients (padded with zeros up to {@code size}), replaced by the evaluations.
+     * @param size   The amount of points (a power of two, up to 256).
+     */
+    public static void evaluate(int[] values, int size) {
+        forward(values, size);
+        permute(values, size);
+    }
+
+    /**
+     * Checks whether the points numbered from {@code first} to {@code first + size - 1} are a coset of
+     * the subgroup of order {@code size} (i.e whether they can be interpolated with
+     * {@link #interpolate(int[], int, int)}).
+     *
+     * @param first The number of the first point.
+     * @param size  The amount of points.
+     * @return {@code true} if the points are a coset, or {@code false} otherwise.
+     */
+    public static boolean isCoset(int first, int size) {
+        return Integer.bitCount(size) == 1 && size <= GROUP_ORDER && first >= 1
+                && first - 1 + size <= GROUP_ORDER && (first - 1) % size == 0;
+    }
+
+    /**
+     * Calculates the coefficients of the polynomial (of degree less than {@code size}) that has the given values
+     * at the points numbered from {@code first} to {@code first + size - 1}, in place.
+     * As those points are a coset c·H of the subgroup H of order {@code size} (see {@link #isCoset(int, int)}),
+     * the inverse transform gives the coefficients of P(c·x), which are then divided by the powers of c.
+     *
+     * @param values The evaluations (position {@code i} holding the evaluation at point number {@code first + i}),
+     *               replaced by the coefficients (sorted by degree).
+     * @param size   The amount of points (a power of two, up to 256).
+     * @param first  The number of the first point.
+     */
+    public static void interpolate(int[] values, int size, int first) {
+        if (!isCoset(first, size)) {
+            throw new IllegalArgumentException("Points are not a coset of the subgroup of order " + size);
+        }
+        permute(values, size);
+        inverse(values, size);
+        final int cosetExponent = Integer.reverse(first - 1) >>> 24;
+        for (int j = 1; j < size; j++) {
+            values[j] = values[j] * POWERS[Math.floorMod(-cosetExponent * j, GROUP_ORDER)] % MODULUS;
+        }
+    }
+
+    /**
+     * Reverses the lowest {@code bits} bits of the given {@code value}.
+     *
+     * @param value The value.
+     * @param bits  The amount of bits to reverse.
+     * @return The reversed value.
+     */
+    private static int reverse(int value, int bits) {
+        return bits == 0 ? 0 : Integer.reverse(value) >>> (32 - bits);
+    }
+
+    /**
+     * Applies the bit-reversal permutation to the first {@code size} values, in place.
+     *
+     * @param values The values.
+     * @param size   The amount of values (a power of two).
+     */
+    private static void permute(int[] values, int size) {
+        final int bits = Integer.numberOfTrailingZeros(size);
+        for (int i = 0; i < size; i++) {
+            final int j = reverse(i, bits);
+            if (i < j) {
+                final int aux = values[i];
+                values[i] = values[j];
+                values[j] = aux;
+            }
+        }
+    }
+
+    /**
+     * Iterative radix-2 Cooley-Tukey transform.
+     *
+     * @param values  The values to be transformed, in place.
+     * @param size    The transform size.
+     * @param inverse Whether the inverse root of unity must be used.
+     */
+    private static void transform(int[] values, int size, boolean inverse) {
+        if (size < 1 || size > GROUP_ORDER || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Transform size must be a power of two up to " + GROUP_ORDER);
+        }
+        permute(values, size);
+        for (int length = 2; length <= size; length <<= 1) {
+            final int step = GROUP_ORDER / length; // Exponent of the root of unity of order length
+            final int half = length >> 1;
+            for (int start = 0; start < size; start += length) {
+                for (int j = 0; j < half; j++) {
+                    final int exponent = inverse ? (GROUP_ORDER - j * step) % GROUP_ORDER : j * step;
+                    final int u = values[start + j];
+                    final int v = values[start + j + half] * POWERS[exponent] % MODULUS;
+                    values[start + j] = (u + v) % MODULUS;
+                    values[start + j + half] = (u - v + MODULUS) % MODULUS;
+                }
+            }
+        }
+    }
+}
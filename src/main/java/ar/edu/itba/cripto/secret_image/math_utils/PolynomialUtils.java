@@ -4,6 +4,7 @@ package ar.edu.itba.cripto.secret_image.math_utils;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -12,6 +13,11 @@ import java.util.stream.Stream;
  */
 public class PolynomialUtils {
 
+    /**
+     * The amount of coefficients of each tile of polynomials interpolated at once
+     * (see {@link #interpolate(int[][], byte[][], int, int, int, int[])}), so that a tile (32 KB) stays in cache.
+     */
+    private static final int INTERPOLATION_TILE = 8 * 1024;
 
     /**
      * Calculate coefficients of a modulus polynomial that contains the given {@code points}.
@@ -45,8 +51,248 @@ public class PolynomialUtils {
 
         final Matrix<Integer> equationMatrix = coefficientsMatrix.appendColumns(independentTermsMatrix)
                 .reducedRowEchelonForm();
-        return Arrays.asList(equationMatrix.getColumn(degree));
+        return IntStream.range(0, degree)
+                .mapToObj(row -> equationMatrix.get(row, degree))
+                .collect(Collectors.toList());
+
+    }
+
+    /**
+     * Calculates the Lagrange weights of the given {@code xs} at the given {@code x}.
+     * The value at {@code x} of any modulus polynomial of degree less than {@code xs.length} is the sum of its values
+     * at each {@code xs[i]}, multiplied by the i-th weight. As weights only depend on the 'x' values,
+     * they can be calculated once and reused for every polynomial evaluated at the same points.
+     *
+     * @param xs  The 'x' values of the known points (must be different).
+     * @param x   The 'x' value in which polynomials will be evaluated.
+     * @param mod The modulus to apply.
+     * @return The weights, in the same order as {@code xs}.
+     */
+    public static int[] lagrangeWeights(int[] xs, int x, int mod) {
+        final PrimeField field = new PrimeField(mod);
+        final int[] weights = new int[xs.length];
+        for (int i = 0; i < xs.length; i++) {
+            long numerator = 1;
+            long denominator = 1;
+            for (int j = 0; j < xs.length; j++) {
+                if (i != j) {
+                    numerator = numerator * Math.floorMod(x - xs[j], mod) % mod;
+                    denominator = denominator * Math.floorMod(xs[i] - xs[j], mod) % mod;
+                }
+            }
+            weights[i] = (int) (numerator * field.reciprocal((int) denominator) % mod);
+        }
+        return weights;
+    }
+
+    /**
+     * Evaluates the modulus polynomial with the given {@code coefficients} at the given {@code x}
+     * (using Horner's rule, so no objects are allocated).
+     *
+     * @param coefficients The coefficients of the polynomial, sorted by degree.
+     * @param x            The 'x' value in which the polynomial is evaluated.
+     * @param mod          The modulus to apply.
+     * @return The value of the polynomial at {@code x}.
+     */
+    public static int evaluate(int[] coefficients, int x, int mod) {
+        long result = 0;
+        for (int i = coefficients.length - 1; i >= 0; i--) {
+            result = (result * x + coefficients[i]) % mod;
+        }
+        return (int) result;
+    }
+
+    /**
+     * Calculates the Vandermonde matrix of the given {@code xs} (i.e the powers of each 'x' value), so that
+     * evaluating a polynomial at {@code xs[i]} is the dot product of its coefficients and the i-th row
+     * (see {@link PrimeField#dot(int[], int, int[], int, int)}), reduced once instead of once per coefficient.
+     * As it only depends on the 'x' values, it can be calculated once and reused for every polynomial.
+     *
+     * @param xs      The 'x' values.
+     * @param columns The amount of powers of each 'x' value (i.e of coefficients of the polynomials).
+     * @param mod     The modulus to apply.
+     * @return The matrix, one row per 'x' value ({@code matrix[i][d]} is {@code xs[i]} to the {@code d}).
+     */
+    public static int[][] vandermonde(int[] xs, int columns, int mod) {
+        final int[][] matrix = new int[xs.length][columns];
+        for (int i = 0; i < xs.length; i++) {
+            long power = 1;
+            for (int d = 0; d < columns; d++) {
+                matrix[i][d] = (int) power;
+                power = power * xs[i] % mod;
+            }
+        }
+        return matrix;
+    }
 
+    /**
+     * Calculates the Lagrange basis of the given {@code xs} (i.e the coefficients of the polynomials that evaluate
+     * to 1 at {@code xs[i]} and to 0 at every other 'x' value). The coefficients of any modulus polynomial
+     * of degree less than {@code xs.length} are the sum of the basis polynomials, each multiplied by the value
+     * of the polynomial at the corresponding 'x' value (see {@link #interpolate(int[][], int[], int, int[])}).
+     * As the basis only depends on the 'x' values, it can be calculated once and reused for every polynomial
+     * that passes through the same 'x' values.
+     *
+     * @param xs  The 'x' values of the known points (must be different).
+     * @param mod The modulus to apply.
+     * @return The basis, one array of coefficients (sorted by degree) per 'x' value, in the same order as {@code xs}.
+     */
+    public static int[][] lagrangeBasis(int[] xs, int mod) {
+        final PrimeField field = new PrimeField(mod);
+        final int k = xs.length;
+        // The polynomial that evaluates to 0 at every 'x' value (degree k)
+        final long[] master = new long[k + 1];
+        master[0] = 1;
+        for (int x : xs) {
+            final long root = Math.floorMod(-x, mod);
+            for (int d = k; d > 0; d--) {
+                master[d] = (master[d - 1] + master[d] * root) % mod;
+            }
+            master[0] = master[0] * root % mod;
+        }
+        final int[][] basis = new int[k][k];
+        for (int i = 0; i < k; i++) {
+            // Divide the master polynomial by (x - xs[i]), and scale it so it evaluates to 1 at xs[i]
+            final long[] quotient = new long[k];
+            long carry = 0;
+            for (int d = k; d > 0; d--) {
+                carry = (master[d] + carry * xs[i]) % mod;
+                quotient[d - 1] = carry;
+            }
+            long value = 0;
+            for (int d = k - 1; d >= 0; d--) {
+                value = (value * xs[i] + quotient[d]) % mod;
+            }
+            final long scale = field.reciprocal((int) value);
+            for (int d = 0; d < k; d++) {
+                basis[i][d] = (int) (quotient[d] * scale % mod);
+            }
+        }
+        return basis;
+    }
+
+    /**
+     * Calculates the coefficients of the modulus polynomial that has the given {@code ys} values at the 'x' values
+     * of the given {@code basis} (see {@link #lagrangeBasis(int[], int)}). No objects are allocated.
+     *
+     * @param basis        The Lagrange basis of the 'x' values.
+     * @param ys           The 'y' values, in the same order as the basis.
+     * @param mod          The modulus to apply.
+     * @param coefficients The array in which the coefficients are saved (sorted by degree).
+     */
+    public static void interpolate(int[][] basis, int[] ys, int mod, int[] coefficients) {
+        final int k = basis.length;
+        for (int d = 0; d < k; d++) {
+            long sum = 0;
+            for (int i = 0; i < k; i++) {
+                sum += (long) ys[i] * basis[i][d];
+            }
+            coefficients[d] = (int) (sum % mod);
+        }
+    }
+
+    /**
+     * Calculates the coefficients of {@code count} modulus polynomials at once, given their values at the 'x' values
+     * of the given {@code basis} stored column by column (i.e {@code columns[i][from + p]} is the value of
+     * polynomial {@code p} at {@code xs[i]}, as an unsigned byte), i.e the (k x k) by (k x count) matrix product.
+     * Polynomials are processed by tiles, so that large {@code k} values (up to 256) do not spill every coefficient
+     * out of cache once per term. No objects are allocated.
+     *
+     * @param basis        The Lagrange basis of the 'x' values (see {@link #lagrangeBasis(int[], int)}).
+     * @param columns      The 'y' values, one column per 'x' value, in the same order as the basis.
+     * @param from         The index of the first polynomial in the columns.
+     * @param count        The amount of polynomials.
+     * @param mod          The modulus to apply (at most 257, so sums of up to 256 terms fit in an {@code int}).
+     * @param coefficients The array in which the coefficients are saved (sorted by degree, {@code basis.length}
+     *                     per polynomial, one polynomial after the other).
+     */
+    public static void interpolate(int[][] basis, byte[][] columns, int from, int count, int mod,
+                                   int[] coefficients) {
+        final int k = basis.length;
+        Arrays.fill(coefficients, 0, count * k, 0);
+        // The product is computed by tiles of polynomials, whose coefficients stay in cache while every term is added
+        final int tile = Math.max(1, INTERPOLATION_TILE / k);
+        for (int first = 0; first < count; first += tile) {
+            final int last = Math.min(count, first + tile);
+            for (int i = 0; i < k; i++) {
+                final byte[] column = columns[i];
+                for (int d = 0; d < k; d++) {
+                    final int weight = basis[i][d];
+                    if (weight == 0) {
+                        continue;
+                    }
+                    for (int p = first, index = first * k + d; p < last; p++, index += k) {
+                        coefficients[index] += weight * (column[from + p] & 0xFF);
+                    }
+                }
+            }
+        }
+        for (int index = 0; index < count * k; index++) {
+            coefficients[index] %= mod;
+        }
+    }
+
+    /**
+     * Adds a point to the Newton interpolation of {@code count} modulus polynomials at once, so that each of them
+     * also passes through its value at {@code x} (i.e {@code p'(X) = p(X) + c * N(X)}, where {@code N} is the
+     * Newton basis polynomial of the known 'x' values, which is 0 at all of them, and {@code c} is chosen so that
+     * {@code p'(x)} is the new value). Each polynomial is updated in {@code O(known)} operations.
+     * Coefficients are updated in place, and the basis is not changed (see {@link #extendNewtonBasis}).
+     * No objects are allocated.
+     *
+     * @param basis        The coefficients (sorted by degree) of the Newton basis polynomial of the known 'x' values
+     *                     (i.e the product of {@code (X - xs[i])}), of degree {@code known}.
+     * @param known        The amount of known 'x' values (i.e the degree of the basis).
+     * @param x            The new 'x' value (different from the known ones).
+     * @param column       The values at {@code x}, as unsigned bytes ({@code column[from + p]} is the value of
+     *                     polynomial {@code p}).
+     * @param from         The index of the first polynomial in the column.
+     * @param count        The amount of polynomials.
+     * @param mod          The modulus to apply.
+     * @param coefficients The coefficients of the polynomials (sorted by degree, {@code stride} per polynomial,
+     *                     one polynomial after the other, in the same order as the column), of degree less
+     *                     than {@code known}.
+     * @param stride       The amount of coefficients per polynomial (at least {@code known + 1}).
+     */
+    public static void addNewtonPoint(int[] basis, int known, int x, byte[] column, int from, int count, int mod,
+                                      int[] coefficients, int stride) {
+        long basisValue = 0;
+        for (int d = known; d >= 0; d--) {
+            basisValue = (basisValue * x + basis[d]) % mod;
+        }
+        final long inverse = new PrimeField(mod).reciprocal((int) basisValue);
+        for (int p = 0, offset = from * stride; p < count; p++, offset += stride) {
+            long value = 0;
+            for (int d = known - 1; d >= 0; d--) {
+                value = (value * x + coefficients[offset + d]) % mod;
+            }
+            final long scale = Math.floorMod((column[from + p] & 0xFF) - value, mod) * inverse % mod;
+            if (scale == 0) {
+                continue;
+            }
+            for (int d = 0; d <= known; d++) {
+                coefficients[offset + d] = (int) ((coefficients[offset + d] + scale * basis[d]) % mod);
+            }
+        }
+    }
+
+    /**
+     * Multiplies the given Newton basis polynomial by {@code (X - x)}, so that it can be used to add the next point
+     * (see {@link #addNewtonPoint}).
+     *
+     * @param basis The coefficients (sorted by degree) of the Newton basis polynomial, updated in place
+     *              (its length must be at least {@code known + 2}).
+     * @param known The degree of the basis (i.e the amount of known 'x' values).
+     * @param x     The 'x' value being added.
+     * @param mod   The modulus to apply.
+     */
+    public static void extendNewtonBasis(int[] basis, int known, int x, int mod) {
+        final int root = Math.floorMod(-x, mod);
+        basis[known + 1] = basis[known];
+        for (int d = known; d > 0; d--) {
+            basis[d] = (int) ((basis[d - 1] + (long) basis[d] * root) % mod);
+        }
+        basis[0] = (int) ((long) basis[0] * root % mod);
     }
 
     private static int auxPow(int base, int exp, int mod) {
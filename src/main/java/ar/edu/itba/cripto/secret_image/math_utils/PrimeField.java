@@ -20,6 +20,12 @@ public final class PrimeField implements Field<Integer> {
      */
     public final int size;
 
+    /**
+     * The amount of products of two elements that can be added up in a {@code long} (after a reduced sum)
+     * without overflowing, so that dot products are reduced once every this many terms instead of once per term.
+     */
+    /*package*/ final long lazyTerms;
+
 
     /**
      * Constructs a finite field of the specified size.
@@ -33,6 +39,7 @@ public final class PrimeField implements Field<Integer> {
             throw new IllegalArgumentException("Invalid field size");
         }
         this.size = size;
+        this.lazyTerms = (Long.MAX_VALUE - size) / ((long) (size - 1) * (size - 1));
     }
 
     @Override
@@ -89,6 +96,107 @@ public final class PrimeField implements Field<Integer> {
     }
 
 
+    @Override
+    public Integer[] newArray(int length) {
+        return new Integer[length];
+    }
+
+
+    @Override
+    public Integer[][] newMatrix(int rows, int cols) {
+        return new Integer[rows][cols];
+    }
+
+
+    @Override
+    public void scale(Integer factor, Integer[] x) {
+        final long f = check(factor);
+        for (int i = 0; i < x.length; i++)
+            x[i] = (int) (check(x[i]) * f % size);
+    }
+
+
+    @Override
+    public void axpy(Integer factor, Integer[] x, Integer[] y) {
+        final long f = check(factor);
+        if (f == 0)
+            return;
+        // A single reduction per term, as y + factor * x fits in a long
+        for (int i = 0; i < x.length; i++)
+            y[i] = (int) ((check(y[i]) + f * check(x[i])) % size);
+    }
+
+
+    @Override
+    public Integer dot(Integer[] x, Integer[] y) {
+        long sum = 0;
+        for (int i = 0; i < x.length; ) {
+            for (int end = (int) Math.min(x.length, i + lazyTerms); i < end; i++)
+                sum += (long) check(x[i]) * check(y[i]);
+            sum %= size;
+        }
+        return (int) sum;
+    }
+
+
+    /**
+     * Multiplies {@code length} elements of the specified array by the specified factor, in place.
+     * Elements are not checked to be in the range [0, size), so no objects are allocated.
+     *
+     * @param factor the factor to multiply by (an element of this field)
+     * @param x      the array holding the elements to scale
+     * @param from   the position of the first element
+     * @param length the amount of elements
+     */
+    public void scale(int factor, int[] x, int from, int length) {
+        for (int i = from; i < from + length; i++)
+            x[i] = (int) ((long) x[i] * factor % size);
+    }
+
+
+    /**
+     * Adds {@code length} elements of the first specified array multiplied by the specified factor to those of
+     * the second one, in place. In other words, y[yFrom + i] += factor * x[xFrom + i].
+     * Elements are not checked to be in the range [0, size), so no objects are allocated.
+     *
+     * @param factor the factor to multiply by (an element of this field, so subtracting is adding size - factor)
+     * @param x      the array holding the elements to read and multiply
+     * @param xFrom  the position of the first element of {@code x}
+     * @param y      the array holding the elements to accumulate to (it can be {@code x} itself)
+     * @param yFrom  the position of the first element of {@code y}
+     * @param length the amount of elements
+     */
+    public void axpy(int factor, int[] x, int xFrom, int[] y, int yFrom, int length) {
+        if (factor == 0)
+            return;
+        for (int i = 0; i < length; i++)
+            y[yFrom + i] = (int) ((y[yFrom + i] + (long) factor * x[xFrom + i]) % size);
+    }
+
+
+    /**
+     * Returns the dot product of {@code length} elements of the two specified arrays,
+     * reducing the sum once every {@link #lazyTerms} terms (i.e only once for small fields, such as 257).
+     * Elements are not checked to be in the range [0, size), so no objects are allocated.
+     *
+     * @param x      an array of elements
+     * @param xFrom  the position of the first element of {@code x}
+     * @param y      an array of elements
+     * @param yFrom  the position of the first element of {@code y}
+     * @param length the amount of elements
+     * @return the sum of {@code x[xFrom + i] * y[yFrom + i]}
+     */
+    public int dot(int[] x, int xFrom, int[] y, int yFrom, int length) {
+        long sum = 0;
+        for (int i = 0; i < length; ) {
+            for (int end = (int) Math.min(length, i + lazyTerms); i < end; i++)
+                sum += (long) x[xFrom + i] * y[yFrom + i];
+            sum %= size;
+        }
+        return (int) sum;
+    }
+
+
     @Override
     public boolean equals(Integer x, Integer y) {
         return check(x) == check(y);
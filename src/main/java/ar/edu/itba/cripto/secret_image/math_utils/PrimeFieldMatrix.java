@@ -0,0 +1,331 @@
+package ar.edu.itba.cripto.secret_image.math_utils;
+
+
+import java.util.stream.IntStream;
+
+/**
+ * A matrix of elements of a {@link PrimeField}, stored as primitive values in a single row-major array,
+ * so that large matrices (e.g for {@code k} up to 256) are operated on without boxing nor virtual calls per element.
+ * Products are computed by blocks (the rows of the other matrix used by a block of cells stay in cache), and
+ * reduced lazily (see {@link PrimeField#dot(int[], int, int[], int, int)}). Blocks of rows of a product,
+ * and the rows eliminated with each pivot, are processed in parallel (by parallel streams, as done by
+ * {@link Matrix#appendColumns(Matrix)}) once matrices are large enough to pay for it.
+ *
+ * @implNote This is a not thread-safe class.
+ */
+public final class PrimeFieldMatrix {
+
+    /**
+     * The amount of rows (or cells) in each block of a product.
+     */
+    private static final int BLOCK_SIZE = 64;
+    /**
+     * The amount of rows from which operations are multithreaded.
+     */
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    /**
+     * The amount of rows.
+     */
+    private final int rows;
+    /**
+     * The amount of columns.
+     */
+    private final int cols;
+    /**
+     * The values of the matrix, stored in row-major order (i.e {@code values[row * cols + col]}).
+     */
+    private final int[] values;
+    /**
+     * The field used to operate on the values in the matrix.
+     */
+    private final PrimeField field;
+
+    /**
+     * Constructs a matrix with the specified number of rows and columns, whose elements are all zero.
+     *
+     * @param rows  the number of rows in this matrix
+     * @param cols  the number of columns in this matrix
+     * @param field the field used to operate on the values in this matrix
+     * @throws IllegalArgumentException if any dimension is not positive, or {@code field} is {@code null}.
+     */
+    public PrimeFieldMatrix(int rows, int cols, PrimeField field) {
+        if (rows < 1 || cols < 1) {
+            throw new IllegalArgumentException("Matrix dimensions must be positive");
+        }
+        if (field == null) {
+            throw new IllegalArgumentException("Null field");
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.values = new int[Math.multiplyExact(rows, cols)];
+        this.field = field;
+    }
+
+    /**
+     * Constructs a matrix holding a copy of the specified data.
+     *
+     * @param data  the values of the matrix, one array per row
+     * @param field the field used to operate on the values in this matrix
+     * @return the matrix
+     * @throws IllegalArgumentException if any row contains a different amount of columns than the rest,
+     *                                  or any value is not an element of the field.
+     */
+    public static PrimeFieldMatrix of(int[][] data, PrimeField field) {
+        final PrimeFieldMatrix matrix = new PrimeFieldMatrix(data.length, data[0].length, field);
+        for (int i = 0; i < data.length; i++) {
+            if (data[i].length != matrix.cols) {
+                throw new IllegalArgumentException("All rows must have the same amount of columns");
+            }
+            for (int j = 0; j < matrix.cols; j++) {
+                matrix.set(i, j, data[i][j]);
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * @return the number of rows in this matrix
+     */
+    public int rowCount() {
+        return rows;
+    }
+
+    /**
+     * @return the number of columns in this matrix
+     */
+    public int columnCount() {
+        return cols;
+    }
+
+    /**
+     * Returns the element at the specified location in this matrix.
+     *
+     * @param row the row to read from (0-based indexing)
+     * @param col the column to read from (0-based indexing)
+     * @return the element at the specified location in this matrix
+     * @throws IndexOutOfBoundsException if the specified row or column exceeds the bounds of the matrix
+     */
+    public int get(int row, int col) {
+        return values[index(row, col)];
+    }
+
+    /**
+     * Stores the specified element at the specified location in this matrix.
+     *
+     * @param row the row to write to (0-based indexing)
+     * @param col the column to write to (0-based indexing)
+     * @param val the element value to write
+     * @throws IndexOutOfBoundsException if the specified row or column exceeds the bounds of the matrix
+     * @throws IllegalArgumentException  if the value is not an element of the field
+     */
+    public void set(int row, int col, int val) {
+        if (val < 0 || val >= field.size) {
+            throw new IllegalArgumentException("Not an element of this field: " + val);
+        }
+        values[index(row, col)] = val;
+    }
+
+    /**
+     * Gets the position of the specified location in {@link #values}.
+     *
+     * @param row the row (0-based indexing)
+     * @param col the column (0-based indexing)
+     * @return the position
+     * @throws IndexOutOfBoundsException if the specified row or column exceeds the bounds of the matrix
+     */
+    private int index(int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            throw new IndexOutOfBoundsException("Row or column index out of bounds");
+        }
+        return row * cols + col;
+    }
+
+    /**
+     * @return a copy of the values of this matrix, one array per row
+     */
+    public int[][] toArray() {
+        final int[][] data = new int[rows][];
+        for (int i = 0; i < rows; i++) {
+            data[i] = new int[cols];
+            System.arraycopy(values, i * cols, data[i], 0, cols);
+        }
+        return data;
+    }
+
+    /**
+     * Returns a new matrix representing this matrix multiplied by the specified matrix.
+     * The cells are split in blocks, and for each block of rows of this matrix the products of a block of rows
+     * of the other matrix are accumulated (in {@code long}, reduced only when they could overflow),
+     * so those rows are reused while in cache. Blocks of rows of this matrix are multiplied in parallel.
+     *
+     * @param other the second matrix multiplicand
+     * @return the product of this matrix with the specified matrix
+     * @throws IllegalArgumentException if the specified matrix has incompatible dimensions or another field
+     */
+    public PrimeFieldMatrix multiply(PrimeFieldMatrix other) {
+        if (cols != other.rows) {
+            throw new IllegalArgumentException("Incompatible matrix sizes for multiplication");
+        }
+        if (!field.equals(other.field)) {
+            throw new IllegalArgumentException("Both matrices must have the same field");
+        }
+        final PrimeFieldMatrix result = new PrimeFieldMatrix(rows, other.cols, field);
+        final int cellBlock = (int) Math.min(BLOCK_SIZE, field.lazyTerms);
+        final int rowBlocks = (rows + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        range(rowBlocks, rows).forEach(block -> multiplyBlock(other, result, block * BLOCK_SIZE, cellBlock));
+        return result;
+    }
+
+    /**
+     * Computes a block of rows of a product.
+     *
+     * @param other     the second matrix multiplicand
+     * @param result    the matrix in which the product is saved
+     * @param firstRow  the first row of the block
+     * @param cellBlock the amount of cells of each block (at most the amount of products that can be accumulated)
+     */
+    private void multiplyBlock(PrimeFieldMatrix other, PrimeFieldMatrix result, int firstRow, int cellBlock) {
+        final int blockRows = Math.min(BLOCK_SIZE, rows - firstRow);
+        final int width = other.cols;
+        final long[] sums = new long[blockRows * width];
+        long terms = 0;
+        for (int cell = 0; cell < cols; cell += cellBlock) {
+            final int lastCell = Math.min(cols, cell + cellBlock);
+            if (terms + (lastCell - cell) > field.lazyTerms) {
+                reduce(sums);
+                terms = 0;
+            }
+            for (int i = 0; i < blockRows; i++) {
+                final int row = (firstRow + i) * cols;
+                final int sum = i * width;
+                for (int c = cell; c < lastCell; c++) {
+                    final long factor = values[row + c];
+                    if (factor == 0) {
+                        continue;
+                    }
+                    final int otherRow = c * width;
+                    for (int j = 0; j < width; j++) {
+                        sums[sum + j] += factor * other.values[otherRow + j];
+                    }
+                }
+            }
+            terms += lastCell - cell;
+        }
+        final int first = firstRow * width;
+        for (int index = 0; index < sums.length; index++) {
+            result.values[first + index] = (int) (sums[index] % field.size);
+        }
+    }
+
+    /**
+     * Reduces the given sums (in place).
+     *
+     * @param sums the sums
+     */
+    private void reduce(long[] sums) {
+        for (int index = 0; index < sums.length; index++) {
+            sums[index] %= field.size;
+        }
+    }
+
+    /**
+     * Converts this matrix to reduced row echelon form (RREF) using Gauss-Jordan elimination, eliminating every
+     * other row right after finding each pivot (in parallel, as rows do not depend on each other).
+     * The time complexity of this operation is <var>O</var>(rows &times; cols &times; min(rows, cols)).
+     *
+     * @return {@code this} (for method chaining).
+     */
+    public PrimeFieldMatrix reducedRowEchelonForm() {
+        int numPivots = 0;
+        for (int j = 0; j < cols && numPivots < rows; j++) {
+            int pivotRow = numPivots;
+            while (pivotRow < rows && values[pivotRow * cols + j] == 0) {
+                pivotRow++;
+            }
+            if (pivotRow == rows) {
+                continue;  // Cannot eliminate on this column
+            }
+            swapRows(numPivots, pivotRow);
+            final int pivot = numPivots * cols;
+            final int column = j;
+            final int length = cols - j;
+            field.scale(field.reciprocal(values[pivot + j]), values, pivot + j, length);
+
+            // Columns before j are zero in the pivot row, so only the rest of each row changes
+            final int pivotIndex = numPivots;
+            range(rows, rows).forEach(i -> {
+                final int factor = values[i * cols + column];
+                if (i != pivotIndex && factor != 0) {
+                    field.axpy(field.size - factor, values, pivot + column, values, i * cols + column, length);
+                }
+            });
+            numPivots++;
+        }
+        return this;
+    }
+
+    /**
+     * Replaces the values of this matrix with the inverse of this matrix. Requires the matrix to be square.
+     * If an exception is thrown, this matrix is unchanged.
+     * The time complexity of this operation is <var>O</var>(rows<sup>3</sup>).
+     *
+     * @throws IllegalStateException if this matrix is not square, or has no inverse
+     */
+    public void invert() {
+        if (rows != cols) {
+            throw new IllegalStateException("Matrix dimensions are not square");
+        }
+
+        // Build augmented matrix: [this | identity]
+        final PrimeFieldMatrix temp = new PrimeFieldMatrix(rows, cols * 2, field);
+        for (int i = 0; i < rows; i++) {
+            System.arraycopy(values, i * cols, temp.values, i * temp.cols, cols);
+            temp.values[i * temp.cols + cols + i] = 1;
+        }
+        temp.reducedRowEchelonForm();
+
+        // Check that the left half is the identity matrix
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if (temp.values[i * temp.cols + j] != (i == j ? 1 : 0)) {
+                    throw new IllegalStateException("Matrix is not invertible");
+                }
+            }
+        }
+
+        // Extract inverse matrix from: [identity | inverse]
+        for (int i = 0; i < rows; i++) {
+            System.arraycopy(temp.values, i * temp.cols + cols, values, i * cols, cols);
+        }
+    }
+
+    /**
+     * Swaps the two specified rows of this matrix.
+     *
+     * @param row0 one row to swap
+     * @param row1 the other row to swap
+     */
+    private void swapRows(int row0, int row1) {
+        if (row0 == row1) {
+            return;
+        }
+        for (int j = 0; j < cols; j++) {
+            final int temp = values[row0 * cols + j];
+            values[row0 * cols + j] = values[row1 * cols + j];
+            values[row1 * cols + j] = temp;
+        }
+    }
+
+    /**
+     * Creates a stream over [0, {@code size}), which is parallel if the matrix is large enough.
+     *
+     * @param size      the size of the range
+     * @param scaleRows the amount of rows of the matrix being operated on
+     * @return the stream
+     */
+    private static IntStream range(int size, int scaleRows) {
+        final IntStream range = IntStream.range(0, size);
+        return scaleRows >= PARALLEL_THRESHOLD ? range.parallel() : range;
+    }
+}
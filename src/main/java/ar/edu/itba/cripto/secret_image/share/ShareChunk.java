@@ -0,0 +1,62 @@
+package ar.edu.itba.cripto.secret_image.share;
+
+/**
+ * Class representing a part of a shadow stored in the compact share format (see {@link ShareFile}),
+ * so that shadows can be streamed (e.g sent over the network) as they are created.
+ * The chunks of a shadow, concatenated in order, are the whole share file.
+ */
+public final class ShareChunk {
+
+    /**
+     * The number identifying the shadow to which this chunk belongs.
+     */
+    private final int shadow;
+    /**
+     * The position of this chunk in the share file.
+     */
+    private final long position;
+    /**
+     * The bytes of this chunk.
+     */
+    private final byte[] bytes;
+
+    /**
+     * Constructor.
+     *
+     * @param shadow   The number identifying the shadow to which this chunk belongs.
+     * @param position The position of this chunk in the share file.
+     * @param bytes    The bytes of this chunk (which are not copied).
+     */
+    public ShareChunk(int shadow, long position, byte[] bytes) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("Null bytes");
+        }
+        if (position < 0) {
+            throw new IllegalArgumentException("Negative position");
+        }
+        this.shadow = shadow;
+        this.position = position;
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return The number identifying the shadow to which this chunk belongs.
+     */
+    public int getShadow() {
+        return shadow;
+    }
+
+    /**
+     * @return The position of this chunk in the share file.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return The bytes of this chunk (which are not copied, so they must not be modified).
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+}
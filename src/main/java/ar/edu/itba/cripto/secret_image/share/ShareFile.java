@@ -0,0 +1,419 @@
+package ar.edu.itba.cripto.secret_image.share;
+
+
+import ar.edu.itba.cripto.secret_image.main.util.Keystream;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Class representing a shadow stored in the compact share format (i.e without a cover image).
+ * The file holds a small header (seed, shadow number, k, secret dimensions and the secret's bmp header,
+ * used as a template to rebuild it), followed by the raw shares (one byte per polynomial).
+ */
+public class ShareFile {
+
+    /**
+     * Extension of share files.
+     */
+    public static final String EXTENSION = ".shr";
+
+    /**
+     * Bytes identifying a share file.
+     */
+    private final static int MAGIC = 0x48534953; // "SISH", little endian
+    /**
+     * Current version of the format.
+     */
+    private final static int VERSION = 1;
+    /**
+     * Flag set when data was masked with the counter-based keystream.
+     */
+    private final static int COUNTER_KEYSTREAM_FLAG = 0x1;
+    /**
+     * Flag set when polynomials were evaluated at the number theoretic transform points.
+     */
+    private final static int NTT_POINTS_FLAG = 0x2;
+    /**
+     * Size of the fixed part of the header.
+     */
+    private final static int FIXED_HEADER_SIZE = 4 + 1 + 1 + 8 + 2 + 2 + 4 + 4 + 4 + 4;
+
+    /**
+     * The version of the keystream used to mask data (see {@link Keystream}).
+     */
+    private final int keystreamVersion;
+    /**
+     * The seed of the keystream.
+     */
+    private final long seed;
+    /**
+     * Indicates whether polynomials were evaluated at the number theoretic transform points.
+     */
+    private final boolean nttPoints;
+    /**
+     * The shadow number (i.e the x value in which polynomials were evaluated).
+     */
+    private final int shadow;
+    /**
+     * The minimum amount of shadows needed to recover the secret.
+     */
+    private final int k;
+    /**
+     * The secret image width.
+     */
+    private final int width;
+    /**
+     * The secret image height.
+     */
+    private final int height;
+    /**
+     * The secret image header (i.e all bytes before the real data starts).
+     */
+    private final byte[] headerTemplate;
+    /**
+     * The shares (one per polynomial), or {@code null} if only the header was read (see {@link #readHeader}).
+     */
+    private final byte[] shares;
+    /**
+     * The amount of shares.
+     */
+    private final int shareCount;
+
+    /**
+     * Constructor.
+     *
+     * @param keystreamVersion The version of the keystream used to mask data (see {@link Keystream}).
+     * @param seed             The seed of the keystream.
+     * @param nttPoints        Whether polynomials were evaluated at the number theoretic transform points.
+     * @param shadow           The shadow number.
+     * @param k                The minimum amount of shadows needed to recover the secret.
+     * @param width            The secret image width.
+     * @param height           The secret image height.
+     * @param headerTemplate   The secret image header.
+     * @param shares           The shares (one per polynomial).
+     */
+    public ShareFile(int keystreamVersion, long seed, boolean nttPoints, int shadow, int k, int width, int height,
+                     byte[] headerTemplate, byte[] shares) {
+        if (headerTemplate == null || shares == null) {
+            throw new IllegalArgumentException("Null header template or shares");
+        }
+        checkKeystreamVersion(keystreamVersion);
+        this.keystreamVersion = keystreamVersion;
+        this.seed = seed;
+        this.nttPoints = nttPoints;
+        this.shadow = shadow;
+        this.k = k;
+        this.width = width;
+        this.height = height;
+        this.headerTemplate = headerTemplate;
+        this.shares = shares;
+        this.shareCount = shares.length;
+    }
+
+    /**
+     * Constructor of a share file whose shares were not read.
+     *
+     * @param keystreamVersion The version of the keystream used to mask data (see {@link Keystream}).
+     * @param seed             The seed of the keystream.
+     * @param nttPoints        Whether polynomials were evaluated at the number theoretic transform points.
+     * @param shadow           The shadow number.
+     * @param k                The minimum amount of shadows needed to recover the secret.
+     * @param width            The secret image width.
+     * @param height           The secret image height.
+     * @param headerTemplate   The secret image header.
+     * @param shareCount       The amount of shares.
+     */
+    private ShareFile(int keystreamVersion, long seed, boolean nttPoints, int shadow, int k, int width, int height,
+                      byte[] headerTemplate, int shareCount) {
+        this.keystreamVersion = keystreamVersion;
+        this.seed = seed;
+        this.nttPoints = nttPoints;
+        this.shadow = shadow;
+        this.k = k;
+        this.width = width;
+        this.height = height;
+        this.headerTemplate = headerTemplate;
+        this.shares = null;
+        this.shareCount = shareCount;
+    }
+
+    /**
+     * Reads a share file.
+     *
+     * @param path Path where the share file must be read from.
+     * @return The read {@link ShareFile}.
+     * @throws IOException If any IO error occurs while reading the file, or if it is not a valid share file.
+     */
+    public static ShareFile read(String path) throws IOException {
+        return read(ByteBuffer.wrap(FileUtils.readFileToByteArray(new File(path))), path, false);
+    }
+
+    /**
+     * Reads a share file held in memory.
+     *
+     * @param bytes The buffer holding the whole share file (from its position to its limit, which are not changed).
+     * @return The read {@link ShareFile}.
+     * @throws IOException If the given {@code bytes} are not a valid share file.
+     */
+    public static ShareFile read(ByteBuffer bytes) throws IOException {
+        return read(bytes, "<memory>", false);
+    }
+
+    /**
+     * Reads only the header of a share file held in memory (i.e everything before the shares, see
+     * {@link #headerLength(ByteBuffer)}), so that its shares can be processed as they arrive.
+     * The returned share file does not hold the shares (i.e they can not be got).
+     *
+     * @param bytes The buffer holding (at least) the share file header (from its position to its limit,
+     *              which are not changed).
+     * @return The {@link ShareFile} holding the header.
+     * @throws IOException If the given {@code bytes} do not start with a valid share file header.
+     */
+    public static ShareFile readHeader(ByteBuffer bytes) throws IOException {
+        return read(bytes, "<memory>", true);
+    }
+
+    /**
+     * Gets the length of the header of the share file starting with the given {@code bytes}.
+     *
+     * @param bytes The buffer holding the first bytes of the share file (from its position to its limit,
+     *              which are not changed).
+     * @return The header length, or -1 if {@code bytes} do not hold enough bytes to know it yet.
+     * @throws IOException If the given {@code bytes} are not the start of a valid share file.
+     */
+    public static int headerLength(ByteBuffer bytes) throws IOException {
+        final ByteBuffer buffer = bytes.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < FIXED_HEADER_SIZE) {
+            return -1;
+        }
+        checkStart(buffer, "<memory>");
+        final int templateLength = buffer.getInt(FIXED_HEADER_SIZE - 8);
+        if (templateLength < 0) {
+            throw new IOException("Corrupted share file: <memory>");
+        }
+        return FIXED_HEADER_SIZE + templateLength;
+    }
+
+    /**
+     * Checks that the given {@code buffer} starts with the bytes identifying a share file, in a supported version.
+     *
+     * @param buffer The buffer (with position 0, which is not changed).
+     * @param source The path (or description) of the share file, used in error messages.
+     * @throws IOException If the buffer does not start a valid share file.
+     */
+    private static void checkStart(ByteBuffer buffer, String source) throws IOException {
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a share file: " + source);
+        }
+        final int version = Byte.toUnsignedInt(buffer.get(4));
+        if (version != VERSION) {
+            throw new IOException("Unsupported share file version " + version + ": " + source);
+        }
+    }
+
+    /**
+     * Reads a share file.
+     *
+     * @param bytes      The buffer holding the whole share file (from its position to its limit).
+     * @param source     The path (or description) of the share file, used in error messages.
+     * @param headerOnly Whether only the header must be read (i.e {@code bytes} might not hold the shares).
+     * @return The read {@link ShareFile}.
+     * @throws IOException If the given {@code bytes} are not a valid share file.
+     */
+    private static ShareFile read(ByteBuffer bytes, String source, boolean headerOnly) throws IOException {
+        final ByteBuffer buffer = bytes.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < FIXED_HEADER_SIZE) {
+            throw new IOException("Not a share file: " + source);
+        }
+        checkStart(buffer, source);
+        buffer.position(5);
+        final int flags = Byte.toUnsignedInt(buffer.get());
+        final int keystreamVersion = (flags & COUNTER_KEYSTREAM_FLAG) != 0 ? Keystream.COUNTER : Keystream.LEGACY;
+        final long seed = buffer.getLong();
+        final int shadow = Short.toUnsignedInt(buffer.getShort());
+        final int k = Short.toUnsignedInt(buffer.getShort());
+        final int width = buffer.getInt();
+        final int height = buffer.getInt();
+        final int templateLength = buffer.getInt();
+        final int sharesLength = buffer.getInt();
+        if (templateLength < 0 || sharesLength < 0 || buffer.remaining() < templateLength
+                || !headerOnly && buffer.remaining() != templateLength + sharesLength) {
+            throw new IOException("Truncated share file: " + source);
+        }
+        final byte[] template = new byte[templateLength];
+        buffer.get(template);
+        if (headerOnly) {
+            return new ShareFile(keystreamVersion, seed, (flags & NTT_POINTS_FLAG) != 0, shadow, k, width, height,
+                    template, sharesLength);
+        }
+        final byte[] shares = new byte[sharesLength];
+        buffer.get(shares);
+        return new ShareFile(keystreamVersion, seed, (flags & NTT_POINTS_FLAG) != 0, shadow, k, width, height,
+                template, shares);
+    }
+
+    /**
+     * Writes this share file.
+     *
+     * @param path Path where the share file must be saved.
+     * @throws IOException If any IO error occurs while writing the file.
+     */
+    public void write(String path) throws IOException {
+        FileUtils.writeByteArrayToFile(new File(path), toByteArray());
+    }
+
+    /**
+     * @return The whole share file (i.e the bytes saved by {@link #write(String)}).
+     */
+    public byte[] toByteArray() {
+        checkShares();
+        final byte[] header = header(keystreamVersion, seed, nttPoints, shadow, k, width, height, headerTemplate,
+                shares.length);
+        final byte[] bytes = Arrays.copyOf(header, header.length + shares.length);
+        System.arraycopy(shares, 0, bytes, header.length, shares.length);
+        return bytes;
+    }
+
+    /**
+     * Builds the header of a share file (i.e everything before the shares),
+     * so that shares can be written after it as they are calculated.
+     *
+     * @param keystreamVersion The version of the keystream used to mask data (see {@link Keystream}).
+     * @param seed             The seed of the keystream.
+     * @param nttPoints        Whether polynomials were evaluated at the number theoretic transform points.
+     * @param shadow           The shadow number.
+     * @param k                The minimum amount of shadows needed to recover the secret.
+     * @param width            The secret image width.
+     * @param height           The secret image height.
+     * @param headerTemplate   The secret image header.
+     * @param shareCount       The amount of shares that follow the header.
+     * @return The header.
+     */
+    public static byte[] header(int keystreamVersion, long seed, boolean nttPoints, int shadow, int k, int width,
+                                int height, byte[] headerTemplate, int shareCount) {
+        checkKeystreamVersion(keystreamVersion);
+        final ByteBuffer buffer = ByteBuffer.allocate(FIXED_HEADER_SIZE + headerTemplate.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) ((keystreamVersion == Keystream.COUNTER ? COUNTER_KEYSTREAM_FLAG : 0)
+                | (nttPoints ? NTT_POINTS_FLAG : 0)));
+        buffer.putLong(seed);
+        buffer.putShort((short) shadow);
+        buffer.putShort((short) k);
+        buffer.putInt(width);
+        buffer.putInt(height);
+        buffer.putInt(headerTemplate.length);
+        buffer.putInt(shareCount);
+        buffer.put(headerTemplate);
+        return buffer.array();
+    }
+
+    /**
+     * Checks that the given keystream version is supported.
+     *
+     * @param keystreamVersion The keystream version.
+     */
+    private static void checkKeystreamVersion(int keystreamVersion) {
+        if (keystreamVersion != Keystream.LEGACY && keystreamVersion != Keystream.COUNTER) {
+            throw new IllegalArgumentException("Unsupported keystream version: " + keystreamVersion);
+        }
+    }
+
+    /**
+     * @return The version of the keystream used to mask data (see {@link Keystream}).
+     */
+    public int getKeystreamVersion() {
+        return keystreamVersion;
+    }
+
+    /**
+     * @return {@code true} if polynomials were evaluated at the number theoretic transform points,
+     * or {@code false} if they were evaluated at the shadow numbers.
+     */
+    public boolean usesNttPoints() {
+        return nttPoints;
+    }
+
+    /**
+     * @return The seed of the keystream.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return The shadow number.
+     */
+    public int getShadow() {
+        return shadow;
+    }
+
+    /**
+     * @return The minimum amount of shadows needed to recover the secret.
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * @return The secret image width.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The secret image height.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return A copy of the secret image header.
+     */
+    public byte[] getHeaderTemplate() {
+        return Arrays.copyOf(headerTemplate, headerTemplate.length);
+    }
+
+    /**
+     * @return The amount of shares (i.e the amount of polynomials).
+     */
+    public int getShareCount() {
+        return shareCount;
+    }
+
+    /**
+     * @return A copy of the shares (one per polynomial).
+     */
+    public byte[] getShares() {
+        checkShares();
+        return Arrays.copyOf(shares, shares.length);
+    }
+
+    /**
+     * Returns the share of the given polynomial.
+     *
+     * @param index The polynomial index.
+     * @return The share (i.e the evaluation of the polynomial in this shadow number).
+     */
+    public int getShare(int index) {
+        checkShares();
+        return Byte.toUnsignedInt(shares[index]);
+    }
+
+    /**
+     * Checks that shares were read (i.e not only the header).
+     */
+    private void checkShares() {
+        if (shares == null) {
+            throw new IllegalStateException("Only the header of this share file was read");
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package ar.edu.itba.cripto.secret_image;
+
+import ar.edu.itba.cripto.secret_image.bmp.BmpEditor;
+import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
+import ar.edu.itba.cripto.secret_image.main.util.PseudoTable;
+import ar.edu.itba.cripto.secret_image.math_utils.PolynomialUtils;
+import ar.edu.itba.cripto.secret_image.support.SyntheticBmp;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Checks that hot paths stay within their allocation budget (i.e bytes allocated per processed megabyte),
+ * so that per byte boxing or collections do not come back.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class AllocationBudgetTest {
+
+    private static final String BUDGET_ERROR_MESSAGE = "Allocation budget exceeded.";
+
+    private static final double MB = 1024 * 1024;
+
+    /**
+     * Budget of those paths that should not allocate anything per processed byte.
+     */
+    private static final double NO_ALLOCATION_BUDGET = 1024;
+
+    /**
+     * Amount of warm up runs before measuring.
+     */
+    private static final int WARM_UP_RUNS = 3;
+
+    private static final int K = 4;
+
+    private static final int WIDTH = 1024;
+
+    private static final int HEIGHT = 1024;
+
+    private static Path directory;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    private BmpUtils image;
+
+    @BeforeClass
+    public static void createImage() throws IOException {
+        directory = Files.createTempDirectory("allocation-budget");
+        SyntheticBmp.write(directory.resolve("image.bmp"), WIDTH, HEIGHT, 8, 1);
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (threads.isThreadAllocatedMemorySupported()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+            }
+        }
+    }
+
+    @AfterClass
+    public static void deleteImage() throws IOException {
+        Files.deleteIfExists(directory.resolve("image.bmp"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Before
+    public void loadImage() throws IOException {
+        Assume.assumeTrue("Thread allocation accounting is not supported",
+                threads != null && threads.isThreadAllocatedMemorySupported());
+        image = new BmpUtils(directory.resolve("image.bmp").toString());
+    }
+
+    @After
+    public void releaseImage() {
+        if (image != null) {
+            image.release();
+        }
+    }
+
+    @Test
+    public void testBlockReadingIsWithinBudget() {
+        final int[] block = new int[K];
+        final int blocks = (int) image.getImageSize() / K;
+        assertWithinBudget("BmpUtils#readBlock", NO_ALLOCATION_BUDGET, image.getImageSize(), () -> {
+            for (int i = 0; i < blocks; i++) {
+                image.readBlock(i, block);
+            }
+        });
+    }
+
+    @Test
+    public void testPseudoTableGenerationIsWithinBudget() {
+        final int size = (int) image.getImageSize();
+        // The table itself is the only expected allocation
+        assertWithinBudget("PseudoTable#generate", MB + NO_ALLOCATION_BUDGET, size,
+                () -> PseudoTable.generate(size, 1234));
+    }
+
+    @Test
+    public void testSecretInsertionIsWithinBudget() {
+        final int secrets = image.getHiddenCapacity();
+        assertWithinBudget("BmpEditor#insertSecret", NO_ALLOCATION_BUDGET, secrets, () -> {
+            final BmpEditor editor = image.edit();
+            for (int i = 0; i < secrets; i++) {
+                editor.insertSecret(i & 0xFF);
+            }
+        });
+    }
+
+    @Test
+    public void testBulkSecretInsertionIsWithinBudget() {
+        final byte[] secrets = new byte[image.getHiddenCapacity()];
+        new Random(1).nextBytes(secrets);
+        assertWithinBudget("BmpEditor#insertSecrets", NO_ALLOCATION_BUDGET, secrets.length,
+                () -> image.edit().insertSecrets(secrets, 0, secrets.length));
+    }
+
+    @Test
+    public void testPolynomialEvaluationIsWithinBudget() {
+        final int[][] polynomials = randomPolynomials();
+        assertWithinBudget("PolynomialUtils#evaluate", NO_ALLOCATION_BUDGET, (long) polynomials.length * K, () -> {
+            int checksum = 0;
+            for (int[] coefficients : polynomials) {
+                for (int x = 1; x <= 8; x++) {
+                    checksum += PolynomialUtils.evaluate(coefficients, x, 257);
+                }
+            }
+            Assert.assertTrue(checksum >= 0);
+        });
+    }
+
+    @Test
+    public void testInterpolationIsWithinBudget() {
+        final int[][] basis = PolynomialUtils.lagrangeBasis(new int[]{2, 3, 5, 7}, 257);
+        final int[][] shares = randomPolynomials();
+        final int[] coefficients = new int[K];
+        assertWithinBudget("PolynomialUtils#interpolate", NO_ALLOCATION_BUDGET, (long) shares.length * K, () -> {
+            for (int[] ys : shares) {
+                PolynomialUtils.interpolate(basis, ys, 257, coefficients);
+            }
+        });
+    }
+
+    /**
+     * Creates as many random polynomials of degree {@code K - 1} as blocks of {@code K} bytes has the image.
+     *
+     * @return The coefficients of each polynomial.
+     */
+    private int[][] randomPolynomials() {
+        final Random random = new Random(1);
+        final int[][] polynomials = new int[(int) image.getImageSize() / K][K];
+        for (int[] coefficients : polynomials) {
+            for (int j = 0; j < K; j++) {
+                coefficients[j] = random.nextInt(256);
+            }
+        }
+        return polynomials;
+    }
+
+    /**
+     * Runs the given {@code task} (after warming it up), and checks that the bytes it allocates
+     * per processed megabyte do not exceed the given {@code budget}.
+     *
+     * @param name           The name of the hot path being checked.
+     * @param budget         The maximum amount of bytes allocated per processed megabyte.
+     * @param processedBytes The amount of bytes processed by each run of the task.
+     * @param task           The task.
+     */
+    private static void assertWithinBudget(String name, double budget, long processedBytes, Runnable task) {
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            task.run();
+        }
+        final long threadId = Thread.currentThread().getId();
+        final long before = threads.getThreadAllocatedBytes(threadId);
+        task.run();
+        final long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        final double perMegabyte = allocated / (processedBytes / MB);
+        Assert.assertTrue(String.format("%s %s allocated %.0f bytes per MB (budget is %.0f)",
+                BUDGET_ERROR_MESSAGE, name, perMegabyte, budget), perMegabyte <= budget);
+    }
+}
@@ -0,0 +1,82 @@
+package ar.edu.itba.cripto.secret_image.bmp;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import ar.edu.itba.cripto.secret_image.support.SyntheticBmp;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Perform tests over {@link BmpEditor} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class BmpEditorTest {
+
+    private static final String INSERT_SECRETS_ERROR_MESSAGE = "BmpEditor#insertSecrets did not return as expected.";
+
+    private static final int SIZE = 16;
+
+    @Test
+    public void testSecretsArePackedMostSignificantBitsFirst() throws IOException {
+        final byte[] image = syntheticImage();
+        final int offset = SyntheticBmp.offset(8);
+        final byte[] secrets = new byte[SIZE];
+        new Random(SIZE).nextBytes(secrets);
+
+        for (int bitsPerByte : new int[]{1, 2, 4}) {
+            final byte[] bytes = image.clone();
+            final BmpEditor editor = BmpUtils.wrap(ByteBuffer.wrap(bytes)).edit();
+            editor.editBitsPerByte(bitsPerByte);
+            Assert.assertTrue(INSERT_SECRETS_ERROR_MESSAGE + " Secrets must fit",
+                    editor.insertSecrets(secrets, 0, secrets.length));
+
+            final int mask = (1 << bitsPerByte) - 1;
+            final int bytesPerSecret = 8 / bitsPerByte;
+            for (int i = 0; i < secrets.length; i++) {
+                for (int j = 0; j < bytesPerSecret; j++) {
+                    final int index = offset + i * bytesPerSecret + j;
+                    final int shift = 8 - bitsPerByte * (j + 1);
+                    Assert.assertEquals(INSERT_SECRETS_ERROR_MESSAGE + " Bits must be hidden most significant first",
+                            (secrets[i] >> shift) & mask, bytes[index] & mask);
+                    Assert.assertEquals(INSERT_SECRETS_ERROR_MESSAGE + " Other bits of the cover must be kept",
+                            image[index] & ~mask, bytes[index] & ~mask);
+                }
+            }
+            final BmpUtils shadow = BmpUtils.wrap(ByteBuffer.wrap(bytes));
+            Assert.assertEquals(INSERT_SECRETS_ERROR_MESSAGE + " Bits per byte must be recorded in the header",
+                    bitsPerByte, shadow.getBitsPerByte());
+            Assert.assertArrayEquals(INSERT_SECRETS_ERROR_MESSAGE + " Secrets must be extracted back",
+                    secrets, shadow.extractHidden(secrets.length));
+        }
+    }
+
+    @Test
+    public void testSecretsBeyondTheImageAreRejected() throws IOException {
+        final BmpEditor editor = BmpUtils.wrap(ByteBuffer.wrap(syntheticImage())).edit();
+        editor.editBitsPerByte(4);
+        // Each secret takes 2 bytes, so half the image size fits
+        Assert.assertTrue(INSERT_SECRETS_ERROR_MESSAGE + " Secrets filling the image must fit",
+                editor.insertSecrets(new byte[SIZE * SIZE / 2], 0, SIZE * SIZE / 2));
+        Assert.assertFalse(INSERT_SECRETS_ERROR_MESSAGE + " Secrets beyond the image must not fit",
+                editor.insertSecrets(new byte[1], 0, 1));
+    }
+
+    private static byte[] syntheticImage() throws IOException {
+        final Path path = Files.createTempFile("bmp-editor", ".bmp");
+        try {
+            SyntheticBmp.write(path, SIZE, SIZE, 8, SIZE);
+            return Files.readAllBytes(path);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
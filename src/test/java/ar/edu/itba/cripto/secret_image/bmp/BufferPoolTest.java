@@ -0,0 +1,85 @@
+package ar.edu.itba.cripto.secret_image.bmp;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Perform tests over {@link BufferPool} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class BufferPoolTest {
+
+    private static final String ACQUIRE_ERROR_MESSAGE = "BufferPool#acquire did not return as expected.";
+
+    private static final String RELEASE_ERROR_MESSAGE = "BufferPool#release did not return as expected.";
+
+    @Test
+    public void testBuffersAreDirectAndSizeClassed() {
+        final BufferPool pool = new BufferPool(BufferPool.DEFAULT_MAX_RETAINED_BYTES);
+
+        final ByteBuffer small = pool.acquire(10);
+        Assert.assertTrue(ACQUIRE_ERROR_MESSAGE + " Buffers must be direct", small.isDirect());
+        Assert.assertEquals(ACQUIRE_ERROR_MESSAGE + " Position must be 0", 0, small.position());
+        Assert.assertEquals(ACQUIRE_ERROR_MESSAGE + " Limit must be the requested size", 10, small.limit());
+        Assert.assertEquals(ACQUIRE_ERROR_MESSAGE + " Small buffers must use the smallest class",
+                4096, small.capacity());
+
+        // 2^16 < 70000 <= 2^16 * 5 / 4
+        Assert.assertEquals(ACQUIRE_ERROR_MESSAGE + " Capacity must be the next quarter of a power of two",
+                (1 << 16) * 5 / 4, pool.acquire(70000).capacity());
+        Assert.assertEquals(ACQUIRE_ERROR_MESSAGE + " Exact classes must not be rounded up",
+                1 << 16, pool.acquire(1 << 16).capacity());
+    }
+
+    @Test
+    public void testReleasedBuffersAreReused() {
+        final BufferPool pool = new BufferPool(BufferPool.DEFAULT_MAX_RETAINED_BYTES);
+        final ByteBuffer buffer = pool.acquire(70000);
+        buffer.position(100);
+
+        pool.release(buffer);
+        Assert.assertEquals(RELEASE_ERROR_MESSAGE + " Released bytes must be retained",
+                buffer.capacity(), pool.getRetainedBytes());
+
+        final ByteBuffer reused = pool.acquire(69000);
+        Assert.assertSame(ACQUIRE_ERROR_MESSAGE + " Buffers of the same class must be reused", buffer, reused);
+        Assert.assertEquals(ACQUIRE_ERROR_MESSAGE + " Reused buffers must be cleared", 0, reused.position());
+        Assert.assertEquals(ACQUIRE_ERROR_MESSAGE + " Reused buffers must be limited to the requested size",
+                69000, reused.limit());
+        Assert.assertEquals(ACQUIRE_ERROR_MESSAGE + " Acquired bytes must no longer be retained",
+                0, pool.getRetainedBytes());
+        Assert.assertNotSame(ACQUIRE_ERROR_MESSAGE + " Buffers of other classes must not be reused",
+                buffer, pool.acquire(1 << 16));
+    }
+
+    @Test
+    public void testRetainedBytesAreBounded() {
+        final BufferPool pool = new BufferPool(8192);
+        final ByteBuffer first = pool.acquire(4096);
+        final ByteBuffer second = pool.acquire(4096);
+        final ByteBuffer third = pool.acquire(4096);
+
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+        Assert.assertEquals(RELEASE_ERROR_MESSAGE + " Buffers beyond the limit must not be retained",
+                8192, pool.getRetainedBytes());
+
+        pool.release(ByteBuffer.allocate(4096));
+        pool.release(ByteBuffer.allocateDirect(5000));
+        Assert.assertEquals(RELEASE_ERROR_MESSAGE + " Buffers not acquired from a pool must not be retained",
+                8192, pool.getRetainedBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeSizeIsRejected() {
+        new BufferPool(BufferPool.DEFAULT_MAX_RETAINED_BYTES).acquire(-1);
+    }
+}
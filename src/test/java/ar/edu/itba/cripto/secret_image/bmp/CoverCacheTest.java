@@ -0,0 +1,100 @@
+package ar.edu.itba.cripto.secret_image.bmp;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import ar.edu.itba.cripto.secret_image.support.SyntheticBmp;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Perform tests over {@link CoverCache} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class CoverCacheTest {
+
+    private static final String LOAD_ERROR_MESSAGE = "CoverCache#load did not return as expected.";
+
+    private static final int SIZE = 64;
+
+    private Path directory;
+
+    private Path cover;
+
+    @Before
+    public void createCover() throws IOException {
+        directory = Files.createTempDirectory("cover-cache");
+        cover = directory.resolve("cover.bmp");
+        SyntheticBmp.write(cover, SIZE, SIZE, 8, 1);
+    }
+
+    @After
+    public void deleteCover() throws IOException {
+        Files.deleteIfExists(cover);
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void testEditingACopyKeepsTheCachedCover() throws IOException {
+        final CoverCache cache = new CoverCache(CoverCache.DEFAULT_MAX_BYTES);
+        final BmpUtils first = cache.load(cover.toString());
+        final byte[] pristine = first.extractHidden(first.getHiddenCapacity());
+        final byte[] secrets = new byte[first.getHiddenCapacity()];
+        for (int i = 0; i < secrets.length; i++) {
+            secrets[i] = (byte) ~pristine[i];
+        }
+        final BmpEditor editor = first.edit();
+        editor.editShadow(7);
+        editor.insertSecrets(secrets, 0, secrets.length);
+
+        final BmpUtils second = cache.load(cover.toString());
+
+        Assert.assertEquals(LOAD_ERROR_MESSAGE + " Cover must be cached once", Files.size(cover),
+                cache.getCachedBytes());
+        Assert.assertArrayEquals(LOAD_ERROR_MESSAGE + " Edited copy must hold the new secrets",
+                secrets, first.extractHidden(secrets.length));
+        Assert.assertArrayEquals(LOAD_ERROR_MESSAGE + " Cached cover must not be edited",
+                pristine, second.extractHidden(pristine.length));
+        Assert.assertEquals(LOAD_ERROR_MESSAGE + " Cached cover must not be edited", 0, second.getShadow());
+        first.release();
+        second.release();
+    }
+
+    @Test
+    public void testChangedCoverIsReloaded() throws IOException {
+        final CoverCache cache = new CoverCache(CoverCache.DEFAULT_MAX_BYTES);
+        cache.load(cover.toString()).release();
+
+        SyntheticBmp.write(cover, SIZE, SIZE * 2, 8, 2);
+        final BmpUtils reloaded = cache.load(cover.toString());
+
+        Assert.assertEquals(LOAD_ERROR_MESSAGE + " Changed cover must be reloaded", SIZE * 2, reloaded.getHeight());
+        Assert.assertEquals(LOAD_ERROR_MESSAGE + " Stale entry must be replaced", Files.size(cover),
+                cache.getCachedBytes());
+        reloaded.release();
+    }
+
+    @Test
+    public void testLeastRecentlyUsedCoverIsEvicted() throws IOException {
+        final Path other = directory.resolve("other.bmp");
+        SyntheticBmp.write(other, SIZE, SIZE, 8, 2);
+        try {
+            final CoverCache cache = new CoverCache(Files.size(cover) + Files.size(other) - 1);
+            cache.load(cover.toString()).release();
+            cache.load(other.toString()).release();
+
+            Assert.assertEquals(LOAD_ERROR_MESSAGE + " Eldest cover must be evicted", Files.size(other),
+                    cache.getCachedBytes());
+        } finally {
+            Files.deleteIfExists(other);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package ar.edu.itba.cripto.secret_image.bmp;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Perform tests over {@link SegmentedBuffer} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class SegmentedBufferTest {
+
+    private static final String GET_ERROR_MESSAGE = "SegmentedBuffer#get did not return as expected.";
+
+    private static final int SEGMENT_SIZE = 16;
+
+    @Test
+    public void testBulkAccessSpansSegments() {
+        final byte[] bytes = new byte[SEGMENT_SIZE * 5 + 3];
+        new Random(16).nextBytes(bytes);
+        final SegmentedBuffer buffer = SegmentedBuffer.allocate(bytes.length, SEGMENT_SIZE);
+        // Written in pieces that do not start (nor end) at segment boundaries
+        for (int from = 0; from < bytes.length; from += 7) {
+            buffer.put(from, bytes, from, Math.min(7, bytes.length - from));
+        }
+
+        for (int i = 0; i < bytes.length; i++) {
+            Assert.assertEquals(GET_ERROR_MESSAGE + " Bytes must be at their position", bytes[i], buffer.get(i));
+        }
+        final byte[] read = new byte[SEGMENT_SIZE * 3];
+        buffer.get(SEGMENT_SIZE - 5, read, 0, read.length);
+        Assert.assertArrayEquals(GET_ERROR_MESSAGE + " Ranges must be read across segments",
+                Arrays.copyOfRange(bytes, SEGMENT_SIZE - 5, SEGMENT_SIZE * 4 - 5), read);
+    }
+
+    @Test
+    public void testMappedChangesAreWrittenToTheFile() throws IOException {
+        final Path path = Files.createTempFile("segmented-buffer", ".bin");
+        try {
+            final byte[] bytes = new byte[SEGMENT_SIZE * 4];
+            new Random(4).nextBytes(bytes);
+            Files.write(path, bytes);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // The region starts in the middle of the file (as the real data of an image)
+                final SegmentedBuffer buffer = SegmentedBuffer.map(channel, FileChannel.MapMode.READ_WRITE, 10,
+                        bytes.length - 10, SEGMENT_SIZE);
+                Assert.assertEquals(GET_ERROR_MESSAGE + " Mapped bytes must be those of the file",
+                        bytes[10 + SEGMENT_SIZE * 2], buffer.get(SEGMENT_SIZE * 2));
+                for (long i = 0; i < buffer.size(); i++) {
+                    buffer.put(i, (byte) ~buffer.get(i));
+                }
+                buffer.force();
+            }
+
+            final byte[] saved = Files.readAllBytes(path);
+            for (int i = 0; i < bytes.length; i++) {
+                Assert.assertEquals(GET_ERROR_MESSAGE + " Only the mapped region must change",
+                        i < 10 ? bytes[i] : (byte) ~bytes[i], saved[i]);
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
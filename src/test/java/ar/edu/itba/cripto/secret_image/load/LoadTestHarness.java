@@ -0,0 +1,411 @@
+package ar.edu.itba.cripto.secret_image.load;
+
+import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
+import ar.edu.itba.cripto.secret_image.main.Decryptor;
+import ar.edu.itba.cripto.secret_image.main.Encryption;
+import ar.edu.itba.cripto.secret_image.main.SharingOptions;
+import ar.edu.itba.cripto.secret_image.main.util.Keystream;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+import ar.edu.itba.cripto.secret_image.support.ShadowSet;
+import ar.edu.itba.cripto.secret_image.support.SyntheticBmp;
+import org.apache.commons.io.FileUtils;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end load test harness. Creates a synthetic secret and covers for each scenario of a grid
+ * (k, n, image size and thread count), runs a full distribution and recovery through {@link Encryption}
+ * and {@link Decryptor}, and reports throughput, peak heap and RSS, GC time, and whether the recovered image
+ * is byte-exact.
+ * <p>
+ * The grid is configured through system properties:
+ * <ul>
+ * <li>{@code load.k}: comma separated k values (default {@code 2,4,8}).</li>
+ * <li>{@code load.n}: comma separated n values (default {@code 8}). Scenarios with n less than k are skipped.</li>
+ * <li>{@code load.sizes}: comma separated secret sizes, as {@code WIDTHxHEIGHT} (default {@code 512x512}).</li>
+ * <li>{@code load.threads}: comma separated amount of arithmetic threads (default 1 and the available processors).</li>
+ * <li>{@code load.depth}: the bit depth of secrets and covers, 8 or 24 (default 8).</li>
+ * <li>{@code load.keystream}: the keystream version (default 1).</li>
+ * <li>{@code load.warmup}: amount of unreported runs of the first scenario (default 1).</li>
+ * <li>{@code load.dir}: the working directory (default {@code target/load-test}).</li>
+ * <li>{@code load.report}: optional path of a CSV file in which results are also written.</li>
+ * </ul>
+ */
+public final class LoadTestHarness {
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private LoadTestHarness() {
+    }
+
+    /**
+     * Entry point.
+     *
+     * @param args Not used (see class documentation for the system properties).
+     * @throws IOException If any IO error occurs.
+     */
+    public static void main(String[] args) throws IOException {
+        final List<Integer> ks = intList("load.k", "2,4,8");
+        final List<Integer> ns = intList("load.n", "8");
+        final List<int[]> sizes = Arrays.stream(System.getProperty("load.sizes", "512x512").split(","))
+                .map(String::trim)
+                .map(size -> Arrays.stream(size.split("x")).mapToInt(Integer::parseInt).toArray())
+                .collect(Collectors.toList());
+        final List<Integer> threads = intList("load.threads",
+                "1," + Runtime.getRuntime().availableProcessors()).stream().distinct().collect(Collectors.toList());
+        final int depth = Integer.getInteger("load.depth", 8);
+        final int keystream = Integer.getInteger("load.keystream", Keystream.LEGACY);
+        final int warmup = Integer.getInteger("load.warmup", 1);
+        final Path directory = Paths.get(System.getProperty("load.dir", "target/load-test"));
+        final String report = System.getProperty("load.report");
+
+        final List<Scenario> scenarios = new ArrayList<>();
+        for (int[] size : sizes) {
+            for (int k : ks) {
+                for (int n : ns) {
+                    if (n < k) {
+                        continue;
+                    }
+                    for (int t : threads) {
+                        scenarios.add(new Scenario(k, n, size[0], size[1], depth, t, keystream));
+                    }
+                }
+            }
+        }
+        if (scenarios.isEmpty()) {
+            System.err.println("No scenarios to run");
+            return;
+        }
+
+        for (int i = 0; i < warmup; i++) {
+            run(scenarios.get(0), directory);
+        }
+        final List<Result> results = new ArrayList<>();
+        System.out.println(Result.HEADER);
+        for (Scenario scenario : scenarios) {
+            final Result result = run(scenario, directory);
+            results.add(result);
+            System.out.println(result);
+        }
+        if (report != null) {
+            try (PrintStream out = new PrintStream(Files.newOutputStream(Paths.get(report)), true, "UTF-8")) {
+                out.println(Result.CSV_HEADER);
+                results.forEach(result -> out.println(result.toCsv()));
+            }
+        }
+        if (results.stream().anyMatch(result -> !result.isExact())) {
+            System.err.println("Some recovered images were not byte-exact");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the given {@code scenario} (i.e creates its images, distributes and recovers the secret,
+     * and checks the recovered image).
+     *
+     * @param scenario  The scenario to run.
+     * @param directory The working directory (the scenario files are deleted once it is run).
+     * @return The {@link Result} of the run.
+     * @throws IOException If any IO error occurs.
+     */
+    /*package*/ static Result run(Scenario scenario, Path directory) throws IOException {
+        final Path root = Files.createDirectories(directory).resolve("run-" + System.nanoTime());
+        final Path covers = Files.createDirectories(root.resolve("covers"));
+        final Path recovery = Files.createDirectories(root.resolve("recovery"));
+        final Path secret = root.resolve("secret.bmp");
+        final Path recovered = root.resolve("recovered.bmp");
+        try {
+            SyntheticBmp.write(secret, scenario.width, scenario.height, scenario.bitsPerPixel, 1);
+            for (int i = 1; i <= scenario.n; i++) {
+                SyntheticBmp.write(covers.resolve(String.format("cover%03d.bmp", i)), scenario.width,
+                        scenario.coverHeight(), scenario.bitsPerPixel, 1 + i);
+            }
+            final int offset = SyntheticBmp.offset(scenario.bitsPerPixel);
+            final long secretBytes = Files.size(secret) - offset;
+
+            final Metrics metrics = new Metrics();
+            final long distributeNanos;
+            final long recoverNanos;
+            try (TaskScheduler scheduler = new TaskScheduler(TaskScheduler.DEFAULT_IO_LIMIT, scenario.threads)) {
+                final SharingOptions options = new SharingOptions().setKeystreamVersion(scenario.keystreamVersion);
+                long start = System.nanoTime();
+                new Encryption(scenario.k, scenario.n, secret.toString(), covers.toString(), options, scheduler)
+                        .encrypt();
+                distributeNanos = System.nanoTime() - start;
+
+                // The last k shadows are used, so that recovery does not always interpolate at 1..k
+                final List<Path> shadows;
+                try (Stream<Path> paths = Files.list(covers)) {
+                    shadows = paths.sorted().collect(Collectors.toList());
+                }
+                for (Path shadow : shadows.subList(shadows.size() - scenario.k, shadows.size())) {
+                    Files.copy(shadow, recovery.resolve(shadow.getFileName()));
+                }
+                start = System.nanoTime();
+                new Decryptor(scenario.k, recovered.toString(), recovery.toString(), scheduler).decrypt();
+                recoverNanos = System.nanoTime() - start;
+            }
+            metrics.stop();
+
+            final byte[] expected = expectedRecovery(secret, offset, scenario, covers);
+            final byte[] actual = Files.readAllBytes(recovered);
+            int mismatches = Math.max(0, expected.length - (actual.length - offset));
+            for (int i = 0; i < expected.length && offset + i < actual.length; i++) {
+                if (expected[i] != actual[offset + i]) {
+                    mismatches++;
+                }
+            }
+            return new Result(scenario, secretBytes, distributeNanos, recoverNanos, metrics, mismatches);
+        } finally {
+            FileUtils.deleteQuietly(root.toFile());
+        }
+    }
+
+    /**
+     * Calculates the pixels that recovery is expected to produce (see {@link ShadowSet#adjust}).
+     *
+     * @param secret   The path to the secret image.
+     * @param offset   The offset of the secret pixels.
+     * @param scenario The scenario being run.
+     * @param covers   The directory holding the shadows (from which the keystream seed is taken).
+     * @return The expected pixels.
+     * @throws IOException If any IO error occurs.
+     */
+    private static byte[] expectedRecovery(Path secret, int offset, Scenario scenario, Path covers)
+            throws IOException {
+        final byte[] file = Files.readAllBytes(secret);
+        final byte[] pixels = Arrays.copyOfRange(file, offset, file.length);
+        final BmpUtils shadow;
+        try (Stream<Path> shadows = Files.list(covers)) {
+            shadow = new BmpUtils(shadows.findFirst().orElseThrow(IllegalStateException::new).toString());
+        }
+        final Keystream keystream = Keystream.create(shadow.getKeystreamVersion(), shadow.getSeed(),
+                pixels.length);
+        shadow.release();
+
+        ShadowSet.adjust(pixels, scenario.k, scenario.n, keystream);
+        return pixels;
+    }
+
+    /**
+     * Parses a comma separated list of integers from a system property.
+     *
+     * @param property     The property name.
+     * @param defaultValue The value used if the property is not set.
+     * @return The parsed integers.
+     */
+    private static List<Integer> intList(String property, String defaultValue) {
+        return Arrays.stream(System.getProperty(property, defaultValue).split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .map(Integer::parseInt)
+                .collect(Collectors.toList());
+    }
+
+
+    /**
+     * A point of the load test grid.
+     */
+    /*package*/ static final class Scenario {
+
+        private final int k;
+        private final int n;
+        private final int width;
+        private final int height;
+        private final int bitsPerPixel;
+        private final int threads;
+        private final int keystreamVersion;
+
+        /**
+         * Constructor.
+         * The height is rounded up to a multiple of {@code k}, so the secret size is divisible by {@code k}.
+         *
+         * @param k                The minimum amount of shadows needed to recover the secret.
+         * @param n                The amount of shadows.
+         * @param width            The secret width.
+         * @param height           The secret height.
+         * @param bitsPerPixel     The bit depth of the secret and covers (8 or 24).
+         * @param threads          The amount of arithmetic threads.
+         * @param keystreamVersion The keystream version.
+         */
+        /*package*/ Scenario(int k, int n, int width, int height, int bitsPerPixel, int threads,
+                             int keystreamVersion) {
+            this.k = k;
+            this.n = n;
+            this.width = width;
+            this.height = (height + k - 1) / k * k;
+            this.bitsPerPixel = bitsPerPixel;
+            this.threads = threads;
+            this.keystreamVersion = keystreamVersion;
+        }
+
+        /**
+         * @return The height of the covers (i.e that one expected by distribution, when hiding 1 bit per byte).
+         */
+        private int coverHeight() {
+            return k == 8 ? height : height * 8 / k + 1;
+        }
+    }
+
+    /**
+     * JVM metrics taken during a run.
+     */
+    private static final class Metrics {
+
+        private final long gcMillisAtStart;
+        private final long gcCountAtStart;
+        private long gcMillis;
+        private long gcCount;
+        private long peakHeap;
+        private long peakRss;
+
+        /**
+         * Constructor. Starts measuring (i.e resets peak usages and takes GC counters).
+         */
+        private Metrics() {
+            ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+            resetPeakRss();
+            this.gcMillisAtStart = gcMillis();
+            this.gcCountAtStart = gcCount();
+        }
+
+        /**
+         * Stops measuring.
+         */
+        private void stop() {
+            this.gcMillis = gcMillis() - gcMillisAtStart;
+            this.gcCount = gcCount() - gcCountAtStart;
+            this.peakHeap = ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(pool -> pool.getType() == MemoryType.HEAP)
+                    .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                    .sum();
+            this.peakRss = readPeakRss();
+        }
+
+        private static long gcMillis() {
+            return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                    .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+                    .filter(time -> time > 0)
+                    .sum();
+        }
+
+        private static long gcCount() {
+            return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                    .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+                    .filter(count -> count > 0)
+                    .sum();
+        }
+
+        /**
+         * Resets the peak resident set size of this process (only supported in Linux).
+         */
+        private static void resetPeakRss() {
+            try {
+                Files.write(Paths.get("/proc/self/clear_refs"), "5".getBytes(StandardCharsets.US_ASCII));
+            } catch (IOException | UnsupportedOperationException | SecurityException ignored) {
+                // Peak RSS will be that one of the whole process
+            }
+        }
+
+        /**
+         * @return The peak resident set size of this process, in bytes, or -1 if it is not known.
+         */
+        private static long readPeakRss() {
+            try {
+                for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                    if (line.startsWith("VmHWM:")) {
+                        return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                    }
+                }
+            } catch (IOException | NumberFormatException ignored) {
+                // Not supported
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * The result of running a scenario.
+     */
+    /*package*/ static final class Result {
+
+        private static final String HEADER = String.format("%4s %4s %11s %5s %7s %12s %12s %11s %10s %9s %8s",
+                "k", "n", "size", "bpp", "threads", "dist MB/s", "recov MB/s", "peak heap", "peak RSS",
+                "GC ms", "exact");
+        private static final String CSV_HEADER = "k,n,width,height,bitsPerPixel,threads,keystream,secretBytes," +
+                "distributeMillis,recoverMillis,distributeMBps,recoverMBps,peakHeapBytes,peakRssBytes,gcMillis," +
+                "gcCount,mismatches";
+        private static final double MB = 1024 * 1024;
+
+        private final Scenario scenario;
+        private final long secretBytes;
+        private final long distributeNanos;
+        private final long recoverNanos;
+        private final Metrics metrics;
+        private final int mismatches;
+
+        private Result(Scenario scenario, long secretBytes, long distributeNanos, long recoverNanos,
+                       Metrics metrics, int mismatches) {
+            this.scenario = scenario;
+            this.secretBytes = secretBytes;
+            this.distributeNanos = distributeNanos;
+            this.recoverNanos = recoverNanos;
+            this.metrics = metrics;
+            this.mismatches = mismatches;
+        }
+
+        /**
+         * @return {@code true} if the recovered image was byte-exact, or {@code false} otherwise.
+         */
+        /*package*/ boolean isExact() {
+            return mismatches == 0;
+        }
+
+        /**
+         * @return The amount of recovered bytes that were not as expected.
+         */
+        /*package*/ int getMismatches() {
+            return mismatches;
+        }
+
+        private double throughput(long nanos) {
+            return secretBytes / MB / (nanos / 1e9);
+        }
+
+        private String toCsv() {
+            return String.join(",", Arrays.asList(
+                    String.valueOf(scenario.k), String.valueOf(scenario.n), String.valueOf(scenario.width),
+                    String.valueOf(scenario.height), String.valueOf(scenario.bitsPerPixel),
+                    String.valueOf(scenario.threads), String.valueOf(scenario.keystreamVersion),
+                    String.valueOf(secretBytes), String.valueOf(distributeNanos / 1000000),
+                    String.valueOf(recoverNanos / 1000000), String.format("%.3f", throughput(distributeNanos)),
+                    String.format("%.3f", throughput(recoverNanos)), String.valueOf(metrics.peakHeap),
+                    String.valueOf(metrics.peakRss), String.valueOf(metrics.gcMillis),
+                    String.valueOf(metrics.gcCount), String.valueOf(mismatches)));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%4d %4d %11s %5d %7d %12.2f %12.2f %10.1fM %9s %9d %8s",
+                    scenario.k, scenario.n, scenario.width + "x" + scenario.height, scenario.bitsPerPixel,
+                    scenario.threads, throughput(distributeNanos), throughput(recoverNanos), metrics.peakHeap / MB,
+                    metrics.peakRss < 0 ? "n/a" : String.format("%.1fM", metrics.peakRss / MB),
+                    metrics.gcMillis, isExact() ? "yes" : "no (" + mismatches + ")");
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package ar.edu.itba.cripto.secret_image.load;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import ar.edu.itba.cripto.secret_image.main.util.Keystream;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Runs a small scenario of the {@link LoadTestHarness}, so the end-to-end round trip is checked on every build.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class LoadTestHarnessTest {
+
+    private static final String ROUND_TRIP_ERROR_MESSAGE = "Recovered image was not byte-exact.";
+
+    @Test
+    public void testLegacyKeystreamRoundTripIsExact() throws IOException {
+        final LoadTestHarness.Result result = LoadTestHarness.run(
+                new LoadTestHarness.Scenario(4, 6, 64, 64, 8, 2, Keystream.LEGACY),
+                Paths.get("target", "load-test"));
+        Assert.assertTrue(ROUND_TRIP_ERROR_MESSAGE + " Got " + result.getMismatches() + " mismatches",
+                result.isExact());
+    }
+
+    @Test
+    public void testCounterKeystreamRoundTripIsExact() throws IOException {
+        final LoadTestHarness.Result result = LoadTestHarness.run(
+                new LoadTestHarness.Scenario(8, 8, 64, 64, 24, 2, Keystream.COUNTER),
+                Paths.get("target", "load-test"));
+        Assert.assertTrue(ROUND_TRIP_ERROR_MESSAGE + " Got " + result.getMismatches() + " mismatches",
+                result.isExact());
+    }
+}
@@ -0,0 +1,231 @@
+package ar.edu.itba.cripto.secret_image.load;
+
+import ar.edu.itba.cripto.secret_image.support.SyntheticBmp;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Startup benchmark of the command line tool. Runs a small distribution and recovery (the kind of invocation
+ * that CI pipelines repeat many times) as separate processes, with the plain JVM jar, the jar with an AppCDS archive,
+ * and the native image (those available), and reports the wall time of each invocation.
+ * <p>
+ * If an AppCDS archive is requested but does not exist, it is created first, from the classes loaded by a training
+ * distribution and recovery (so the benchmark can also be used just to create the archive, with no runs).
+ * <p>
+ * It is configured through system properties:
+ * <ul>
+ * <li>{@code startup.jar}: the jar with dependencies (default {@code target/Secret-Image.jar}).</li>
+ * <li>{@code startup.archive}: optional path of the AppCDS archive.</li>
+ * <li>{@code startup.native}: optional path of the native image (skipped if it does not exist).</li>
+ * <li>{@code startup.runs}: amount of measured invocations of each command (default 10).</li>
+ * <li>{@code startup.dir}: the working directory (default {@code target/startup-benchmark}).</li>
+ * </ul>
+ */
+public final class StartupBenchmark {
+
+    /**
+     * The minimum amount of shadows of the workload.
+     */
+    private static final int K = 4;
+    /**
+     * The secret width and height of the workload.
+     */
+    private static final int SIZE = 64;
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private StartupBenchmark() {
+    }
+
+    /**
+     * Entry point.
+     *
+     * @param args Not used (see class documentation for the system properties).
+     * @throws IOException          If any IO error occurs.
+     * @throws InterruptedException If interrupted while waiting for an invocation.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final Path jar = Paths.get(System.getProperty("startup.jar", "target/Secret-Image.jar"));
+        final String archive = System.getProperty("startup.archive");
+        final String nativeImage = System.getProperty("startup.native");
+        final int runs = Integer.getInteger("startup.runs", 10);
+        final Path directory = Paths.get(System.getProperty("startup.dir", "target/startup-benchmark"));
+
+        if (!Files.exists(jar)) {
+            System.err.println("Jar not found: " + jar + " (run \"mvn package\" first)");
+            System.exit(1);
+        }
+        FileUtils.deleteDirectory(directory.toFile());
+        final Path covers = Files.createDirectories(directory.resolve("covers"));
+        final Path secret = directory.resolve("secret.bmp");
+        SyntheticBmp.write(secret, SIZE, SIZE, 8, 1);
+        for (int i = 1; i <= K; i++) {
+            SyntheticBmp.write(covers.resolve(String.format("cover%03d.bmp", i)), SIZE, SIZE * 8 / K + 1, 8, 1 + i);
+        }
+        final Workload workload = new Workload(directory, secret, covers);
+
+        final String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        final Map<String, List<String>> launchers = new LinkedHashMap<>();
+        launchers.put("jvm", Arrays.asList(java, "-jar", jar.toString()));
+        if (archive != null) {
+            if (!Files.exists(Paths.get(archive))) {
+                createArchive(java, jar, Paths.get(archive), workload);
+                System.out.println("Created AppCDS archive " + archive);
+            }
+            launchers.put("jvm+appcds", Arrays.asList(java, "-XX:SharedArchiveFile=" + archive, "-Xshare:auto",
+                    "-jar", jar.toString()));
+        }
+        if (nativeImage != null && Files.isExecutable(Paths.get(nativeImage))) {
+            launchers.put("native", Collections.singletonList(nativeImage));
+        }
+        if (runs <= 0) {
+            return;
+        }
+
+        System.out.println(String.format("%-12s %16s %16s %16s %16s",
+                "launcher", "distribute (ms)", "p90 (ms)", "recover (ms)", "p90 (ms)"));
+        for (Map.Entry<String, List<String>> launcher : launchers.entrySet()) {
+            // An unreported run, so that files are in the page cache for every launcher
+            workload.distribute(launcher.getValue(), Collections.emptyList());
+            workload.recover(launcher.getValue(), Collections.emptyList());
+            final long[] distribute = new long[runs];
+            final long[] recover = new long[runs];
+            for (int i = 0; i < runs; i++) {
+                distribute[i] = workload.distribute(launcher.getValue(), Collections.emptyList());
+                recover[i] = workload.recover(launcher.getValue(), Collections.emptyList());
+            }
+            System.out.println(String.format("%-12s %16.1f %16.1f %16.1f %16.1f", launcher.getKey(),
+                    percentile(distribute, 50), percentile(distribute, 90),
+                    percentile(recover, 50), percentile(recover, 90)));
+        }
+    }
+
+    /**
+     * Creates an AppCDS archive with the classes loaded by a distribution and a recovery.
+     *
+     * @param java     The java executable.
+     * @param jar      The jar with dependencies.
+     * @param archive  The path of the archive.
+     * @param workload The {@link Workload} used to train the archive.
+     * @throws IOException          If any IO error occurs.
+     * @throws InterruptedException If interrupted while waiting for an invocation.
+     */
+    private static void createArchive(String java, Path jar, Path archive, Workload workload)
+            throws IOException, InterruptedException {
+        final Path distributeList = workload.directory.resolve("distribute.classlist");
+        final Path recoverList = workload.directory.resolve("recover.classlist");
+        final List<String> launcher = Arrays.asList(java, "-jar", jar.toString());
+        workload.distribute(launcher, Collections.singletonList("-XX:DumpLoadedClassList=" + distributeList));
+        workload.recover(launcher, Collections.singletonList("-XX:DumpLoadedClassList=" + recoverList));
+
+        final Path classList = workload.directory.resolve("secret-image.classlist");
+        final List<String> classes = new ArrayList<>();
+        final List<String> loaded = new ArrayList<>(Files.readAllLines(distributeList, StandardCharsets.UTF_8));
+        loaded.addAll(Files.readAllLines(recoverList, StandardCharsets.UTF_8));
+        for (String name : loaded) {
+            // Dynamically generated proxies can not be archived
+            if (!classes.contains(name) && !name.contains("$Proxy")) {
+                classes.add(name);
+            }
+        }
+        Files.write(classList, classes, StandardCharsets.UTF_8);
+        Files.createDirectories(archive.toAbsolutePath().getParent());
+        run(Arrays.asList(java, "-Xshare:dump", "-XX:SharedClassListFile=" + classList,
+                "-XX:SharedArchiveFile=" + archive, "-cp", jar.toString()), workload.log);
+    }
+
+    /**
+     * Runs the given {@code command}, failing if it does not exit successfully.
+     *
+     * @param command The command.
+     * @param log     The file to which the command output is appended.
+     * @return The wall time of the command, in nanoseconds.
+     * @throws IOException          If any IO error occurs, or if the command fails.
+     * @throws InterruptedException If interrupted while waiting for the command.
+     */
+    private static long run(List<String> command, File log) throws IOException, InterruptedException {
+        final long start = System.nanoTime();
+        final Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(log))
+                .start();
+        final int exitCode = process.waitFor();
+        final long nanos = System.nanoTime() - start;
+        if (exitCode != 0) {
+            throw new IOException("Command " + command + " exited with " + exitCode + " (see " + log + ")");
+        }
+        return nanos;
+    }
+
+    /**
+     * Calculates the given {@code percentile} of the given times.
+     *
+     * @param nanos      The times, in nanoseconds.
+     * @param percentile The percentile (from 0 to 100).
+     * @return The percentile, in milliseconds.
+     */
+    private static double percentile(long[] nanos, int percentile) {
+        final long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        final int index = Math.min(sorted.length - 1, (int) Math.ceil(percentile / 100.0 * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    /**
+     * The invocations being measured (a distribution onto the covers, and a recovery from them).
+     */
+    private static final class Workload {
+
+        private final Path directory;
+
+        private final Path secret;
+
+        private final Path covers;
+
+        private final File log;
+
+        private Workload(Path directory, Path secret, Path covers) {
+            this.directory = directory;
+            this.secret = secret;
+            this.covers = covers;
+            this.log = directory.resolve("output.log").toFile();
+        }
+
+        private long distribute(List<String> launcher, List<String> jvmOptions)
+                throws IOException, InterruptedException {
+            return run(command(launcher, jvmOptions, "-d", "-secret", secret.toString(), "-k", String.valueOf(K),
+                    "-n", String.valueOf(K), "-dir", covers.toString()), log);
+        }
+
+        private long recover(List<String> launcher, List<String> jvmOptions)
+                throws IOException, InterruptedException {
+            return run(command(launcher, jvmOptions, "-r", "-secret", directory.resolve("recovered.bmp").toString(),
+                    "-k", String.valueOf(K), "-dir", covers.toString()), log);
+        }
+
+        /**
+         * Builds a command, adding the given JVM options right after the java executable.
+         */
+        private static List<String> command(List<String> launcher, List<String> jvmOptions, String... args) {
+            final List<String> command = new ArrayList<>();
+            command.add(launcher.get(0));
+            command.addAll(jvmOptions);
+            command.addAll(launcher.subList(1, launcher.size()));
+            command.addAll(Arrays.asList(args));
+            return command;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+import ar.edu.itba.cripto.secret_image.support.ShadowSet;
+import ar.edu.itba.cripto.secret_image.support.SyntheticBmp;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Perform tests over {@link BatchRecovery} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class BatchRecoveryTest {
+
+    private static final String RUN_ERROR_MESSAGE = "BatchRecovery#run did not return as expected.";
+
+    private static final int K = 4;
+
+    private static final int N = 5;
+
+    private Path directory;
+
+    private Path root;
+
+    private TaskScheduler scheduler;
+
+    @Before
+    public void distribute() throws IOException {
+        directory = Files.createTempDirectory("batch-recovery");
+        root = Files.createDirectories(directory.resolve("sets"));
+        scheduler = new TaskScheduler(TaskScheduler.DEFAULT_IO_LIMIT, 2);
+        distribute("large", 128, ShadowFormat.BMP);
+        distribute("small", 32, ShadowFormat.BMP);
+        distribute("compact", 64, ShadowFormat.COMPACT);
+
+        // A set without enough shadows
+        final Path incomplete = Files.createDirectories(root.resolve("incomplete"));
+        FileUtils.copyFile(root.resolve("small").resolve("cover001.bmp").toFile(),
+                incomplete.resolve("cover001.bmp").toFile());
+    }
+
+    @After
+    public void deleteFiles() throws IOException {
+        scheduler.close();
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    @Test
+    public void testEachSetIsRecoveredAsAlone() throws IOException {
+        final Path output = directory.resolve("secrets");
+        final List<BatchRecovery.Job> jobs = BatchRecovery.fromRoot(root.toString(), output.toString());
+        // Chunks that do not divide the images, so sets are split in several tasks
+        final List<BatchRecovery.Result> results = new BatchRecovery(K, 100, 2).run(jobs);
+
+        Assert.assertEquals(RUN_ERROR_MESSAGE + " There must be a result per set", 4, results.size());
+        for (BatchRecovery.Result result : results) {
+            final String name = result.getJob().getName();
+            if (name.equals("incomplete")) {
+                Assert.assertFalse(RUN_ERROR_MESSAGE + " A set without enough shadows must fail",
+                        result.isRecovered());
+                continue;
+            }
+            Assert.assertTrue(RUN_ERROR_MESSAGE + " Set " + name + " must be recovered", result.isRecovered());
+            Assert.assertArrayEquals(RUN_ERROR_MESSAGE + " Set " + name + " must match a single recovery",
+                    recoverAlone(name), Files.readAllBytes(output.resolve(name + ".bmp")));
+        }
+    }
+
+    @Test
+    public void testManifestSetsAreRecovered() throws IOException {
+        final Path manifest = directory.resolve("manifest.txt");
+        Files.write(manifest, Arrays.asList("# Relative to the manifest", "sets/small\tout/small.bmp",
+                "", "sets/compact\tout/compact.bmp"), StandardCharsets.UTF_8);
+        final List<BatchRecovery.Result> results =
+                new BatchRecovery(K, 100, 2).run(BatchRecovery.fromManifest(manifest.toString()));
+
+        Assert.assertEquals(RUN_ERROR_MESSAGE + " There must be a result per manifest line", 2, results.size());
+        for (BatchRecovery.Result result : results) {
+            final String name = result.getJob().getName();
+            Assert.assertTrue(RUN_ERROR_MESSAGE + " Set " + name + " must be recovered", result.isRecovered());
+            Assert.assertArrayEquals(RUN_ERROR_MESSAGE + " Set " + name + " must match a single recovery",
+                    recoverAlone(name), Files.readAllBytes(directory.resolve("out").resolve(name + ".bmp")));
+        }
+    }
+
+    private void distribute(String name, int size, ShadowFormat format) throws IOException {
+        final Path set = Files.createDirectories(root.resolve(name));
+        final Path secret = directory.resolve(name + ".bmp");
+        SyntheticBmp.write(secret, size, size, 8, size);
+        if (format == ShadowFormat.BMP) {
+            ShadowSet.writeCovers(set, N, size, ShadowSet.coverHeight(size, K, 1), size);
+        }
+        new Encryption(K, N, secret.toString(), set.toString(),
+                new SharingOptions().setKeystreamVersion(2).setFormat(format), scheduler).encrypt();
+    }
+
+    private byte[] recoverAlone(String name) throws IOException {
+        final Path secret = directory.resolve(name + "-alone.bmp");
+        new Decryptor(K, secret.toString(), root.resolve(name).toString(), scheduler).decrypt();
+        return Files.readAllBytes(secret);
+    }
+}
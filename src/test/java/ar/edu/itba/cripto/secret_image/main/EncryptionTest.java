@@ -0,0 +1,113 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
+import ar.edu.itba.cripto.secret_image.bmp.BufferPool;
+import ar.edu.itba.cripto.secret_image.main.util.Keystream;
+import ar.edu.itba.cripto.secret_image.share.ShareFile;
+import ar.edu.itba.cripto.secret_image.support.ShadowSet;
+import ar.edu.itba.cripto.secret_image.support.SyntheticBmp;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Perform tests over {@link Encryption} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class EncryptionTest {
+
+    private static final String ENCRYPT_ERROR_MESSAGE = "Encryption#encrypt did not return as expected.";
+
+    private static final int K = 4;
+
+    private static final int N = 5;
+
+    private static final int SPARE = 2;
+
+    private static final int SIZE = 32;
+
+    @Test
+    public void testMultiBitShadowsAreResharedAndRecovered() throws IOException {
+        for (int bitsPerByte : new int[]{2, 4}) {
+            try (ShadowSet set = ShadowSet.create("encryption", K, N, SIZE, 9, bitsPerByte)
+                    .distribute(new SharingOptions().setBitsPerByte(bitsPerByte).setSpare(SPARE))) {
+                final List<String> shadows = set.coverPaths();
+                final BmpUtils header = BmpUtils.readHeader(shadows.get(0), BufferPool.shared());
+                try {
+                    Assert.assertEquals(ENCRYPT_ERROR_MESSAGE + " Bits per byte must be recorded in shadows",
+                            bitsPerByte, header.getBitsPerByte());
+                } finally {
+                    header.release();
+                }
+
+                // Covers of the re-shared shadows hold as many shares per row as the distributed ones
+                final Path extras = Files.createDirectories(set.getDirectory().resolve("extras"));
+                for (int i = 1; i <= SPARE; i++) {
+                    SyntheticBmp.write(extras.resolve(String.format("extra%03d.bmp", i)), SIZE,
+                            ShadowSet.coverHeight(SIZE, K, bitsPerByte), 8, 90 + i);
+                }
+                new Resharer(K, N, set.getCovers().toString(), extras.toString(), set.getScheduler()).reshare();
+                final List<String> reshared = Shadows.listImages(extras.toString());
+                Collections.sort(reshared);
+
+                final byte[] recovered = set.recoverFrom(shadows.subList(0, K), "distributed");
+                Assert.assertArrayEquals(ENCRYPT_ERROR_MESSAGE + " Re-shared shadows must recover the same secret",
+                        ShadowSet.withoutReserved(recovered),
+                        ShadowSet.withoutReserved(set.recoverFrom(Arrays.asList(shadows.get(0), shadows.get(2),
+                                reshared.get(0), reshared.get(1)), "mixed")));
+                Assert.assertArrayEquals(ENCRYPT_ERROR_MESSAGE + " The secret must be recovered",
+                        set.expectedRecovery(shadows), ShadowSet.data(recovered));
+            }
+        }
+    }
+
+    @Test
+    public void testSharesAreLaidOutPerShadow() throws IOException {
+        try (ShadowSet set = ShadowSet.create("encryption", K, N, SIZE, 36).distributeCompact(new SharingOptions())) {
+            final List<String> paths = set.shareFilePaths();
+            final ShareFile first = ShareFile.read(paths.get(0));
+            // Recovery gives back the (adjusted) coefficients of each polynomial, once unmasked
+            final byte[] data = set.expectedRecovery(paths);
+            final int numPolynomes = data.length / K;
+            final Keystream keystream = Keystream.create(first.getKeystreamVersion(), first.getSeed(), data.length);
+
+            for (String path : paths) {
+                final ShareFile shadow = ShareFile.read(path);
+                Assert.assertEquals(ENCRYPT_ERROR_MESSAGE + " Shadows must hold a share per polynomial",
+                        numPolynomes, shadow.getShareCount());
+                // The share of polynomial i held by shadow x is the evaluation of its coefficients at x
+                final int[] coefficients = new int[K];
+                for (int i = 0; i < numPolynomes; i++) {
+                    for (int j = 0; j < K; j++) {
+                        coefficients[j] = Byte.toUnsignedInt(data[i * K + j]);
+                    }
+                    keystream.mask((long) i * K, coefficients, 0, K);
+                    Assert.assertEquals(ENCRYPT_ERROR_MESSAGE + " Shares must be stored shadow by shadow",
+                            evaluate(coefficients, shadow.getShadow()), shadow.getShare(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluates the polynomial with the given {@code coefficients} (lowest degree first) at {@code x}, modulo 257.
+     */
+    private static int evaluate(int[] coefficients, int x) {
+        int value = 0;
+        for (int i = coefficients.length - 1; i >= 0; i--) {
+            value = (value * x + coefficients[i]) % 257;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,112 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import ar.edu.itba.cripto.secret_image.support.ShadowSet;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Perform tests over {@link ErrorCorrectingRecovery} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class ErrorCorrectingRecoveryTest {
+
+    private static final String RECOVER_ERROR_MESSAGE = "ErrorCorrectingRecovery#recover did not return as expected.";
+
+    private static final int K = 3;
+
+    private static final int N = 7;
+
+    private static final int SIZE = 48;
+
+    private ShadowSet set;
+
+    @Before
+    public void createShadows() throws IOException {
+        set = ShadowSet.create("error-correcting", K, N, SIZE, 5).distribute(new SharingOptions())
+                .distributeCompact(new SharingOptions());
+    }
+
+    @After
+    public void deleteFiles() throws IOException {
+        set.close();
+    }
+
+    @Test
+    public void testCorruptedShadowImagesAreCorrected() throws IOException {
+        final List<String> paths = set.coverPaths();
+        final byte[] expected = set.recoverFrom(paths.subList(2, 2 + K), "expected");
+
+        // Every third share of the first shadow, and the first 100 shares of the fourth one are corrupted
+        // (so some polynomials have 2 wrong shares, i.e (7 - 3) / 2)
+        final int offset = ShadowSet.offset(Files.readAllBytes(Paths.get(paths.get(0))));
+        try (RandomAccessFile file = new RandomAccessFile(paths.get(0), "rw")) {
+            for (int p = 0; p < SIZE * SIZE / K; p += 3) {
+                flip(file, offset + p * 8 + 7);
+            }
+        }
+        try (RandomAccessFile file = new RandomAccessFile(paths.get(3), "rw")) {
+            for (int p = 0; p < 100; p++) {
+                flip(file, offset + p * 8);
+            }
+        }
+
+        final Path secret = set.getDirectory().resolve("corrected.bmp");
+        final ErrorCorrectingRecovery.Report report = new ErrorCorrectingRecovery(K, 200, set.getScheduler())
+                .recover(set.getCovers().toString(), secret.toString());
+
+        // The reserved header field is copied from the first shadow, which is not the same
+        Assert.assertArrayEquals(RECOVER_ERROR_MESSAGE + " Wrong shares must be corrected",
+                ShadowSet.withoutReserved(expected), ShadowSet.withoutReserved(Files.readAllBytes(secret)));
+        Assert.assertEquals(RECOVER_ERROR_MESSAGE + " Every polynomial must be corrected",
+                0, report.getUncorrectable());
+        for (int i = 0; i < N; i++) {
+            final long corrected = i == 0 ? SIZE * SIZE / K / 3 : i == 3 ? 100 : 0;
+            Assert.assertEquals(RECOVER_ERROR_MESSAGE + " Faulty shadows must be reported",
+                    corrected, report.getCorrected(i));
+        }
+    }
+
+    @Test
+    public void testCorruptedShareFilesAreCorrected() throws IOException {
+        final List<String> paths = set.shareFilePaths();
+        final byte[] expected = set.recoverFrom(paths.subList(N - K, N), "expected");
+
+        // The whole shares of the first shadow (which plain recovery would use) are replaced
+        final int shareCount = SIZE * SIZE / K;
+        try (RandomAccessFile file = new RandomAccessFile(paths.get(0), "rw")) {
+            for (long position = file.length() - shareCount; position < file.length(); position++) {
+                flip(file, position);
+            }
+        }
+
+        final Path secret = set.getDirectory().resolve("corrected.bmp");
+        final ErrorCorrectingRecovery.Report report = new ErrorCorrectingRecovery(K, 200, set.getScheduler())
+                .recover(set.getShares().toString(), secret.toString());
+
+        Assert.assertArrayEquals(RECOVER_ERROR_MESSAGE + " Wrong shares must be corrected",
+                expected, Files.readAllBytes(secret));
+        Assert.assertEquals(RECOVER_ERROR_MESSAGE + " Faulty shadows must be reported",
+                shareCount, report.getCorrected(0));
+    }
+
+    private static void flip(RandomAccessFile file, long position) throws IOException {
+        file.seek(position);
+        final int value = file.read();
+        file.seek(position);
+        file.write(value ^ 1);
+    }
+}
@@ -0,0 +1,70 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+import ar.edu.itba.cripto.secret_image.support.ShadowSet;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Perform tests over {@link RecoveryPipeline} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class RecoveryPipelineTest {
+
+    private static final String RUN_ERROR_MESSAGE = "RecoveryPipeline#run did not return as expected.";
+
+    private static final int K = 4;
+
+    private static final int N = 6;
+
+    private static final int SIZE = 64;
+
+    private ShadowSet set;
+
+    @Before
+    public void distribute() throws IOException {
+        set = ShadowSet.create("recovery-pipeline", K, N, SIZE, 1).distribute(new SharingOptions());
+    }
+
+    @After
+    public void deleteFiles() throws IOException {
+        set.close();
+    }
+
+    @Test
+    public void testSmallChunksRecoverTheSameImage() throws IOException {
+        final TaskScheduler scheduler = set.getScheduler();
+        final Path whole = set.getDirectory().resolve("whole.bmp");
+        final Path chunked = set.getDirectory().resolve("chunked.bmp");
+
+        recover(new RecoveryPipeline(scheduler, RecoveryPipeline.DEFAULT_CHUNK_SIZE,
+                RecoveryPipeline.DEFAULT_MAX_CHUNKS_IN_FLIGHT), whole);
+        // Chunks that do not divide the image, with a single one in flight
+        recover(new RecoveryPipeline(scheduler, 100, 1), chunked);
+
+        Assert.assertArrayEquals(RUN_ERROR_MESSAGE + " Chunked recovery must match whole recovery",
+                Files.readAllBytes(whole), Files.readAllBytes(chunked));
+    }
+
+    private void recover(RecoveryPipeline pipeline, Path secret) throws IOException {
+        final List<BmpUtils> shadows = Shadows.loadHeaders(set.coverPaths(), K, set.getScheduler());
+        try {
+            pipeline.run(shadows, secret.toString());
+        } finally {
+            shadows.forEach(BmpUtils::release);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import ar.edu.itba.cripto.secret_image.support.ShadowSet;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Perform tests over {@link RecoverySession} and {@link ShadowWatcher} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class RecoverySessionTest {
+
+    private static final String ADD_ERROR_MESSAGE = "RecoverySession#add did not return as expected.";
+
+    private static final String SECRET_ERROR_MESSAGE = "RecoverySession#getSecret did not return as expected.";
+
+    private static final String WATCH_ERROR_MESSAGE = "ShadowWatcher#run did not return as expected.";
+
+    private static final int K = 4;
+
+    private static final int N = 6;
+
+    private static final int SIZE = 64;
+
+    private ShadowSet set;
+
+    @Before
+    public void createImages() throws IOException {
+        set = ShadowSet.create("recovery-session", K, N, SIZE, 1).distribute(new SharingOptions())
+                .distributeCompact(new SharingOptions().setKeystreamVersion(2));
+    }
+
+    @After
+    public void deleteFiles() throws IOException {
+        set.close();
+    }
+
+    @Test
+    public void testIncrementalRecoveryMatchesDecryptor() throws IOException {
+        final List<String> paths = set.coverPaths();
+        final List<String> used = new ArrayList<>();
+        final RecoverySession session = new RecoverySession(K, set.getScheduler());
+        // The first shadow is the header reference (as for the decryptor), and the rest arrive in any order
+        final int[] order = {0, 5, 2, 3};
+        for (int i = 0; i < K; i++) {
+            final String shadow = paths.get(order[i]);
+            used.add(shadow);
+            Assert.assertEquals(ADD_ERROR_MESSAGE + " Only the k-th shadow completes the session",
+                    i == K - 1, session.addImage(ByteBuffer.wrap(Files.readAllBytes(Paths.get(shadow)))));
+        }
+
+        Assert.assertArrayEquals(SECRET_ERROR_MESSAGE + " Incremental recovery must match the decryptor",
+                set.recoverFrom(used, "used"), session.getSecret());
+    }
+
+    @Test
+    public void testIncrementalShareFileRecoveryMatchesDecryptor() throws IOException {
+        final List<String> paths = set.shareFilePaths();
+        final RecoverySession session = new RecoverySession(K, set.getScheduler());
+        for (int i = N - 1; i >= N - K; i--) {
+            session.addShareFile(ByteBuffer.wrap(Files.readAllBytes(Paths.get(paths.get(i)))));
+        }
+
+        Assert.assertArrayEquals(SECRET_ERROR_MESSAGE + " Incremental recovery must match the decryptor",
+                set.recoverFrom(paths.subList(N - K, N), "used"), session.getSecret());
+    }
+
+    @Test
+    public void testKindsOfShadowsAreNotMixed() throws IOException {
+        final RecoverySession session = new RecoverySession(K, set.getScheduler());
+        session.addShareFile(ByteBuffer.wrap(Files.readAllBytes(Paths.get(set.shareFilePaths().get(0)))));
+        try {
+            session.addImage(ByteBuffer.wrap(Files.readAllBytes(Paths.get(set.coverPaths().get(0)))));
+            Assert.fail(ADD_ERROR_MESSAGE + " Shadow images and share files must not be mixed");
+        } catch (IllegalArgumentException expected) {
+            Assert.assertEquals(ADD_ERROR_MESSAGE + " A rejected shadow must not be added", 1, session.getAdded());
+        }
+    }
+
+    @Test
+    public void testWatcherRecoversArrivingShadows() throws IOException {
+        final List<String> paths = set.shareFilePaths();
+        final Path arrivals = Files.createDirectories(set.getDirectory().resolve("arrivals"));
+        final Path watched = set.getDirectory().resolve("watched.bmp");
+
+        // Share files arrive one at a time, while the watcher is waiting for them
+        final CompletableFuture<Void> custodians = CompletableFuture.runAsync(() -> {
+            try {
+                for (int i = 0; i < K; i++) {
+                    Thread.sleep(30);
+                    final Path path = Paths.get(paths.get(i));
+                    final Path partial = arrivals.resolve("partial.tmp");
+                    Files.copy(path, partial);
+                    Files.move(partial, arrivals.resolve(path.getFileName()));
+                }
+            } catch (IOException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        new ShadowWatcher(K, arrivals.toString(), 10, set.getScheduler()).run(watched.toString());
+        custodians.join();
+
+        Assert.assertArrayEquals(WATCH_ERROR_MESSAGE + " Watched recovery must match the decryptor",
+                set.recoverFrom(paths.subList(0, K), "used"), Files.readAllBytes(watched));
+    }
+}
@@ -0,0 +1,97 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import ar.edu.itba.cripto.secret_image.support.ShadowSet;
+import ar.edu.itba.cripto.secret_image.support.SyntheticBmp;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Perform tests over {@link Resharer} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class ResharerTest {
+
+    private static final String RESHARE_ERROR_MESSAGE = "Resharer#reshare did not return as expected.";
+
+    private static final int K = 4;
+
+    private static final int N = 5;
+
+    private static final int SPARE = 3;
+
+    private static final int SIZE = 64;
+
+    private ShadowSet set;
+
+    private Path extras;
+
+    @Before
+    public void distribute() throws IOException {
+        // With k != 8, covers are one row taller than needed, so their last hidden bytes are not shares
+        set = ShadowSet.create("resharer", K, N, SIZE, 7).distribute(new SharingOptions().setSpare(SPARE));
+        extras = Files.createDirectories(set.getDirectory().resolve("extras"));
+        for (int i = 1; i <= SPARE; i++) {
+            SyntheticBmp.write(extras.resolve(String.format("extra%03d.bmp", i)), SIZE,
+                    ShadowSet.coverHeight(SIZE, K, 1), 8, 70 + i);
+        }
+    }
+
+    @After
+    public void deleteFiles() throws IOException {
+        set.close();
+    }
+
+    @Test
+    public void testResharedShadowsRecoverTheSecret() throws IOException {
+        new Resharer(K, N, set.getCovers().toString(), extras.toString(), set.getScheduler()).reshare();
+
+        final List<String> shadows = set.coverPaths();
+        final List<String> reshared = extraPaths();
+        Assert.assertArrayEquals(RESHARE_ERROR_MESSAGE + " Re-shared shadows must lie on the same polynomials",
+                ShadowSet.withoutReserved(set.recoverFrom(shadows.subList(0, K), "distributed")),
+                ShadowSet.withoutReserved(set.recoverFrom(Arrays.asList(shadows.get(1), shadows.get(3),
+                        reshared.get(0), reshared.get(SPARE - 1)), "mixed")));
+    }
+
+    @Test
+    public void testHiddenBytesAfterTheSharesAreNotTouched() throws IOException {
+        final List<String> covers = extraPaths();
+        final byte[][] before = new byte[covers.size()][];
+        for (int i = 0; i < covers.size(); i++) {
+            before[i] = Files.readAllBytes(Paths.get(covers.get(i)));
+        }
+
+        new Resharer(K, N, set.getCovers().toString(), extras.toString(), set.getScheduler()).reshare();
+
+        // Each share is hidden in 8 bytes, and there is a share per k bytes of the secret image
+        final int sharesEnd = SyntheticBmp.offset(8) + SIZE * SIZE / K * 8;
+        for (int i = 0; i < covers.size(); i++) {
+            final byte[] after = Files.readAllBytes(Paths.get(covers.get(i)));
+            Assert.assertTrue(RESHARE_ERROR_MESSAGE + " Shares must be hidden", sharesEnd < after.length);
+            Assert.assertArrayEquals(RESHARE_ERROR_MESSAGE + " Cover bytes after the shares must be kept",
+                    Arrays.copyOfRange(before[i], sharesEnd, before[i].length),
+                    Arrays.copyOfRange(after, sharesEnd, after.length));
+        }
+    }
+
+    private List<String> extraPaths() {
+        final List<String> paths = Shadows.listImages(extras.toString());
+        Collections.sort(paths);
+        return paths;
+    }
+}
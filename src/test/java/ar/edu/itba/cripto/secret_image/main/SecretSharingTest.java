@@ -0,0 +1,116 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import ar.edu.itba.cripto.secret_image.share.ShareFile;
+import ar.edu.itba.cripto.secret_image.support.ShadowSet;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Perform tests over {@link SecretSharing} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class SecretSharingTest {
+
+    private static final String DISTRIBUTE_ERROR_MESSAGE = "SecretSharing#distribute did not return as expected.";
+
+    private static final String RECOVER_ERROR_MESSAGE = "SecretSharing#recover did not return as expected.";
+
+    private static final int K = 4;
+
+    private static final int N = 6;
+
+    private static final int SIZE = 64;
+
+    private ShadowSet set;
+
+    private byte[] secret;
+
+    private List<byte[]> covers;
+
+    @Before
+    public void createImages() throws IOException {
+        set = ShadowSet.create("secret-sharing", K, N, SIZE, 1);
+        secret = Files.readAllBytes(set.getSecret());
+        covers = new ArrayList<>();
+        for (String cover : set.coverPaths()) {
+            covers.add(Files.readAllBytes(Paths.get(cover)));
+        }
+    }
+
+    @After
+    public void deleteFiles() throws IOException {
+        set.close();
+    }
+
+    @Test
+    public void testMemoryRecoveryMatchesFileRecovery() throws IOException {
+        final SecretSharing sharing = new SecretSharing(K, new SharingOptions().setKeystreamVersion(2),
+                set.getScheduler());
+        final List<ByteBuffer> coverBuffers = new ArrayList<>();
+        covers.forEach(cover -> coverBuffers.add(ByteBuffer.wrap(cover)));
+        final List<byte[]> shadows = sharing.distribute(ByteBuffer.wrap(secret), coverBuffers);
+
+        Assert.assertEquals(DISTRIBUTE_ERROR_MESSAGE + " There must be one shadow per cover", N, shadows.size());
+        final List<String> coverPaths = set.coverPaths();
+        for (int i = 0; i < N; i++) {
+            Assert.assertEquals(DISTRIBUTE_ERROR_MESSAGE + " Covers must not be modified",
+                    coverBuffers.get(i), ByteBuffer.wrap(Files.readAllBytes(Paths.get(coverPaths.get(i)))));
+        }
+
+        // The last k shadows, so that recovery does not only use the first shadow numbers
+        final Path shadowsDirectory = Files.createDirectories(set.getDirectory().resolve("shadows"));
+        final List<String> shadowPaths = new ArrayList<>();
+        for (int i = N - K; i < N; i++) {
+            final Path path = shadowsDirectory.resolve(String.format("shadow%03d.bmp", i + 1));
+            Files.write(path, shadows.get(i));
+            shadowPaths.add(path.toString());
+        }
+        final byte[] recovered = set.recoverFrom(shadowPaths, "recovered");
+
+        // The secret header is taken from the first shadow, so they are given in the order the decryptor used
+        final List<ByteBuffer> used = new ArrayList<>();
+        for (String path : Shadows.listImages(set.getDirectory().resolve("recovered").toString())) {
+            used.add(ByteBuffer.wrap(Files.readAllBytes(Paths.get(path))));
+        }
+
+        Assert.assertArrayEquals(RECOVER_ERROR_MESSAGE + " Memory recovery must match file recovery",
+                recovered, sharing.recover(used));
+    }
+
+    @Test
+    public void testCompactMemoryRecoveryMatchesFileRecovery() throws IOException {
+        final SecretSharing sharing = new SecretSharing(K, new SharingOptions(), set.getScheduler());
+        final List<byte[]> shareFiles = sharing.distributeCompact(ByteBuffer.wrap(secret), N);
+
+        final List<ByteBuffer> used = new ArrayList<>();
+        final Path sharesDirectory = Files.createDirectories(set.getShares());
+        final List<String> sharePaths = new ArrayList<>();
+        for (int i = 0; i < K; i++) {
+            final Path path = sharesDirectory.resolve(String.format("shadow%03d", i + 1) + ShareFile.EXTENSION);
+            used.add(ByteBuffer.wrap(shareFiles.get(i)));
+            Files.write(path, shareFiles.get(i));
+            sharePaths.add(path.toString());
+        }
+
+        final byte[] result = sharing.recoverCompact(used);
+        Assert.assertArrayEquals(RECOVER_ERROR_MESSAGE + " Memory recovery must match file recovery",
+                set.recoverFrom(sharePaths, "recovered"), result);
+        Assert.assertEquals(RECOVER_ERROR_MESSAGE + " The secret image size must be kept",
+                secret.length, result.length);
+    }
+}
@@ -0,0 +1,154 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import ar.edu.itba.cripto.secret_image.support.ShadowSet;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Perform tests over {@link ShadowUpdater} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class ShadowUpdaterTest {
+
+    private static final String UPDATE_ERROR_MESSAGE = "ShadowUpdater#update did not return as expected.";
+
+    private static final int K = 3;
+
+    private static final int N = 6;
+
+    private static final int SIZE = 48;
+
+    private ShadowSet set;
+
+    private Path updated;
+
+    @Before
+    public void createShadows() throws IOException {
+        set = ShadowSet.create("shadow-updater", K, N, SIZE, 5).distribute(new SharingOptions())
+                .distributeCompact(new SharingOptions());
+
+        // A few pixels of two rows change (far enough not to be merged in a single range)
+        final byte[] bytes = Files.readAllBytes(set.getSecret());
+        final int offset = ShadowSet.offset(bytes);
+        for (int i = 0; i < 7; i++) {
+            bytes[offset + 5 * SIZE + 10 + i] ^= 0x55;
+        }
+        bytes[offset + 40 * SIZE + 30] ^= 0x0F;
+        updated = Files.write(set.getDirectory().resolve("updated.bmp"), bytes);
+    }
+
+    @After
+    public void deleteFiles() throws IOException {
+        set.close();
+    }
+
+    @Test
+    public void testOnlyDirtySharesOfShadowImagesAreRewritten() throws IOException {
+        final String covers = set.getCovers().toString();
+        final List<String> paths = set.coverPaths();
+        final byte[] before = set.recoverFrom(paths.subList(0, K), "before");
+        final List<byte[]> shadows = new ArrayList<>();
+        for (String path : paths) {
+            shadows.add(Files.readAllBytes(Paths.get(path)));
+        }
+
+        final ShadowUpdater.Report report = new ShadowUpdater(K, N, 100, set.getScheduler()).update(
+                set.getSecret().toString(), updated.toString(), covers);
+
+        Assert.assertEquals(UPDATE_ERROR_MESSAGE + " Distant changes must be in different ranges",
+                2, report.getRanges().size());
+        Assert.assertTrue(UPDATE_ERROR_MESSAGE + " Every share must lie on the polynomials",
+                new ShadowVerifier(K, 100, set.getScheduler()).verify(covers, false).stream()
+                        .allMatch(ShadowVerifier.Result::isGenuine));
+        final int offset = ShadowSet.offset(shadows.get(0));
+        for (int i = 0; i < paths.size(); i++) {
+            final byte[] saved = Files.readAllBytes(Paths.get(paths.get(i)));
+            long changed = 0;
+            for (int index = 0; index < saved.length; index++) {
+                if (saved[index] != shadows.get(i)[index]) {
+                    // Each share is hidden in 8 bytes of the shadow real data
+                    Assert.assertTrue(UPDATE_ERROR_MESSAGE + " Only the bytes of dirty shares must change",
+                            isDirty(report, (index - offset) / 8));
+                    changed++;
+                }
+            }
+            Assert.assertTrue(UPDATE_ERROR_MESSAGE + " At most the reported bytes must be written",
+                    changed <= report.getWritten(i));
+        }
+
+        final byte[] after = set.recoverFrom(paths.subList(N - K, N), "after");
+        final byte[] secret = Files.readAllBytes(updated);
+        final int dataOffset = ShadowSet.offset(secret);
+        for (int i = dataOffset; i < secret.length; i++) {
+            if (!isDirty(report, (i - dataOffset) / K)) {
+                Assert.assertEquals(UPDATE_ERROR_MESSAGE + " Clean polynomials must be recovered as before",
+                        before[i], after[i]);
+            }
+        }
+        Assert.assertArrayEquals(UPDATE_ERROR_MESSAGE + " The new secret must be recovered",
+                set.expectedRecovery(updated, paths), ShadowSet.data(after));
+    }
+
+    @Test
+    public void testShareFilesAreUpdated() throws IOException {
+        final String shares = set.getShares().toString();
+
+        final ShadowUpdater.Report report = new ShadowUpdater(K, N, 100, set.getScheduler()).update(
+                set.getSecret().toString(), updated.toString(), shares);
+
+        final long polynomials = report.getRanges().stream().mapToLong(ShadowUpdater.Range::getCount).sum();
+        Assert.assertTrue(UPDATE_ERROR_MESSAGE + " Only a few polynomials must be updated",
+                polynomials > 0 && polynomials < SIZE * SIZE / K / 10);
+        Assert.assertEquals(UPDATE_ERROR_MESSAGE + " A byte must be written per share",
+                polynomials, report.getWritten(0));
+        Assert.assertTrue(UPDATE_ERROR_MESSAGE + " Every share must lie on the polynomials",
+                new ShadowVerifier(K, 100, set.getScheduler()).verify(shares, false).stream()
+                        .allMatch(ShadowVerifier.Result::isGenuine));
+        final List<String> paths = set.shareFilePaths();
+        Assert.assertArrayEquals(UPDATE_ERROR_MESSAGE + " The new secret must be recovered",
+                set.expectedRecovery(updated, paths),
+                ShadowSet.data(set.recoverFrom(paths.subList(N - K, N), "compact")));
+    }
+
+    @Test
+    public void testWrongOldSecretIsRejectedBeforeWriting() throws IOException {
+        final String covers = set.getCovers().toString();
+        final List<String> paths = set.coverPaths();
+        final List<byte[]> shadows = new ArrayList<>();
+        for (String path : paths) {
+            shadows.add(Files.readAllBytes(Paths.get(path)));
+        }
+
+        try {
+            // The shadows were not distributed from the updated secret
+            new ShadowUpdater(K, N, 100, set.getScheduler()).update(updated.toString(),
+                    set.getSecret().toString(), covers);
+            Assert.fail(UPDATE_ERROR_MESSAGE + " A wrong old secret must be rejected");
+        } catch (IllegalStateException expected) {
+            // Expected
+        }
+        for (int i = 0; i < paths.size(); i++) {
+            Assert.assertArrayEquals(UPDATE_ERROR_MESSAGE + " Shadows must not change",
+                    shadows.get(i), Files.readAllBytes(Paths.get(paths.get(i))));
+        }
+    }
+
+    private static boolean isDirty(ShadowUpdater.Report report, int polynomial) {
+        return report.getRanges().stream().anyMatch(range ->
+                polynomial >= range.getFirst() && polynomial < range.getFirst() + range.getCount());
+    }
+}
@@ -0,0 +1,102 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import ar.edu.itba.cripto.secret_image.support.ShadowSet;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+/**
+ * Perform tests over {@link ShadowVerifier} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class ShadowVerifierTest {
+
+    private static final String VERIFY_ERROR_MESSAGE = "ShadowVerifier#verify did not return as expected.";
+
+    private static final int K = 3;
+
+    private static final int N = 6;
+
+    private static final int SIZE = 48;
+
+    private ShadowSet set;
+
+    @Before
+    public void createShadows() throws IOException {
+        set = ShadowSet.create("shadow-verifier", K, N, SIZE, 3).distribute(new SharingOptions())
+                .distributeCompact(new SharingOptions());
+    }
+
+    @After
+    public void deleteFiles() throws IOException {
+        set.close();
+    }
+
+    @Test
+    public void testTamperedShadowImageIsReported() throws IOException {
+        final String covers = set.getCovers().toString();
+        final ShadowVerifier verifier = new ShadowVerifier(K, 100, set.getScheduler());
+        Assert.assertTrue(VERIFY_ERROR_MESSAGE + " Genuine shadows must match",
+                verifier.verify(covers, false).stream().allMatch(ShadowVerifier.Result::isGenuine));
+
+        // The share of polynomial 150 is hidden in the least significant bits of 8 bytes, one of which is flipped
+        final String tampered = set.coverPaths().get(K + 1);
+        try (RandomAccessFile file = new RandomAccessFile(tampered, "rw")) {
+            file.seek(10);
+            final int offset = Integer.reverseBytes(file.readInt());
+            file.seek(offset + 150 * 8 + 5);
+            final int value = file.read();
+            file.seek(offset + 150 * 8 + 5);
+            file.write(value ^ 1);
+        }
+
+        final List<ShadowVerifier.Result> results = verifier.verify(covers, false);
+        Assert.assertEquals(VERIFY_ERROR_MESSAGE + " Every surplus shadow must be checked", N - K, results.size());
+        for (ShadowVerifier.Result result : results) {
+            final boolean expected = !result.getPath().equals(tampered);
+            Assert.assertEquals(VERIFY_ERROR_MESSAGE + " Only the tampered shadow must mismatch",
+                    expected, result.isGenuine());
+            Assert.assertTrue(VERIFY_ERROR_MESSAGE + " Every polynomial must be checked", result.isComplete());
+            if (!expected) {
+                Assert.assertEquals(VERIFY_ERROR_MESSAGE + " Only one share was tampered", 1, result.getMismatches());
+                Assert.assertEquals(VERIFY_ERROR_MESSAGE + " The tampered share must be reported",
+                        150, result.getFirstMismatch());
+            }
+        }
+    }
+
+    @Test
+    public void testFailFastStopsAtFirstMismatchingShare() throws IOException {
+        final String tampered = set.shareFilePaths().get(N - 1);
+        final int shareCount = SIZE * SIZE / K;
+        try (RandomAccessFile file = new RandomAccessFile(tampered, "rw")) {
+            // Shares are the last bytes of the file (one per polynomial)
+            final long position = file.length() - shareCount + 20;
+            file.seek(position);
+            final int value = file.read();
+            file.seek(position);
+            file.write(value + 1);
+        }
+
+        final List<ShadowVerifier.Result> results = new ShadowVerifier(K, 64, set.getScheduler())
+                .verify(set.getShares().toString(), true);
+        final ShadowVerifier.Result last = results.get(results.size() - 1);
+        Assert.assertEquals(VERIFY_ERROR_MESSAGE + " The tampered share must be reported", 20, last.getFirstMismatch());
+        Assert.assertFalse(VERIFY_ERROR_MESSAGE + " The tampered shadow must mismatch", last.isGenuine());
+        for (ShadowVerifier.Result result : results.subList(0, results.size() - 1)) {
+            Assert.assertTrue(VERIFY_ERROR_MESSAGE + " Other shadows must not mismatch", result.isGenuine());
+            Assert.assertFalse(VERIFY_ERROR_MESSAGE + " Checking must stop after the first chunk",
+                    result.isComplete());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
+import ar.edu.itba.cripto.secret_image.support.ShadowSet;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Perform tests over {@link ShardCoordinator} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class ShardCoordinatorTest {
+
+    private static final String RUN_ERROR_MESSAGE = "ShardCoordinator#run did not return as expected.";
+
+    private static final String ACCEPT_ERROR_MESSAGE = "ShardCoordinator#accept did not return as expected.";
+
+    private static final int K = 4;
+
+    private static final int N = 6;
+
+    private static final int SIZE = 64;
+
+    private static final long TOKEN = 42;
+
+    private ShadowSet set;
+
+    @Before
+    public void distribute() throws IOException {
+        set = ShadowSet.create("shard-coordinator", K, N, SIZE, 1)
+                .distribute(new SharingOptions().setKeystreamVersion(2));
+    }
+
+    @After
+    public void deleteFiles() throws IOException {
+        set.close();
+    }
+
+    @Test
+    public void testWorkersRecoverTheSameImage() throws IOException {
+        final Path sharded = set.getDirectory().resolve("sharded.bmp");
+
+        // Shards that do not divide the image, so each worker recovers several of them
+        final List<String> paths = set.coverPaths().subList(0, K);
+        final List<BmpUtils> shadows = Shadows.loadHeaders(paths, K, set.getScheduler());
+        try {
+            new ShardCoordinator(2, 100, set.getScheduler()).run(shadows, paths, sharded.toString());
+        } finally {
+            shadows.forEach(BmpUtils::release);
+        }
+
+        Assert.assertArrayEquals(RUN_ERROR_MESSAGE + " Sharded recovery must match local recovery",
+                set.recoverFrom(paths, "local"), Files.readAllBytes(sharded));
+    }
+
+    @Test
+    public void testConnectionsWithoutTheTokenAreSkipped() throws IOException {
+        try (ServerSocket server = new ServerSocket(0, 2, InetAddress.getLoopbackAddress());
+             Socket stranger = connect(server, TOKEN + 1);
+             Socket worker = connect(server, TOKEN)) {
+            try (Socket accepted = ShardCoordinator.accept(server, TOKEN, deadline(10))) {
+                Assert.assertEquals(ACCEPT_ERROR_MESSAGE + " The worker must be accepted",
+                        worker.getLocalPort(), accepted.getPort());
+            }
+            // The stranger was closed by the coordinator
+            Assert.assertEquals(ACCEPT_ERROR_MESSAGE + " Other connections must be closed",
+                    -1, stranger.getInputStream().read());
+        }
+    }
+
+    @Test(expected = SocketTimeoutException.class)
+    public void testWorkersMustConnectInTime() throws IOException {
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             Socket stranger = connect(server, TOKEN + 1)) {
+            try {
+                ShardCoordinator.accept(server, TOKEN, deadline(1));
+            } finally {
+                Assert.assertEquals(ACCEPT_ERROR_MESSAGE + " Other connections must be closed while waiting",
+                        -1, stranger.getInputStream().read());
+            }
+        }
+    }
+
+    /**
+     * Connects to the given {@code server}, presenting the given {@code token}.
+     */
+    private static Socket connect(ServerSocket server, long token) throws IOException {
+        final Socket socket = new Socket(server.getInetAddress(), server.getLocalPort());
+        final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        out.writeLong(token);
+        out.flush();
+        return socket;
+    }
+
+    /**
+     * Gets the {@link System#nanoTime()} after the given amount of seconds.
+     */
+    private static long deadline(int seconds) {
+        return System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+    }
+}
@@ -0,0 +1,109 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
+import ar.edu.itba.cripto.secret_image.share.ShareFile;
+import ar.edu.itba.cripto.secret_image.support.ShadowSet;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Perform tests over {@link ShareMatrix} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class ShareMatrixTest {
+
+    private static final String EXTRACT_ERROR_MESSAGE = "ShareMatrix#extract did not return as expected.";
+
+    private static final String OF_ERROR_MESSAGE = "ShareMatrix#of did not return as expected.";
+
+    private static final String GET_SHADOW_NUMBERS_ERROR_MESSAGE =
+            "ShareMatrix#getShadowNumbers did not return as expected.";
+
+    private static final int K = 3;
+
+    private static final int N = 4;
+
+    private static final int SIZE = 24;
+
+    @Test
+    public void testSharesAreExtractedPerShadow() throws IOException {
+        try (ShadowSet set = ShadowSet.create("share-matrix", K, N, SIZE, 35).distribute(new SharingOptions())) {
+            final List<BmpUtils> images = new ArrayList<>();
+            for (String path : set.coverPaths()) {
+                images.add(BmpUtils.wrap(ByteBuffer.wrap(Files.readAllBytes(Paths.get(path)))));
+            }
+            final int numPolynomes = images.get(0).getShareCount(K);
+
+            final ShareMatrix shares = ShareMatrix.extract(images, numPolynomes, set.getScheduler());
+
+            Assert.assertEquals(EXTRACT_ERROR_MESSAGE + " There must be a column per shadow", N,
+                    shares.getShadowCount());
+            Assert.assertEquals(EXTRACT_ERROR_MESSAGE + " There must be a share per polynomial", numPolynomes,
+                    shares.getPolynomeCount());
+            for (int i = 0; i < N; i++) {
+                final byte[] hidden = images.get(i).extractHidden(numPolynomes);
+                Assert.assertEquals(EXTRACT_ERROR_MESSAGE + " Shadow numbers must follow the images order",
+                        images.get(i).getShadow(), shares.getShadowNumbers()[i]);
+                Assert.assertArrayEquals(EXTRACT_ERROR_MESSAGE + " Columns must hold the hidden shares",
+                        hidden, shares.getColumns()[i]);
+                for (int j = 0; j < numPolynomes; j++) {
+                    Assert.assertEquals(EXTRACT_ERROR_MESSAGE + " Shares must be unsigned",
+                            Byte.toUnsignedInt(hidden[j]), shares.getShare(i, j));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSharesAreTakenFromShareFiles() throws IOException {
+        try (ShadowSet set = ShadowSet.create("share-matrix", K, N, SIZE, 35)
+                .distributeCompact(new SharingOptions())) {
+            final List<ShareFile> shareFiles = new ArrayList<>();
+            for (String path : set.shareFilePaths()) {
+                shareFiles.add(ShareFile.read(path));
+            }
+
+            final ShareMatrix shares = ShareMatrix.of(shareFiles);
+
+            Assert.assertEquals(OF_ERROR_MESSAGE + " There must be a column per share file", N,
+                    shares.getShadowCount());
+            for (int i = 0; i < N; i++) {
+                Assert.assertEquals(OF_ERROR_MESSAGE + " Shadow numbers must follow the share files order",
+                        shareFiles.get(i).getShadow(), shares.getShadowNumbers()[i]);
+                Assert.assertArrayEquals(OF_ERROR_MESSAGE + " Columns must hold the saved shares",
+                        shareFiles.get(i).getShares(), shares.getColumns()[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testShadowNumbersAreCopied() {
+        final int[] shadowNumbers = {1, 2};
+        final ShareMatrix shares = new ShareMatrix(new byte[][]{{1, 2}, {3, 4}}, shadowNumbers);
+        shares.getShadowNumbers()[0] = 5;
+        Assert.assertEquals(GET_SHADOW_NUMBERS_ERROR_MESSAGE + " Shadow numbers must not be modified", 1,
+                shares.getShadowNumbers()[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testColumnsOfDifferentLengthAreRejected() {
+        new ShareMatrix(new byte[][]{{1, 2}, {3}}, new int[]{1, 2});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingShadowNumbersAreRejected() {
+        new ShareMatrix(new byte[][]{{1, 2}, {3, 4}}, new int[]{1});
+    }
+}
@@ -0,0 +1,53 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import ar.edu.itba.cripto.secret_image.main.util.Keystream;
+import ar.edu.itba.cripto.secret_image.support.ShadowSet;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Perform tests over {@link SharingPipeline} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class SharingPipelineTest {
+
+    private static final String RUN_ERROR_MESSAGE = "SharingPipeline#run did not return as expected.";
+
+    private static final int K = 3;
+
+    private static final int N = 6;
+
+    private static final int SIZE = 48;
+
+    @Test
+    public void testMappedSharingCreatesGenuineShadows() throws IOException {
+        for (int version : new int[]{Keystream.LEGACY, Keystream.COUNTER}) {
+            try (ShadowSet set = ShadowSet.create("sharing-pipeline", K, N, SIZE, 11)) {
+                final List<String> paths = set.coverPaths();
+                final SecretSharing sharing = new SecretSharing(K,
+                        new SharingOptions().setKeystreamVersion(version), set.getScheduler());
+                // Chunks and segments are tiny, so they do not match each other nor image rows
+                new SharingPipeline(sharing, set.getScheduler(), 100, 256).run(set.getSecret().toString(), paths);
+
+                Assert.assertTrue(RUN_ERROR_MESSAGE + " Every share must lie on the polynomials",
+                        new ShadowVerifier(K, 100, set.getScheduler()).verify(set.getCovers().toString(), false)
+                                .stream().allMatch(ShadowVerifier.Result::isGenuine));
+                // The reserved header field is copied from the first shadow, which is not the same
+                Assert.assertArrayEquals(RUN_ERROR_MESSAGE + " Any k shadows must recover the same secret",
+                        ShadowSet.withoutReserved(set.recoverFrom(paths.subList(0, K), "first")),
+                        ShadowSet.withoutReserved(set.recoverFrom(paths.subList(N - K, N), "last")));
+                Assert.assertArrayEquals(RUN_ERROR_MESSAGE + " The secret must be recovered",
+                        set.expectedRecovery(paths),
+                        ShadowSet.data(set.recoverFrom(paths.subList(1, 1 + K), "middle")));
+            }
+        }
+    }
+}
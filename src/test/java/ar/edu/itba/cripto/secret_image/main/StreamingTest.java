@@ -0,0 +1,227 @@
+package ar.edu.itba.cripto.secret_image.main;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import ar.edu.itba.cripto.secret_image.main.util.Flows;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+import ar.edu.itba.cripto.secret_image.share.ShareChunk;
+import ar.edu.itba.cripto.secret_image.share.ShareFile;
+import ar.edu.itba.cripto.secret_image.support.SyntheticBmp;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Perform tests over {@link SharingProcessor} and {@link RecoveryProcessor}.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class StreamingTest {
+
+    private static final String SHARING_ERROR_MESSAGE = "SharingProcessor did not publish as expected.";
+
+    private static final String RECOVERY_ERROR_MESSAGE = "RecoveryProcessor did not publish as expected.";
+
+    private static final int K = 4;
+
+    private static final int N = 6;
+
+    private static final int SIZE = 64;
+
+    /**
+     * The size of the chunks in which the secret is streamed (not a multiple of k, nor of the header size).
+     */
+    private static final int CHUNK_SIZE = 37;
+
+    private Path directory;
+
+    private TaskScheduler scheduler;
+
+    private byte[] secret;
+
+    @Before
+    public void createImages() throws IOException {
+        directory = Files.createTempDirectory("streaming");
+        final Path secretPath = directory.resolve("secret.bmp");
+        SyntheticBmp.write(secretPath, SIZE, SIZE, 8, 1);
+        secret = Files.readAllBytes(secretPath);
+        scheduler = new TaskScheduler(TaskScheduler.DEFAULT_IO_LIMIT, 2);
+    }
+
+    @After
+    public void deleteFiles() throws IOException {
+        scheduler.close();
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    @Test
+    public void testStreamedRecoveryMatchesMemoryRecovery() throws IOException {
+        final SecretSharing sharing = new SecretSharing(K, new SharingOptions().setKeystreamVersion(2), scheduler);
+        final List<ByteBuffer> secretChunks = new ArrayList<>();
+        for (int i = 0; i < secret.length; i += CHUNK_SIZE) {
+            secretChunks.add(ByteBuffer.wrap(Arrays.copyOfRange(secret, i, Math.min(secret.length, i + CHUNK_SIZE))));
+        }
+        final SharingProcessor sharingProcessor = sharing.sharingProcessor(N);
+        new ListPublisher<>(secretChunks).subscribe(sharingProcessor);
+        final List<ShareChunk> shareChunks = new CollectingSubscriber<ShareChunk>().collect(sharingProcessor);
+
+        // Chunks of each shadow, concatenated, are its share file
+        final List<ByteArrayOutputStream> shareFiles = new ArrayList<>();
+        final List<List<ShareChunk>> shadowChunks = new ArrayList<>();
+        for (int i = 0; i < N; i++) {
+            shareFiles.add(new ByteArrayOutputStream());
+            shadowChunks.add(new ArrayList<>());
+        }
+        for (ShareChunk chunk : shareChunks) {
+            Assert.assertEquals(SHARING_ERROR_MESSAGE + " Chunks of a shadow must be contiguous",
+                    shareFiles.get(chunk.getShadow() - 1).size(), chunk.getPosition());
+            shareFiles.get(chunk.getShadow() - 1).write(chunk.getBytes());
+            shadowChunks.get(chunk.getShadow() - 1).add(chunk);
+        }
+        for (int i = 0; i < N; i++) {
+            final ShareFile shareFile = ShareFile.read(ByteBuffer.wrap(shareFiles.get(i).toByteArray()));
+            Assert.assertEquals(SHARING_ERROR_MESSAGE + " Share files must hold the shadow number",
+                    i + 1, shareFile.getShadow());
+            Assert.assertEquals(SHARING_ERROR_MESSAGE + " Share files must hold every share",
+                    (secret.length - shareFile.getHeaderTemplate().length) / K, shareFile.getShareCount());
+        }
+
+        // The last k shadows, one of them ahead of the others, and then an unused one
+        final List<ShareChunk> received = new ArrayList<>(shadowChunks.get(N - 1));
+        for (int c = 0; c < shadowChunks.get(0).size(); c++) {
+            for (int i = N - K; i < N - 1; i++) {
+                received.add(shadowChunks.get(i).get(c));
+            }
+        }
+        received.addAll(shadowChunks.get(0));
+        final RecoveryProcessor recoveryProcessor = sharing.recoveryProcessor();
+        new ListPublisher<>(received).subscribe(recoveryProcessor);
+        final ByteArrayOutputStream recovered = new ByteArrayOutputStream();
+        for (ByteBuffer chunk : new CollectingSubscriber<ByteBuffer>().collect(recoveryProcessor)) {
+            final byte[] bytes = new byte[chunk.remaining()];
+            chunk.get(bytes);
+            recovered.write(bytes);
+        }
+
+        final List<ByteBuffer> used = new ArrayList<>();
+        used.add(ByteBuffer.wrap(shareFiles.get(N - 1).toByteArray()));
+        for (int i = N - K; i < N - 1; i++) {
+            used.add(ByteBuffer.wrap(shareFiles.get(i).toByteArray()));
+        }
+        Assert.assertArrayEquals(RECOVERY_ERROR_MESSAGE + " Streamed recovery must match memory recovery",
+                sharing.recoverCompact(used), recovered.toByteArray());
+    }
+
+    @Test
+    public void testTruncatedSecretFails() {
+        final SecretSharing sharing = new SecretSharing(K, new SharingOptions(), scheduler);
+        final SharingProcessor sharingProcessor = sharing.sharingProcessor(N);
+        new ListPublisher<>(Arrays.asList(ByteBuffer.wrap(Arrays.copyOf(secret, secret.length / 2))))
+                .subscribe(sharingProcessor);
+        final CollectingSubscriber<ShareChunk> subscriber = new CollectingSubscriber<>();
+        subscriber.collect(sharingProcessor);
+        Assert.assertTrue(SHARING_ERROR_MESSAGE + " A truncated secret must fail",
+                subscriber.error instanceof IllegalStateException);
+    }
+
+    /**
+     * A publisher of the items of a list, delivered synchronously as they are requested.
+     */
+    private static final class ListPublisher<T> implements Flows.Publisher<T> {
+
+        private final List<T> items;
+
+        private ListPublisher(List<T> items) {
+            this.items = items;
+        }
+
+        @Override
+        public void subscribe(Flows.Subscriber<? super T> subscriber) {
+            subscriber.onSubscribe(new Flows.Subscription() {
+
+                private int next;
+
+                private boolean done;
+
+                @Override
+                public void request(long n) {
+                    for (long i = 0; i < n && !done; i++) {
+                        if (next < items.size()) {
+                            subscriber.onNext(items.get(next++));
+                        }
+                        if (next == items.size() && !done) {
+                            done = true;
+                            subscriber.onComplete();
+                        }
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    done = true;
+                }
+            });
+        }
+    }
+
+    /**
+     * A subscriber collecting every item, requesting a few of them at a time.
+     */
+    private static final class CollectingSubscriber<T> implements Flows.Subscriber<T> {
+
+        private final List<T> items = new ArrayList<>();
+
+        private Flows.Subscription subscription;
+
+        private int outstanding;
+
+        private boolean completed;
+
+        private Throwable error;
+
+        private List<T> collect(Flows.Publisher<T> publisher) {
+            publisher.subscribe(this);
+            Assert.assertTrue("Synchronous stages must have finished", completed || error != null);
+            return items;
+        }
+
+        @Override
+        public void onSubscribe(Flows.Subscription subscription) {
+            this.subscription = subscription;
+            outstanding = 3;
+            subscription.request(3);
+        }
+
+        @Override
+        public void onNext(T item) {
+            items.add(item);
+            if (--outstanding == 0) {
+                outstanding = 3;
+                subscription.request(3);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package ar.edu.itba.cripto.secret_image.main.util;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
+import ar.edu.itba.cripto.secret_image.bmp.BufferPool;
+import ar.edu.itba.cripto.secret_image.main.SharingOptions;
+import ar.edu.itba.cripto.secret_image.support.ShadowSet;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Perform tests over {@link Keystream} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class KeystreamTest {
+
+    private static final String GET_ERROR_MESSAGE = "Keystream#get did not return as expected.";
+
+    private static final String MASK_ERROR_MESSAGE = "Keystream#mask did not return as expected.";
+
+    private static final String CREATE_ERROR_MESSAGE = "Keystream#create did not return as expected.";
+
+    private static final String SEQUENTIAL_ERROR_MESSAGE = "Keystream#sequential did not return as expected.";
+
+    private static final long SEED = 0x0123456789ABCDEFL;
+
+    private static final int LENGTH = 1000;
+
+    @Test
+    public void testCounterKeystreamIsSplitMix64() {
+        final Keystream keystream = Keystream.create(Keystream.COUNTER, SEED, Long.MAX_VALUE);
+        Assert.assertEquals(CREATE_ERROR_MESSAGE + " The version must be the counter-based one",
+                Keystream.COUNTER, keystream.getVersion());
+
+        // SplittableRandom produces the same SplitMix64 sequence, 8 little endian bytes per block
+        final SplittableRandom random = new SplittableRandom(SEED);
+        for (int block = 0; block < LENGTH / 8; block++) {
+            final long expected = random.nextLong();
+            for (int i = 0; i < 8; i++) {
+                Assert.assertEquals(GET_ERROR_MESSAGE + " Bytes must be derived from the seed and their index",
+                        (int) (expected >>> (8 * i)) & 0xFF, keystream.get(block * 8L + i));
+            }
+        }
+    }
+
+    @Test
+    public void testCounterKeystreamSeeksAnyIndex() {
+        final Keystream keystream = Keystream.create(Keystream.COUNTER, SEED, Long.MAX_VALUE);
+        final long far = 5L * Integer.MAX_VALUE;
+        final int expected = keystream.get(far);
+
+        // Reading other ranges first must not change the byte at a given index
+        final Keystream other = Keystream.create(Keystream.COUNTER, SEED, Long.MAX_VALUE);
+        for (int i = 0; i < LENGTH; i++) {
+            other.get(i);
+        }
+        Assert.assertEquals(GET_ERROR_MESSAGE + " Bytes must not depend on the previous reads",
+                expected, other.get(far));
+        Assert.assertNotEquals(GET_ERROR_MESSAGE + " Bytes must depend on the seed",
+                bytes(keystream, 0, 16), bytes(Keystream.create(Keystream.COUNTER, SEED + 1, 16), 0, 16));
+    }
+
+    @Test
+    public void testCounterKeystreamMasksUnalignedRanges() {
+        final Keystream keystream = Keystream.create(Keystream.COUNTER, SEED, Long.MAX_VALUE);
+        // Ranges starting and ending in the middle of a block, and within a single block
+        for (int[] range : new int[][]{{3, 21}, {8, 16}, {5, 2}, {0, 1}}) {
+            final int[] values = new int[range[1] + 2];
+            Arrays.fill(values, 0xA5);
+            keystream.mask(range[0], values, 1, range[1]);
+            Assert.assertEquals(MASK_ERROR_MESSAGE + " Values before the range must not be masked",
+                    0xA5, values[0]);
+            Assert.assertEquals(MASK_ERROR_MESSAGE + " Values after the range must not be masked",
+                    0xA5, values[values.length - 1]);
+            for (int i = 0; i < range[1]; i++) {
+                Assert.assertEquals(MASK_ERROR_MESSAGE + " Values must be masked with the bytes at their index",
+                        0xA5 ^ keystream.get(range[0] + i), values[i + 1]);
+            }
+        }
+    }
+
+    @Test
+    public void testLegacyKeystreamIsThePseudoTable() {
+        final Keystream keystream = Keystream.create(Keystream.LEGACY, 0x10000 | 691, LENGTH);
+        Assert.assertEquals(CREATE_ERROR_MESSAGE + " The version must be the legacy one",
+                Keystream.LEGACY, keystream.getVersion());
+
+        // Only the lowest 16 bits of the seed are used
+        final byte[] table = PseudoTable.generate(LENGTH, 691);
+        for (int i = 0; i < LENGTH; i++) {
+            Assert.assertEquals(GET_ERROR_MESSAGE + " Bytes must be the ones of the pseudo table",
+                    Byte.toUnsignedInt(table[i]), keystream.get(i));
+        }
+    }
+
+    @Test
+    public void testSequentialLegacyKeystreamIsThePseudoTable() {
+        final Keystream keystream = Keystream.sequential(Keystream.LEGACY, 691, LENGTH);
+        final byte[] table = PseudoTable.generate(LENGTH, 691);
+
+        // Bytes are read in order, skipping some of them
+        final int[] masks = new int[LENGTH / 2];
+        keystream.mask(0, masks, 0, masks.length);
+        for (int i = 0; i < masks.length; i++) {
+            Assert.assertEquals(SEQUENTIAL_ERROR_MESSAGE + " Bytes must be the ones of the pseudo table",
+                    Byte.toUnsignedInt(table[i]), masks[i]);
+        }
+        Assert.assertEquals(SEQUENTIAL_ERROR_MESSAGE + " Skipped bytes must be produced",
+                Byte.toUnsignedInt(table[LENGTH - 1]), keystream.get(LENGTH - 1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSequentialLegacyKeystreamIsReadInOrder() {
+        final Keystream keystream = Keystream.sequential(Keystream.LEGACY, 691, LENGTH);
+        keystream.get(10);
+        keystream.get(9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLegacyKeystreamIsLimitedToAnArray() {
+        Keystream.create(Keystream.LEGACY, SEED, Integer.MAX_VALUE + 1L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownVersionIsRejected() {
+        Keystream.create(Keystream.COUNTER + 1, SEED, LENGTH);
+    }
+
+    @Test
+    public void testShadowsRecordTheirKeystream() throws IOException {
+        for (int version : new int[]{Keystream.LEGACY, Keystream.COUNTER}) {
+            try (ShadowSet set = ShadowSet.create("keystream", 3, 4, 48, version)
+                    .distribute(new SharingOptions().setKeystreamVersion(version))) {
+                final List<String> shadows = set.coverPaths();
+                final BmpUtils header = BmpUtils.readHeader(shadows.get(0), BufferPool.shared());
+                try {
+                    Assert.assertEquals(CREATE_ERROR_MESSAGE + " The keystream version must be recorded in shadows",
+                            version, header.getKeystreamVersion());
+                } finally {
+                    header.release();
+                }
+                Assert.assertArrayEquals(CREATE_ERROR_MESSAGE + " The recorded keystream must unmask the secret",
+                        set.expectedRecovery(shadows.subList(1, 4)),
+                        ShadowSet.data(set.recoverFrom(shadows.subList(1, 4), "recovered")));
+            }
+        }
+    }
+
+    /**
+     * Reads the given range of a keystream.
+     */
+    private static String bytes(Keystream keystream, long from, int count) {
+        final StringBuilder builder = new StringBuilder();
+        for (long i = from; i < from + count; i++) {
+            builder.append(keystream.get(i)).append(' ');
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,99 @@
+package ar.edu.itba.cripto.secret_image.main.util;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Perform tests over {@link TaskScheduler} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class TaskSchedulerTest {
+
+    private static final String IO_ERROR_MESSAGE = "TaskScheduler#io did not return as expected.";
+
+    private static final String FOR_EACH_CHUNK_ERROR_MESSAGE = "TaskScheduler#forEachChunk did not return as expected.";
+
+    private static final int IO_LIMIT = 2;
+
+    private TaskScheduler scheduler;
+
+    @Before
+    public void createScheduler() {
+        scheduler = new TaskScheduler(IO_LIMIT, 2);
+    }
+
+    @After
+    public void closeScheduler() {
+        scheduler.close();
+    }
+
+    @Test
+    public void testIoTasksRespectTheLimit() {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maximum = new AtomicInteger();
+        final List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 4 * IO_LIMIT; i++) {
+            final int task = i;
+            futures.add(scheduler.io(() -> {
+                maximum.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                return task;
+            }));
+        }
+        TaskScheduler.joinAll(futures);
+
+        for (int i = 0; i < futures.size(); i++) {
+            Assert.assertEquals(IO_ERROR_MESSAGE + " Every task must complete with its result",
+                    Integer.valueOf(i), futures.get(i).join());
+        }
+        Assert.assertTrue(IO_ERROR_MESSAGE + " No more than the limit must run at once", maximum.get() <= IO_LIMIT);
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void testIoExceptionIsRethrownUnchecked() {
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        futures.add(scheduler.io(() -> null));
+        futures.add(scheduler.io(() -> {
+            throw new IOException("Disk is gone");
+        }));
+        TaskScheduler.joinAll(futures);
+    }
+
+    @Test
+    public void testForEachChunkCoversTheRange() {
+        final int size = 1001;
+        final AtomicInteger[] visits = new AtomicInteger[size];
+        for (int i = 0; i < size; i++) {
+            visits[i] = new AtomicInteger();
+        }
+        scheduler.forEachChunk(size, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                visits[i].incrementAndGet();
+            }
+        });
+
+        for (int i = 0; i < size; i++) {
+            Assert.assertEquals(FOR_EACH_CHUNK_ERROR_MESSAGE + " Every index must be visited once",
+                    1, visits[i].get());
+        }
+    }
+}
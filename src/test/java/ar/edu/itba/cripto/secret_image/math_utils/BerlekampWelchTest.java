@@ -0,0 +1,68 @@
+package ar.edu.itba.cripto.secret_image.math_utils;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Random;
+
+/**
+ * Perform tests over {@link BerlekampWelch} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class BerlekampWelchTest {
+
+    private static final String DECODE_ERROR_MESSAGE = "BerlekampWelch#decode did not return as expected.";
+
+    @Test
+    public void testCorrectsUpToMaxErrors() {
+        final Random random = new Random(257);
+        final int[] xs = {5, 1, 200, 17, 3, 256, 8, 90, 42};
+        for (int k = 1; k <= xs.length; k++) {
+            final BerlekampWelch decoder = new BerlekampWelch(xs, k, 257);
+            final int maxErrors = (xs.length - k) / 2;
+            Assert.assertEquals(DECODE_ERROR_MESSAGE + " k = " + k, maxErrors, decoder.getMaxErrors());
+            for (int trial = 0; trial < 200; trial++) {
+                final int[] polynomial = random.ints(k, 0, 257).toArray();
+                final int[] values = new int[xs.length];
+                for (int i = 0; i < xs.length; i++) {
+                    values[i] = PolynomialUtils.evaluate(polynomial, xs[i], 257);
+                }
+                // Any subset of up to maxErrors values is replaced by a different one
+                final boolean[] wrong = new boolean[xs.length];
+                final int amount = random.nextInt(maxErrors + 1);
+                for (int error = 0; error < amount; error++) {
+                    int position;
+                    do {
+                        position = random.nextInt(xs.length);
+                    } while (wrong[position]);
+                    wrong[position] = true;
+                    values[position] = (values[position] + 1 + random.nextInt(256)) % 257;
+                }
+
+                final int[] coefficients = new int[k];
+                final boolean[] errors = new boolean[xs.length];
+                Assert.assertEquals(DECODE_ERROR_MESSAGE + " Every wrong value must be corrected",
+                        amount, decoder.decode(values, coefficients, errors));
+                Assert.assertArrayEquals(DECODE_ERROR_MESSAGE + " The polynomial must be recovered",
+                        polynomial, coefficients);
+                Assert.assertArrayEquals(DECODE_ERROR_MESSAGE + " Wrong values must be marked", wrong, errors);
+            }
+        }
+    }
+
+    @Test
+    public void testDetectsTooManyErrors() {
+        final int[] xs = {1, 2, 3, 4, 5};
+        final BerlekampWelch decoder = new BerlekampWelch(xs, 3, 257);
+        // A polynomial of degree 2 (x^2) with 2 wrong values (i.e more than (5 - 3) / 2)
+        final int[] values = {1, 4, 9, 100, 200};
+
+        Assert.assertEquals(DECODE_ERROR_MESSAGE + " Too many wrong values must be detected",
+                -1, decoder.decode(values, new int[3], new boolean[xs.length]));
+    }
+}
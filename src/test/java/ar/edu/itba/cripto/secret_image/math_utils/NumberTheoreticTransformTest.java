@@ -0,0 +1,60 @@
+package ar.edu.itba.cripto.secret_image.math_utils;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Perform tests over {@link NumberTheoreticTransform} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class NumberTheoreticTransformTest {
+
+    private static final String EVALUATE_ERROR_MESSAGE =
+            "NumberTheoreticTransform#evaluate did not return as expected.";
+
+    private static final String INTERPOLATE_ERROR_MESSAGE =
+            "NumberTheoreticTransform#interpolate did not return as expected.";
+
+    @Test
+    public void testEvaluationMatchesHorner() {
+        final Random random = new Random(257);
+        for (int size = 1; size <= 256; size <<= 1) {
+            final int[] coefficients = random.ints(size, 0, 257).toArray();
+            final int[] values = Arrays.copyOf(coefficients, size);
+
+            NumberTheoreticTransform.evaluate(values, size);
+
+            for (int i = 0; i < size; i++) {
+                Assert.assertEquals(EVALUATE_ERROR_MESSAGE + " Size " + size + ", point " + (i + 1),
+                        PolynomialUtils.evaluate(coefficients, NumberTheoreticTransform.point(i + 1), 257),
+                        values[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testCosetInterpolationRecoversCoefficients() {
+        final Random random = new Random(256);
+        final int[] coefficients = random.ints(8, 0, 257).toArray();
+        for (int first = 1; first <= 256; first += 8) {
+            final int[] values = new int[8];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = PolynomialUtils.evaluate(coefficients, NumberTheoreticTransform.point(first + i), 257);
+            }
+
+            NumberTheoreticTransform.interpolate(values, 8, first);
+
+            Assert.assertArrayEquals(INTERPOLATE_ERROR_MESSAGE + " First point " + first, coefficients, values);
+        }
+        Assert.assertFalse(INTERPOLATE_ERROR_MESSAGE + " Unaligned points are not a coset",
+                NumberTheoreticTransform.isCoset(5, 8));
+    }
+}
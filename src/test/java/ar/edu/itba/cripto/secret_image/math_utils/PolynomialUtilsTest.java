@@ -7,9 +7,11 @@ import org.junit.runner.RunWith;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.stream.IntStream;
 
 /**
@@ -22,6 +24,15 @@ public class PolynomialUtilsTest {
     private static final String GET_COEFFICIENTS_ERROR_MESSAGE =
             "PolynomialUtils#getCoefficients did not return as expected.";
 
+    private static final String INTERPOLATE_ERROR_MESSAGE =
+            "PolynomialUtils#interpolate did not return as expected.";
+
+    private static final String NEWTON_ERROR_MESSAGE =
+            "PolynomialUtils#addNewtonPoint did not return as expected.";
+
+    private static final String EVALUATE_ERROR_MESSAGE =
+            "PolynomialUtils#evaluate did not return as expected.";
+
     @Test
     public void testCoefficientsAreOk() {
         final Map<Integer, Integer> points = new HashMap<>();
@@ -44,4 +55,65 @@ public class PolynomialUtilsTest {
                         Assert.assertFalse(GET_COEFFICIENTS_ERROR_MESSAGE + " Expecting not to contain " + each,
                                 coefficients.contains(each)));
     }
+
+    @Test
+    public void testInterpolationMatchesCoefficients() {
+        final int[] xs = {2, 3, 7, 9};
+        final int[] ys = {5, 1, 10, 21};
+        final int[] coefficients = new int[xs.length];
+
+        PolynomialUtils.interpolate(PolynomialUtils.lagrangeBasis(xs, 257), ys, 257, coefficients);
+
+        Assert.assertArrayEquals(INTERPOLATE_ERROR_MESSAGE, new int[]{89, 186, 30, 185}, coefficients);
+        for (int i = 0; i < xs.length; i++) {
+            Assert.assertEquals(EVALUATE_ERROR_MESSAGE, ys[i], PolynomialUtils.evaluate(coefficients, xs[i], 257));
+        }
+    }
+
+    @Test
+    public void testBatchInterpolationMatchesSingleInterpolation() {
+        final int[] xs = {2, 3, 7, 9};
+        final int[][] basis = PolynomialUtils.lagrangeBasis(xs, 257);
+        final byte[][] columns = new byte[xs.length][10];
+        new Random(257).nextBytes(columns[0]);
+        new Random(256).nextBytes(columns[1]);
+        new Random(255).nextBytes(columns[2]);
+        new Random(254).nextBytes(columns[3]);
+        final int[] batch = new int[xs.length * 8];
+
+        PolynomialUtils.interpolate(basis, columns, 2, 8, 257, batch);
+
+        final int[] ys = new int[xs.length];
+        final int[] coefficients = new int[xs.length];
+        for (int p = 0; p < 8; p++) {
+            for (int i = 0; i < xs.length; i++) {
+                ys[i] = Byte.toUnsignedInt(columns[i][2 + p]);
+            }
+            PolynomialUtils.interpolate(basis, ys, 257, coefficients);
+            Assert.assertArrayEquals(INTERPOLATE_ERROR_MESSAGE + " Polynomial " + p, coefficients,
+                    Arrays.copyOfRange(batch, p * xs.length, (p + 1) * xs.length));
+        }
+    }
+
+    @Test
+    public void testNewtonPointsMatchBatchInterpolation() {
+        final int[] xs = {9, 2, 7, 3};
+        final byte[][] columns = new byte[xs.length][10];
+        for (int i = 0; i < xs.length; i++) {
+            new Random(257 - i).nextBytes(columns[i]);
+        }
+        final int[] batch = new int[xs.length * 8];
+        PolynomialUtils.interpolate(PolynomialUtils.lagrangeBasis(xs, 257), columns, 2, 8, 257, batch);
+
+        // Points are added one at a time, in any order
+        final int[] basis = new int[xs.length + 1];
+        basis[0] = 1;
+        final int[] newton = new int[xs.length * 10];
+        for (int i = 0; i < xs.length; i++) {
+            PolynomialUtils.addNewtonPoint(basis, i, xs[i], columns[i], 2, 8, 257, newton, xs.length);
+            PolynomialUtils.extendNewtonBasis(basis, i, xs[i], 257);
+        }
+
+        Assert.assertArrayEquals(NEWTON_ERROR_MESSAGE, batch, Arrays.copyOfRange(newton, xs.length * 2, newton.length));
+    }
 }
@@ -0,0 +1,89 @@
+package ar.edu.itba.cripto.secret_image.math_utils;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Random;
+
+/**
+ * Perform tests over {@link PrimeFieldMatrix} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class PrimeFieldMatrixTest {
+
+    private static final String MULTIPLY_ERROR_MESSAGE = "PrimeFieldMatrix#multiply did not return as expected.";
+
+    private static final String INVERT_ERROR_MESSAGE = "PrimeFieldMatrix#invert did not return as expected.";
+
+    @Test
+    public void testBlockedProductMatchesNaiveProduct() {
+        final Random random = new Random(130);
+        // Dimensions are not multiples of the block size, and the largest int prime reduces every few cells
+        for (int size : new int[]{257, 2147483647}) {
+            final PrimeField field = new PrimeField(size);
+            final int[][] left = random(random, 130, 70, size);
+            final int[][] right = random(random, 70, 150, size);
+
+            final int[][] product = PrimeFieldMatrix.of(left, field).multiply(PrimeFieldMatrix.of(right, field))
+                    .toArray();
+
+            for (int i = 0; i < left.length; i++) {
+                for (int j = 0; j < right[0].length; j++) {
+                    int expected = 0;
+                    for (int c = 0; c < right.length; c++) {
+                        expected = field.add(expected, field.multiply(left[i][c], right[c][j]));
+                    }
+                    Assert.assertEquals(MULTIPLY_ERROR_MESSAGE, expected, product[i][j]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLargeInverseGivesIdentity() {
+        final PrimeField field = new PrimeField(257);
+        // A Vandermonde matrix of 256 different points (i.e the one of k = 256 shadows) is invertible
+        final int[] xs = new int[256];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = i + 1;
+        }
+        final PrimeFieldMatrix matrix = PrimeFieldMatrix.of(PolynomialUtils.vandermonde(xs, 256, 257), field);
+        final PrimeFieldMatrix inverse = PrimeFieldMatrix.of(matrix.toArray(), field);
+        inverse.invert();
+
+        final PrimeFieldMatrix product = matrix.multiply(inverse);
+        for (int i = 0; i < 256; i++) {
+            for (int j = 0; j < 256; j++) {
+                Assert.assertEquals(INVERT_ERROR_MESSAGE + " The product must be the identity",
+                        i == j ? 1 : 0, product.get(i, j));
+            }
+        }
+    }
+
+    @Test
+    public void testSingularMatrixIsUnchanged() {
+        final PrimeField field = new PrimeField(257);
+        final int[][] data = random(new Random(3), 80, 80, 257);
+        data[79] = data[3].clone();
+        final PrimeFieldMatrix matrix = PrimeFieldMatrix.of(data, field);
+        try {
+            matrix.invert();
+            Assert.fail(INVERT_ERROR_MESSAGE + " Singular matrices must not be inverted");
+        } catch (IllegalStateException e) {
+            Assert.assertArrayEquals(INVERT_ERROR_MESSAGE + " The matrix must be unchanged", data, matrix.toArray());
+        }
+    }
+
+    private static int[][] random(Random random, int rows, int cols, int size) {
+        final int[][] data = new int[rows][];
+        for (int i = 0; i < rows; i++) {
+            data[i] = random.ints(cols, 0, size).toArray();
+        }
+        return data;
+    }
+}
@@ -0,0 +1,72 @@
+package ar.edu.itba.cripto.secret_image.math_utils;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Random;
+
+/**
+ * Perform tests over {@link PrimeField} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class PrimeFieldTest {
+
+    private static final String BULK_ERROR_MESSAGE = "PrimeField bulk operations did not return as expected.";
+
+    @Test
+    public void testBulkOperationsMatchElementOperations() {
+        final Random random = new Random(257);
+        // The largest int prime makes dot products reduce every few terms
+        for (int size : new int[]{257, 2147483647}) {
+            final PrimeField field = new PrimeField(size);
+            final int[] x = random.ints(300, 0, size).toArray();
+            final int[] y = random.ints(300, 0, size).toArray();
+            final int factor = random.nextInt(size);
+
+            int dot = 0;
+            for (int i = 0; i < x.length; i++) {
+                dot = field.add(dot, field.multiply(x[i], y[i]));
+            }
+            Assert.assertEquals(BULK_ERROR_MESSAGE + " Dot products must be reduced", dot,
+                    field.dot(x, 0, y, 0, x.length));
+
+            final int[] axpy = y.clone();
+            field.axpy(factor, x, 10, axpy, 20, 200);
+            final int[] scaled = x.clone();
+            field.scale(factor, scaled, 5, 100);
+            for (int i = 0; i < x.length; i++) {
+                Assert.assertEquals(BULK_ERROR_MESSAGE + " Only the given range must be accumulated to",
+                        i < 20 || i >= 220 ? y[i] : field.add(y[i], field.multiply(factor, x[i - 10])), axpy[i]);
+                Assert.assertEquals(BULK_ERROR_MESSAGE + " Only the given range must be scaled",
+                        i < 5 || i >= 105 ? x[i] : field.multiply(factor, x[i]), scaled[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testMatrixInverseUsesBulkOperations() {
+        final PrimeField field = new PrimeField(257);
+        final Random random = new Random(8);
+        final Matrix<Integer> matrix = new Matrix<>(8, 8, field);
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                matrix.set(i, j, random.nextInt(257));
+            }
+        }
+        final Matrix<Integer> inverse = matrix.transpose().transpose();
+        inverse.invert();
+
+        final Matrix<Integer> product = matrix.multiply(inverse);
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                Assert.assertEquals(BULK_ERROR_MESSAGE + " The product must be the identity",
+                        i == j ? 1 : 0, (int) product.get(i, j));
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package ar.edu.itba.cripto.secret_image.share;
+
+import ar.edu.itba.cripto.secret_image.TestConfig;
+import ar.edu.itba.cripto.secret_image.main.SharingOptions;
+import ar.edu.itba.cripto.secret_image.main.util.Keystream;
+import ar.edu.itba.cripto.secret_image.support.ShadowSet;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Perform tests over {@link ShareFile} methods.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestConfig.class)
+public class ShareFileTest {
+
+    private static final String READ_ERROR_MESSAGE = "ShareFile#read did not return as expected.";
+
+    private static final String READ_HEADER_ERROR_MESSAGE = "ShareFile#readHeader did not return as expected.";
+
+    private static final int K = 4;
+
+    private static final int N = 5;
+
+    private static final int SIZE = 32;
+
+    @Test
+    public void testSavedShareFileIsReadBack() throws IOException {
+        final ShareFile shareFile = newShareFile();
+
+        final ShareFile read = ShareFile.read(ByteBuffer.wrap(shareFile.toByteArray()));
+
+        Assert.assertEquals(READ_ERROR_MESSAGE + " Keystream version must be kept",
+                Keystream.COUNTER, read.getKeystreamVersion());
+        Assert.assertEquals(READ_ERROR_MESSAGE + " Seed must be kept", shareFile.getSeed(), read.getSeed());
+        Assert.assertTrue(READ_ERROR_MESSAGE + " Evaluation points must be kept", read.usesNttPoints());
+        Assert.assertEquals(READ_ERROR_MESSAGE + " Shadow number must be kept", 3, read.getShadow());
+        Assert.assertEquals(READ_ERROR_MESSAGE + " k must be kept", K, read.getK());
+        Assert.assertEquals(READ_ERROR_MESSAGE + " Width must be kept", SIZE, read.getWidth());
+        Assert.assertEquals(READ_ERROR_MESSAGE + " Height must be kept", SIZE, read.getHeight());
+        Assert.assertArrayEquals(READ_ERROR_MESSAGE + " Header template must be kept",
+                shareFile.getHeaderTemplate(), read.getHeaderTemplate());
+        Assert.assertArrayEquals(READ_ERROR_MESSAGE + " Shares must be kept", shareFile.getShares(), read.getShares());
+    }
+
+    @Test
+    public void testHeaderIsReadWithoutShares() throws IOException {
+        final ShareFile shareFile = newShareFile();
+        final byte[] bytes = shareFile.toByteArray();
+
+        Assert.assertEquals(READ_HEADER_ERROR_MESSAGE + " The first bytes are not enough to know the header length",
+                -1, ShareFile.headerLength(ByteBuffer.wrap(bytes, 0, 8)));
+        final int length = ShareFile.headerLength(ByteBuffer.wrap(bytes));
+        Assert.assertEquals(READ_HEADER_ERROR_MESSAGE + " Shares must follow the header",
+                bytes.length - shareFile.getShareCount(), length);
+        final ShareFile header = ShareFile.readHeader(ByteBuffer.wrap(bytes, 0, length));
+        Assert.assertEquals(READ_HEADER_ERROR_MESSAGE + " Share count must be read",
+                shareFile.getShareCount(), header.getShareCount());
+        try {
+            header.getShares();
+            Assert.fail(READ_HEADER_ERROR_MESSAGE + " Shares must not be available");
+        } catch (IllegalStateException expected) {
+            // Expected
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedShareFileIsRejected() throws IOException {
+        final byte[] bytes = newShareFile().toByteArray();
+        ShareFile.read(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 1)));
+    }
+
+    @Test
+    public void testCompactShadowsRecoverTheSecret() throws IOException {
+        try (ShadowSet set = ShadowSet.create("share-file", K, N, SIZE, 28).distributeCompact(new SharingOptions())) {
+            final List<String> paths = set.shareFilePaths();
+            Assert.assertEquals(READ_ERROR_MESSAGE + " A share file must be saved per shadow", N, paths.size());
+            final byte[] recovered = set.recoverFrom(paths.subList(N - K, N), "recovered");
+            Assert.assertArrayEquals(READ_ERROR_MESSAGE + " The secret image must be recovered from the template",
+                    set.expectedRecovery(paths.subList(N - K, N)), ShadowSet.data(recovered));
+        }
+    }
+
+    private static ShareFile newShareFile() {
+        final Random random = new Random(SIZE);
+        final byte[] template = new byte[54];
+        final byte[] shares = new byte[SIZE * SIZE / K];
+        random.nextBytes(template);
+        random.nextBytes(shares);
+        return new ShareFile(Keystream.COUNTER, random.nextLong(), true, 3, K, SIZE, SIZE, template, shares);
+    }
+}
@@ -0,0 +1,405 @@
+package ar.edu.itba.cripto.secret_image.support;
+
+import ar.edu.itba.cripto.secret_image.bmp.BmpUtils;
+import ar.edu.itba.cripto.secret_image.bmp.BufferPool;
+import ar.edu.itba.cripto.secret_image.main.Decryptor;
+import ar.edu.itba.cripto.secret_image.main.Encryption;
+import ar.edu.itba.cripto.secret_image.main.ShadowFormat;
+import ar.edu.itba.cripto.secret_image.main.SharingOptions;
+import ar.edu.itba.cripto.secret_image.main.util.Keystream;
+import ar.edu.itba.cripto.secret_image.main.util.TaskScheduler;
+import ar.edu.itba.cripto.secret_image.share.ShareFile;
+import org.apache.commons.io.FileUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Class implementing the fixture shared by the tests that need a distributed set of shadows:
+ * a temporary directory holding a synthetic secret image ({@code secret.bmp}), {@code n} covers sized for it
+ * (in {@code covers}, named {@code cover001.bmp} onwards) and a {@link TaskScheduler}, all of which are
+ * discarded once the set is closed. Shadows are hidden in the covers, or saved as share files in {@code shares}.
+ * <p>
+ * Recovery is lossy (distribution adjusts those polynomials evaluating to 256 in any shadow number), so recovered
+ * images are compared with the real data calculated by {@link #expectedRecovery(List)}, byte by byte.
+ */
+public final class ShadowSet implements Closeable {
+
+    /**
+     * The position following the reserved field of the bmp header, which the shadows of a secret image do not agree
+     * on (so images are compared from there onwards, see {@link #withoutReserved(byte[])}).
+     */
+    private static final int RESERVED_END = 10;
+    /**
+     * The position of the offset field of the bmp header (i.e where the real data starts).
+     */
+    private static final int OFFSET_FIELD = 10;
+
+    /**
+     * The temporary directory holding the whole set.
+     */
+    private final Path directory;
+    /**
+     * The {@link TaskScheduler} running distributions and recoveries (closed with the set).
+     */
+    private final TaskScheduler scheduler;
+    /**
+     * The amount of shadows needed to recover the secret image.
+     */
+    private final int k;
+    /**
+     * The amount of covers (i.e of distributed shadows).
+     */
+    private final int n;
+    /**
+     * The amount of shadow numbers at which no polynomial evaluates to 256 (i.e {@code n} plus the spare ones),
+     * once distributed.
+     */
+    private int points;
+
+    /**
+     * Private constructor, use {@link #create(String, int, int, int, long)} instead.
+     */
+    private ShadowSet(Path directory, int k, int n) {
+        this.directory = directory;
+        this.scheduler = new TaskScheduler(TaskScheduler.DEFAULT_IO_LIMIT, 2);
+        this.k = k;
+        this.n = n;
+        this.points = n;
+    }
+
+    /**
+     * Creates a synthetic secret image of {@code size x size} pixels, and {@code n} covers sized for hiding its
+     * shares in 1 bit per byte (see {@link #create(String, int, int, int, long, int)}).
+     *
+     * @param prefix The prefix of the temporary directory.
+     * @param k      The amount of shadows needed to recover the secret image.
+     * @param n      The amount of covers.
+     * @param size   The width and height of the secret image.
+     * @param seed   The seed of the secret image pixels (cover {@code i} uses {@code seed + i}).
+     * @return The (not yet distributed) set.
+     * @throws IOException If any IO error occurs while writing the images.
+     */
+    public static ShadowSet create(String prefix, int k, int n, int size, long seed) throws IOException {
+        return create(prefix, k, n, size, seed, 1);
+    }
+
+    /**
+     * Creates a synthetic secret image of {@code size x size} pixels, and {@code n} covers sized for hiding its
+     * shares in the given amount of bits per byte.
+     *
+     * @param prefix      The prefix of the temporary directory.
+     * @param k           The amount of shadows needed to recover the secret image.
+     * @param n           The amount of covers.
+     * @param size        The width and height of the secret image.
+     * @param seed        The seed of the secret image pixels (cover {@code i} uses {@code seed + i}).
+     * @param bitsPerByte The amount of least significant bits of each cover byte in which shares are hidden.
+     * @return The (not yet distributed) set.
+     * @throws IOException If any IO error occurs while writing the images.
+     */
+    public static ShadowSet create(String prefix, int k, int n, int size, long seed, int bitsPerByte)
+            throws IOException {
+        final ShadowSet set = new ShadowSet(Files.createTempDirectory(prefix), k, n);
+        try {
+            SyntheticBmp.write(set.getSecret(), size, size, 8, seed);
+            writeCovers(Files.createDirectories(set.getCovers()), n, size, coverHeight(size, k, bitsPerByte), seed);
+        } catch (IOException | RuntimeException e) {
+            set.close();
+            throw e;
+        }
+        return set;
+    }
+
+    /**
+     * Writes {@code n} synthetic covers (named {@code cover001.bmp} onwards).
+     *
+     * @param covers The directory in which covers are written.
+     * @param n      The amount of covers.
+     * @param width  The covers width.
+     * @param height The covers height.
+     * @param seed   The seed of the pixels (cover {@code i} uses {@code seed + i}).
+     * @throws IOException If any IO error occurs while writing the images.
+     */
+    public static void writeCovers(Path covers, int n, int width, int height, long seed) throws IOException {
+        for (int i = 1; i <= n; i++) {
+            SyntheticBmp.write(covers.resolve(String.format("cover%03d.bmp", i)), width, height, 8, seed + i);
+        }
+    }
+
+    /**
+     * Calculates the height of the covers of a secret image.
+     *
+     * @param size        The height of the secret image.
+     * @param k           The amount of shadows needed to recover the secret image.
+     * @param bitsPerByte The amount of least significant bits of each cover byte in which shares are hidden.
+     * @return The covers height.
+     */
+    public static int coverHeight(int size, int k, int bitsPerByte) {
+        if (bitsPerByte == 1) {
+            // Covers are rounded up to a whole row, so the hidden bytes of the last rows are not shares
+            return k == 8 ? size : size * 8 / k + 1;
+        }
+        return size * 8 / (k * bitsPerByte);
+    }
+
+    /**
+     * Hides the shadows of the secret image in the covers.
+     *
+     * @param options The {@link SharingOptions} of the distribution.
+     * @return This set (for method chaining).
+     */
+    public ShadowSet distribute(SharingOptions options) {
+        points = n + options.getSpare();
+        new Encryption(k, n, getSecret().toString(), getCovers().toString(), options, scheduler).encrypt();
+        return this;
+    }
+
+    /**
+     * Saves the shadows of the secret image as share files in the {@code shares} directory.
+     *
+     * @param options The {@link SharingOptions} of the distribution (its format is set to compact).
+     * @return This set (for method chaining).
+     * @throws IOException If any IO error occurs while creating the directory.
+     */
+    public ShadowSet distributeCompact(SharingOptions options) throws IOException {
+        points = n + options.getSpare();
+        new Encryption(k, n, getSecret().toString(), Files.createDirectories(getShares()).toString(),
+                options.setFormat(ShadowFormat.COMPACT), scheduler).encrypt();
+        return this;
+    }
+
+    /**
+     * Recovers the secret image from a copy of the given shadows, placed in their own directory.
+     *
+     * @param shadows The paths to the shadows.
+     * @param name    The name of the directory holding the copies, and of the recovered image
+     *                ({@code name.bmp}).
+     * @return The recovered secret image.
+     * @throws IOException If any IO error occurs while copying the shadows or reading the recovered image.
+     */
+    public byte[] recoverFrom(List<String> shadows, String name) throws IOException {
+        final Path used = Files.createDirectories(directory.resolve(name));
+        for (String shadow : shadows) {
+            FileUtils.copyFileToDirectory(new File(shadow), used.toFile());
+        }
+        final Path secret = directory.resolve(name + ".bmp");
+        new Decryptor(k, secret.toString(), used.toString(), scheduler).decrypt();
+        return Files.readAllBytes(secret);
+    }
+
+    /**
+     * @return The sorted paths to the covers (i.e to the shadow images, once distributed).
+     * @throws IOException If any IO error occurs while listing the directory.
+     */
+    public List<String> coverPaths() throws IOException {
+        return list(getCovers());
+    }
+
+    /**
+     * @return The sorted paths to the share files.
+     * @throws IOException If any IO error occurs while listing the directory.
+     */
+    public List<String> shareFilePaths() throws IOException {
+        return list(getShares());
+    }
+
+    /**
+     * Lists the files in the given {@code directory}, sorted by path.
+     *
+     * @param directory The directory.
+     * @return The paths to the files.
+     * @throws IOException If any IO error occurs while listing the directory.
+     */
+    private static List<String> list(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(Path::toString).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @return The temporary directory holding the whole set.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return The {@link TaskScheduler} of the set.
+     */
+    public TaskScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * @return The path to the secret image.
+     */
+    public Path getSecret() {
+        return directory.resolve("secret.bmp");
+    }
+
+    /**
+     * @return The path to the covers directory.
+     */
+    public Path getCovers() {
+        return directory.resolve("covers");
+    }
+
+    /**
+     * @return The path to the share files directory.
+     */
+    public Path getShares() {
+        return directory.resolve("shares");
+    }
+
+    /**
+     * Gets the given bmp image without its first bytes, up to the reserved field of the header (included),
+     * which differs between images recovered from different shadows.
+     *
+     * @param image The bmp image.
+     * @return The image bytes after the reserved field.
+     */
+    public static byte[] withoutReserved(byte[] image) {
+        return Arrays.copyOfRange(image, RESERVED_END, image.length);
+    }
+
+    /**
+     * Gets the real data of the given bmp image (i.e its bytes from the offset onwards).
+     *
+     * @param image The bmp image.
+     * @return The real data.
+     */
+    public static byte[] data(byte[] image) {
+        return Arrays.copyOfRange(image, offset(image), image.length);
+    }
+
+    /**
+     * Gets the offset of the real data of the given bmp image.
+     *
+     * @param image The bmp image.
+     * @return The offset.
+     */
+    public static int offset(byte[] image) {
+        return ByteBuffer.wrap(image).order(ByteOrder.LITTLE_ENDIAN).getInt(OFFSET_FIELD);
+    }
+
+    /**
+     * Calculates the real data of the secret image that recovery from the given shadows is expected to produce
+     * (see {@link #data(byte[])}).
+     *
+     * @param shadows The paths to the shadows (images or share files) the secret image is recovered from.
+     * @return The expected real data.
+     * @throws IOException If any IO error occurs while reading the secret image or the shadows.
+     */
+    public byte[] expectedRecovery(List<String> shadows) throws IOException {
+        return expectedRecovery(getSecret(), shadows);
+    }
+
+    /**
+     * Calculates the real data of the image that recovery from the given shadows is expected to produce, once they
+     * are updated to the given secret image (see {@link #data(byte[])}).
+     *
+     * @param secret  The path to the secret image.
+     * @param shadows The paths to the shadows (images or share files) the secret image is recovered from.
+     * @return The expected real data.
+     * @throws IOException If any IO error occurs while reading the secret image or the shadows.
+     */
+    public byte[] expectedRecovery(Path secret, List<String> shadows) throws IOException {
+        final byte[] image = Files.readAllBytes(secret);
+        final int offset = offset(image);
+        final byte[] data = Arrays.copyOfRange(image, offset, image.length);
+        adjust(data, k, points, keystream(shadows.get(0), data.length));
+        if (shadows.get(0).endsWith(ShareFile.EXTENSION)) {
+            return data;
+        }
+        // Images recovered from shadow images are followed by as many zeros as their size modulo 4
+        // (see BmpEditor#secretImage)
+        return Arrays.copyOf(data, data.length + image.length % 4);
+    }
+
+    /**
+     * Creates the keystream recorded in the given shadow.
+     *
+     * @param shadow The path to the shadow (an image or a share file).
+     * @param length The size of the secret image data.
+     * @return The {@link Keystream}.
+     * @throws IOException If any IO error occurs while reading the shadow.
+     */
+    private static Keystream keystream(String shadow, int length) throws IOException {
+        if (shadow.endsWith(ShareFile.EXTENSION)) {
+            final ShareFile shareFile = ShareFile.read(shadow);
+            return Keystream.create(shareFile.getKeystreamVersion(), shareFile.getSeed(), length);
+        }
+        final BmpUtils header = BmpUtils.readHeader(shadow, BufferPool.shared());
+        try {
+            return Keystream.create(header.getKeystreamVersion(), header.getSeed(), length);
+        } finally {
+            header.release();
+        }
+    }
+
+    /**
+     * Adjusts the given secret image data as distribution does: when a polynomial evaluates to 256 in any shadow
+     * number, its first non zero (masked) coefficient is decremented until it does not, so recovery gives those
+     * bytes back adjusted.
+     *
+     * @param data      The secret image data (adjusted in place).
+     * @param k         The amount of coefficients of each polynomial.
+     * @param points    The amount of shadow numbers at which no polynomial evaluates to 256 (i.e {@code n} plus
+     *                  the spare ones).
+     * @param keystream The keystream used to mask the secret image data.
+     */
+    public static void adjust(byte[] data, int k, int points, Keystream keystream) {
+        final int[] coefficients = new int[k];
+        for (int base = 0; base < data.length; base += k) {
+            for (int j = 0; j < k; j++) {
+                coefficients[j] = Byte.toUnsignedInt(data[base + j]) ^ keystream.get(base + j);
+            }
+            while (overflows(coefficients, points)) {
+                for (int j = 0; j < k; j++) {
+                    if (coefficients[j] != 0) {
+                        coefficients[j]--;
+                        break;
+                    }
+                }
+            }
+            for (int j = 0; j < k; j++) {
+                data[base + j] = (byte) (coefficients[j] ^ keystream.get(base + j));
+            }
+        }
+    }
+
+    /**
+     * Checks whether the polynomial with the given {@code coefficients} evaluates to 256 in any of 1..points.
+     *
+     * @param coefficients The polynomial coefficients (lowest degree first).
+     * @param points       The amount of shadow numbers.
+     * @return {@code true} if the polynomial evaluates to 256 in any shadow number, or {@code false} otherwise.
+     */
+    private static boolean overflows(int[] coefficients, int points) {
+        for (int x = 1; x <= points; x++) {
+            int eval = 0;
+            for (int j = coefficients.length - 1; j >= 0; j--) {
+                eval = (eval * x + coefficients[j]) % 257;
+            }
+            if (eval == 256) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        scheduler.close();
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+}
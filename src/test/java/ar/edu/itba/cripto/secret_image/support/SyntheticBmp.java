@@ -0,0 +1,93 @@
+package ar.edu.itba.cripto.secret_image.support;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Class implementing logic to create synthetic bmp images (i.e uncompressed, with random pixels),
+ * used as secrets and covers by the tests.
+ */
+public final class SyntheticBmp {
+
+    /**
+     * Size of the file header plus the info header.
+     */
+    private static final int HEADERS_SIZE = 14 + 40;
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private SyntheticBmp() {
+    }
+
+    /**
+     * Calculates the size of each row of pixels (rows are padded to a multiple of 4 bytes).
+     *
+     * @param width        The image width.
+     * @param bitsPerPixel The bit depth (8 or 24).
+     * @return The size of a row.
+     */
+    public static int rowSize(int width, int bitsPerPixel) {
+        return (width * bitsPerPixel + 31) / 32 * 4;
+    }
+
+    /**
+     * Calculates the offset of the pixels (i.e the headers size, plus the palette size for 8 bits images).
+     *
+     * @param bitsPerPixel The bit depth (8 or 24).
+     * @return The offset of the pixels.
+     */
+    public static int offset(int bitsPerPixel) {
+        return HEADERS_SIZE + (bitsPerPixel == 8 ? 256 * 4 : 0);
+    }
+
+    /**
+     * Creates a synthetic bmp image.
+     * 8 bits images have a grayscale palette, while 24 bits images have no palette.
+     *
+     * @param path         Path where the image must be saved.
+     * @param width        The image width.
+     * @param height       The image height.
+     * @param bitsPerPixel The bit depth (8 or 24).
+     * @param seed         The seed used to create the pixels.
+     * @throws IOException If any IO error occurs while writing the image.
+     */
+    public static void write(Path path, int width, int height, int bitsPerPixel, long seed)
+            throws IOException {
+        if (bitsPerPixel != 8 && bitsPerPixel != 24) {
+            throw new IllegalArgumentException("Bit depth must be 8 or 24");
+        }
+        final int offset = offset(bitsPerPixel);
+        final int imageSize = rowSize(width, bitsPerPixel) * height;
+        final ByteBuffer buffer = ByteBuffer.allocate(offset + imageSize).order(ByteOrder.LITTLE_ENDIAN);
+        // File header
+        buffer.put((byte) 'B').put((byte) 'M');
+        buffer.putInt(offset + imageSize);
+        buffer.putInt(0); // Reserved fields
+        buffer.putInt(offset);
+        // Info header
+        buffer.putInt(40);
+        buffer.putInt(width);
+        buffer.putInt(height);
+        buffer.putShort((short) 1); // Planes
+        buffer.putShort((short) bitsPerPixel);
+        buffer.putInt(0); // No compression
+        buffer.putInt(imageSize);
+        buffer.putInt(2835).putInt(2835); // 72 dpi
+        buffer.putInt(bitsPerPixel == 8 ? 256 : 0);
+        buffer.putInt(0);
+        if (bitsPerPixel == 8) {
+            for (int i = 0; i < 256; i++) {
+                buffer.put((byte) i).put((byte) i).put((byte) i).put((byte) 0);
+            }
+        }
+        final byte[] pixels = new byte[imageSize];
+        new Random(seed).nextBytes(pixels);
+        buffer.put(pixels);
+        Files.write(path, buffer.array());
+    }
+}